@@ -0,0 +1,83 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.cache;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * Optional extension of {@link HttpCacheStorage} implemented by storage
+ * backends that can perform operations asynchronously, so that callers
+ * can issue several operations without waiting for each of them to
+ * complete in turn.
+ * <p>
+ * Failures of the operation itself are reported by the returned
+ * {@link Future} as an {@link java.util.concurrent.ExecutionException}.
+ * </p>
+ *
+ * @since 5.0
+ */
+public interface AsyncHttpCacheStorage extends HttpCacheStorage {
+
+    /**
+     * Asynchronously stores a given cache entry under the given key.
+     * @param key where in the cache to store the entry
+     * @param entry cached response to store
+     * @return future indicating whether the entry has been stored
+     * @throws IOException if the operation could not be initiated
+     */
+    Future<Boolean> putEntryAsync(String key, HttpCacheEntry entry) throws IOException;
+
+    /**
+     * Asynchronously retrieves the cache entry stored under the given key.
+     * @param key cache key
+     * @return future yielding an {@link HttpCacheEntry} or {@code null} if
+     *   no entry exists under that key
+     * @throws IOException if the operation could not be initiated
+     */
+    Future<HttpCacheEntry> getEntryAsync(String key) throws IOException;
+
+    /**
+     * Asynchronously retrieves the cache entries stored under the given keys.
+     * @param keys cache keys
+     * @return future yielding the {@link HttpCacheEntry} instances found,
+     *   mapped by their keys
+     * @throws IOException if the operation could not be initiated
+     */
+    Future<Map<String, HttpCacheEntry>> getEntriesAsync(Collection<String> keys) throws IOException;
+
+    /**
+     * Asynchronously deletes any cache entry stored under the given key.
+     * @param key cache key
+     * @return future indicating whether an entry has been removed
+     * @throws IOException if the operation could not be initiated
+     */
+    Future<Boolean> removeEntryAsync(String key) throws IOException;
+
+}
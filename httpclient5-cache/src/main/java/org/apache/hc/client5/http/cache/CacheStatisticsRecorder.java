@@ -0,0 +1,81 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.cache;
+
+import org.apache.hc.core5.http.HttpHost;
+
+/**
+ * Records statistics of the caching module per target {@link HttpHost}.
+ * <p>
+ * Implementations of this interface must be thread-safe and are expected
+ * to return quickly as they get invoked on the request execution path.
+ * All durations are given in nanoseconds.
+ * </p>
+ *
+ * @since 5.0
+ */
+public interface CacheStatisticsRecorder {
+
+    /**
+     * Determines whether statistics are recorded at all. Callers may skip
+     * taking measurements if this method returns {@code false}.
+     */
+    boolean isEnabled();
+
+    /**
+     * Records a response returned by the caching module.
+     *
+     * @param target the target host of the request.
+     * @param status how the response has been generated.
+     * @param contentLength the length of the response body, or a negative
+     *   number if unknown.
+     */
+    void responseServed(HttpHost target, CacheResponseStatus status, long contentLength);
+
+    /**
+     * Records the response of the origin to a conditional request revalidating
+     * a cache entry, usually {@code 304 (Not Modified)} if the entry was still
+     * valid or {@code 200 (OK)} if it has been replaced.
+     */
+    void entryRevalidated(HttpHost target, int statusCode);
+
+    /**
+     * Records a revalidation that failed due to an I/O error.
+     */
+    void revalidationFailed(HttpHost target);
+
+    /**
+     * Records the time taken to read an entry from the cache storage.
+     */
+    void storageRead(long time);
+
+    /**
+     * Records the time taken to write or remove an entry of the cache storage.
+     */
+    void storageWritten(long time);
+
+}
@@ -37,7 +37,7 @@ public class HttpCacheEntrySerializationException extends IOException {
     private static final long serialVersionUID = 9219188365878433519L;
 
     public HttpCacheEntrySerializationException(final String message) {
-        super();
+        super(message);
     }
 
     public HttpCacheEntrySerializationException(final String message, final Throwable cause) {
@@ -27,6 +27,7 @@
 package org.apache.hc.client5.http.impl.cache;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -39,6 +40,7 @@ import org.apache.hc.client5.http.methods.HttpRequestWrapper;
 import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.HttpResponse;
 
 /**
@@ -55,6 +57,7 @@ public class AsynchronousValidationRequest implements Runnable {
     private final HttpCacheEntry cacheEntry;
     private final String identifier;
     private final int consecutiveFailedAttempts;
+    private final AtomicInteger hits;
 
     private final Log log = LogFactory.getLog(getClass());
 
@@ -86,6 +89,7 @@ public class AsynchronousValidationRequest implements Runnable {
         this.cacheEntry = cacheEntry;
         this.identifier = identifier;
         this.consecutiveFailedAttempts = consecutiveFailedAttempts;
+        this.hits = new AtomicInteger(1);
     }
 
     @Override
@@ -173,4 +177,27 @@ public class AsynchronousValidationRequest implements Runnable {
         return consecutiveFailedAttempts;
     }
 
+    /**
+     * The target host of the request being revalidated.
+     *
+     * @since 5.0
+     */
+    public HttpHost getTargetHost() {
+        return route.getTargetHost();
+    }
+
+    /**
+     * The number of requests that found the cache entry stale while this
+     * revalidation was pending, including the one that triggered it.
+     *
+     * @since 5.0
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    void recordHit() {
+        hits.incrementAndGet();
+    }
+
 }
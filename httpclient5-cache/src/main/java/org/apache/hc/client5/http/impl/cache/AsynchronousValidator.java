@@ -29,9 +29,11 @@ package org.apache.hc.client5.http.impl.cache;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -47,9 +49,12 @@ import org.apache.hc.client5.http.protocol.HttpClientContext;
  */
 class AsynchronousValidator implements Closeable {
     private final SchedulingStrategy schedulingStrategy;
-    private final Set<String> queued;
+    private final ConcurrentMap<String, AsynchronousValidationRequest> queued;
     private final CacheKeyGenerator cacheKeyGenerator;
     private final FailureCache failureCache;
+    private final AtomicLong scheduledCount;
+    private final AtomicLong droppedCount;
+    private final AtomicLong failedCount;
 
     private final Log log = LogFactory.getLog(getClass());
 
@@ -76,9 +81,12 @@ class AsynchronousValidator implements Closeable {
      */
     AsynchronousValidator(final SchedulingStrategy schedulingStrategy) {
         this.schedulingStrategy = schedulingStrategy;
-        this.queued = new HashSet<>();
+        this.queued = new ConcurrentHashMap<>();
         this.cacheKeyGenerator = new CacheKeyGenerator();
         this.failureCache = new DefaultFailureCache();
+        this.scheduledCount = new AtomicLong();
+        this.droppedCount = new AtomicLong();
+        this.failedCount = new AtomicLong();
     }
 
     @Override
@@ -87,9 +95,11 @@ class AsynchronousValidator implements Closeable {
     }
 
     /**
-     * Schedules an asynchronous revalidation
+     * Schedules an asynchronous revalidation. If a revalidation of the same
+     * cache entry is already queued, the request is recorded as another hit
+     * on it instead.
      */
-    public synchronized void revalidateCacheEntry(
+    public void revalidateCacheEntry(
             final CachingExec cachingExec,
             final HttpRoute route,
             final HttpRequestWrapper request,
@@ -99,18 +109,25 @@ class AsynchronousValidator implements Closeable {
         // getVariantURI will fall back on getURI if no variants exist
         final String uri = cacheKeyGenerator.getVariantURI(context.getTargetHost(), request, entry);
 
-        if (!queued.contains(uri)) {
-            final int consecutiveFailedAttempts = failureCache.getErrorCount(uri);
-            final AsynchronousValidationRequest revalidationRequest =
-                new AsynchronousValidationRequest(
-                        this, cachingExec, route, request, context, execAware, entry, uri, consecutiveFailedAttempts);
-
-            try {
-                schedulingStrategy.schedule(revalidationRequest);
-                queued.add(uri);
-            } catch (final RejectedExecutionException ree) {
-                log.debug("Revalidation for [" + uri + "] not scheduled: " + ree);
-            }
+        final AsynchronousValidationRequest existing = queued.get(uri);
+        if (existing != null) {
+            existing.recordHit();
+            return;
+        }
+        final int consecutiveFailedAttempts = failureCache.getErrorCount(uri);
+        final AsynchronousValidationRequest revalidationRequest =
+            new AsynchronousValidationRequest(
+                    this, cachingExec, route, request, context, execAware, entry, uri, consecutiveFailedAttempts);
+        if (queued.putIfAbsent(uri, revalidationRequest) != null) {
+            return;
+        }
+        try {
+            schedulingStrategy.schedule(revalidationRequest);
+            scheduledCount.incrementAndGet();
+        } catch (final RejectedExecutionException ree) {
+            queued.remove(uri, revalidationRequest);
+            droppedCount.incrementAndGet();
+            log.debug("Revalidation for [" + uri + "] not scheduled: " + ree);
         }
     }
 
@@ -121,7 +138,7 @@ class AsynchronousValidator implements Closeable {
      * complete, using the identifier passed in during constructions.
      * @param identifier
      */
-    synchronized void markComplete(final String identifier) {
+    void markComplete(final String identifier) {
         queued.remove(identifier);
     }
 
@@ -142,10 +159,38 @@ class AsynchronousValidator implements Closeable {
      * @param identifier the revalidation job's unique identifier
      */
     void jobFailed(final String identifier) {
+        failedCount.incrementAndGet();
         failureCache.increaseErrorCount(identifier);
     }
 
     Set<String> getScheduledIdentifiers() {
-        return Collections.unmodifiableSet(queued);
+        return Collections.unmodifiableSet(queued.keySet());
+    }
+
+    /**
+     * Returns the number of revalidations handed to the scheduling strategy.
+     *
+     * @since 5.0
+     */
+    long getScheduledCount() {
+        return scheduledCount.get();
+    }
+
+    /**
+     * Returns the number of revalidations rejected by the scheduling strategy.
+     *
+     * @since 5.0
+     */
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Returns the number of revalidations that have been executed but failed.
+     *
+     * @since 5.0
+     */
+    long getFailedCount() {
+        return failedCount.get();
     }
 }
@@ -26,11 +26,15 @@
  */
 package org.apache.hc.client5.http.impl.cache;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -42,11 +46,13 @@ import org.apache.hc.client5.http.cache.HttpCacheInvalidator;
 import org.apache.hc.client5.http.cache.HttpCacheStorage;
 import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
 import org.apache.hc.client5.http.cache.HttpCacheUpdateException;
+import org.apache.hc.client5.http.cache.InputLimit;
 import org.apache.hc.client5.http.cache.Resource;
 import org.apache.hc.client5.http.cache.ResourceFactory;
 import org.apache.hc.client5.http.methods.CloseableHttpResponse;
 import org.apache.hc.client5.http.methods.HttpRequestWrapper;
 import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.HttpRequest;
@@ -65,6 +71,7 @@ class BasicHttpCache implements HttpCache {
     private final CacheKeyGenerator uriExtractor;
     private final ResourceFactory resourceFactory;
     private final long maxObjectSizeBytes;
+    private final boolean streamingCacheFillEnabled;
     private final CacheEntryUpdater cacheEntryUpdater;
     private final CachedHttpResponseGenerator responseGenerator;
     private final HttpCacheInvalidator cacheInvalidator;
@@ -82,6 +89,7 @@ class BasicHttpCache implements HttpCache {
         this.uriExtractor = uriExtractor;
         this.cacheEntryUpdater = new CacheEntryUpdater(resourceFactory);
         this.maxObjectSizeBytes = config.getMaxObjectSize();
+        this.streamingCacheFillEnabled = config.isStreamingCacheFillEnabled();
         this.responseGenerator = new CachedHttpResponseGenerator();
         this.storage = storage;
         this.cacheInvalidator = cacheInvalidator;
@@ -194,25 +202,31 @@ class BasicHttpCache implements HttpCache {
     }
 
     boolean isIncompleteResponse(final HttpResponse resp, final Resource resource) {
+        if (resource == null) {
+            return false;
+        }
+        return (resource.length() < getExpectedContentLength(resp));
+    }
+
+    /**
+     * Returns the body length a response must be received with to be cached,
+     * or {@code -1} if its body may be of any length.
+     */
+    long getExpectedContentLength(final HttpResponse resp) {
         final int status = resp.getStatusLine().getStatusCode();
         if (status != HttpStatus.SC_OK
             && status != HttpStatus.SC_PARTIAL_CONTENT) {
-            return false;
+            return -1;
         }
         final Header hdr = resp.getFirstHeader(HttpHeaders.CONTENT_LENGTH);
         if (hdr == null) {
-            return false;
+            return -1;
         }
-        final int contentLength;
         try {
-            contentLength = Integer.parseInt(hdr.getValue());
+            return Integer.parseInt(hdr.getValue());
         } catch (final NumberFormatException nfe) {
-            return false;
-        }
-        if (resource == null) {
-            return false;
+            return -1;
         }
-        return (resource.length() < contentLength);
     }
 
     CloseableHttpResponse generateIncompleteResponseError(
@@ -302,6 +316,9 @@ class BasicHttpCache implements HttpCache {
             final Date requestSent,
             final Date responseReceived) throws IOException {
 
+        if (streamingCacheFillEnabled && originResponse.getEntity() != null) {
+            return streamAndCacheResponse(host, request, originResponse, requestSent, responseReceived);
+        }
         boolean closeOriginResponse = true;
         final SizeLimitedResponseReader responseReader = getResponseReader(request, originResponse);
         try {
@@ -333,6 +350,68 @@ class BasicHttpCache implements HttpCache {
         }
     }
 
+    /**
+     * Returns the origin response with its body streamed directly to the caller.
+     * The response is cached once its body has been read completely within
+     * the maximum object size. A body shorter than its declared Content-Length
+     * is not cached and causes the read to fail.
+     */
+    CloseableHttpResponse streamAndCacheResponse(
+            final HttpHost host,
+            final HttpRequest request,
+            final CloseableHttpResponse originResponse,
+            final Date requestSent,
+            final Date responseReceived) {
+        final HttpEntity entity = originResponse.getEntity();
+        if (entity.getContentLength() > maxObjectSizeBytes) {
+            return originResponse;
+        }
+        final CacheFillingEntity cacheFillingEntity = new CacheFillingEntity(
+                entity, maxObjectSizeBytes, getExpectedContentLength(originResponse)) {
+
+            @Override
+            void commit(final byte[] buf, final int len) {
+                try {
+                    final Resource resource = resourceFactory.generate(
+                            request.getRequestLine().getUri(),
+                            new ByteArrayInputStream(buf, 0, len),
+                            new InputLimit(maxObjectSizeBytes));
+                    if (isIncompleteResponse(originResponse, resource)) {
+                        resource.dispose();
+                        return;
+                    }
+                    final HttpCacheEntry entry = new HttpCacheEntry(
+                            requestSent,
+                            responseReceived,
+                            originResponse.getStatusLine(),
+                            originResponse.getAllHeaders(),
+                            resource,
+                            request.getRequestLine().getMethod());
+                    storeInCache(host, request, entry);
+                } catch (final IOException ex) {
+                    log.warn("Unable to cache streamed response", ex);
+                }
+            }
+
+        };
+        originResponse.setEntity(cacheFillingEntity);
+        return (CloseableHttpResponse) Proxy.newProxyInstance(
+                ResponseProxyHandler.class.getClassLoader(),
+                new Class<?>[] { CloseableHttpResponse.class },
+                new ResponseProxyHandler(originResponse) {
+
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            cacheFillingEntity.abort();
+                        } finally {
+                            originResponse.close();
+                        }
+                    }
+
+                });
+    }
+
     SizeLimitedResponseReader getResponseReader(final HttpRequest request,
             final CloseableHttpResponse backEndResponse) {
         return new SizeLimitedResponseReader(
@@ -341,10 +420,19 @@ class BasicHttpCache implements HttpCache {
 
     @Override
     public HttpCacheEntry getCacheEntry(final HttpHost host, final HttpRequest request) throws IOException {
-        final HttpCacheEntry root = storage.getEntry(uriExtractor.getURI(host, request));
+        final String uri = uriExtractor.getURI(host, request);
+        final HttpCacheEntry root = storage.getEntry(uri);
         if (root == null) {
             return null;
         }
+        if (HeaderConstants.GET_METHOD.equals(request.getRequestLine().getMethod())
+                && HeaderConstants.HEAD_METHOD.equals(root.getRequestMethod())) {
+            // An entry cached for a HEAD request is superseded by the response to a GET
+            final List<String> keys = new ArrayList<>(root.getVariantMap().values());
+            keys.add(uri);
+            HttpCacheStorageSupport.removeEntries(storage, keys);
+            return null;
+        }
         if (!root.hasVariants()) {
             return root;
         }
@@ -369,18 +457,20 @@ class BasicHttpCache implements HttpCache {
         if (root == null || !root.hasVariants()) {
             return variants;
         }
-        for(final Map.Entry<String, String> variant : root.getVariantMap().entrySet()) {
+        final Map<String, String> variantMap = root.getVariantMap();
+        final Map<String, HttpCacheEntry> entries = HttpCacheStorageSupport.getEntries(
+                storage, new HashSet<>(variantMap.values()));
+        for(final Map.Entry<String, String> variant : variantMap.entrySet()) {
             final String variantKey = variant.getKey();
             final String variantCacheKey = variant.getValue();
-            addVariantWithEtag(variantKey, variantCacheKey, variants);
+            addVariantWithEtag(variantKey, variantCacheKey, entries.get(variantCacheKey), variants);
         }
         return variants;
     }
 
     private void addVariantWithEtag(final String variantKey,
-            final String variantCacheKey, final Map<String, Variant> variants)
-            throws IOException {
-        final HttpCacheEntry entry = storage.getEntry(variantCacheKey);
+            final String variantCacheKey, final HttpCacheEntry entry,
+            final Map<String, Variant> variants) {
         if (entry == null) {
             return;
         }
@@ -27,14 +27,17 @@
 package org.apache.hc.client5.http.impl.cache;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
+import org.apache.hc.client5.http.cache.BulkHttpCacheStorage;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
-import org.apache.hc.client5.http.cache.HttpCacheStorage;
 import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
 import org.apache.hc.core5.annotation.ThreadSafe;
 
 /**
- * Basic {@link HttpCacheStorage} implementation backed by an instance of
+ * Basic {@link org.apache.hc.client5.http.cache.HttpCacheStorage} implementation backed by an instance of
  * {@link java.util.LinkedHashMap}. In other words, cache entries and
  * the cached response bodies are held in-memory. This cache does NOT
  * deallocate resources associated with the cache entries; it is intended
@@ -44,13 +47,13 @@ import org.apache.hc.core5.annotation.ThreadSafe;
  * @since 4.1
  */
 @ThreadSafe
-public class BasicHttpCacheStorage implements HttpCacheStorage {
+public class BasicHttpCacheStorage implements BulkHttpCacheStorage {
 
     private final CacheMap entries;
 
     public BasicHttpCacheStorage(final CacheConfig config) {
         super();
-        this.entries = new CacheMap(config.getMaxCacheEntries());
+        this.entries = new CacheMap(config.getMaxCacheEntries(), config.getMaxCacheBytes());
     }
 
     /**
@@ -78,6 +81,27 @@ public class BasicHttpCacheStorage implements HttpCacheStorage {
         return entries.get(url);
     }
 
+    /**
+     * Gets the entries stored under the given keys from the cache
+     *
+     * @param urls
+     *            Urls that are the cache keys
+     * @return HttpCacheEntries found mapped by their keys
+     *
+     * @since 5.0
+     */
+    @Override
+    public synchronized Map<String, HttpCacheEntry> getEntries(final Collection<String> urls) throws IOException {
+        final Map<String, HttpCacheEntry> result = new HashMap<>();
+        for (final String url : urls) {
+            final HttpCacheEntry entry = entries.get(url);
+            if (entry != null) {
+                result.put(url, entry);
+            }
+        }
+        return result;
+    }
+
     /**
      * Removes a HttpCacheEntry from the cache
      *
@@ -89,6 +113,21 @@ public class BasicHttpCacheStorage implements HttpCacheStorage {
         entries.remove(url);
     }
 
+    /**
+     * Removes the HttpCacheEntries stored under the given keys from the cache
+     *
+     * @param urls
+     *            Urls that are the cache keys
+     *
+     * @since 5.0
+     */
+    @Override
+    public synchronized void removeEntries(final Collection<String> urls) throws IOException {
+        for (final String url : urls) {
+            entries.remove(url);
+        }
+    }
+
     @Override
     public synchronized void updateEntry(
             final String url,
@@ -97,4 +136,23 @@ public class BasicHttpCacheStorage implements HttpCacheStorage {
         entries.put(url, callback.update(existingEntry));
     }
 
+    /**
+     * Returns the total estimated size in bytes of the entries held in the storage.
+     *
+     * @since 5.0
+     */
+    public synchronized long getWeightedSize() {
+        return entries.getWeightedSize();
+    }
+
+    /**
+     * Returns the number of entries evicted to stay within the configured
+     * maximum number of entries and maximum total size.
+     *
+     * @since 5.0
+     */
+    public synchronized long getEvictionCount() {
+        return entries.getEvictionCount();
+    }
+
 }
@@ -0,0 +1,102 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.hc.core5.annotation.NotThreadSafe;
+
+/**
+ * {@link InputStream} reading the remaining content of a sequence of
+ * {@link ByteBuffer}s.
+ */
+@NotThreadSafe
+class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer[] buffers;
+    private int current;
+
+    ByteBufferInputStream(final ByteBuffer... buffers) {
+        super();
+        this.buffers = buffers;
+    }
+
+    private ByteBuffer currentBuffer() {
+        while (this.current < this.buffers.length) {
+            final ByteBuffer buffer = this.buffers[this.current];
+            if (buffer.hasRemaining()) {
+                return buffer;
+            }
+            this.current++;
+        }
+        return null;
+    }
+
+    @Override
+    public int read() {
+        final ByteBuffer buffer = currentBuffer();
+        return buffer != null ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) {
+        if (len == 0) {
+            return 0;
+        }
+        int total = 0;
+        ByteBuffer buffer;
+        while (total < len && (buffer = currentBuffer()) != null) {
+            final int n = Math.min(len - total, buffer.remaining());
+            buffer.get(b, off + total, n);
+            total += n;
+        }
+        return total > 0 ? total : -1;
+    }
+
+    @Override
+    public long skip(final long n) {
+        long total = 0;
+        ByteBuffer buffer;
+        while (total < n && (buffer = currentBuffer()) != null) {
+            final int k = (int) Math.min(n - total, buffer.remaining());
+            buffer.position(buffer.position() + k);
+            total += k;
+        }
+        return total;
+    }
+
+    @Override
+    public int available() {
+        long total = 0;
+        for (int i = this.current; i < this.buffers.length; i++) {
+            total += this.buffers[i].remaining();
+        }
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+}
@@ -45,7 +45,8 @@ import org.apache.hc.core5.util.Args;
  *
  * <p><b>Cache size.</b> If the backend storage supports these limits, you
  * can specify the {@link CacheConfig#getMaxCacheEntries maximum number of
- * cache entries} as well as the {@link CacheConfig#getMaxObjectSize()}
+ * cache entries}, the {@link CacheConfig#getMaxCacheBytes() maximum total
+ * size of the cache entries} as well as the {@link CacheConfig#getMaxObjectSize()}
  * maximum cacheable response body size}.</p>
  *
  * <p><b>Public/private caching.</b> By default, the caching module considers
@@ -112,6 +113,11 @@ public class CacheConfig implements Cloneable {
      */
     public final static int DEFAULT_MAX_CACHE_ENTRIES = 1000;
 
+    /** Default setting for the maximum total size of the cache entries
+     * that will be retained, in bytes. Zero means no limit.
+     */
+    public final static long DEFAULT_MAX_CACHE_BYTES = 0;
+
     /** Default setting for the number of retries on a failed
      * cache processChallenge
      */
@@ -158,10 +164,24 @@ public class CacheConfig implements Cloneable {
      */
     public static final int DEFAULT_REVALIDATION_QUEUE_SIZE = 100;
 
+    /** Default setting for request coalescing of concurrent cache misses
+     */
+    public static final boolean DEFAULT_REQUEST_COALESCING_ENABLED = false;
+
+    /** Default maximum time in milliseconds a request waits for a coalesced
+     * request in flight
+     */
+    public static final long DEFAULT_REQUEST_COALESCING_TIMEOUT = 10000;
+
+    /** Default setting for streaming of cacheable response bodies while they are cached
+     */
+    public static final boolean DEFAULT_STREAMING_CACHE_FILL_ENABLED = false;
+
     public static final CacheConfig DEFAULT = new Builder().build();
 
     private final long maxObjectSize;
     private final int maxCacheEntries;
+    private final long maxCacheBytes;
     private final int maxUpdateRetries;
     private final boolean allow303Caching;
     private final boolean weakETagOnPutDeleteAllowed;
@@ -174,10 +194,14 @@ public class CacheConfig implements Cloneable {
     private final int asynchronousWorkerIdleLifetimeSecs;
     private final int revalidationQueueSize;
     private final boolean neverCacheHTTP10ResponsesWithQuery;
+    private final boolean requestCoalescingEnabled;
+    private final long requestCoalescingTimeout;
+    private final boolean streamingCacheFillEnabled;
 
     CacheConfig(
             final long maxObjectSize,
             final int maxCacheEntries,
+            final long maxCacheBytes,
             final int maxUpdateRetries,
             final boolean allow303Caching,
             final boolean weakETagOnPutDeleteAllowed,
@@ -189,10 +213,14 @@ public class CacheConfig implements Cloneable {
             final int asynchronousWorkersCore,
             final int asynchronousWorkerIdleLifetimeSecs,
             final int revalidationQueueSize,
-            final boolean neverCacheHTTP10ResponsesWithQuery) {
+            final boolean neverCacheHTTP10ResponsesWithQuery,
+            final boolean requestCoalescingEnabled,
+            final long requestCoalescingTimeout,
+            final boolean streamingCacheFillEnabled) {
         super();
         this.maxObjectSize = maxObjectSize;
         this.maxCacheEntries = maxCacheEntries;
+        this.maxCacheBytes = maxCacheBytes;
         this.maxUpdateRetries = maxUpdateRetries;
         this.allow303Caching = allow303Caching;
         this.weakETagOnPutDeleteAllowed = weakETagOnPutDeleteAllowed;
@@ -205,6 +233,9 @@ public class CacheConfig implements Cloneable {
         this.asynchronousWorkerIdleLifetimeSecs = asynchronousWorkerIdleLifetimeSecs;
         this.revalidationQueueSize = revalidationQueueSize;
         this.neverCacheHTTP10ResponsesWithQuery = neverCacheHTTP10ResponsesWithQuery;
+        this.requestCoalescingEnabled = requestCoalescingEnabled;
+        this.requestCoalescingTimeout = requestCoalescingTimeout;
+        this.streamingCacheFillEnabled = streamingCacheFillEnabled;
     }
 
     /**
@@ -233,6 +264,17 @@ public class CacheConfig implements Cloneable {
         return maxCacheEntries;
     }
 
+    /**
+     * Returns the maximum total size in bytes of the cache entries the cache
+     * will retain, including the response bodies and an estimate of the headers
+     * overhead. Zero or a negative value means no limit.
+     *
+     * @since 5.0
+     */
+    public long getMaxCacheBytes() {
+        return maxCacheBytes;
+    }
+
     /**
      * Returns the number of times to retry a cache processChallenge on failure
      */
@@ -322,6 +364,38 @@ public class CacheConfig implements Cloneable {
         return revalidationQueueSize;
     }
 
+    /**
+     * Returns whether concurrent requests missing the cache or revalidating
+     * the same cache entry are coalesced, so that only one of them is sent
+     * to the origin while the others wait for its response to be cached.
+     *
+     * @since 5.0
+     */
+    public boolean isRequestCoalescingEnabled() {
+        return requestCoalescingEnabled;
+    }
+
+    /**
+     * Returns the maximum time in milliseconds a request waits for a coalesced
+     * request in flight before it is sent to the origin itself.
+     *
+     * @since 5.0
+     */
+    public long getRequestCoalescingTimeout() {
+        return requestCoalescingTimeout;
+    }
+
+    /**
+     * Returns whether cacheable response bodies are streamed to the caller
+     * while a copy of them is being cached, instead of being read completely
+     * into the cache before the caller receives the response.
+     *
+     * @since 5.0
+     */
+    public boolean isStreamingCacheFillEnabled() {
+        return streamingCacheFillEnabled;
+    }
+
     @Override
     protected CacheConfig clone() throws CloneNotSupportedException {
         return (CacheConfig) super.clone();
@@ -336,6 +410,7 @@ public class CacheConfig implements Cloneable {
         return new Builder()
             .setMaxObjectSize(config.getMaxObjectSize())
             .setMaxCacheEntries(config.getMaxCacheEntries())
+            .setMaxCacheBytes(config.getMaxCacheBytes())
             .setMaxUpdateRetries(config.getMaxUpdateRetries())
             .setHeuristicCachingEnabled(config.isHeuristicCachingEnabled())
             .setHeuristicCoefficient(config.getHeuristicCoefficient())
@@ -345,7 +420,10 @@ public class CacheConfig implements Cloneable {
             .setAsynchronousWorkersCore(config.getAsynchronousWorkersCore())
             .setAsynchronousWorkerIdleLifetimeSecs(config.getAsynchronousWorkerIdleLifetimeSecs())
             .setRevalidationQueueSize(config.getRevalidationQueueSize())
-            .setNeverCacheHTTP10ResponsesWithQueryString(config.isNeverCacheHTTP10ResponsesWithQuery());
+            .setNeverCacheHTTP10ResponsesWithQueryString(config.isNeverCacheHTTP10ResponsesWithQuery())
+            .setRequestCoalescingEnabled(config.isRequestCoalescingEnabled())
+            .setRequestCoalescingTimeout(config.getRequestCoalescingTimeout())
+            .setStreamingCacheFillEnabled(config.isStreamingCacheFillEnabled());
     }
 
 
@@ -353,6 +431,7 @@ public class CacheConfig implements Cloneable {
 
         private long maxObjectSize;
         private int maxCacheEntries;
+        private long maxCacheBytes;
         private int maxUpdateRetries;
         private boolean allow303Caching;
         private boolean weakETagOnPutDeleteAllowed;
@@ -365,10 +444,14 @@ public class CacheConfig implements Cloneable {
         private int asynchronousWorkerIdleLifetimeSecs;
         private int revalidationQueueSize;
         private boolean neverCacheHTTP10ResponsesWithQuery;
+        private boolean requestCoalescingEnabled;
+        private long requestCoalescingTimeout;
+        private boolean streamingCacheFillEnabled;
 
         Builder() {
             this.maxObjectSize = DEFAULT_MAX_OBJECT_SIZE_BYTES;
             this.maxCacheEntries = DEFAULT_MAX_CACHE_ENTRIES;
+            this.maxCacheBytes = DEFAULT_MAX_CACHE_BYTES;
             this.maxUpdateRetries = DEFAULT_MAX_UPDATE_RETRIES;
             this.allow303Caching = DEFAULT_303_CACHING_ENABLED;
             this.weakETagOnPutDeleteAllowed = DEFAULT_WEAK_ETAG_ON_PUTDELETE_ALLOWED;
@@ -380,6 +463,9 @@ public class CacheConfig implements Cloneable {
             this.asynchronousWorkersCore = DEFAULT_ASYNCHRONOUS_WORKERS_CORE;
             this.asynchronousWorkerIdleLifetimeSecs = DEFAULT_ASYNCHRONOUS_WORKER_IDLE_LIFETIME_SECS;
             this.revalidationQueueSize = DEFAULT_REVALIDATION_QUEUE_SIZE;
+            this.requestCoalescingEnabled = DEFAULT_REQUEST_COALESCING_ENABLED;
+            this.requestCoalescingTimeout = DEFAULT_REQUEST_COALESCING_TIMEOUT;
+            this.streamingCacheFillEnabled = DEFAULT_STREAMING_CACHE_FILL_ENABLED;
         }
 
         /**
@@ -399,6 +485,17 @@ public class CacheConfig implements Cloneable {
             return this;
         }
 
+        /**
+         * Sets the maximum total size in bytes of the cache entries the cache will
+         * retain. Zero or a negative value means no limit.
+         *
+         * @since 5.0
+         */
+        public Builder setMaxCacheBytes(final long maxCacheBytes) {
+            this.maxCacheBytes = maxCacheBytes;
+            return this;
+        }
+
         /**
          * Sets the number of times to retry a cache processChallenge on failure
          */
@@ -532,10 +629,51 @@ public class CacheConfig implements Cloneable {
             return this;
         }
 
+        /**
+         * Enables or disables coalescing of concurrent requests missing the cache
+         * or revalidating the same cache entry. When enabled only one request per
+         * cache key is sent to the origin; the others wait for its response to be
+         * cached, at most until their request deadline, socket timeout or
+         * {@link #setRequestCoalescingTimeout(long) coalescing timeout} elapses.
+         *
+         * @since 5.0
+         */
+        public Builder setRequestCoalescingEnabled(final boolean requestCoalescingEnabled) {
+            this.requestCoalescingEnabled = requestCoalescingEnabled;
+            return this;
+        }
+
+        /**
+         * Sets the maximum time in milliseconds a request waits for a coalesced
+         * request in flight before it is sent to the origin itself. This bounds
+         * the wait even if the response of the request in flight is never read.
+         *
+         * @since 5.0
+         */
+        public Builder setRequestCoalescingTimeout(final long requestCoalescingTimeout) {
+            this.requestCoalescingTimeout = requestCoalescingTimeout;
+            return this;
+        }
+
+        /**
+         * Enables or disables streaming of cacheable response bodies. When enabled
+         * the caller reads the body directly from the backend while a copy of it
+         * is retained; the response is only committed to the cache once its body
+         * has been read completely within the maximum object size, and is
+         * discarded otherwise.
+         *
+         * @since 5.0
+         */
+        public Builder setStreamingCacheFillEnabled(final boolean streamingCacheFillEnabled) {
+            this.streamingCacheFillEnabled = streamingCacheFillEnabled;
+            return this;
+        }
+
         public CacheConfig build() {
             return new CacheConfig(
                     maxObjectSize,
                     maxCacheEntries,
+                    maxCacheBytes,
                     maxUpdateRetries,
                     allow303Caching,
                     weakETagOnPutDeleteAllowed,
@@ -547,7 +685,10 @@ public class CacheConfig implements Cloneable {
                     asynchronousWorkersCore,
                     asynchronousWorkerIdleLifetimeSecs,
                     revalidationQueueSize,
-                    neverCacheHTTP10ResponsesWithQuery);
+                    neverCacheHTTP10ResponsesWithQuery,
+                    requestCoalescingEnabled,
+                    requestCoalescingTimeout,
+                    streamingCacheFillEnabled);
         }
 
     }
@@ -557,6 +698,7 @@ public class CacheConfig implements Cloneable {
         final StringBuilder builder = new StringBuilder();
         builder.append("[maxObjectSize=").append(this.maxObjectSize)
                 .append(", maxCacheEntries=").append(this.maxCacheEntries)
+                .append(", maxCacheBytes=").append(this.maxCacheBytes)
                 .append(", maxUpdateRetries=").append(this.maxUpdateRetries)
                 .append(", 303CachingEnabled=").append(this.allow303Caching)
                 .append(", weakETagOnPutDeleteAllowed=").append(this.weakETagOnPutDeleteAllowed)
@@ -569,6 +711,9 @@ public class CacheConfig implements Cloneable {
                 .append(", asynchronousWorkerIdleLifetimeSecs=").append(this.asynchronousWorkerIdleLifetimeSecs)
                 .append(", revalidationQueueSize=").append(this.revalidationQueueSize)
                 .append(", neverCacheHTTP10ResponsesWithQuery=").append(this.neverCacheHTTP10ResponsesWithQuery)
+                .append(", requestCoalescingEnabled=").append(this.requestCoalescingEnabled)
+                .append(", requestCoalescingTimeout=").append(this.requestCoalescingTimeout)
+                .append(", streamingCacheFillEnabled=").append(this.streamingCacheFillEnabled)
                 .append("]");
         return builder.toString();
     }
@@ -0,0 +1,72 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.Map;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.core5.http.Header;
+
+/**
+ * Estimates the number of bytes a cache entry occupies in memory: the length of
+ * its {@link Resource} plus the approximate footprint of the cache key, the
+ * response headers and the variant map.
+ */
+final class CacheEntryWeigher {
+
+    // Approximate fixed footprint of an entry object graph (entry, dates, status line)
+    static final int ENTRY_OVERHEAD = 128;
+    // Approximate fixed footprint of a header object and its strings
+    static final int HEADER_OVERHEAD = 32;
+
+    private CacheEntryWeigher() {
+    }
+
+    private static long weigh(final String s) {
+        return s != null ? 2L * s.length() : 0;
+    }
+
+    static long weigh(final String key, final HttpCacheEntry entry) {
+        if (entry == null) {
+            return 0;
+        }
+        long weight = ENTRY_OVERHEAD + weigh(key);
+        for (final Header header: entry.getAllHeaders()) {
+            weight += HEADER_OVERHEAD + weigh(header.getName()) + weigh(header.getValue());
+        }
+        for (final Map.Entry<String, String> variant: entry.getVariantMap().entrySet()) {
+            weight += weigh(variant.getKey()) + weigh(variant.getValue());
+        }
+        final Resource resource = entry.getResource();
+        if (resource != null) {
+            weight += resource.length();
+        }
+        return weight;
+    }
+
+}
@@ -0,0 +1,226 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.hc.core5.annotation.NotThreadSafe;
+import org.apache.hc.core5.http.ConnectionClosedException;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.entity.HttpEntityWrapper;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.ByteArrayBuffer;
+
+/**
+ * Wraps the entity of a backend response so that its content is streamed
+ * to the caller while a copy of it is retained for the cache. Once the
+ * content has been read to its end, {@link #commit(byte[], int)} is invoked
+ * with the copy. If the content exceeds the given maximum size, falls short
+ * of the expected length, or the stream is closed before its end has been
+ * reached, the copy is discarded and nothing is committed.
+ *
+ * @since 5.0
+ */
+@NotThreadSafe
+abstract class CacheFillingEntity extends HttpEntityWrapper {
+
+    private final HttpEntity entity;
+    private final long maxSize;
+    private final long expectedLength;
+
+    private InputStream content;
+    private Runnable callback;
+    private boolean done;
+
+    /**
+     * @param expectedLength the length the content must have to be committed,
+     *   or a negative value if the content is committed whatever its length.
+     */
+    CacheFillingEntity(final HttpEntity entity, final long maxSize, final long expectedLength) {
+        super(entity);
+        this.entity = entity;
+        this.maxSize = maxSize;
+        this.expectedLength = expectedLength;
+    }
+
+    /**
+     * Invoked once the content has been read completely within the maximum size.
+     */
+    abstract void commit(byte[] buf, int len);
+
+    /**
+     * Registers a callback invoked once the copy has been committed or discarded.
+     * The callback is invoked immediately if that has already happened.
+     */
+    void whenComplete(final Runnable callback) {
+        if (this.done) {
+            callback.run();
+        } else {
+            this.callback = callback;
+        }
+    }
+
+    /**
+     * Discards the copy without committing it.
+     */
+    void abort() {
+        complete();
+    }
+
+    private void complete() {
+        if (!this.done) {
+            this.done = true;
+            if (this.callback != null) {
+                this.callback.run();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return false;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        if (this.content == null) {
+            this.content = new CacheFillingInputStream(this.entity.getContent());
+        }
+        return this.content;
+    }
+
+    @Override
+    public void writeTo(final OutputStream outstream) throws IOException {
+        Args.notNull(outstream, "Output stream");
+        try (InputStream instream = getContent()) {
+            int l;
+            final byte[] tmp = new byte[2048];
+            while ((l = instream.read(tmp)) != -1) {
+                outstream.write(tmp, 0, l);
+            }
+        }
+    }
+
+    class CacheFillingInputStream extends FilterInputStream {
+
+        private ByteArrayBuffer buffer;
+        private long total;
+
+        CacheFillingInputStream(final InputStream in) {
+            super(in);
+            final long contentLength = entity.getContentLength();
+            this.buffer = new ByteArrayBuffer(contentLength >= 0 && contentLength <= maxSize
+                    ? Math.max((int) contentLength, 1) : 1024);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b == -1) {
+                endOfContent();
+            } else {
+                this.total++;
+                if (this.buffer != null) {
+                    this.buffer.append(b);
+                    checkSize();
+                }
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int l = super.read(b, off, len);
+            if (l == -1) {
+                endOfContent();
+            } else {
+                this.total += l;
+                if (this.buffer != null) {
+                    this.buffer.append(b, off, l);
+                    checkSize();
+                }
+            }
+            return l;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long l = super.skip(n);
+            if (l > 0) {
+                discard();
+            }
+            return l;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                discard();
+            }
+        }
+
+        private void checkSize() {
+            if (this.buffer.length() > maxSize) {
+                discard();
+            }
+        }
+
+        private void discard() {
+            this.buffer = null;
+            complete();
+        }
+
+        private void endOfContent() throws IOException {
+            if (expectedLength >= 0 && this.total < expectedLength) {
+                discard();
+                throw new ConnectionClosedException(String.format("Received incomplete response " +
+                        "with Content-Length %d but actual body length %d", expectedLength, this.total));
+            }
+            final ByteArrayBuffer completed = this.buffer;
+            this.buffer = null;
+            try {
+                if (completed != null && !done) {
+                    commit(completed.buffer(), completed.length());
+                }
+            } finally {
+                complete();
+            }
+        }
+
+    }
+
+}
@@ -29,10 +29,15 @@ package org.apache.hc.client5.http.impl.cache;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hc.client5.http.cache.AsyncHttpCacheStorage;
+import org.apache.hc.client5.http.cache.BulkHttpCacheStorage;
 import org.apache.hc.client5.http.cache.HeaderConstants;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.cache.HttpCacheInvalidator;
@@ -75,53 +80,46 @@ class CacheInvalidator implements HttpCacheInvalidator {
 
     /**
      * Remove cache entries from the cache that are no longer fresh or
-     * have been invalidated in some way.
+     * have been invalidated in some way. Requests with safe methods
+     * ({@code GET} and {@code HEAD}) do not invalidate anything and do not
+     * cause any storage access. Entries invalidated by requests with other
+     * methods, including their variants and the entries referred to by
+     * the {@code Content-Location} and {@code Location} request headers,
+     * are removed together.
      *
      * @param host The backend host we are talking to
      * @param req The HttpRequest to that host
      */
     @Override
     public void flushInvalidatedCacheEntries(final HttpHost host, final HttpRequest req)  {
+        if (!requestShouldNotBeCached(req)) {
+            return;
+        }
         final String theUri = cacheKeyGenerator.getURI(host, req);
         final HttpCacheEntry parent = getEntry(theUri);
 
-        if (requestShouldNotBeCached(req) || shouldInvalidateHeadCacheEntry(req, parent)) {
-            log.debug("Invalidating parent cache entry: " + parent);
-            if (parent != null) {
-                for (final String variantURI : parent.getVariantMap().values()) {
-                    flushEntry(variantURI);
-                }
-                flushEntry(theUri);
-            }
-            final URL reqURL = getAbsoluteURL(theUri);
-            if (reqURL == null) {
-                log.error("Couldn't transform request into valid URL");
-                return;
-            }
+        log.debug("Invalidating parent cache entry: " + parent);
+        final Set<String> keys = new LinkedHashSet<>();
+        if (parent != null) {
+            keys.addAll(parent.getVariantMap().values());
+            keys.add(theUri);
+        }
+        final URL reqURL = getAbsoluteURL(theUri);
+        if (reqURL == null) {
+            log.error("Couldn't transform request into valid URL");
+        } else {
             final Header clHdr = req.getFirstHeader("Content-Location");
             if (clHdr != null) {
                 final String contentLocation = clHdr.getValue();
-                if (!flushAbsoluteUriFromSameHost(reqURL, contentLocation)) {
-                    flushRelativeUriFromSameHost(reqURL, contentLocation);
-                }
+                final URL absURL = getAbsoluteURL(contentLocation);
+                addUriIfSameHost(reqURL, absURL != null ? absURL : getRelativeURL(reqURL, contentLocation), keys);
             }
             final Header lHdr = req.getFirstHeader("Location");
             if (lHdr != null) {
-                flushAbsoluteUriFromSameHost(reqURL, lHdr.getValue());
+                addUriIfSameHost(reqURL, getAbsoluteURL(lHdr.getValue()), keys);
             }
         }
-    }
-
-    private boolean shouldInvalidateHeadCacheEntry(final HttpRequest req, final HttpCacheEntry parentCacheEntry) {
-        return requestIsGet(req) && isAHeadCacheEntry(parentCacheEntry);
-    }
-
-    private boolean requestIsGet(final HttpRequest req) {
-        return req.getRequestLine().getMethod().equals((HeaderConstants.GET_METHOD));
-    }
-
-    private boolean isAHeadCacheEntry(final HttpCacheEntry parentCacheEntry) {
-        return parentCacheEntry != null && parentCacheEntry.getRequestMethod().equals(HeaderConstants.HEAD_METHOD);
+        flushEntries(keys);
     }
 
     private void flushEntry(final String uri) {
@@ -132,6 +130,21 @@ class CacheInvalidator implements HttpCacheInvalidator {
         }
     }
 
+    private void flushEntries(final Collection<String> uris) {
+        if (uris.size() > 1
+                && (storage instanceof AsyncHttpCacheStorage || storage instanceof BulkHttpCacheStorage)) {
+            try {
+                HttpCacheStorageSupport.removeEntries(storage, uris);
+            } catch (final IOException ioe) {
+                log.warn("unable to flush cache entries", ioe);
+            }
+        } else {
+            for (final String uri : uris) {
+                flushEntry(uri);
+            }
+        }
+    }
+
     private HttpCacheEntry getEntry(final String theUri) {
         try {
             return storage.getEntry(theUri);
@@ -141,32 +154,32 @@ class CacheInvalidator implements HttpCacheInvalidator {
         return null;
     }
 
-    protected void flushUriIfSameHost(final URL requestURL, final URL targetURL) {
+    private String getCacheKeyIfSameHost(final URL requestURL, final URL targetURL) {
+        if (targetURL == null) {
+            return null;
+        }
         final URL canonicalTarget = getAbsoluteURL(cacheKeyGenerator.canonicalizeUri(targetURL.toString()));
         if (canonicalTarget == null) {
-            return;
+            return null;
         }
         if (canonicalTarget.getAuthority().equalsIgnoreCase(requestURL.getAuthority())) {
-            flushEntry(canonicalTarget.toString());
+            return canonicalTarget.toString();
         }
+        return null;
     }
 
-    protected void flushRelativeUriFromSameHost(final URL reqURL, final String relUri) {
-        final URL relURL = getRelativeURL(reqURL, relUri);
-        if (relURL == null) {
-            return;
+    private void addUriIfSameHost(final URL requestURL, final URL targetURL, final Collection<String> uris) {
+        final String cacheKey = getCacheKeyIfSameHost(requestURL, targetURL);
+        if (cacheKey != null) {
+            uris.add(cacheKey);
         }
-        flushUriIfSameHost(reqURL, relURL);
     }
 
-
-    protected boolean flushAbsoluteUriFromSameHost(final URL reqURL, final String uri) {
-        final URL absURL = getAbsoluteURL(uri);
-        if (absURL == null) {
-            return false;
+    protected void flushUriIfSameHost(final URL requestURL, final URL targetURL) {
+        final String cacheKey = getCacheKeyIfSameHost(requestURL, targetURL);
+        if (cacheKey != null) {
+            flushEntry(cacheKey);
         }
-        flushUriIfSameHost(reqURL,absURL);
-        return true;
     }
 
     private URL getAbsoluteURL(final String uri) {
@@ -35,11 +35,13 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.hc.client5.http.cache.HeaderConstants;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.utils.URIUtils;
-import org.apache.hc.core5.annotation.Immutable;
+import org.apache.hc.core5.annotation.ThreadSafe;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HeaderElement;
 import org.apache.hc.core5.http.HttpHost;
@@ -48,11 +50,18 @@ import org.apache.hc.core5.http.HttpRequest;
 /**
  * @since 4.1
  */
-@Immutable
+@ThreadSafe
 class CacheKeyGenerator {
 
     private static final URI BASE_URI = URI.create("http://example.com/");
 
+    private static final int MAX_CACHED_VARY_VALUES = 256;
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /** Sorted header names by the raw Vary header values they were parsed from */
+    private final ConcurrentMap<String, List<String>> varyHeaderNames = new ConcurrentHashMap<>();
+
     /**
      * For a given {@link HttpHost} and {@link HttpRequest} get a URI from the
      * pair that I can use as an identifier KEY into my HttpCache
@@ -63,12 +72,22 @@ class CacheKeyGenerator {
      */
     public String getURI(final HttpHost host, final HttpRequest req) {
         if (isRelativeRequest(req)) {
-            return canonicalizeUri(String.format("%s%s", host.toString(), req.getRequestLine().getUri()));
+            return canonicalizeUri(host.toString() + req.getRequestLine().getUri());
         }
         return canonicalizeUri(req.getRequestLine().getUri());
     }
 
     public String canonicalizeUri(final String uri) {
+        final String canonical = canonicalizeHttpUri(uri);
+        return canonical != null ? canonical : canonicalizeGenericUri(uri);
+    }
+
+    /**
+     * Canonicalizes the given URI by resolving and normalizing it with
+     * {@link URIUtils} and re-assembling it with {@link URL}. This handles
+     * any URI, but is comparatively expensive.
+     */
+    String canonicalizeGenericUri(final String uri) {
         try {
             final URI normalized = URIUtils.resolve(BASE_URI, uri);
             final URL u = new URL(normalized.toASCIIString());
@@ -87,6 +106,206 @@ class CacheKeyGenerator {
         }
     }
 
+    /**
+     * Canonicalizes absolute {@code http} and {@code https} URIs that need no
+     * normalization other than lower-casing the scheme and host name and making
+     * the port explicit, without creating intermediate {@link URI} or {@link URL}
+     * instances. Produces the same result as {@link #canonicalizeGenericUri(String)}.
+     *
+     * @return the canonical URI or {@code null} if the URI is not of this simple
+     *   form and needs to be canonicalized by {@link #canonicalizeGenericUri(String)}
+     */
+    String canonicalizeHttpUri(final String uri) {
+        final int authorityStart;
+        final int defaultPort;
+        if (uri.regionMatches(true, 0, "http://", 0, 7)) {
+            authorityStart = 7;
+            defaultPort = 80;
+        } else if (uri.regionMatches(true, 0, "https://", 0, 8)) {
+            authorityStart = 8;
+            defaultPort = 443;
+        } else {
+            return null;
+        }
+        final int len = uri.length();
+        int pathStart = authorityStart;
+        int hostEnd = -1;
+        while (pathStart < len) {
+            final char ch = uri.charAt(pathStart);
+            if (ch == '/' || ch == '?' || ch == '#') {
+                break;
+            }
+            if (ch == ':' && hostEnd == -1) {
+                hostEnd = pathStart;
+            }
+            pathStart++;
+        }
+        final int port;
+        if (hostEnd == -1) {
+            hostEnd = pathStart;
+            port = defaultPort;
+        } else {
+            port = parsePort(uri, hostEnd + 1, pathStart);
+            if (port == -1) {
+                return null;
+            }
+        }
+        if (!isSimpleHost(uri, authorityStart, hostEnd)) {
+            return null;
+        }
+        int queryStart = pathStart;
+        while (queryStart < len && uri.charAt(queryStart) != '?') {
+            queryStart++;
+        }
+        if (!isSimplePath(uri, pathStart, queryStart)) {
+            return null;
+        }
+        if (queryStart < len && !isSimpleQuery(uri, queryStart + 1, len)) {
+            return null;
+        }
+        final StringBuilder buf = new StringBuilder(len + 8);
+        buf.append(defaultPort == 443 ? "https://" : "http://");
+        for (int i = authorityStart; i < hostEnd; i++) {
+            buf.append(Character.toLowerCase(uri.charAt(i)));
+        }
+        buf.append(':').append(port);
+        if (pathStart == queryStart) {
+            buf.append('/');
+        }
+        buf.append(uri, pathStart, len);
+        return buf.toString();
+    }
+
+    private static int parsePort(final String s, final int start, final int end) {
+        final int len = end - start;
+        if (len < 1 || len > 5 || s.charAt(start) == '0') {
+            return -1;
+        }
+        int port = 0;
+        for (int i = start; i < end; i++) {
+            final char ch = s.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return -1;
+            }
+            port = port * 10 + (ch - '0');
+        }
+        return port;
+    }
+
+    /**
+     * Checks for a host name made of alphanumeric labels, optionally containing
+     * dashes, whose last label starts with a letter, or for a dotted IPv4 address.
+     */
+    private static boolean isSimpleHost(final String s, final int start, final int end) {
+        if (start == end) {
+            return false;
+        }
+        int labelStart = start;
+        for (int i = start; i <= end; i++) {
+            final char ch = i < end ? s.charAt(i) : '.';
+            if (ch == '.') {
+                if (i == labelStart || s.charAt(labelStart) == '-' || s.charAt(i - 1) == '-') {
+                    return false;
+                }
+                if (i < end) {
+                    labelStart = i + 1;
+                }
+            } else if (!isAlphanumeric(ch) && ch != '-') {
+                return false;
+            }
+        }
+        return !isDigit(s.charAt(labelStart)) || isIPv4Address(s, start, end);
+    }
+
+    private static boolean isIPv4Address(final String s, final int start, final int end) {
+        int labels = 0;
+        int labelStart = start;
+        int value = 0;
+        for (int i = start; i <= end; i++) {
+            final char ch = i < end ? s.charAt(i) : '.';
+            if (ch == '.') {
+                final int labelLen = i - labelStart;
+                if (labelLen > 3 || (labelLen > 1 && s.charAt(labelStart) == '0') || value > 255) {
+                    return false;
+                }
+                labels++;
+                labelStart = i + 1;
+                value = 0;
+            } else if (isDigit(ch)) {
+                value = value * 10 + (ch - '0');
+            } else {
+                return false;
+            }
+        }
+        return labels == 4;
+    }
+
+    /**
+     * Checks for an empty path or an absolute path without empty, {@code .} or
+     * {@code ..} segments and without characters that would be re-encoded.
+     */
+    private static boolean isSimplePath(final String s, final int start, final int end) {
+        if (start == end) {
+            return true;
+        }
+        if (s.charAt(start) != '/') {
+            return false;
+        }
+        int segmentStart = start + 1;
+        for (int i = segmentStart; i <= end; i++) {
+            final char ch = i < end ? s.charAt(i) : '/';
+            if (ch == '/') {
+                final int segmentLen = i - segmentStart;
+                if (segmentLen == 0) {
+                    if (i < end) {
+                        return false;
+                    }
+                } else if (s.charAt(segmentStart) == '.'
+                        && (segmentLen == 1 || (segmentLen == 2 && s.charAt(segmentStart + 1) == '.'))) {
+                    return false;
+                }
+                segmentStart = i + 1;
+            } else if (!isAlphanumeric(ch) && "_-.*!~'();:@&=+$".indexOf(ch) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks for a non-empty query of legal URI characters and well-formed
+     * escape sequences, without a fragment.
+     */
+    private static boolean isSimpleQuery(final String s, final int start, final int end) {
+        if (start == end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            final char ch = s.charAt(i);
+            if (ch == '%') {
+                if (i + 2 >= end || !isHexDigit(s.charAt(i + 1)) || !isHexDigit(s.charAt(i + 2))) {
+                    return false;
+                }
+                i += 2;
+            } else if (!isAlphanumeric(ch) && "_-.*!~'();/?:@&=+$,".indexOf(ch) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(final char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    private static boolean isAlphanumeric(final char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || isDigit(ch);
+    }
+
+    private static boolean isHexDigit(final char ch) {
+        return isDigit(ch) || (ch >= 'a' && ch <= 'f') || (ch >= 'A' && ch <= 'F');
+    }
+
     private int canonicalizePort(final int port, final String protocol) {
         if (port == -1 && "http".equalsIgnoreCase(protocol)) {
             return 80;
@@ -146,33 +365,80 @@ class CacheKeyGenerator {
      * @return a {@code String} variant key
      */
     public String getVariantKey(final HttpRequest req, final HttpCacheEntry entry) {
-        final List<String> variantHeaderNames = new ArrayList<>();
-        for (final Header varyHdr : entry.getHeaders(HeaderConstants.VARY)) {
-            for (final HeaderElement elt : varyHdr.getElements()) {
-                variantHeaderNames.add(elt.getName());
+        final StringBuilder buf = new StringBuilder("{");
+        boolean first = true;
+        for (final String headerName : getVariantHeaderNames(entry)) {
+            if (!first) {
+                buf.append("&");
             }
+            appendEncoded(buf, headerName);
+            buf.append("=");
+            appendEncoded(buf, getFullHeaderValue(req.getHeaders(headerName)));
+            first = false;
         }
-        Collections.sort(variantHeaderNames);
+        buf.append("}");
+        return buf.toString();
+    }
 
-        final StringBuilder buf;
-        try {
-            buf = new StringBuilder("{");
-            boolean first = true;
-            for (final String headerName : variantHeaderNames) {
-                if (!first) {
-                    buf.append("&");
+    /**
+     * Returns the sorted names of the headers listed in the Vary headers of
+     * the given entry. The names are parsed once per distinct Vary header value.
+     */
+    List<String> getVariantHeaderNames(final HttpCacheEntry entry) {
+        final Header[] varyHdrs = entry.getHeaders(HeaderConstants.VARY);
+        if (varyHdrs.length == 0) {
+            return Collections.emptyList();
+        }
+        final String varyValue;
+        if (varyHdrs.length == 1) {
+            varyValue = varyHdrs[0].getValue();
+        } else {
+            final StringBuilder buf = new StringBuilder();
+            for (final Header varyHdr : varyHdrs) {
+                buf.append(varyHdr.getValue()).append('\n');
+            }
+            varyValue = buf.toString();
+        }
+        List<String> variantHeaderNames = varyHeaderNames.get(varyValue);
+        if (variantHeaderNames == null) {
+            final List<String> names = new ArrayList<>();
+            for (final Header varyHdr : varyHdrs) {
+                for (final HeaderElement elt : varyHdr.getElements()) {
+                    names.add(elt.getName());
                 }
-                buf.append(URLEncoder.encode(headerName, StandardCharsets.UTF_8.name()));
-                buf.append("=");
-                buf.append(URLEncoder.encode(getFullHeaderValue(req.getHeaders(headerName)),
-                        StandardCharsets.UTF_8.name()));
-                first = false;
             }
-            buf.append("}");
-        } catch (final UnsupportedEncodingException uee) {
-            throw new RuntimeException("couldn't encode to UTF-8", uee);
+            Collections.sort(names);
+            variantHeaderNames = Collections.unmodifiableList(names);
+            if (varyHeaderNames.size() >= MAX_CACHED_VARY_VALUES) {
+                varyHeaderNames.clear();
+            }
+            varyHeaderNames.put(varyValue, variantHeaderNames);
+        }
+        return variantHeaderNames;
+    }
+
+    /**
+     * Appends the given string encoded the same way as by {@link URLEncoder}
+     * with the UTF-8 charset.
+     */
+    static void appendEncoded(final StringBuilder buf, final String s) {
+        for (int i = 0; i < s.length(); i++) {
+            final char ch = s.charAt(i);
+            if (isAlphanumeric(ch) || ch == '.' || ch == '-' || ch == '*' || ch == '_') {
+                buf.append(ch);
+            } else if (ch == ' ') {
+                buf.append('+');
+            } else if (ch < 0x80) {
+                buf.append('%').append(HEX_DIGITS[ch >> 4]).append(HEX_DIGITS[ch & 0xF]);
+            } else {
+                try {
+                    buf.append(URLEncoder.encode(s.substring(i), StandardCharsets.UTF_8.name()));
+                } catch (final UnsupportedEncodingException uee) {
+                    throw new RuntimeException("couldn't encode to UTF-8", uee);
+                }
+                return;
+            }
         }
-        return buf.toString();
     }
 
 }
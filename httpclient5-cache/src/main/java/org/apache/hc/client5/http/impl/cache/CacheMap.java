@@ -26,6 +26,7 @@
  */
 package org.apache.hc.client5.http.impl.cache;
 
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -36,15 +37,86 @@ final class CacheMap extends LinkedHashMap<String, HttpCacheEntry> {
     private static final long serialVersionUID = -7750025207539768511L;
 
     private final int maxEntries;
+    private final long maxBytes;
 
-    CacheMap(final int maxEntries) {
+    private long weightedSize;
+    private long evictionCount;
+
+    /**
+     * @param maxEntries maximum number of entries.
+     * @param maxBytes maximum total weight of the entries in bytes as estimated by
+     *   {@link CacheEntryWeigher}; zero or negative means no limit.
+     */
+    CacheMap(final int maxEntries, final long maxBytes) {
         super(20, 0.75f, true);
         this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    CacheMap(final int maxEntries) {
+        this(maxEntries, 0);
+    }
+
+    @Override
+    public HttpCacheEntry put(final String key, final HttpCacheEntry value) {
+        final HttpCacheEntry previous = super.put(key, value);
+        this.weightedSize += CacheEntryWeigher.weigh(key, value) - CacheEntryWeigher.weigh(key, previous);
+        if (this.maxBytes > 0) {
+            final Iterator<Map.Entry<String, HttpCacheEntry>> it = entrySet().iterator();
+            while (this.weightedSize > this.maxBytes && it.hasNext()) {
+                final Map.Entry<String, HttpCacheEntry> eldest = it.next();
+                this.weightedSize -= CacheEntryWeigher.weigh(eldest.getKey(), eldest.getValue());
+                this.evictionCount++;
+                it.remove();
+            }
+        }
+        return previous;
+    }
+
+    @Override
+    public void putAll(final Map<? extends String, ? extends HttpCacheEntry> m) {
+        for (final Map.Entry<? extends String, ? extends HttpCacheEntry> entry: m.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public HttpCacheEntry remove(final Object key) {
+        final HttpCacheEntry removed = super.remove(key);
+        if (removed != null) {
+            this.weightedSize -= CacheEntryWeigher.weigh((String) key, removed);
+        }
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        this.weightedSize = 0;
     }
 
     @Override
     protected boolean removeEldestEntry(final Map.Entry<String, HttpCacheEntry> eldest) {
-        return size() > this.maxEntries;
+        if (size() > this.maxEntries) {
+            this.weightedSize -= CacheEntryWeigher.weigh(eldest.getKey(), eldest.getValue());
+            this.evictionCount++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the total estimated weight of the entries in bytes.
+     */
+    long getWeightedSize() {
+        return this.weightedSize;
+    }
+
+    /**
+     * Returns the number of entries evicted to stay within the bounds.
+     */
+    long getEvictionCount() {
+        return this.evictionCount;
     }
 
 }
@@ -27,23 +27,28 @@
 package org.apache.hc.client5.http.impl.cache;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.cache.CacheResponseStatus;
+import org.apache.hc.client5.http.cache.CacheStatisticsRecorder;
 import org.apache.hc.client5.http.cache.HeaderConstants;
 import org.apache.hc.client5.http.cache.HttpCacheContext;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.cache.HttpCacheStorage;
 import org.apache.hc.client5.http.cache.ResourceFactory;
+import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.impl.sync.ClientExecChain;
 import org.apache.hc.client5.http.methods.CloseableHttpResponse;
 import org.apache.hc.client5.http.methods.HttpExecutionAware;
@@ -54,6 +59,7 @@ import org.apache.hc.client5.http.utils.URIUtils;
 import org.apache.hc.core5.annotation.ThreadSafe;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HeaderElement;
+import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.HttpException;
 import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpHost;
@@ -96,6 +102,13 @@ import org.apache.hc.core5.util.VersionInfo;
  * endpoint is delegated to the next executor in the request execution
  * chain.
  * </p>
+ * <p>
+ * If {@link CacheConfig#isRequestCoalescingEnabled() request coalescing} is
+ * enabled, concurrent requests missing the cache or revalidating the same
+ * cache entry are executed only once: one request is sent to the backend
+ * while the others wait for its response to be cached and are then served
+ * from the cache.
+ * </p>
  *
  * @since 4.3
  */
@@ -123,6 +136,9 @@ public class CachingExec implements ClientExecChain {
     private final ResponseCachingPolicy responseCachingPolicy;
 
     private final AsynchronousValidator asynchRevalidator;
+    private final CacheKeyGenerator keyGenerator;
+    private final RequestCoalescer coalescer;
+    private final CacheStatisticsRecorder statisticsRecorder;
 
     private final Log log = LogFactory.getLog(getClass());
 
@@ -138,6 +154,18 @@ public class CachingExec implements ClientExecChain {
             final HttpCache cache,
             final CacheConfig config,
             final AsynchronousValidator asynchRevalidator) {
+        this(backend, cache, config, asynchRevalidator, null);
+    }
+
+    /**
+     * @since 5.0
+     */
+    public CachingExec(
+            final ClientExecChain backend,
+            final HttpCache cache,
+            final CacheConfig config,
+            final AsynchronousValidator asynchRevalidator,
+            final CacheStatisticsRecorder statisticsRecorder) {
         super();
         Args.notNull(backend, "HTTP backend");
         Args.notNull(cache, "HttpCache");
@@ -155,6 +183,9 @@ public class CachingExec implements ClientExecChain {
                 this.cacheConfig.getMaxObjectSize(), this.cacheConfig.isSharedCache(),
                 this.cacheConfig.isNeverCacheHTTP10ResponsesWithQuery(), this.cacheConfig.is303CachingEnabled());
         this.asynchRevalidator = asynchRevalidator;
+        this.keyGenerator = new CacheKeyGenerator();
+        this.coalescer = this.cacheConfig.isRequestCoalescingEnabled() ? new RequestCoalescer() : null;
+        this.statisticsRecorder = statisticsRecorder != null ? statisticsRecorder : NoopCacheStatisticsRecorder.INSTANCE;
     }
 
     public CachingExec(
@@ -194,6 +225,9 @@ public class CachingExec implements ClientExecChain {
         this.responseCompliance = responseCompliance;
         this.requestCompliance = requestCompliance;
         this.asynchRevalidator = asynchRevalidator;
+        this.keyGenerator = new CacheKeyGenerator();
+        this.coalescer = this.cacheConfig.isRequestCoalescingEnabled() ? new RequestCoalescer() : null;
+        this.statisticsRecorder = NoopCacheStatisticsRecorder.INSTANCE;
     }
 
     /**
@@ -223,6 +257,42 @@ public class CachingExec implements ClientExecChain {
         return cacheUpdates.get();
     }
 
+    /**
+     * Reports the number of asynchronous revalidations of stale cache
+     * entries that have been scheduled.
+     * @return the number of scheduled revalidations, or {@code 0} if
+     *   asynchronous revalidation is not enabled
+     *
+     * @since 5.0
+     */
+    public long getScheduledRevalidations() {
+        return asynchRevalidator != null ? asynchRevalidator.getScheduledCount() : 0;
+    }
+
+    /**
+     * Reports the number of asynchronous revalidations of stale cache
+     * entries that could not be scheduled and were dropped.
+     * @return the number of dropped revalidations, or {@code 0} if
+     *   asynchronous revalidation is not enabled
+     *
+     * @since 5.0
+     */
+    public long getDroppedRevalidations() {
+        return asynchRevalidator != null ? asynchRevalidator.getDroppedCount() : 0;
+    }
+
+    /**
+     * Reports the number of asynchronous revalidations of stale cache
+     * entries that were executed but failed.
+     * @return the number of failed revalidations, or {@code 0} if
+     *   asynchronous revalidation is not enabled
+     *
+     * @since 5.0
+     */
+    public long getFailedRevalidations() {
+        return asynchRevalidator != null ? asynchRevalidator.getFailedCount() : 0;
+    }
+
     public CloseableHttpResponse execute(
             final HttpRoute route,
             final HttpRequestWrapper request) throws IOException, HttpException {
@@ -242,6 +312,21 @@ public class CachingExec implements ClientExecChain {
             final HttpRequestWrapper request,
             final HttpClientContext context,
             final HttpExecutionAware execAware) throws IOException, HttpException {
+        final CloseableHttpResponse response = handleRequest(route, request, context, execAware);
+        if (statisticsRecorder.isEnabled()) {
+            final HttpEntity entity = response.getEntity();
+            statisticsRecorder.responseServed(context.getTargetHost(),
+                    (CacheResponseStatus) context.getAttribute(HttpCacheContext.CACHE_RESPONSE_STATUS),
+                    entity != null ? entity.getContentLength() : 0);
+        }
+        return response;
+    }
+
+    private CloseableHttpResponse handleRequest(
+            final HttpRoute route,
+            final HttpRequestWrapper request,
+            final HttpClientContext context,
+            final HttpExecutionAware execAware) throws IOException, HttpException {
 
         final HttpHost target = context.getTargetHost();
         final String via = generateViaHeader(request.getOriginal());
@@ -326,6 +411,23 @@ public class CachingExec implements ClientExecChain {
                 asynchRevalidator.revalidateCacheEntry(this, route, request, context, execAware, entry);
                 return resp;
             }
+            if (coalescer != null) {
+                final String key = keyGenerator.getVariantURI(context.getTargetHost(), request, entry);
+                final CountDownLatch inflight = coalescer.join(key);
+                if (inflight == null) {
+                    CloseableHttpResponse out = null;
+                    try {
+                        out = revalidateCacheEntry(route, request, context, execAware, entry);
+                        return out;
+                    } finally {
+                        completeWhenStored(key, out);
+                    }
+                }
+                final CloseableHttpResponse out = awaitCoalescedResponse(inflight, route, request, context);
+                if (out != null) {
+                    return out;
+                }
+            }
             return revalidateCacheEntry(route, request, context, execAware, entry);
         } catch (final IOException ioex) {
             return handleRevalidationFailure(request, context, entry, now);
@@ -338,15 +440,43 @@ public class CachingExec implements ClientExecChain {
             final HttpClientContext context,
             final HttpExecutionAware execAware) throws IOException, HttpException {
         final HttpHost target = context.getTargetHost();
-        recordCacheMiss(target, request);
 
         if (!mayCallBackend(request)) {
+            recordCacheMiss(target, request);
             return Proxies.enhanceResponse(
                     new BasicHttpResponse(
                             HttpVersion.HTTP_1_1, HttpStatus.SC_GATEWAY_TIMEOUT, "Gateway Timeout"));
         }
 
-        final Map<String, Variant> variants = getExistingCacheVariants(target, request);
+        if (coalescer != null) {
+            final String key = keyGenerator.getURI(target, request);
+            final CountDownLatch inflight = coalescer.join(key);
+            if (inflight == null) {
+                recordCacheMiss(target, request);
+                CloseableHttpResponse out = null;
+                try {
+                    out = fetchFromBackend(route, request, context, execAware);
+                    return out;
+                } finally {
+                    completeWhenStored(key, out);
+                }
+            }
+            final CloseableHttpResponse out = awaitCoalescedResponse(inflight, route, request, context);
+            if (out != null) {
+                recordCacheHit(target, request);
+                return out;
+            }
+        }
+        recordCacheMiss(target, request);
+        return fetchFromBackend(route, request, context, execAware);
+    }
+
+    private CloseableHttpResponse fetchFromBackend(
+            final HttpRoute route,
+            final HttpRequestWrapper request,
+            final HttpClientContext context,
+            final HttpExecutionAware execAware) throws IOException, HttpException {
+        final Map<String, Variant> variants = getExistingCacheVariants(context.getTargetHost(), request);
         if (variants != null && !variants.isEmpty()) {
             return negotiateResponseFromVariants(route, request, context,
                     execAware, variants);
@@ -355,6 +485,78 @@ public class CachingExec implements ClientExecChain {
         return callBackend(route, request, context, execAware);
     }
 
+    /**
+     * Releases the requests waiting on the coalesced request with the given
+     * key once its response has been stored. A response whose body is
+     * streamed to the caller while being cached is stored only once the body
+     * has been read, so the waiters are held until the cache fill has been
+     * committed or abandoned.
+     */
+    private void completeWhenStored(final String key, final CloseableHttpResponse response) {
+        final HttpEntity entity = response != null ? response.getEntity() : null;
+        if (entity instanceof CacheFillingEntity) {
+            ((CacheFillingEntity) entity).whenComplete(new Runnable() {
+
+                @Override
+                public void run() {
+                    coalescer.complete(key);
+                }
+
+            });
+        } else {
+            coalescer.complete(key);
+        }
+    }
+
+    /**
+     * Waits for the coalesced request in flight to complete and attempts to
+     * serve the request from the cache entry it stored. Returns {@code null}
+     * if the wait timed out or the cache still cannot satisfy the request,
+     * in which case the request is to be sent to the backend.
+     */
+    private CloseableHttpResponse awaitCoalescedResponse(
+            final CountDownLatch inflight,
+            final HttpRoute route,
+            final HttpRequestWrapper request,
+            final HttpClientContext context) throws IOException {
+        log.debug("Waiting for request in flight");
+        // The request in flight may never complete if its response is not read,
+        // so the wait is always bounded
+        long timeout = cacheConfig.getRequestCoalescingTimeout();
+        final long deadline = context.getRequestDeadline();
+        if (deadline > 0) {
+            timeout = Math.min(timeout, Math.max(0, deadline - System.currentTimeMillis()));
+        } else {
+            final RequestConfig config = context.getRequestConfig();
+            if (config.getSocketTimeout() > 0) {
+                timeout = Math.min(timeout, config.getSocketTimeout());
+            }
+        }
+        try {
+            if (!inflight.await(timeout, TimeUnit.MILLISECONDS)) {
+                log.debug("Timed out waiting for request in flight");
+                return null;
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for request in flight");
+        }
+        final HttpHost target = context.getTargetHost();
+        final HttpCacheEntry entry = satisfyFromCache(target, request);
+        final Date now = getCurrentDate();
+        if (entry == null || !suitabilityChecker.canCachedResponseBeUsed(target, request, entry, now)) {
+            return null;
+        }
+        log.debug("Cache hit after waiting for request in flight");
+        final CloseableHttpResponse out = generateCachedResponse(request, context, entry, now);
+        setResponseStatus(context, CacheResponseStatus.CACHE_HIT);
+        context.setAttribute(HttpClientContext.HTTP_ROUTE, route);
+        context.setAttribute(HttpCoreContext.HTTP_TARGET_HOST, target);
+        context.setAttribute(HttpCoreContext.HTTP_REQUEST, request);
+        context.setAttribute(HttpCoreContext.HTTP_RESPONSE, out);
+        return out;
+    }
+
     private HttpCacheEntry satisfyFromCache(
             final HttpHost target, final HttpRequestWrapper request) {
         HttpCacheEntry entry = null;
@@ -754,22 +956,29 @@ public class CachingExec implements ClientExecChain {
         }
 
         Date requestDate = getCurrentDate();
-        CloseableHttpResponse backendResponse = backend.execute(
-                route, conditionalRequest, context, execAware);
-        Date responseDate = getCurrentDate();
-
-        if (revalidationResponseIsTooOld(backendResponse, cacheEntry)) {
-            backendResponse.close();
-            final HttpRequestWrapper unconditional = conditionalRequestBuilder
-                .buildUnconditionalRequest(request, cacheEntry);
-            requestDate = getCurrentDate();
-            backendResponse = backend.execute(route, unconditional, context, execAware);
+        CloseableHttpResponse backendResponse;
+        Date responseDate;
+        try {
+            backendResponse = backend.execute(route, conditionalRequest, context, execAware);
             responseDate = getCurrentDate();
+
+            if (revalidationResponseIsTooOld(backendResponse, cacheEntry)) {
+                backendResponse.close();
+                final HttpRequestWrapper unconditional = conditionalRequestBuilder
+                    .buildUnconditionalRequest(request, cacheEntry);
+                requestDate = getCurrentDate();
+                backendResponse = backend.execute(route, unconditional, context, execAware);
+                responseDate = getCurrentDate();
+            }
+        } catch (final IOException ex) {
+            statisticsRecorder.revalidationFailed(context.getTargetHost());
+            throw ex;
         }
 
         backendResponse.addHeader(HeaderConstants.VIA, generateViaHeader(backendResponse));
 
         final int statusCode = backendResponse.getStatusLine().getStatusCode();
+        statisticsRecorder.entryRevalidated(context.getTargetHost(), statusCode);
         if (statusCode == HttpStatus.SC_NOT_MODIFIED || statusCode == HttpStatus.SC_OK) {
             recordCacheUpdate(context);
         }
@@ -30,6 +30,7 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 
+import org.apache.hc.client5.http.cache.CacheStatisticsRecorder;
 import org.apache.hc.client5.http.cache.HttpCacheInvalidator;
 import org.apache.hc.client5.http.cache.HttpCacheStorage;
 import org.apache.hc.client5.http.cache.ResourceFactory;
@@ -50,6 +51,7 @@ public class CachingHttpClientBuilder extends HttpClientBuilder {
     private CacheConfig cacheConfig;
     private SchedulingStrategy schedulingStrategy;
     private HttpCacheInvalidator httpCacheInvalidator;
+    private CacheStatisticsRecorder cacheStatisticsRecorder;
     private boolean deleteCache;
 
     public static CachingHttpClientBuilder create() {
@@ -97,6 +99,20 @@ public class CachingHttpClientBuilder extends HttpClientBuilder {
         return this;
     }
 
+    /**
+     * Assigns {@link CacheStatisticsRecorder} instance recording cache hits,
+     * misses and revalidations per host as well as cache storage latencies.
+     *
+     * @see CountingCacheStatisticsRecorder
+     *
+     * @since 5.0
+     */
+    public final CachingHttpClientBuilder setCacheStatisticsRecorder(
+            final CacheStatisticsRecorder cacheStatisticsRecorder) {
+        this.cacheStatisticsRecorder = cacheStatisticsRecorder;
+        return this;
+    }
+
     public CachingHttpClientBuilder setDeleteCache(final boolean deleteCache) {
         this.deleteCache = deleteCache;
         return this;
@@ -135,6 +151,9 @@ public class CachingHttpClientBuilder extends HttpClientBuilder {
                 storageCopy = managedStorage;
             }
         }
+        if (this.cacheStatisticsRecorder != null && this.cacheStatisticsRecorder.isEnabled()) {
+            storageCopy = new InstrumentedHttpCacheStorage(storageCopy, this.cacheStatisticsRecorder);
+        }
         final AsynchronousValidator revalidator = createAsynchronousRevalidator(config);
         final CacheKeyGenerator uriExtractor = new CacheKeyGenerator();
 
@@ -148,7 +167,7 @@ public class CachingHttpClientBuilder extends HttpClientBuilder {
                         resourceFactoryCopy,
                         storageCopy, config,
                         uriExtractor,
-                        cacheInvalidator), config, revalidator);
+                        cacheInvalidator), config, revalidator, this.cacheStatisticsRecorder);
     }
 
     private AsynchronousValidator createAsynchronousRevalidator(final CacheConfig config) {
@@ -0,0 +1,337 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheEntrySerializationException;
+import org.apache.hc.client5.http.cache.HttpCacheEntrySerializer;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.core5.annotation.Immutable;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.ProtocolVersion;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.http.message.BasicStatusLine;
+
+/**
+ * {@link HttpCacheEntrySerializer} implementation that uses a compact, versioned
+ * binary format instead of the native Java serialization used by
+ * {@link DefaultHttpCacheEntrySerializer}.
+ * <p>
+ * An entry is written as a header block followed by the response body:
+ * </p>
+ * <ul>
+ * <li>format marker and version;</li>
+ * <li>request and response dates as milliseconds since the epoch;</li>
+ * <li>status line, request method, response headers and variant map;</li>
+ * <li>body length and the body streamed from the {@link Resource}.</li>
+ * </ul>
+ * <p>
+ * Numbers and string lengths are written as variable length integers and strings
+ * are UTF-8 encoded. Common header names are written as a single byte index into
+ * a fixed table. Response bodies are read back into {@link HeapResource}s.
+ * </p>
+ * <p>
+ * Lengths and counts read back are checked against fixed limits before anything
+ * is allocated for them, so that a corrupt or truncated entry fails with an
+ * {@link IOException} rather than exhausting the heap.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Immutable
+public class CompactHttpCacheEntrySerializer implements HttpCacheEntrySerializer {
+
+    static final int MARKER1 = 'H';
+    static final int MARKER2 = 'C';
+    static final int VERSION = 1;
+
+    static final int MAX_STRING_LENGTH = 1024 * 1024;
+    static final int MAX_ELEMENT_COUNT = 64 * 1024;
+    static final int MAX_BODY_LENGTH = Integer.MAX_VALUE - 8;
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // Part of the format: entries may only ever be appended to this table
+    private static final String[] COMMON_HEADER_NAMES = {
+        "Date", "Server", "Content-Type", "Content-Length", "Content-Encoding",
+        "Content-Language", "Content-Location", "Cache-Control", "Expires", "ETag",
+        "Last-Modified", "Vary", "Age", "Via", "Warning",
+        "Pragma", "Set-Cookie", "Accept-Ranges", "Location", "Connection",
+        "Keep-Alive", "Transfer-Encoding", "Content-MD5", "Content-Range", "Allow",
+        "Link", "Strict-Transport-Security", "X-Content-Type-Options", "X-Frame-Options",
+        "Access-Control-Allow-Origin"
+    };
+
+    private static final Map<String, Integer> COMMON_HEADER_INDEX;
+
+    static {
+        COMMON_HEADER_INDEX = new HashMap<>(COMMON_HEADER_NAMES.length * 2);
+        for (int i = 0; i < COMMON_HEADER_NAMES.length; i++) {
+            COMMON_HEADER_INDEX.put(COMMON_HEADER_NAMES[i], Integer.valueOf(i + 1));
+        }
+    }
+
+    @Override
+    public void writeTo(final HttpCacheEntry cacheEntry, final OutputStream os) throws IOException {
+        final OutputStream out = new BufferedOutputStream(os);
+        out.write(MARKER1);
+        out.write(MARKER2);
+        out.write(VERSION);
+        writeVarLong(out, cacheEntry.getRequestDate().getTime());
+        writeVarLong(out, cacheEntry.getResponseDate().getTime());
+        final ProtocolVersion version = cacheEntry.getProtocolVersion();
+        writeString(out, version.getProtocol());
+        writeVarLong(out, version.getMajor());
+        writeVarLong(out, version.getMinor());
+        writeVarLong(out, cacheEntry.getStatusCode());
+        writeString(out, cacheEntry.getReasonPhrase());
+        writeString(out, cacheEntry.getRequestMethod());
+
+        final Header[] headers = cacheEntry.getAllHeaders();
+        writeCount(out, headers.length);
+        for (final Header header: headers) {
+            final Integer index = COMMON_HEADER_INDEX.get(header.getName());
+            if (index != null) {
+                writeVarLong(out, index.intValue());
+            } else {
+                writeVarLong(out, 0);
+                writeString(out, header.getName());
+            }
+            writeString(out, header.getValue());
+        }
+
+        final Map<String, String> variantMap = cacheEntry.getVariantMap();
+        writeCount(out, variantMap.size());
+        for (final Map.Entry<String, String> variant: variantMap.entrySet()) {
+            writeString(out, variant.getKey());
+            writeString(out, variant.getValue());
+        }
+
+        final Resource resource = cacheEntry.getResource();
+        if (resource == null) {
+            writeVarLong(out, 0);
+        } else {
+            final long length = resource.length();
+            if (length > MAX_BODY_LENGTH) {
+                throw new HttpCacheEntrySerializationException("Response body too large: " + length);
+            }
+            writeVarLong(out, length + 1);
+            final byte[] buffer = new byte[4096];
+            long remaining = length;
+            try (InputStream instream = resource.getInputStream()) {
+                int n;
+                while (remaining > 0
+                        && (n = instream.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                    out.write(buffer, 0, n);
+                    remaining -= n;
+                }
+            }
+            if (remaining != 0) {
+                throw new HttpCacheEntrySerializationException("Resource content shorter than its length");
+            }
+        }
+        out.flush();
+    }
+
+    @Override
+    public HttpCacheEntry readFrom(final InputStream is) throws IOException {
+        if (is.read() != MARKER1 || is.read() != MARKER2) {
+            throw new HttpCacheEntrySerializationException("Not a compact cache entry");
+        }
+        final int version = is.read();
+        if (version != VERSION) {
+            throw new HttpCacheEntrySerializationException("Unsupported cache entry format version: " + version);
+        }
+        final Date requestDate = new Date(readVarLong(is));
+        final Date responseDate = new Date(readVarLong(is));
+        final String protocol = readString(is);
+        final int major = readVarInt(is);
+        final int minor = readVarInt(is);
+        final int statusCode = readVarInt(is);
+        final String reasonPhrase = readString(is);
+        final String requestMethod = readString(is);
+
+        final int headerCount = readCount(is);
+        final List<Header> headers = new ArrayList<>(Math.min(headerCount, 32));
+        for (int i = 0; i < headerCount; i++) {
+            final int index = readVarInt(is);
+            final String name;
+            if (index == 0) {
+                name = readString(is);
+            } else if (index <= COMMON_HEADER_NAMES.length) {
+                name = COMMON_HEADER_NAMES[index - 1];
+            } else {
+                throw new HttpCacheEntrySerializationException("Invalid header name index: " + index);
+            }
+            headers.add(new BasicHeader(name, readString(is)));
+        }
+
+        final int variantCount = readCount(is);
+        final Map<String, String> variantMap = new HashMap<>(Math.max(4, Math.min(variantCount, 32) * 2));
+        for (int i = 0; i < variantCount; i++) {
+            final String key = readString(is);
+            variantMap.put(key, readString(is));
+        }
+
+        final long length = readVarLong(is);
+        final Resource resource;
+        if (length == 0) {
+            resource = null;
+        } else {
+            if (length < 0 || length - 1 > MAX_BODY_LENGTH) {
+                throw new HttpCacheEntrySerializationException("Response body too large: " + (length - 1));
+            }
+            resource = new HeapResource(readBody(is, (int) (length - 1)));
+        }
+        return new HttpCacheEntry(requestDate, responseDate,
+                new BasicStatusLine(new ProtocolVersion(protocol, major, minor), statusCode, reasonPhrase),
+                headers.toArray(new Header[headers.size()]), resource, variantMap, requestMethod);
+    }
+
+    private static void writeVarLong(final OutputStream out, final long value) throws IOException {
+        long v = value;
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static void writeCount(final OutputStream out, final int count) throws IOException {
+        if (count > MAX_ELEMENT_COUNT) {
+            throw new HttpCacheEntrySerializationException("Too many elements: " + count);
+        }
+        writeVarLong(out, count);
+    }
+
+    private static void writeString(final OutputStream out, final String s) throws IOException {
+        if (s == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        final byte[] b = s.getBytes(UTF8);
+        if (b.length > MAX_STRING_LENGTH) {
+            throw new HttpCacheEntrySerializationException("String too long: " + b.length);
+        }
+        writeVarLong(out, b.length + 1);
+        out.write(b);
+    }
+
+    private static long readVarLong(final InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Unexpected end of cache entry");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new HttpCacheEntrySerializationException("Malformed variable length number");
+    }
+
+    private static int readVarInt(final InputStream in) throws IOException {
+        final long value = readVarLong(in);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new HttpCacheEntrySerializationException("Number out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    private static int readCount(final InputStream in) throws IOException {
+        final int count = readVarInt(in);
+        if (count > MAX_ELEMENT_COUNT) {
+            throw new HttpCacheEntrySerializationException("Too many elements: " + count);
+        }
+        return count;
+    }
+
+    private static String readString(final InputStream in) throws IOException {
+        final int length = readVarInt(in);
+        if (length == 0) {
+            return null;
+        }
+        if (length - 1 > MAX_STRING_LENGTH) {
+            throw new HttpCacheEntrySerializationException("String too long: " + (length - 1));
+        }
+        return new String(readFully(in, length - 1), UTF8);
+    }
+
+    /**
+     * Reads a body of the given length in chunks, growing the buffer only as
+     * content actually arrives.
+     */
+    private static byte[] readBody(final InputStream in, final int length) throws IOException {
+        if (length <= BUFFER_SIZE) {
+            return readFully(in, length);
+        }
+        byte[] b = new byte[BUFFER_SIZE];
+        int off = 0;
+        while (off < length) {
+            if (off == b.length) {
+                b = Arrays.copyOf(b, (int) Math.min(length, 2L * b.length));
+            }
+            final int n = in.read(b, off, b.length - off);
+            if (n == -1) {
+                throw new EOFException("Unexpected end of cache entry");
+            }
+            off += n;
+        }
+        return b;
+    }
+
+    private static byte[] readFully(final InputStream in, final int length) throws IOException {
+        final byte[] b = new byte[length];
+        int off = 0;
+        while (off < length) {
+            final int n = in.read(b, off, length - off);
+            if (n == -1) {
+                throw new EOFException("Unexpected end of cache entry");
+            }
+            off += n;
+        }
+        return b;
+    }
+
+}
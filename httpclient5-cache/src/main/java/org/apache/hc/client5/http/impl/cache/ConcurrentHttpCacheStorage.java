@@ -0,0 +1,404 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
+import org.apache.hc.core5.annotation.ThreadSafe;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * In-memory {@link HttpCacheStorage} implementation optimized for highly
+ * concurrent, read-mostly access. Unlike {@link BasicHttpCacheStorage} it
+ * does not serialize cache reads: entries are looked up without locking and
+ * only record their access time and an approximate access frequency.
+ * <p>
+ * Entries are spread over a number of segments, each holding an equal share
+ * of {@link CacheConfig#getMaxCacheEntries() the maximum number of entries}.
+ * {@link CacheConfig#getMaxCacheBytes() The maximum total size} applies to
+ * the storage as a whole, so any entry up to that size can be stored.
+ * Updates lock only the segment of the affected entry. Once a segment is full,
+ * or the storage has reached its maximum size, a victim is chosen by sampling
+ * a few entries of the segment and picking the least recently used one
+ * (sampled LRU); a segment with nothing to evict takes a victim from another
+ * one. A new entry only replaces the victim if its key has been requested
+ * more often recently (TinyLFU admission), which protects popular entries
+ * from being flushed out by one-off requests.
+ * </p>
+ * <p>
+ * Just like {@link BasicHttpCacheStorage} this storage does NOT deallocate
+ * resources associated with the cache entries; it is intended for use with
+ * {@link HeapResource} and similar.
+ * </p>
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class ConcurrentHttpCacheStorage implements HttpCacheStorage {
+
+    static final int SAMPLE_SIZE = 8;
+    static final int MIN_ENTRIES_PER_SEGMENT = 64;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final FrequencySketch sketch;
+    private final long maxBytes;
+    private final AtomicLong weight;
+
+    /**
+     * @param config cache configuration providing the maximum number of entries
+     *   and the maximum total size.
+     * @param concurrencyLevel the expected number of threads updating
+     *   the storage concurrently.
+     */
+    public ConcurrentHttpCacheStorage(final CacheConfig config, final int concurrencyLevel) {
+        super();
+        Args.notNull(config, "Cache config");
+        Args.positive(concurrencyLevel, "Concurrency level");
+        final int maxEntries = Math.max(1, config.getMaxCacheEntries());
+        final int segmentCount = Integer.highestOneBit(
+                Math.max(1, Math.min(concurrencyLevel, maxEntries / MIN_ENTRIES_PER_SEGMENT)));
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            // Distribute the remainder so that segment capacities add up to the maximum
+            final int capacity = maxEntries / segmentCount + (i < maxEntries % segmentCount ? 1 : 0);
+            this.segments[i] = new Segment(capacity);
+        }
+        this.segmentMask = segmentCount - 1;
+        this.sketch = new FrequencySketch(maxEntries);
+        this.maxBytes = config.getMaxCacheBytes();
+        this.weight = new AtomicLong();
+    }
+
+    public ConcurrentHttpCacheStorage(final CacheConfig config) {
+        this(config, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    private Segment segmentFor(final String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return this.segments[h & this.segmentMask];
+    }
+
+    @Override
+    public void putEntry(final String key, final HttpCacheEntry entry) throws IOException {
+        Args.notNull(key, "URL");
+        Args.notNull(entry, "Cache entry");
+        this.sketch.increment(key);
+        segmentFor(key).put(key, entry);
+    }
+
+    @Override
+    public HttpCacheEntry getEntry(final String key) throws IOException {
+        Args.notNull(key, "URL");
+        this.sketch.increment(key);
+        final Node node = segmentFor(key).map.get(key);
+        if (node == null) {
+            return null;
+        }
+        node.lastAccess = System.nanoTime();
+        return node.entry;
+    }
+
+    /**
+     * Returns the entry stored under the given key provided it has been
+     * stored no earlier than the given {@link System#nanoTime() time}.
+     */
+    HttpCacheEntry getEntryStoredSince(final String key, final long since) {
+        this.sketch.increment(key);
+        final Node node = segmentFor(key).map.get(key);
+        if (node == null || node.storedAt - since < 0) {
+            return null;
+        }
+        node.lastAccess = System.nanoTime();
+        return node.entry;
+    }
+
+    @Override
+    public void removeEntry(final String key) throws IOException {
+        Args.notNull(key, "URL");
+        segmentFor(key).remove(key);
+    }
+
+    @Override
+    public void updateEntry(
+            final String key,
+            final HttpCacheUpdateCallback callback) throws IOException {
+        Args.notNull(key, "URL");
+        Args.notNull(callback, "Callback");
+        final Segment segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            final Node node = segment.map.get(key);
+            final HttpCacheEntry updated = callback.update(node != null ? node.entry : null);
+            if (updated != null) {
+                segment.put(key, updated);
+            } else {
+                segment.remove(key);
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of entries currently held in the storage.
+     */
+    public int size() {
+        int n = 0;
+        for (final Segment segment: this.segments) {
+            n += segment.map.size();
+        }
+        return n;
+    }
+
+    /**
+     * Returns the total estimated size in bytes of the entries held in the storage.
+     */
+    public long getWeightedSize() {
+        return this.weight.get();
+    }
+
+    /**
+     * Returns the number of entries evicted to stay within the configured
+     * maximum number of entries and maximum total size.
+     */
+    public long getEvictionCount() {
+        long n = 0;
+        for (final Segment segment: this.segments) {
+            n += segment.evictions;
+        }
+        return n;
+    }
+
+    int getSegmentCount() {
+        return this.segments.length;
+    }
+
+    /**
+     * Adds the given weight to the total size unless that would exceed
+     * the maximum size.
+     */
+    private boolean reserve(final long extra) {
+        if (this.maxBytes <= 0) {
+            this.weight.addAndGet(extra);
+            return true;
+        }
+        for (;;) {
+            final long current = this.weight.get();
+            if (current + extra > this.maxBytes) {
+                return false;
+            }
+            if (this.weight.compareAndSet(current, current + extra)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Evicts an entry from a segment other than the given one, unless the
+     * candidate has been requested more often than the given key. Segments
+     * locked by other threads are skipped, so that no segment lock is ever
+     * waited for while another one is held.
+     */
+    private boolean evictFromOtherSegment(final Segment segment, final String key) {
+        final int start = ThreadLocalRandom.current().nextInt(this.segments.length);
+        for (int i = 0; i < this.segments.length; i++) {
+            final Segment other = this.segments[(start + i) & this.segmentMask];
+            if (other != segment && other.lock.tryLock()) {
+                try {
+                    if (other.count > 0) {
+                        final Node victim = other.sampleVictim();
+                        if (this.sketch.frequency(key) <= this.sketch.frequency(victim.key)) {
+                            return false;
+                        }
+                        other.evict(victim);
+                        return true;
+                    }
+                } finally {
+                    other.lock.unlock();
+                }
+            }
+        }
+        return false;
+    }
+
+    static final class Node {
+
+        final String key;
+        volatile HttpCacheEntry entry;
+        volatile long storedAt;
+        volatile long lastAccess;
+        // Guarded by the segment lock
+        int index;
+        long weight;
+
+        Node(final String key, final HttpCacheEntry entry, final long weight) {
+            this.key = key;
+            this.entry = entry;
+            this.weight = weight;
+            this.storedAt = System.nanoTime();
+            this.lastAccess = this.storedAt;
+        }
+
+    }
+
+    final class Segment {
+
+        final ConcurrentHashMap<String, Node> map;
+        final ReentrantLock lock;
+        final int capacity;
+        // Dense array of nodes to sample eviction candidates from; guarded by the lock
+        final Node[] nodes;
+        int count;
+        // Written under the lock only
+        volatile long evictions;
+
+        Segment(final int capacity) {
+            this.capacity = capacity;
+            this.map = new ConcurrentHashMap<>(Math.min(capacity, 1024));
+            this.lock = new ReentrantLock();
+            this.nodes = new Node[capacity];
+        }
+
+        void put(final String key, final HttpCacheEntry entry) {
+            final long entryWeight = CacheEntryWeigher.weigh(key, entry);
+            this.lock.lock();
+            try {
+                final Node existing = this.map.get(key);
+                if (existing != null) {
+                    if (!reserve(entryWeight - existing.weight) && !makeRoom(key, existing, entryWeight)) {
+                        unlink(existing);
+                        return;
+                    }
+                    existing.entry = entry;
+                    existing.storedAt = System.nanoTime();
+                    existing.lastAccess = existing.storedAt;
+                    existing.weight = entryWeight;
+                    return;
+                }
+                if (maxBytes > 0 && entryWeight > maxBytes) {
+                    return;
+                }
+                while (this.count == this.capacity) {
+                    final Node victim = sampleVictim();
+                    if (sketch.frequency(key) <= sketch.frequency(victim.key)) {
+                        return;
+                    }
+                    evict(victim);
+                }
+                if (!reserve(entryWeight) && !makeRoom(key, null, entryWeight)) {
+                    return;
+                }
+                final Node node = new Node(key, entry, entryWeight);
+                node.index = this.count;
+                this.nodes[this.count++] = node;
+                this.map.put(key, node);
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        /**
+         * Evicts entries until the weight of an entry replacing the given
+         * one, if any, has been reserved. Returns {@code false} if the key
+         * is not admitted or no room can be made.
+         */
+        private boolean makeRoom(final String key, final Node existing, final long entryWeight) {
+            final long extra = existing != null ? entryWeight - existing.weight : entryWeight;
+            if (maxBytes > 0 && entryWeight > maxBytes) {
+                return false;
+            }
+            do {
+                if (this.count > (existing != null ? 1 : 0)) {
+                    final Node victim = sampleVictim();
+                    if (victim == existing) {
+                        continue;
+                    }
+                    if (sketch.frequency(key) <= sketch.frequency(victim.key)) {
+                        return false;
+                    }
+                    evict(victim);
+                } else if (!evictFromOtherSegment(this, key)) {
+                    return false;
+                }
+            } while (!reserve(extra));
+            return true;
+        }
+
+        void remove(final String key) {
+            this.lock.lock();
+            try {
+                final Node node = this.map.get(key);
+                if (node != null) {
+                    unlink(node);
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        void evict(final Node node) {
+            unlink(node);
+            this.evictions++;
+        }
+
+        private void unlink(final Node node) {
+            this.map.remove(node.key);
+            weight.addAndGet(-node.weight);
+            final int last = --this.count;
+            final Node moved = this.nodes[last];
+            this.nodes[node.index] = moved;
+            moved.index = node.index;
+            this.nodes[last] = null;
+        }
+
+        Node sampleVictim() {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            Node victim = null;
+            final int samples = Math.min(SAMPLE_SIZE, this.count);
+            for (int i = 0; i < samples; i++) {
+                final Node candidate = this.nodes[random.nextInt(this.count)];
+                if (victim == null || candidate.lastAccess - victim.lastAccess < 0) {
+                    victim = candidate;
+                }
+            }
+            return victim;
+        }
+
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.hc.client5.http.cache.CacheResponseStatus;
+import org.apache.hc.client5.http.cache.CacheStatisticsRecorder;
+import org.apache.hc.client5.http.impl.io.LatencyHistogram;
+import org.apache.hc.core5.annotation.ThreadSafe;
+import org.apache.hc.core5.http.HttpHost;
+
+/**
+ * {@link CacheStatisticsRecorder} that counts responses, revalidations and
+ * bytes served per target host and in total, and records cache storage
+ * latencies into {@link LatencyHistogram}s.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class CountingCacheStatisticsRecorder implements CacheStatisticsRecorder {
+
+    private final ConcurrentMap<HttpHost, HostCacheStatistics> hostToStatistics;
+    private final HostCacheStatistics totals;
+    private final LatencyHistogram storageReadTime;
+    private final LatencyHistogram storageWriteTime;
+
+    public CountingCacheStatisticsRecorder() {
+        super();
+        this.hostToStatistics = new ConcurrentHashMap<>();
+        this.totals = new HostCacheStatistics();
+        this.storageReadTime = new LatencyHistogram();
+        this.storageWriteTime = new LatencyHistogram();
+    }
+
+    private HostCacheStatistics getOrCreate(final HttpHost target) {
+        HostCacheStatistics statistics = this.hostToStatistics.get(target);
+        if (statistics == null) {
+            final HostCacheStatistics newStatistics = new HostCacheStatistics();
+            statistics = this.hostToStatistics.putIfAbsent(target, newStatistics);
+            if (statistics == null) {
+                statistics = newStatistics;
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Returns statistics of the given host or {@code null} if nothing
+     * has been recorded for the host.
+     */
+    public HostCacheStatistics getStatistics(final HttpHost target) {
+        return this.hostToStatistics.get(target);
+    }
+
+    public Set<HttpHost> getHosts() {
+        return this.hostToStatistics.keySet();
+    }
+
+    /**
+     * Returns statistics of all hosts combined.
+     */
+    public HostCacheStatistics getTotals() {
+        return this.totals;
+    }
+
+    public LatencyHistogram getStorageReadTime() {
+        return this.storageReadTime;
+    }
+
+    public LatencyHistogram getStorageWriteTime() {
+        return this.storageWriteTime;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void responseServed(final HttpHost target, final CacheResponseStatus status, final long contentLength) {
+        if (target != null) {
+            getOrCreate(target).responseServed(status, contentLength);
+        }
+        this.totals.responseServed(status, contentLength);
+    }
+
+    @Override
+    public void entryRevalidated(final HttpHost target, final int statusCode) {
+        if (target != null) {
+            getOrCreate(target).entryRevalidated(statusCode);
+        }
+        this.totals.entryRevalidated(statusCode);
+    }
+
+    @Override
+    public void revalidationFailed(final HttpHost target) {
+        if (target != null) {
+            getOrCreate(target).revalidationFailed();
+        }
+        this.totals.revalidationFailed();
+    }
+
+    @Override
+    public void storageRead(final long time) {
+        this.storageReadTime.record(time);
+    }
+
+    @Override
+    public void storageWritten(final long time) {
+        this.storageWriteTime.record(time);
+    }
+
+}
@@ -53,7 +53,7 @@ public class FileResourceFactory implements ResourceFactory {
         this.idgen = new BasicIdGenerator();
     }
 
-    private File generateUniqueCacheFile(final String requestId) {
+    File generateUniqueCacheFile(final String requestId) {
         final StringBuilder buffer = new StringBuilder();
         this.idgen.generate(buffer);
         buffer.append('.');
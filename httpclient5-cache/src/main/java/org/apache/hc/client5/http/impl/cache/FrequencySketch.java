@@ -0,0 +1,138 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.hc.core5.annotation.ThreadSafe;
+
+/**
+ * Approximate, lock-free access frequency counter for cache keys based on
+ * a count-min sketch with 4-bit counters. All counters get halved once the
+ * number of recorded accesses reaches ten times the cache capacity, so that
+ * the sketch reflects recent rather than all-time popularity (TinyLFU).
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+
+    private final AtomicLongArray table;
+    private final int tableMask;
+    private final int sampleSize;
+    private final AtomicInteger size;
+
+    FrequencySketch(final int capacity) {
+        super();
+        final int n = Math.max(1, capacity);
+        final int length = Math.max(4, Integer.highestOneBit(Math.min(n, 1 << 26) - 1) << 1);
+        this.table = new AtomicLongArray(length);
+        this.tableMask = length - 1;
+        this.sampleSize = n <= Integer.MAX_VALUE / 10 ? 10 * n : Integer.MAX_VALUE;
+        this.size = new AtomicInteger();
+    }
+
+    private static int spread(final int hashCode) {
+        int h = hashCode * 0x9e3779b9;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private int indexOf(final int hash, final int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & this.tableMask;
+    }
+
+    /**
+     * Returns the estimated number of accesses to the given key, at most 15.
+     */
+    int frequency(final Object key) {
+        final int hash = spread(key.hashCode());
+        final int start = (hash & 3) << 2;
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < 4; i++) {
+            final long word = this.table.get(indexOf(hash, i));
+            final int offset = (start + i) << 2;
+            frequency = Math.min(frequency, (int) ((word >>> offset) & 0xfL));
+        }
+        return frequency;
+    }
+
+    /**
+     * Records an access to the given key.
+     */
+    void increment(final Object key) {
+        final int hash = spread(key.hashCode());
+        final int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), (start + i) << 2);
+        }
+        if (added && this.size.incrementAndGet() >= this.sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(final int index, final int offset) {
+        final long mask = 0xfL << offset;
+        for (;;) {
+            final long word = this.table.get(index);
+            if ((word & mask) == mask) {
+                // Saturated counters of popular keys cause no further writes
+                return false;
+            }
+            if (this.table.compareAndSet(index, word, word + (1L << offset))) {
+                return true;
+            }
+        }
+    }
+
+    private void reset() {
+        final int current = this.size.get();
+        if (current < this.sampleSize || !this.size.compareAndSet(current, current / 2)) {
+            return;
+        }
+        for (int i = 0; i < this.table.length(); i++) {
+            for (;;) {
+                final long word = this.table.get(i);
+                if (this.table.compareAndSet(i, word, (word >>> 1) & RESET_MASK)) {
+                    break;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.hc.client5.http.cache.CacheResponseStatus;
+import org.apache.hc.core5.annotation.ThreadSafe;
+import org.apache.hc.core5.http.HttpStatus;
+
+/**
+ * Cache statistics of a single target host, or of all hosts combined.
+ *
+ * @see CountingCacheStatisticsRecorder
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public final class HostCacheStatistics {
+
+    private final AtomicLongArray responseCounts;
+    private final AtomicLong notModifiedCount;
+    private final AtomicLong modifiedCount;
+    private final AtomicLong failedRevalidationCount;
+    private final AtomicLong bytesFromCache;
+    private final AtomicLong bytesFromBackend;
+
+    HostCacheStatistics() {
+        super();
+        this.responseCounts = new AtomicLongArray(CacheResponseStatus.values().length);
+        this.notModifiedCount = new AtomicLong();
+        this.modifiedCount = new AtomicLong();
+        this.failedRevalidationCount = new AtomicLong();
+        this.bytesFromCache = new AtomicLong();
+        this.bytesFromBackend = new AtomicLong();
+    }
+
+    void responseServed(final CacheResponseStatus status, final long contentLength) {
+        this.responseCounts.incrementAndGet(status.ordinal());
+        if (contentLength > 0) {
+            if (status == CacheResponseStatus.CACHE_HIT || status == CacheResponseStatus.VALIDATED) {
+                this.bytesFromCache.addAndGet(contentLength);
+            } else if (status == CacheResponseStatus.CACHE_MISS) {
+                this.bytesFromBackend.addAndGet(contentLength);
+            }
+        }
+    }
+
+    void entryRevalidated(final int statusCode) {
+        if (statusCode == HttpStatus.SC_NOT_MODIFIED) {
+            this.notModifiedCount.incrementAndGet();
+        } else if (statusCode == HttpStatus.SC_OK) {
+            this.modifiedCount.incrementAndGet();
+        } else {
+            this.failedRevalidationCount.incrementAndGet();
+        }
+    }
+
+    void revalidationFailed() {
+        this.failedRevalidationCount.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of responses generated the given way.
+     */
+    public long getResponseCount(final CacheResponseStatus status) {
+        return this.responseCounts.get(status.ordinal());
+    }
+
+    /**
+     * Returns the number of revalidations the origin answered with
+     * {@code 304 (Not Modified)}.
+     */
+    public long getNotModifiedCount() {
+        return this.notModifiedCount.get();
+    }
+
+    /**
+     * Returns the number of revalidations the origin answered with
+     * {@code 200 (OK)}, replacing the cache entry.
+     */
+    public long getModifiedCount() {
+        return this.modifiedCount.get();
+    }
+
+    /**
+     * Returns the number of revalidations that failed with an I/O error
+     * or were answered with a status other than 200 or 304.
+     */
+    public long getFailedRevalidationCount() {
+        return this.failedRevalidationCount.get();
+    }
+
+    /**
+     * Returns the number of response body bytes of known length served
+     * from the cache.
+     */
+    public long getBytesFromCache() {
+        return this.bytesFromCache.get();
+    }
+
+    /**
+     * Returns the number of response body bytes of known length served
+     * from the backend.
+     */
+    public long getBytesFromBackend() {
+        return this.bytesFromBackend.get();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder();
+        buf.append("[");
+        for (final CacheResponseStatus status: CacheResponseStatus.values()) {
+            buf.append(status).append(": ").append(getResponseCount(status)).append("; ");
+        }
+        buf.append("not modified: ").append(getNotModifiedCount());
+        buf.append("; modified: ").append(getModifiedCount());
+        buf.append("; failed revalidations: ").append(getFailedRevalidationCount());
+        buf.append("; bytes from cache: ").append(getBytesFromCache());
+        buf.append("; bytes from backend: ").append(getBytesFromBackend());
+        buf.append("]");
+        return buf.toString();
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.hc.client5.http.cache.AsyncHttpCacheStorage;
+import org.apache.hc.client5.http.cache.BulkHttpCacheStorage;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+
+/**
+ * Helpers applying bulk operations to any {@link HttpCacheStorage},
+ * natively if it implements {@link BulkHttpCacheStorage}, by fanning
+ * out asynchronous operations if it implements
+ * {@link AsyncHttpCacheStorage}, or else one entry at a time.
+ *
+ * @since 5.0
+ */
+final class HttpCacheStorageSupport {
+
+    private HttpCacheStorageSupport() {
+    }
+
+    static Map<String, HttpCacheEntry> getEntries(
+            final HttpCacheStorage storage, final Collection<String> keys) throws IOException {
+        if (storage instanceof BulkHttpCacheStorage && keys.size() > 1) {
+            return ((BulkHttpCacheStorage) storage).getEntries(keys);
+        }
+        final Map<String, HttpCacheEntry> entries = new HashMap<>();
+        for (final String key: keys) {
+            final HttpCacheEntry entry = storage.getEntry(key);
+            if (entry != null) {
+                entries.put(key, entry);
+            }
+        }
+        return entries;
+    }
+
+    static void removeEntries(final HttpCacheStorage storage, final Collection<String> keys) throws IOException {
+        if (keys.isEmpty()) {
+            return;
+        }
+        if (storage instanceof AsyncHttpCacheStorage && keys.size() > 1) {
+            removeEntriesAsync((AsyncHttpCacheStorage) storage, keys);
+        } else if (storage instanceof BulkHttpCacheStorage) {
+            ((BulkHttpCacheStorage) storage).removeEntries(keys);
+        } else {
+            for (final String key: keys) {
+                storage.removeEntry(key);
+            }
+        }
+    }
+
+    /**
+     * Issues all removals before waiting for any of them, so that their
+     * round trips overlap. Every removal is waited for even if an earlier
+     * one has failed; the first failure is then rethrown.
+     */
+    private static void removeEntriesAsync(
+            final AsyncHttpCacheStorage storage, final Collection<String> keys) throws IOException {
+        final List<Future<Boolean>> futures = new ArrayList<>(keys.size());
+        for (final String key: keys) {
+            futures.add(storage.removeEntryAsync(key));
+        }
+        IOException failure = null;
+        for (final Future<Boolean> future: futures) {
+            try {
+                await(future);
+            } catch (final InterruptedIOException ex) {
+                throw ex;
+            } catch (final IOException ex) {
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    static <T> T await(final Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.hc.client5.http.cache.BulkHttpCacheStorage;
+import org.apache.hc.client5.http.cache.CacheStatisticsRecorder;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateException;
+import org.apache.hc.core5.annotation.ThreadSafe;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * {@link HttpCacheStorage} decorator reporting the time taken by each
+ * operation of the given storage to a {@link CacheStatisticsRecorder}.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+class InstrumentedHttpCacheStorage implements BulkHttpCacheStorage {
+
+    private final HttpCacheStorage storage;
+    private final CacheStatisticsRecorder statisticsRecorder;
+
+    InstrumentedHttpCacheStorage(final HttpCacheStorage storage, final CacheStatisticsRecorder statisticsRecorder) {
+        this.storage = Args.notNull(storage, "Cache storage");
+        this.statisticsRecorder = Args.notNull(statisticsRecorder, "Cache statistics recorder");
+    }
+
+    @Override
+    public void putEntry(final String key, final HttpCacheEntry entry) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            this.storage.putEntry(key, entry);
+        } finally {
+            this.statisticsRecorder.storageWritten(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public HttpCacheEntry getEntry(final String key) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            return this.storage.getEntry(key);
+        } finally {
+            this.statisticsRecorder.storageRead(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Map<String, HttpCacheEntry> getEntries(final Collection<String> keys) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            return HttpCacheStorageSupport.getEntries(this.storage, keys);
+        } finally {
+            this.statisticsRecorder.storageRead(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void removeEntry(final String key) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            this.storage.removeEntry(key);
+        } finally {
+            this.statisticsRecorder.storageWritten(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void removeEntries(final Collection<String> keys) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            HttpCacheStorageSupport.removeEntries(this.storage, keys);
+        } finally {
+            this.statisticsRecorder.storageWritten(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void updateEntry(
+            final String key, final HttpCacheUpdateCallback callback) throws IOException, HttpCacheUpdateException {
+        final long start = System.nanoTime();
+        try {
+            this.storage.updateEntry(key, callback);
+        } finally {
+            this.statisticsRecorder.storageWritten(System.nanoTime() - start);
+        }
+    }
+
+}
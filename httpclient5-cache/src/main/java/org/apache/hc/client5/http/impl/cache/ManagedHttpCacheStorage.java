@@ -54,8 +54,8 @@ import org.apache.hc.core5.util.Args;
  * the entries used by the cache will be deallocated.
  * </p>
  * <p>
- * This {@link HttpCacheStorage} implementation is intended for use with {@link FileResource}
- * and similar.
+ * This {@link HttpCacheStorage} implementation is intended for use with {@link FileResource},
+ * {@link OffHeapResource} and similar.
  * </p>
  * <p>
  * Compatibility note. Prior to version 4.4 this storage implementation used to dispose of
@@ -80,7 +80,7 @@ public class ManagedHttpCacheStorage implements HttpCacheStorage, Closeable {
 
     public ManagedHttpCacheStorage(final CacheConfig config) {
         super();
-        this.entries = new CacheMap(config.getMaxCacheEntries());
+        this.entries = new CacheMap(config.getMaxCacheEntries(), config.getMaxCacheBytes());
         this.morque = new ReferenceQueue<>();
         this.resources = new HashSet<>();
         this.active = new AtomicBoolean(true);
@@ -149,6 +149,25 @@ public class ManagedHttpCacheStorage implements HttpCacheStorage, Closeable {
         }
     }
 
+    /**
+     * Returns the total estimated size in bytes of the entries held in the storage.
+     *
+     * @since 5.0
+     */
+    public synchronized long getWeightedSize() {
+        return this.entries.getWeightedSize();
+    }
+
+    /**
+     * Returns the number of entries evicted to stay within the configured
+     * maximum number of entries and maximum total size.
+     *
+     * @since 5.0
+     */
+    public synchronized long getEvictionCount() {
+        return this.entries.getEvictionCount();
+    }
+
     public void cleanResources() {
         if (this.active.get()) {
             ResourceReference ref;
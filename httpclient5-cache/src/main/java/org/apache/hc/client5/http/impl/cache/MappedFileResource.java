@@ -0,0 +1,83 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.hc.core5.annotation.ThreadSafe;
+
+/**
+ * Cache resource backed by a file that is read through a read-only memory
+ * mapping of the file. The mapping is established on first access and
+ * shared by all streams reading the resource.
+ * <p>
+ * Please note the mapping is only released by the garbage collector. On some
+ * platforms the file cannot be deleted while it is still mapped.
+ * </p>
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class MappedFileResource extends FileResource {
+
+    private static final long serialVersionUID = -6231357185633914823L;
+
+    private transient MappedByteBuffer mapping;
+
+    public MappedFileResource(final File file) {
+        super(file);
+    }
+
+    private synchronized MappedByteBuffer getMapping() throws IOException {
+        if (this.mapping == null) {
+            try (RandomAccessFile raf = new RandomAccessFile(getFile(), "r")) {
+                this.mapping = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            }
+        }
+        return this.mapping;
+    }
+
+    @Override
+    public synchronized InputStream getInputStream() throws IOException {
+        if (length() > Integer.MAX_VALUE) {
+            return super.getInputStream();
+        }
+        return new ByteBufferInputStream(getMapping().duplicate());
+    }
+
+    @Override
+    public synchronized void dispose() {
+        this.mapping = null;
+        super.dispose();
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+import org.apache.hc.client5.http.cache.InputLimit;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.core5.annotation.Immutable;
+
+/**
+ * Generates {@link MappedFileResource} instances whose body is stored in a
+ * temporary file. Bodies are written with {@link FileChannel#transferFrom}
+ * and read back through memory mappings of the files.
+ *
+ * @since 5.0
+ */
+@Immutable
+public class MappedFileResourceFactory extends FileResourceFactory {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    public MappedFileResourceFactory(final File cacheDir) {
+        super(cacheDir);
+    }
+
+    @Override
+    public Resource generate(
+            final String requestId,
+            final InputStream instream,
+            final InputLimit limit) throws IOException {
+        final File file = generateUniqueCacheFile(requestId);
+        final ReadableByteChannel src = Channels.newChannel(instream);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            final FileChannel dst = raf.getChannel();
+            long total = 0;
+            for (;;) {
+                long count = CHUNK_SIZE;
+                if (limit != null) {
+                    // Read no more than one byte past the limit
+                    count = Math.max(1, Math.min(count, limit.getValue() - total + 1));
+                }
+                final long l = dst.transferFrom(src, total, count);
+                if (l <= 0) {
+                    break;
+                }
+                total += l;
+                if (limit != null && total > limit.getValue()) {
+                    limit.reached();
+                    break;
+                }
+            }
+        }
+        return new MappedFileResource(file);
+    }
+
+    @Override
+    public Resource copy(
+            final String requestId,
+            final Resource resource) throws IOException {
+        final File file = generateUniqueCacheFile(requestId);
+        if (resource instanceof FileResource) {
+            IOUtils.copyFile(((FileResource) resource).getFile(), file);
+        } else {
+            try (InputStream instream = resource.getInputStream();
+                    RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                final ReadableByteChannel src = Channels.newChannel(instream);
+                long total = 0;
+                long l;
+                while ((l = raf.getChannel().transferFrom(src, total, CHUNK_SIZE)) > 0) {
+                    total += l;
+                }
+            }
+        }
+        return new MappedFileResource(file);
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import org.apache.hc.client5.http.cache.CacheResponseStatus;
+import org.apache.hc.client5.http.cache.CacheStatisticsRecorder;
+import org.apache.hc.core5.annotation.Immutable;
+import org.apache.hc.core5.http.HttpHost;
+
+/**
+ * {@link CacheStatisticsRecorder} that records nothing.
+ *
+ * @since 5.0
+ */
+@Immutable
+public class NoopCacheStatisticsRecorder implements CacheStatisticsRecorder {
+
+    public static final NoopCacheStatisticsRecorder INSTANCE = new NoopCacheStatisticsRecorder();
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public void responseServed(final HttpHost target, final CacheResponseStatus status, final long contentLength) {
+    }
+
+    @Override
+    public void entryRevalidated(final HttpHost target, final int statusCode) {
+    }
+
+    @Override
+    public void revalidationFailed(final HttpHost target) {
+    }
+
+    @Override
+    public void storageRead(final long time) {
+    }
+
+    @Override
+    public void storageWritten(final long time) {
+    }
+
+}
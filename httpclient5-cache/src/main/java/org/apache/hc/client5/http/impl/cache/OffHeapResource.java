@@ -0,0 +1,165 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectStreamException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.core5.annotation.ThreadSafe;
+
+/**
+ * Cache resource backed by direct {@link ByteBuffer} slabs allocated outside
+ * of the Java heap.
+ * <p>
+ * The slabs are reference counted: copies of the resource produced by
+ * {@link OffHeapResourceFactory#copy(String, Resource)} share the slabs of
+ * the original, and every stream returned by {@link #getInputStream()} holds
+ * a reference until it is closed. The slabs are returned to the factory for
+ * reuse once all resources sharing them have been disposed of and all their
+ * streams have been closed.
+ * </p>
+ * <p>
+ * Resources of this kind are serialized as {@link HeapResource}s.
+ * </p>
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class OffHeapResource implements Resource {
+
+    private static final long serialVersionUID = 2546823459452816537L;
+
+    private final transient ByteBuffer[] slabs;
+    private final transient long length;
+    private final transient AtomicInteger refCount;
+    private final transient OffHeapResourceFactory factory;
+    private final transient AtomicBoolean disposed;
+
+    OffHeapResource(
+            final ByteBuffer[] slabs,
+            final long length,
+            final AtomicInteger refCount,
+            final OffHeapResourceFactory factory) {
+        super();
+        this.slabs = slabs;
+        this.length = length;
+        this.refCount = refCount;
+        this.factory = factory;
+        this.disposed = new AtomicBoolean(false);
+    }
+
+    boolean retain() {
+        for (;;) {
+            final int count = this.refCount.get();
+            if (count == 0) {
+                return false;
+            }
+            if (this.refCount.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void release() {
+        if (this.refCount.decrementAndGet() == 0 && this.factory != null) {
+            for (final ByteBuffer slab: this.slabs) {
+                this.factory.recycle(slab);
+            }
+        }
+    }
+
+    /**
+     * Returns a new resource sharing the slabs of this one, or {@code null}
+     * if the slabs have already been released.
+     */
+    OffHeapResource share() {
+        if (!retain()) {
+            return null;
+        }
+        return new OffHeapResource(this.slabs, this.length, this.refCount, this.factory);
+    }
+
+    /**
+     * Returns read-only views of the content of this resource, one per slab.
+     * The views are only valid as long as the resource has not been disposed of.
+     */
+    public ByteBuffer[] getByteBuffers() {
+        final ByteBuffer[] views = new ByteBuffer[this.slabs.length];
+        for (int i = 0; i < views.length; i++) {
+            views[i] = this.slabs[i].asReadOnlyBuffer();
+        }
+        return views;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        if (this.disposed.get() || !retain()) {
+            throw new IOException("Resource has been disposed");
+        }
+        return new ByteBufferInputStream(getByteBuffers()) {
+
+            private final AtomicBoolean closed = new AtomicBoolean(false);
+
+            @Override
+            public void close() {
+                if (this.closed.compareAndSet(false, true)) {
+                    release();
+                }
+            }
+
+        };
+    }
+
+    @Override
+    public long length() {
+        return this.length;
+    }
+
+    @Override
+    public void dispose() {
+        if (this.disposed.compareAndSet(false, true)) {
+            release();
+        }
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(this.length, Integer.MAX_VALUE));
+        for (final ByteBuffer view: getByteBuffers()) {
+            final byte[] b = new byte[view.remaining()];
+            view.get(b);
+            out.write(b, 0, b.length);
+        }
+        return new HeapResource(out.toByteArray());
+    }
+
+}
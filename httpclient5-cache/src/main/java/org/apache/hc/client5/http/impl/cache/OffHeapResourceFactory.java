@@ -0,0 +1,167 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.client5.http.cache.InputLimit;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.client5.http.cache.ResourceFactory;
+import org.apache.hc.core5.annotation.ThreadSafe;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Generates {@link OffHeapResource} instances whose body is stored in direct
+ * {@link ByteBuffer} slabs outside of the Java heap.
+ * <p>
+ * Slabs released by disposed resources are kept in a bounded pool for reuse.
+ * This factory is intended for use with {@link ManagedHttpCacheStorage}, which
+ * disposes of the resources of cache entries no longer in use when
+ * {@link ManagedHttpCacheStorage#cleanResources()} is called. With storages that
+ * never dispose of resources the slabs are only reclaimed by the garbage collector.
+ * </p>
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class OffHeapResourceFactory implements ResourceFactory {
+
+    public static final int DEFAULT_SLAB_SIZE = 64 * 1024;
+    public static final int DEFAULT_MAX_POOLED_SLABS = 256;
+
+    private final int slabSize;
+    private final int maxPooledSlabs;
+    private final Queue<ByteBuffer> pool;
+    private final AtomicInteger pooled;
+
+    /**
+     * @param slabSize size in bytes of the direct buffers bodies are stored in.
+     * @param maxPooledSlabs maximum number of released slabs kept for reuse.
+     */
+    public OffHeapResourceFactory(final int slabSize, final int maxPooledSlabs) {
+        super();
+        Args.positive(slabSize, "Slab size");
+        Args.notNegative(maxPooledSlabs, "Max pooled slabs");
+        this.slabSize = slabSize;
+        this.maxPooledSlabs = maxPooledSlabs;
+        this.pool = new ConcurrentLinkedQueue<>();
+        this.pooled = new AtomicInteger();
+    }
+
+    public OffHeapResourceFactory() {
+        this(DEFAULT_SLAB_SIZE, DEFAULT_MAX_POOLED_SLABS);
+    }
+
+    private ByteBuffer allocate() {
+        final ByteBuffer slab = this.pool.poll();
+        if (slab != null) {
+            this.pooled.decrementAndGet();
+            slab.clear();
+            return slab;
+        }
+        return ByteBuffer.allocateDirect(this.slabSize);
+    }
+
+    void recycle(final ByteBuffer slab) {
+        if (this.pooled.incrementAndGet() <= this.maxPooledSlabs) {
+            this.pool.offer(slab);
+        } else {
+            this.pooled.decrementAndGet();
+        }
+    }
+
+    int getPooledSlabCount() {
+        return this.pooled.get();
+    }
+
+    @Override
+    public Resource generate(
+            final String requestId,
+            final InputStream instream,
+            final InputLimit limit) throws IOException {
+        final ReadableByteChannel channel = Channels.newChannel(instream);
+        final List<ByteBuffer> slabs = new ArrayList<>();
+        long total = 0;
+        try {
+            ByteBuffer slab = allocate();
+            slabs.add(slab);
+            int l;
+            while ((l = channel.read(slab)) != -1) {
+                total += l;
+                if (limit != null && total > limit.getValue()) {
+                    limit.reached();
+                    break;
+                }
+                if (!slab.hasRemaining()) {
+                    slab = allocate();
+                    slabs.add(slab);
+                }
+            }
+        } catch (final IOException | RuntimeException ex) {
+            for (final ByteBuffer slab: slabs) {
+                recycle(slab);
+            }
+            throw ex;
+        }
+        final ByteBuffer last = slabs.get(slabs.size() - 1);
+        if (last.position() == 0 && slabs.size() > 1) {
+            // Body ended exactly at the end of the previous slab
+            slabs.remove(slabs.size() - 1);
+            recycle(last);
+        }
+        for (final ByteBuffer slab: slabs) {
+            slab.flip();
+        }
+        return new OffHeapResource(
+                slabs.toArray(new ByteBuffer[slabs.size()]), total, new AtomicInteger(1), this);
+    }
+
+    @Override
+    public Resource copy(
+            final String requestId,
+            final Resource resource) throws IOException {
+        if (resource instanceof OffHeapResource) {
+            final OffHeapResource shared = ((OffHeapResource) resource).share();
+            if (shared != null) {
+                return shared;
+            }
+        }
+        try (InputStream instream = resource.getInputStream()) {
+            return generate(requestId, instream, null);
+        }
+    }
+
+}
@@ -0,0 +1,704 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.core5.annotation.ThreadSafe;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * {@link HttpCacheStorage} implementation that keeps cache entries on disk so
+ * that they survive restarts of the application.
+ * <p>
+ * Response bodies are appended to segment files. Entry metadata is appended to
+ * a journal together with the location of the body, and an in-memory index maps
+ * cache keys to the journal offset of their latest record. The index is written
+ * to a snapshot file on {@link #close()} and whenever the journal is compacted,
+ * so that on startup only the snapshot and the journal records written after it
+ * need to be read. A journal tail left incomplete by a crash is detected by
+ * record checksums and discarded.
+ * </p>
+ * <p>
+ * The total size of the segment files and the journal is bounded by
+ * {@link CacheConfig#getMaxCacheBytes()}, or {@link #DEFAULT_MAX_BYTES} if the
+ * configuration does not set a bound. Once the bound is exceeded whole segments
+ * are evicted, oldest first, together with all entries whose body they hold.
+ * Space taken by bodies of replaced or removed entries is reclaimed when their
+ * segment gets evicted. The number of entries is bounded by
+ * {@link CacheConfig#getMaxCacheEntries()}; entries written least recently are
+ * evicted first.
+ * </p>
+ * <p>
+ * An update that leaves the response body unchanged, such as a refresh after
+ * a {@code 304 Not Modified} revalidation, only appends a metadata record that
+ * refers to the body already stored.
+ * </p>
+ * <p>
+ * Writes are not forced to the storage device; a crash may lose the most recent
+ * updates. Entries are read back with their body held in a {@link HeapResource}.
+ * </p>
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class PersistentHttpCacheStorage implements HttpCacheStorage, Closeable {
+
+    public static final long DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    public static final long DEFAULT_MAX_BYTES = 256 * 1024 * 1024;
+
+    static final String JOURNAL_FILE = "journal";
+    static final String SNAPSHOT_FILE = "journal.idx";
+    static final String SEGMENT_PREFIX = "segment-";
+    static final String SEGMENT_SUFFIX = ".dat";
+
+    private static final int JOURNAL_MAGIC = 0x48434a4c;
+    private static final int SNAPSHOT_MAGIC = 0x48434958;
+    private static final int JOURNAL_HEADER_SIZE = 12;
+    private static final int RECORD_HEADER_SIZE = 9;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final long COMPACTION_THRESHOLD = 1024 * 1024;
+    private static final int TRANSFER_CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_KEY_LENGTH = 1024 * 1024;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File dir;
+    private final long maxBytes;
+    private final int maxEntries;
+    private final long segmentSize;
+    private final CompactHttpCacheEntrySerializer serializer;
+    private final Random random;
+    private final TreeMap<Integer, RandomAccessFile> segments;
+
+    private Map<String, Location> index;
+    private RandomAccessFile journal;
+    private long generation;
+    private long liveJournalBytes;
+    private long segmentBytes;
+    private int activeSegment;
+    private long evictionCount;
+    private boolean closed;
+
+    /**
+     * @param dir the directory to keep the cache files in; created if it does not exist.
+     * @param config cache configuration providing the maximum total size of the files
+     *   and the maximum number of entries.
+     * @param segmentSize the size of segment files at which a new segment is started.
+     *   It is reduced to a quarter of the maximum total size if that is smaller.
+     * @throws IOException in case of an I/O error opening the cache files.
+     */
+    public PersistentHttpCacheStorage(
+            final File dir, final CacheConfig config, final long segmentSize) throws IOException {
+        super();
+        Args.notNull(dir, "Cache directory");
+        Args.notNull(config, "Cache config");
+        Args.positive(segmentSize, "Segment size");
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create cache directory " + dir);
+        }
+        this.dir = dir;
+        this.maxBytes = config.getMaxCacheBytes() > 0 ? config.getMaxCacheBytes() : DEFAULT_MAX_BYTES;
+        this.maxEntries = config.getMaxCacheEntries();
+        this.segmentSize = Math.min(segmentSize, Math.max(1, this.maxBytes / 4));
+        this.serializer = new CompactHttpCacheEntrySerializer();
+        this.random = new Random();
+        this.segments = new TreeMap<>();
+        this.index = new LinkedHashMap<>();
+        openSegments();
+        openJournal();
+        if (this.segments.isEmpty()) {
+            startSegment();
+        } else {
+            this.activeSegment = this.segments.lastKey().intValue();
+        }
+    }
+
+    public PersistentHttpCacheStorage(final File dir, final CacheConfig config) throws IOException {
+        this(dir, config, DEFAULT_SEGMENT_SIZE);
+    }
+
+    static final class Location {
+
+        final long offset;
+        final int length;
+        final int segment;
+        final long bodyOffset;
+        final long bodyLength;
+
+        Location(final long offset, final int length, final int segment, final long bodyOffset,
+                final long bodyLength) {
+            this.offset = offset;
+            this.length = length;
+            this.segment = segment;
+            this.bodyOffset = bodyOffset;
+            this.bodyLength = bodyLength;
+        }
+
+    }
+
+    static final class Record {
+
+        final byte type;
+        final String key;
+        final Location location;
+        final byte[] payload;
+        final int metadataOffset;
+
+        Record(final byte type, final String key, final Location location, final byte[] payload,
+                final int metadataOffset) {
+            this.type = type;
+            this.key = key;
+            this.location = location;
+            this.payload = payload;
+            this.metadataOffset = metadataOffset;
+        }
+
+    }
+
+    private File segmentFile(final int id) {
+        return new File(this.dir, SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+    }
+
+    private void openSegments() throws IOException {
+        final File[] files = this.dir.listFiles();
+        if (files == null) {
+            throw new IOException("Unable to list cache directory " + this.dir);
+        }
+        for (final File file: files) {
+            final String name = file.getName();
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                try {
+                    final int id = Integer.parseInt(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                    this.segments.put(Integer.valueOf(id), raf);
+                    this.segmentBytes += raf.length();
+                } catch (final NumberFormatException ignore) {
+                }
+            }
+        }
+    }
+
+    private void startSegment() throws IOException {
+        final int id = this.segments.isEmpty() ? 0 : this.segments.lastKey().intValue() + 1;
+        final RandomAccessFile raf = new RandomAccessFile(segmentFile(id), "rw");
+        raf.setLength(0);
+        this.segments.put(Integer.valueOf(id), raf);
+        this.activeSegment = id;
+    }
+
+    private void openJournal() throws IOException {
+        this.journal = new RandomAccessFile(new File(this.dir, JOURNAL_FILE), "rw");
+        if (this.journal.length() >= JOURNAL_HEADER_SIZE) {
+            this.journal.seek(0);
+            if (this.journal.readInt() == JOURNAL_MAGIC) {
+                this.generation = this.journal.readLong();
+                replayJournal(loadSnapshot());
+                return;
+            }
+        }
+        this.generation = this.random.nextLong();
+        this.journal.setLength(0);
+        this.journal.writeInt(JOURNAL_MAGIC);
+        this.journal.writeLong(this.generation);
+    }
+
+    /**
+     * Loads the index snapshot matching the current journal and returns the journal
+     * position to replay records from.
+     */
+    private long loadSnapshot() {
+        final File file = new File(this.dir, SNAPSHOT_FILE);
+        if (!file.exists()) {
+            return JOURNAL_HEADER_SIZE;
+        }
+        final CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(new FileInputStream(file)), crc))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readLong() != this.generation) {
+                return JOURNAL_HEADER_SIZE;
+            }
+            final long journalLength = in.readLong();
+            if (journalLength < JOURNAL_HEADER_SIZE || journalLength > this.journal.length()) {
+                return JOURNAL_HEADER_SIZE;
+            }
+            final int count = in.readInt();
+            final Map<String, Location> entries = new LinkedHashMap<>(Math.max(16, count * 2));
+            for (int i = 0; i < count; i++) {
+                final String key = readString(in);
+                entries.put(key, new Location(in.readLong(), in.readInt(), in.readInt(), in.readLong(), in.readLong()));
+            }
+            final long checksum = crc.getValue();
+            if (in.readLong() != checksum) {
+                return JOURNAL_HEADER_SIZE;
+            }
+            for (final Map.Entry<String, Location> entry: entries.entrySet()) {
+                apply(entry.getKey(), entry.getValue());
+            }
+            return journalLength;
+        } catch (final IOException ex) {
+            this.index.clear();
+            this.liveJournalBytes = 0;
+            return JOURNAL_HEADER_SIZE;
+        }
+    }
+
+    private void replayJournal(final long start) throws IOException {
+        final long length = this.journal.length();
+        long pos = start;
+        while (pos < length) {
+            final Record record = readRecord(pos, length);
+            if (record == null) {
+                // Discard incomplete or corrupt tail
+                this.journal.setLength(pos);
+                break;
+            }
+            apply(record.key, record.type == PUT ? record.location : null);
+            pos += RECORD_HEADER_SIZE + record.payload.length;
+        }
+    }
+
+    private void apply(final String key, final Location location) {
+        // Re-inserted so that the index is ordered by last write
+        final Location previous = this.index.remove(key);
+        if (location != null && (location.bodyLength < 0 || this.segments.containsKey(location.segment))) {
+            this.index.put(key, location);
+            this.liveJournalBytes += location.length;
+        }
+        if (previous != null) {
+            this.liveJournalBytes -= previous.length;
+        }
+    }
+
+    private Record readRecord(final long pos, final long limit) throws IOException {
+        if (pos + RECORD_HEADER_SIZE > limit) {
+            return null;
+        }
+        this.journal.seek(pos);
+        final byte type = this.journal.readByte();
+        final int length = this.journal.readInt();
+        final int checksum = this.journal.readInt();
+        if ((type != PUT && type != REMOVE) || length < 0 || pos + RECORD_HEADER_SIZE + length > limit) {
+            return null;
+        }
+        final byte[] payload = new byte[length];
+        this.journal.readFully(payload);
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        final String key = readString(in);
+        if (type == REMOVE) {
+            return new Record(type, key, null, payload, length);
+        }
+        final int segment = in.readInt();
+        final long bodyOffset = in.readLong();
+        final long bodyLength = in.readLong();
+        final Location location = new Location(pos, RECORD_HEADER_SIZE + length, segment, bodyOffset, bodyLength);
+        return new Record(type, key, location, payload, length - in.available());
+    }
+
+    private long appendRecord(final byte type, final byte[] payload) throws IOException {
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream(RECORD_HEADER_SIZE + payload.length);
+        final DataOutputStream out = new DataOutputStream(buf);
+        out.writeByte(type);
+        out.writeInt(payload.length);
+        out.writeInt((int) crc.getValue());
+        out.write(payload);
+        final long offset = this.journal.length();
+        this.journal.seek(offset);
+        this.journal.write(buf.toByteArray());
+        return offset;
+    }
+
+    private static void writeString(final DataOutputStream out, final String s) throws IOException {
+        final byte[] b = s.getBytes(UTF8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0 || length > MAX_KEY_LENGTH) {
+            throw new IOException("Invalid string length: " + length);
+        }
+        final byte[] b = new byte[length];
+        in.readFully(b);
+        return new String(b, UTF8);
+    }
+
+    private void ensureOpen() {
+        if (this.closed) {
+            throw new IllegalStateException("Cache storage has been closed");
+        }
+    }
+
+    private long writeBody(final Resource resource) throws IOException {
+        final RandomAccessFile raf = this.segments.get(Integer.valueOf(this.activeSegment));
+        final FileChannel channel = raf.getChannel();
+        final long start = raf.length();
+        long written = 0;
+        try (InputStream instream = resource.getInputStream()) {
+            final ReadableByteChannel src = Channels.newChannel(instream);
+            long l;
+            while ((l = channel.transferFrom(src, start + written, TRANSFER_CHUNK_SIZE)) > 0) {
+                written += l;
+            }
+        } catch (final IOException ex) {
+            raf.setLength(start);
+            throw ex;
+        }
+        this.segmentBytes += written;
+        return written;
+    }
+
+    @Override
+    public synchronized void putEntry(final String key, final HttpCacheEntry entry) throws IOException {
+        Args.notNull(key, "URL");
+        Args.notNull(entry, "Cache entry");
+        ensureOpen();
+        int segment = -1;
+        long bodyOffset = 0;
+        long bodyLength = -1;
+        final Resource resource = entry.getResource();
+        if (resource != null) {
+            if (this.segments.get(Integer.valueOf(this.activeSegment)).length() >= this.segmentSize) {
+                startSegment();
+            }
+            segment = this.activeSegment;
+            bodyOffset = this.segments.get(Integer.valueOf(segment)).length();
+            bodyLength = writeBody(resource);
+        }
+        appendPut(key, entry, segment, bodyOffset, bodyLength);
+    }
+
+    private void appendPut(final String key, final HttpCacheEntry entry, final int segment,
+            final long bodyOffset, final long bodyLength) throws IOException {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(buf);
+        writeString(out, key);
+        out.writeInt(segment);
+        out.writeLong(bodyOffset);
+        out.writeLong(bodyLength);
+        this.serializer.writeTo(new HttpCacheEntry(entry.getRequestDate(), entry.getResponseDate(),
+                entry.getStatusLine(), entry.getAllHeaders(), null, entry.getVariantMap(),
+                entry.getRequestMethod()), out);
+        final byte[] payload = buf.toByteArray();
+        final long offset = appendRecord(PUT, payload);
+        apply(key, new Location(offset, RECORD_HEADER_SIZE + payload.length, segment, bodyOffset, bodyLength));
+        evictEntries();
+        evictSegments();
+        compactJournalIfNeeded();
+    }
+
+    @Override
+    public synchronized HttpCacheEntry getEntry(final String key) throws IOException {
+        Args.notNull(key, "URL");
+        ensureOpen();
+        final Location location = this.index.get(key);
+        if (location == null) {
+            return null;
+        }
+        final Record record = readRecord(location.offset, this.journal.length());
+        if (record == null || record.type != PUT || !key.equals(record.key)) {
+            apply(key, null);
+            return null;
+        }
+        final HttpCacheEntry metadata = this.serializer.readFrom(new ByteArrayInputStream(
+                record.payload, record.metadataOffset, record.payload.length - record.metadataOffset));
+        Resource resource = null;
+        if (location.bodyLength >= 0) {
+            final RandomAccessFile raf = this.segments.get(Integer.valueOf(location.segment));
+            if (raf == null || location.bodyLength > Integer.MAX_VALUE) {
+                apply(key, null);
+                return null;
+            }
+            final byte[] body = new byte[(int) location.bodyLength];
+            raf.seek(location.bodyOffset);
+            raf.readFully(body);
+            resource = new HeapResource(body);
+        }
+        return new HttpCacheEntry(metadata.getRequestDate(), metadata.getResponseDate(),
+                metadata.getStatusLine(), metadata.getAllHeaders(), resource, metadata.getVariantMap(),
+                metadata.getRequestMethod());
+    }
+
+    @Override
+    public synchronized void removeEntry(final String key) throws IOException {
+        Args.notNull(key, "URL");
+        ensureOpen();
+        if (this.index.containsKey(key)) {
+            appendRemove(key);
+            compactJournalIfNeeded();
+        }
+    }
+
+    private void appendRemove(final String key) throws IOException {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        writeString(new DataOutputStream(buf), key);
+        appendRecord(REMOVE, buf.toByteArray());
+        apply(key, null);
+    }
+
+    @Override
+    public synchronized void updateEntry(
+            final String key,
+            final HttpCacheUpdateCallback callback) throws IOException {
+        Args.notNull(key, "URL");
+        Args.notNull(callback, "Callback");
+        final HttpCacheEntry existing = getEntry(key);
+        final HttpCacheEntry updated = callback.update(existing);
+        if (updated == null) {
+            removeEntry(key);
+            return;
+        }
+        final Location location = this.index.get(key);
+        if (existing != null && location != null && location.bodyLength >= 0
+                && sameContent(existing.getResource(), updated.getResource())) {
+            appendPut(key, updated, location.segment, location.bodyOffset, location.bodyLength);
+        } else {
+            putEntry(key, updated);
+        }
+    }
+
+    private static boolean sameContent(final Resource a, final Resource b) throws IOException {
+        if (a == null || b == null || a.length() != b.length()) {
+            return false;
+        }
+        try (InputStream in1 = a.getInputStream(); InputStream in2 = b.getInputStream()) {
+            final byte[] buf1 = new byte[TRANSFER_CHUNK_SIZE];
+            final byte[] buf2 = new byte[TRANSFER_CHUNK_SIZE];
+            for (;;) {
+                final int n = readFully(in1, buf1);
+                if (n != readFully(in2, buf2)) {
+                    return false;
+                }
+                for (int i = 0; i < n; i++) {
+                    if (buf1[i] != buf2[i]) {
+                        return false;
+                    }
+                }
+                if (n < buf1.length) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    private static int readFully(final InputStream in, final byte[] buf) throws IOException {
+        int off = 0;
+        int n;
+        while (off < buf.length && (n = in.read(buf, off, buf.length - off)) != -1) {
+            off += n;
+        }
+        return off;
+    }
+
+    private void evictEntries() throws IOException {
+        while (this.index.size() > this.maxEntries) {
+            appendRemove(this.index.keySet().iterator().next());
+            this.evictionCount++;
+        }
+    }
+
+    private void evictSegments() throws IOException {
+        while (this.segmentBytes + this.journal.length() > this.maxBytes && this.segments.size() > 1) {
+            final Map.Entry<Integer, RandomAccessFile> oldest = this.segments.pollFirstEntry();
+            final int id = oldest.getKey().intValue();
+            final RandomAccessFile raf = oldest.getValue();
+            this.segmentBytes -= raf.length();
+            raf.close();
+            segmentFile(id).delete();
+            for (final Iterator<Location> it = this.index.values().iterator(); it.hasNext(); ) {
+                final Location location = it.next();
+                if (location.bodyLength >= 0 && location.segment == id) {
+                    it.remove();
+                    this.liveJournalBytes -= location.length;
+                    this.evictionCount++;
+                }
+            }
+        }
+    }
+
+    private void compactJournalIfNeeded() throws IOException {
+        final long length = this.journal.length();
+        if (length > COMPACTION_THRESHOLD && length > 2 * (this.liveJournalBytes + JOURNAL_HEADER_SIZE)) {
+            compactJournal();
+        }
+    }
+
+    /**
+     * Rewrites the journal keeping only the latest records of the entries in
+     * the index, then writes a matching index snapshot.
+     */
+    synchronized void compactJournal() throws IOException {
+        final File file = new File(this.dir, JOURNAL_FILE);
+        final File tmp = new File(this.dir, JOURNAL_FILE + ".tmp");
+        final long newGeneration = this.random.nextLong();
+        final Map<String, Location> relocated = new LinkedHashMap<>(Math.max(16, this.index.size() * 2));
+        try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+            out.setLength(0);
+            final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            final DataOutputStream header = new DataOutputStream(buf);
+            header.writeInt(JOURNAL_MAGIC);
+            header.writeLong(newGeneration);
+            long pos = JOURNAL_HEADER_SIZE;
+            for (final Map.Entry<String, Location> entry: this.index.entrySet()) {
+                final Location location = entry.getValue();
+                final byte[] raw = new byte[location.length];
+                this.journal.seek(location.offset);
+                this.journal.readFully(raw);
+                buf.write(raw);
+                relocated.put(entry.getKey(), new Location(pos, location.length, location.segment,
+                        location.bodyOffset, location.bodyLength));
+                pos += location.length;
+                if (buf.size() >= TRANSFER_CHUNK_SIZE) {
+                    out.write(buf.toByteArray());
+                    buf.reset();
+                }
+            }
+            out.write(buf.toByteArray());
+        }
+        this.journal.close();
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                this.journal = new RandomAccessFile(file, "rw");
+                throw new IOException("Unable to replace journal " + file);
+            }
+        }
+        this.journal = new RandomAccessFile(file, "rw");
+        this.generation = newGeneration;
+        this.index = relocated;
+        writeSnapshot();
+    }
+
+    private void writeSnapshot() throws IOException {
+        final File file = new File(this.dir, SNAPSHOT_FILE);
+        final File tmp = new File(this.dir, SNAPSHOT_FILE + ".tmp");
+        final CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)), crc))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(this.generation);
+            out.writeLong(this.journal.length());
+            out.writeInt(this.index.size());
+            for (final Map.Entry<String, Location> entry: this.index.entrySet()) {
+                final Location location = entry.getValue();
+                writeString(out, entry.getKey());
+                out.writeLong(location.offset);
+                out.writeInt(location.length);
+                out.writeInt(location.segment);
+                out.writeLong(location.bodyOffset);
+                out.writeLong(location.bodyLength);
+            }
+            out.writeLong(crc.getValue());
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Unable to replace index snapshot " + file);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries currently held in the storage.
+     */
+    public synchronized int size() {
+        return this.index.size();
+    }
+
+    /**
+     * Returns the total size in bytes of the segment files and the journal.
+     */
+    public synchronized long getDiskSize() throws IOException {
+        return this.segmentBytes + (this.closed ? 0 : this.journal.length());
+    }
+
+    /**
+     * Returns the number of entries evicted to stay within the configured
+     * maximum total size and maximum number of entries.
+     */
+    public synchronized long getEvictionCount() {
+        return this.evictionCount;
+    }
+
+    /**
+     * Writes the index snapshot and closes all cache files.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            writeSnapshot();
+        } finally {
+            IOUtils.closeSilently(this.journal);
+            for (final RandomAccessFile raf: this.segments.values()) {
+                IOUtils.closeSilently(raf);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,246 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.core5.annotation.ThreadSafe;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Schedules validation requests on a bounded number of workers, running
+ * at most a fixed number of revalidations against the same host at a time.
+ * Pending requests are executed in the order of the number of requests that
+ * found their cache entry stale (see
+ * {@link AsynchronousValidationRequest#getHits()}), so that the most
+ * requested entries get revalidated first. Requests beyond the configured
+ * queue size are rejected.
+ * <p>
+ * The strategy does not create more concurrent tasks than the maximum number
+ * of workers, so it can also be given an executor that starts a new
+ * (lightweight) thread per task.
+ * </p>
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class PrioritizedSchedulingStrategy implements SchedulingStrategy {
+
+    public static final int DEFAULT_MAX_PER_HOST = 2;
+
+    private final ExecutorService executor;
+    private final int maxWorkers;
+    private final int maxPerHost;
+    private final int maxQueueSize;
+    private final LinkedList<AsynchronousValidationRequest> pending;
+    private final Map<HttpHost, Integer> activePerHost;
+
+    private int activeWorkers;
+    private boolean closed;
+
+    /**
+     * Uses a {@link java.util.concurrent.ThreadPoolExecutor} which is configured according to the
+     * given {@link CacheConfig}.
+     * @param cacheConfig specifies thread pool settings. See
+     * {@link CacheConfig#getAsynchronousWorkersMax()},
+     * {@link CacheConfig#getAsynchronousWorkerIdleLifetimeSecs()},
+     * and {@link CacheConfig#getRevalidationQueueSize()}.
+     * @param maxPerHost the maximum number of concurrent revalidations per host
+     */
+    public PrioritizedSchedulingStrategy(final CacheConfig cacheConfig, final int maxPerHost) {
+        this(createThreadPoolFromCacheConfig(cacheConfig), cacheConfig.getAsynchronousWorkersMax(),
+                maxPerHost, cacheConfig.getRevalidationQueueSize());
+    }
+
+    public PrioritizedSchedulingStrategy(final CacheConfig cacheConfig) {
+        this(cacheConfig, DEFAULT_MAX_PER_HOST);
+    }
+
+    /**
+     * @param executor executes the revalidations; it is shut down on {@link #close()}
+     * @param maxWorkers the maximum number of concurrent revalidations
+     * @param maxPerHost the maximum number of concurrent revalidations per host
+     * @param maxQueueSize the maximum number of pending revalidations
+     */
+    public PrioritizedSchedulingStrategy(
+            final ExecutorService executor,
+            final int maxWorkers,
+            final int maxPerHost,
+            final int maxQueueSize) {
+        this.executor = Args.notNull(executor, "Executor");
+        this.maxWorkers = Args.positive(maxWorkers, "Max workers");
+        this.maxPerHost = Args.positive(maxPerHost, "Max per host");
+        this.maxQueueSize = Args.notNegative(maxQueueSize, "Max queue size");
+        this.pending = new LinkedList<>();
+        this.activePerHost = new HashMap<>();
+    }
+
+    private static ThreadPoolExecutor createThreadPoolFromCacheConfig(final CacheConfig cacheConfig) {
+        final ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(
+                cacheConfig.getAsynchronousWorkersMax(),
+                cacheConfig.getAsynchronousWorkersMax(),
+                cacheConfig.getAsynchronousWorkerIdleLifetimeSecs(),
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        return threadPoolExecutor;
+    }
+
+    @Override
+    public synchronized void schedule(final AsynchronousValidationRequest revalidationRequest) {
+        Args.notNull(revalidationRequest, "AsynchronousValidationRequest");
+        if (closed) {
+            throw new RejectedExecutionException("Scheduling strategy has been closed");
+        }
+        pending.add(revalidationRequest);
+        dispatch();
+        if (pending.size() > maxQueueSize) {
+            pending.removeLast();
+            throw new RejectedExecutionException("Revalidation queue is full");
+        }
+    }
+
+    /**
+     * Hands pending requests to the executor as long as there are idle
+     * workers and requests whose host is below its concurrency limit.
+     */
+    private void dispatch() {
+        while (activeWorkers < maxWorkers) {
+            final AsynchronousValidationRequest next = nextEligible();
+            if (next == null) {
+                return;
+            }
+            final HttpHost host = next.getTargetHost();
+            final Integer count = activePerHost.get(host);
+            activePerHost.put(host, count != null ? count + 1 : 1);
+            activeWorkers++;
+            try {
+                executor.execute(new Worker(next));
+            } catch (final RejectedExecutionException ex) {
+                release(host);
+                pending.addFirst(next);
+                return;
+            }
+        }
+    }
+
+    private AsynchronousValidationRequest nextEligible() {
+        AsynchronousValidationRequest best = null;
+        int bestHits = 0;
+        final Iterator<AsynchronousValidationRequest> it = pending.iterator();
+        while (it.hasNext()) {
+            final AsynchronousValidationRequest candidate = it.next();
+            final Integer count = activePerHost.get(candidate.getTargetHost());
+            if (count != null && count >= maxPerHost) {
+                continue;
+            }
+            final int hits = candidate.getHits();
+            if (best == null || hits > bestHits) {
+                best = candidate;
+                bestHits = hits;
+            }
+        }
+        if (best != null) {
+            pending.remove(best);
+        }
+        return best;
+    }
+
+    private void release(final HttpHost host) {
+        final Integer count = activePerHost.get(host);
+        if (count == null || count <= 1) {
+            activePerHost.remove(host);
+        } else {
+            activePerHost.put(host, count - 1);
+        }
+        activeWorkers--;
+    }
+
+    private synchronized void complete(final HttpHost host) {
+        release(host);
+        if (!closed) {
+            dispatch();
+        }
+    }
+
+    /**
+     * Returns the number of requests waiting for a worker.
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Returns the number of requests currently being executed.
+     */
+    public synchronized int getActiveCount() {
+        return activeWorkers;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        pending.clear();
+        executor.shutdown();
+    }
+
+    /**
+     * Visible for testing.
+     */
+    void awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        executor.awaitTermination(timeout, unit);
+    }
+
+    class Worker implements Runnable {
+
+        private final AsynchronousValidationRequest request;
+
+        Worker(final AsynchronousValidationRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        public void run() {
+            try {
+                request.run();
+            } finally {
+                complete(request.getTargetHost());
+            }
+        }
+
+    }
+
+}
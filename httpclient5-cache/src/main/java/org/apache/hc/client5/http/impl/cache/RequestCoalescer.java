@@ -0,0 +1,71 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Keeps track of backend requests in flight per cache key so that only one
+ * request per key is sent to the origin at a time (single-flight).
+ */
+final class RequestCoalescer {
+
+    private final ConcurrentMap<String, CountDownLatch> inflight;
+
+    RequestCoalescer() {
+        super();
+        this.inflight = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Attempts to become the executor of the request for the given key.
+     *
+     * @return {@code null} if the caller is to execute the request and must call
+     *   {@link #complete(String)} once the response has been stored, or the latch
+     *   that will be released once the request already in flight completes.
+     */
+    CountDownLatch join(final String key) {
+        return this.inflight.putIfAbsent(key, new CountDownLatch(1));
+    }
+
+    /**
+     * Releases all callers waiting for the request with the given key.
+     */
+    void complete(final String key) {
+        final CountDownLatch latch = this.inflight.remove(key);
+        if (latch != null) {
+            latch.countDown();
+        }
+    }
+
+    int getInflightCount() {
+        return this.inflight.size();
+    }
+
+}
@@ -0,0 +1,333 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.hc.client5.http.cache.BulkHttpCacheStorage;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateException;
+import org.apache.hc.core5.annotation.ThreadSafe;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * {@link HttpCacheStorage} implementation that fronts a remote storage such
+ * as {@link org.apache.hc.client5.http.impl.cache.memcached.MemcachedHttpCacheStorage}
+ * or {@link org.apache.hc.client5.http.impl.cache.ehcache.EhcacheHttpCacheStorage}
+ * with a small in-memory near-cache. Entries read from or written to
+ * the remote storage are kept locally for a short time, so that frequently
+ * requested entries do not cost a network round trip and deserialization
+ * on every lookup.
+ * <p>
+ * Puts are written through to the remote storage. Removals and updates are
+ * applied to the remote storage and invalidate the local copy. Bulk lookups
+ * and removals are passed on to the remote storage as such if it implements
+ * {@link BulkHttpCacheStorage}. Changes made by other processes sharing
+ * the remote storage are only picked up once the local copy expires, so
+ * the local time-to-live bounds how stale the near-cache may get.
+ * </p>
+ * <p>
+ * The local tier is a {@link ConcurrentHttpCacheStorage}, so local hits do
+ * not lock and entries compete for room in it the same way.
+ * </p>
+ * <p>
+ * Just like {@link BasicHttpCacheStorage} the local tier does NOT deallocate
+ * resources associated with the cache entries; it is intended for use with
+ * {@link HeapResource} and similar.
+ * </p>
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class TieredHttpCacheStorage implements BulkHttpCacheStorage {
+
+    public static final int DEFAULT_MAX_LOCAL_ENTRIES = 1000;
+    public static final long DEFAULT_LOCAL_TTL_MILLIS = 1000;
+
+    static final int LOCK_STRIPES = 32;
+
+    private final HttpCacheStorage remote;
+    private final CacheConfig localConfig;
+    private final long localTtlNanos;
+
+    private final AtomicLong localHitCount;
+    private final AtomicLong remoteHitCount;
+    private final AtomicLong missCount;
+
+    private volatile ConcurrentHttpCacheStorage local;
+
+    /**
+     * Generations of the local tier by key stripe, advanced on every change
+     * while holding the lock of the stripe. Entries read from the remote
+     * storage are only added to the local tier if no change happened to
+     * their stripe while the read was in progress, so that a slow read
+     * cannot reinstate an entry that has just been removed or updated.
+     */
+    private final AtomicLongArray generations;
+    private final ReentrantLock[] locks;
+
+    /**
+     * @param remote the storage holding the authoritative copy of the entries.
+     * @param maxLocalEntries maximum number of entries kept locally.
+     * @param maxLocalBytes maximum total size of the entries kept locally as estimated by
+     *   {@link CacheEntryWeigher}; zero or negative means no limit.
+     * @param localTtl how long an entry may be served locally without consulting
+     *   the remote storage.
+     * @param timeUnit the time unit of {@code localTtl}.
+     */
+    public TieredHttpCacheStorage(
+            final HttpCacheStorage remote,
+            final int maxLocalEntries,
+            final long maxLocalBytes,
+            final long localTtl,
+            final TimeUnit timeUnit) {
+        super();
+        Args.notNull(remote, "Remote storage");
+        Args.positive(maxLocalEntries, "Max local entries");
+        Args.notNegative(localTtl, "Local time to live");
+        Args.notNull(timeUnit, "Time unit");
+        this.remote = remote;
+        this.localConfig = CacheConfig.custom()
+                .setMaxCacheEntries(maxLocalEntries)
+                .setMaxCacheBytes(maxLocalBytes)
+                .build();
+        this.local = new ConcurrentHttpCacheStorage(this.localConfig);
+        this.localTtlNanos = timeUnit.toNanos(localTtl);
+        this.localHitCount = new AtomicLong();
+        this.remoteHitCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+        this.generations = new AtomicLongArray(LOCK_STRIPES);
+        this.locks = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            this.locks[i] = new ReentrantLock();
+        }
+    }
+
+    public TieredHttpCacheStorage(final HttpCacheStorage remote) {
+        this(remote, DEFAULT_MAX_LOCAL_ENTRIES, 0, DEFAULT_LOCAL_TTL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static int stripeFor(final String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return h & (LOCK_STRIPES - 1);
+    }
+
+    private HttpCacheEntry getLocal(final String key) {
+        // Entries stored earlier than that have expired
+        return this.local.getEntryStoredSince(key, System.nanoTime() - this.localTtlNanos + 1);
+    }
+
+    /**
+     * Adds the given entry to the local tier unless its stripe has changed
+     * since the given generation has been observed.
+     */
+    private void putLocal(final String key, final HttpCacheEntry entry, final long observedGeneration)
+            throws IOException {
+        final int stripe = stripeFor(key);
+        final ReentrantLock lock = this.locks[stripe];
+        lock.lock();
+        try {
+            if (this.generations.get(stripe) == observedGeneration) {
+                this.local.putEntry(key, entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void putEntry(final String key, final HttpCacheEntry entry) throws IOException {
+        Args.notNull(key, "URL");
+        this.remote.putEntry(key, entry);
+        final int stripe = stripeFor(key);
+        final ReentrantLock lock = this.locks[stripe];
+        lock.lock();
+        try {
+            this.generations.incrementAndGet(stripe);
+            this.local.putEntry(key, entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public HttpCacheEntry getEntry(final String key) throws IOException {
+        Args.notNull(key, "URL");
+        final HttpCacheEntry localEntry = getLocal(key);
+        if (localEntry != null) {
+            this.localHitCount.incrementAndGet();
+            return localEntry;
+        }
+        final long observedGeneration = this.generations.get(stripeFor(key));
+        final HttpCacheEntry entry = this.remote.getEntry(key);
+        if (entry == null) {
+            this.missCount.incrementAndGet();
+            return null;
+        }
+        this.remoteHitCount.incrementAndGet();
+        putLocal(key, entry, observedGeneration);
+        return entry;
+    }
+
+    @Override
+    public Map<String, HttpCacheEntry> getEntries(final Collection<String> keys) throws IOException {
+        Args.notNull(keys, "URLs");
+        final Map<String, HttpCacheEntry> entries = new HashMap<>();
+        final List<String> remoteKeys = new ArrayList<>();
+        final Map<String, Long> observedGenerations = new HashMap<>();
+        for (final String key : keys) {
+            final HttpCacheEntry localEntry = getLocal(key);
+            if (localEntry != null) {
+                entries.put(key, localEntry);
+            } else {
+                observedGenerations.put(key, this.generations.get(stripeFor(key)));
+                remoteKeys.add(key);
+            }
+        }
+        this.localHitCount.addAndGet(entries.size());
+        if (remoteKeys.isEmpty()) {
+            return entries;
+        }
+        final Map<String, HttpCacheEntry> remoteEntries = HttpCacheStorageSupport.getEntries(this.remote, remoteKeys);
+        this.remoteHitCount.addAndGet(remoteEntries.size());
+        this.missCount.addAndGet(remoteKeys.size() - remoteEntries.size());
+        for (final Map.Entry<String, HttpCacheEntry> remoteEntry : remoteEntries.entrySet()) {
+            putLocal(remoteEntry.getKey(), remoteEntry.getValue(), observedGenerations.get(remoteEntry.getKey()));
+        }
+        entries.putAll(remoteEntries);
+        return entries;
+    }
+
+    @Override
+    public void removeEntry(final String key) throws IOException {
+        Args.notNull(key, "URL");
+        try {
+            this.remote.removeEntry(key);
+        } finally {
+            invalidateLocal(key);
+        }
+    }
+
+    @Override
+    public void removeEntries(final Collection<String> keys) throws IOException {
+        Args.notNull(keys, "URLs");
+        try {
+            HttpCacheStorageSupport.removeEntries(this.remote, keys);
+        } finally {
+            for (final String key : keys) {
+                invalidateLocal(key);
+            }
+        }
+    }
+
+    @Override
+    public void updateEntry(
+            final String key,
+            final HttpCacheUpdateCallback callback) throws IOException, HttpCacheUpdateException {
+        Args.notNull(key, "URL");
+        try {
+            this.remote.updateEntry(key, callback);
+        } finally {
+            invalidateLocal(key);
+        }
+    }
+
+    private void invalidateLocal(final String key) throws IOException {
+        final int stripe = stripeFor(key);
+        final ReentrantLock lock = this.locks[stripe];
+        lock.lock();
+        try {
+            this.generations.incrementAndGet(stripe);
+            this.local.removeEntry(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Discards all entries held in the local tier.
+     */
+    public void clearLocal() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            this.locks[i].lock();
+            try {
+                this.generations.incrementAndGet(i);
+            } finally {
+                this.locks[i].unlock();
+            }
+        }
+        this.local = new ConcurrentHttpCacheStorage(this.localConfig);
+    }
+
+    /**
+     * Returns the number of entries currently held in the local tier.
+     */
+    public int getLocalSize() {
+        return this.local.size();
+    }
+
+    /**
+     * Returns the number of lookups served by the local tier.
+     */
+    public long getLocalHitCount() {
+        return this.localHitCount.get();
+    }
+
+    /**
+     * Returns the number of lookups served by the remote storage.
+     */
+    public long getRemoteHitCount() {
+        return this.remoteHitCount.get();
+    }
+
+    /**
+     * Returns the number of lookups found in neither tier.
+     */
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "[local hits=" + getLocalHitCount() + ", remote hits=" + getRemoteHitCount()
+                + ", misses=" + getMissCount() + "]";
+    }
+
+}
@@ -29,10 +29,13 @@ package org.apache.hc.client5.http.impl.cache.ehcache;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
+import org.apache.hc.client5.http.cache.BulkHttpCacheStorage;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.cache.HttpCacheEntrySerializer;
-import org.apache.hc.client5.http.cache.HttpCacheStorage;
 import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
 import org.apache.hc.client5.http.cache.HttpCacheUpdateException;
 import org.apache.hc.client5.http.impl.cache.CacheConfig;
@@ -53,12 +56,19 @@ import net.sf.ehcache.Element;
  * {@link CacheConfig#getMaxCacheEntries()}  maximum cache entries}
  * specified by a provided {@link CacheConfig}.</p>
  *
+ * <p>This backend does not serialize access to the Ehcache, which is thread
+ * safe itself. Updates are applied with atomic
+ * {@link Ehcache#putIfAbsent(Element) putIfAbsent} and
+ * {@link Ehcache#replace(Element, Element) replace} operations and retried
+ * up to {@link CacheConfig#getMaxUpdateRetries()} times if the entry has been
+ * changed concurrently.</p>
+ *
  * <p>Please refer to the <a href="http://ehcache.org/documentation/index.html">
  * Ehcache documentation</a> for details on how to configure the Ehcache
  * itself.</p>
  * @since 4.1
  */
-public class EhcacheHttpCacheStorage implements HttpCacheStorage {
+public class EhcacheHttpCacheStorage implements BulkHttpCacheStorage {
 
     private final Ehcache cache;
     private final HttpCacheEntrySerializer serializer;
@@ -102,14 +112,18 @@ public class EhcacheHttpCacheStorage implements HttpCacheStorage {
     }
 
     @Override
-    public synchronized void putEntry(final String key, final HttpCacheEntry entry) throws IOException {
+    public void putEntry(final String key, final HttpCacheEntry entry) throws IOException {
+        cache.put(toElement(key, entry));
+    }
+
+    private Element toElement(final String key, final HttpCacheEntry entry) throws IOException {
         final ByteArrayOutputStream bos = new ByteArrayOutputStream();
         serializer.writeTo(entry, bos);
-        cache.put(new Element(key, bos.toByteArray()));
+        return new Element(key, bos.toByteArray());
     }
 
     @Override
-    public synchronized HttpCacheEntry getEntry(final String key) throws IOException {
+    public HttpCacheEntry getEntry(final String key) throws IOException {
         final Element e = cache.get(key);
         if(e == null){
             return null;
@@ -119,13 +133,36 @@ public class EhcacheHttpCacheStorage implements HttpCacheStorage {
         return serializer.readFrom(new ByteArrayInputStream(data));
     }
 
+    /**
+     * @since 5.0
+     */
+    @Override
+    public Map<String, HttpCacheEntry> getEntries(final Collection<String> keys) throws IOException {
+        final Map<String, HttpCacheEntry> entries = new HashMap<>();
+        for (final Map.Entry<Object, Element> e : cache.getAll(keys).entrySet()) {
+            if (e.getValue() != null) {
+                final byte[] data = (byte[])e.getValue().getObjectValue();
+                entries.put((String) e.getKey(), serializer.readFrom(new ByteArrayInputStream(data)));
+            }
+        }
+        return entries;
+    }
+
     @Override
-    public synchronized void removeEntry(final String key) {
+    public void removeEntry(final String key) {
         cache.remove(key);
     }
 
+    /**
+     * @since 5.0
+     */
     @Override
-    public synchronized void updateEntry(final String key, final HttpCacheUpdateCallback callback)
+    public void removeEntries(final Collection<String> keys) {
+        cache.removeAll(keys);
+    }
+
+    @Override
+    public void updateEntry(final String key, final HttpCacheUpdateCallback callback)
             throws IOException, HttpCacheUpdateException {
         int numRetries = 0;
         do{
@@ -138,23 +175,29 @@ public class EhcacheHttpCacheStorage implements HttpCacheStorage {
             }
 
             final HttpCacheEntry updatedEntry = callback.update(existingEntry);
-
-            if (existingEntry == null) {
-                putEntry(key, updatedEntry);
-                return;
-            } else {
-                // Attempt to do a CAS replace, if we fail then retry
-                // While this operation should work fine within this instance, multiple instances
-                //  could trample each others' data
-                final ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                serializer.writeTo(updatedEntry, bos);
-                final Element newElement = new Element(key, bos.toByteArray());
-                if (cache.replace(oldElement, newElement)) {
+            if (updatedEntry == null) {
+                // No entry is to be kept; remove the one read unless it has
+                // been replaced in the meantime, in which case retry
+                if (oldElement == null || cache.removeElement(oldElement)) {
                     return;
-                }else{
-                    numRetries++;
                 }
+                numRetries++;
+                continue;
+            }
+            final Element newElement = toElement(key, updatedEntry);
+
+            // Attempt to do a CAS insert or replace, if we fail then retry
+            // with whatever another thread has stored in the meantime
+            final boolean updated;
+            if (oldElement == null) {
+                updated = cache.putIfAbsent(newElement) == null;
+            } else {
+                updated = cache.replace(oldElement, newElement);
+            }
+            if (updated) {
+                return;
             }
+            numRetries++;
         }while(numRetries <= maxUpdateRetries);
         throw new HttpCacheUpdateException("Failed to processChallenge");
     }
@@ -28,14 +28,23 @@ package org.apache.hc.client5.http.impl.cache.memcached;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hc.client5.http.cache.AsyncHttpCacheStorage;
+import org.apache.hc.client5.http.cache.BulkHttpCacheStorage;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
-import org.apache.hc.client5.http.cache.HttpCacheStorage;
 import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
 import org.apache.hc.client5.http.cache.HttpCacheUpdateException;
 import org.apache.hc.client5.http.impl.cache.CacheConfig;
+import org.apache.hc.core5.concurrent.BasicFuture;
 
 import net.spy.memcached.CASResponse;
 import net.spy.memcached.CASValue;
@@ -81,6 +90,13 @@ import net.spy.memcached.OperationTimeoutException;
  * </p>
  *
  * <p>
+ * Bulk lookups are performed with a single <i>memcached</i> multi-get,
+ * bulk removals pipeline the individual deletes, and the asynchronous
+ * operations map directly onto the asynchronous operations of the
+ * <i>memcached</i> client.
+ * </p>
+ *
+ * <p>
  * Please refer to the <a href="http://code.google.com/p/memcached/wiki/NewStart">
  * memcached documentation</a> and in particular to the documentation for
  * the <a href="http://code.google.com/p/spymemcached/">spymemcached
@@ -90,7 +106,7 @@ import net.spy.memcached.OperationTimeoutException;
  *
  * @since 4.1
  */
-public class MemcachedHttpCacheStorage implements HttpCacheStorage {
+public class MemcachedHttpCacheStorage implements BulkHttpCacheStorage, AsyncHttpCacheStorage {
 
     private static final Log log = LogFactory.getLog(MemcachedHttpCacheStorage.class);
 
@@ -229,6 +245,198 @@ public class MemcachedHttpCacheStorage implements HttpCacheStorage {
         }
     }
 
+    /**
+     * @since 5.0
+     */
+    @Override
+    public Map<String, HttpCacheEntry> getEntries(final Collection<String> urls) throws IOException {
+        final Map<String, String> urlsByKey = getCacheKeys(urls);
+        if (urlsByKey.isEmpty()) {
+            return new HashMap<>();
+        }
+        try {
+            return reconstituteEntries(client.getBulk(urlsByKey.keySet()), urlsByKey);
+        } catch (final OperationTimeoutException ex) {
+            throw new MemcachedOperationTimeoutException(ex);
+        }
+    }
+
+    private Map<String, String> getCacheKeys(final Collection<String> urls) {
+        final Map<String, String> urlsByKey = new HashMap<>(urls.size() * 2);
+        for (final String url : urls) {
+            final String key = getCacheKey(url);
+            if (key != null) {
+                urlsByKey.put(key, url);
+            }
+        }
+        return urlsByKey;
+    }
+
+    private Map<String, HttpCacheEntry> reconstituteEntries(
+            final Map<String, Object> values, final Map<String, String> urlsByKey) {
+        final Map<String, HttpCacheEntry> entries = new HashMap<>(values.size() * 2);
+        for (final Map.Entry<String, Object> value : values.entrySet()) {
+            final String url = urlsByKey.get(value.getKey());
+            final MemcachedCacheEntry mce = reconstituteEntry(value.getValue());
+            if (url != null && mce != null && url.equals(mce.getStorageKey())) {
+                entries.put(url, mce.getHttpCacheEntry());
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Removes the entries stored under the given keys. Like
+     * {@link #removeEntry(String)}, the deletes are sent without waiting
+     * for them to complete; use {@link #removeEntryAsync(String)} to
+     * track their outcome.
+     *
+     * @since 5.0
+     */
+    @Override
+    public void removeEntries(final Collection<String> urls) throws IOException {
+        try {
+            for (final String key : getCacheKeys(urls).keySet()) {
+                client.delete(key);
+            }
+        } catch (final OperationTimeoutException ex) {
+            throw new MemcachedOperationTimeoutException(ex);
+        }
+    }
+
+    /**
+     * @since 5.0
+     */
+    @Override
+    public Future<Boolean> putEntryAsync(final String url, final HttpCacheEntry entry) throws IOException {
+        final byte[] bytes = serializeEntry(url, entry);
+        final String key = getCacheKey(url);
+        if (key == null) {
+            return completed(Boolean.FALSE);
+        }
+        try {
+            return client.set(key, 0, bytes);
+        } catch (final OperationTimeoutException ex) {
+            throw new MemcachedOperationTimeoutException(ex);
+        }
+    }
+
+    /**
+     * @since 5.0
+     */
+    @Override
+    public Future<HttpCacheEntry> getEntryAsync(final String url) throws IOException {
+        final String key = getCacheKey(url);
+        if (key == null) {
+            return completed(null);
+        }
+        try {
+            return new TransformingFuture<Object, HttpCacheEntry>(client.asyncGet(key)) {
+
+                @Override
+                HttpCacheEntry transform(final Object value) {
+                    final MemcachedCacheEntry mce = reconstituteEntry(value);
+                    if (mce == null || !url.equals(mce.getStorageKey())) {
+                        return null;
+                    }
+                    return mce.getHttpCacheEntry();
+                }
+
+            };
+        } catch (final OperationTimeoutException ex) {
+            throw new MemcachedOperationTimeoutException(ex);
+        }
+    }
+
+    /**
+     * @since 5.0
+     */
+    @Override
+    public Future<Map<String, HttpCacheEntry>> getEntriesAsync(final Collection<String> urls) throws IOException {
+        final Map<String, String> urlsByKey = getCacheKeys(urls);
+        if (urlsByKey.isEmpty()) {
+            return MemcachedHttpCacheStorage.<Map<String, HttpCacheEntry>>completed(
+                    new HashMap<String, HttpCacheEntry>());
+        }
+        try {
+            return new TransformingFuture<Map<String, Object>, Map<String, HttpCacheEntry>>(
+                    client.asyncGetBulk(urlsByKey.keySet())) {
+
+                @Override
+                Map<String, HttpCacheEntry> transform(final Map<String, Object> values) {
+                    return reconstituteEntries(values, urlsByKey);
+                }
+
+            };
+        } catch (final OperationTimeoutException ex) {
+            throw new MemcachedOperationTimeoutException(ex);
+        }
+    }
+
+    /**
+     * @since 5.0
+     */
+    @Override
+    public Future<Boolean> removeEntryAsync(final String url) throws IOException {
+        final String key = getCacheKey(url);
+        if (key == null) {
+            return completed(Boolean.FALSE);
+        }
+        try {
+            return client.delete(key);
+        } catch (final OperationTimeoutException ex) {
+            throw new MemcachedOperationTimeoutException(ex);
+        }
+    }
+
+    private static <T> Future<T> completed(final T result) {
+        final BasicFuture<T> future = new BasicFuture<>(null);
+        future.completed(result);
+        return future;
+    }
+
+    /**
+     * Future converting the result of a <i>memcached</i> operation
+     * once it has completed.
+     */
+    abstract static class TransformingFuture<S, T> implements Future<T> {
+
+        private final Future<S> future;
+
+        TransformingFuture(final Future<S> future) {
+            this.future = future;
+        }
+
+        abstract T transform(S value);
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            return this.future.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.future.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return this.future.isDone();
+        }
+
+        @Override
+        public T get() throws InterruptedException, ExecutionException {
+            return transform(this.future.get());
+        }
+
+        @Override
+        public T get(final long timeout, final TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            return transform(this.future.get(timeout, unit));
+        }
+
+    }
+
     @Override
     public void updateEntry(final String url, final HttpCacheUpdateCallback callback)
             throws HttpCacheUpdateException, IOException {
@@ -0,0 +1,434 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache.memcached;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheEntrySerializer;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateException;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.client5.http.impl.cache.CacheConfig;
+import org.apache.hc.client5.http.impl.cache.CompactHttpCacheEntrySerializer;
+import org.apache.hc.client5.http.impl.cache.HeapResource;
+import org.apache.hc.core5.util.Args;
+
+import net.spy.memcached.CASResponse;
+import net.spy.memcached.CASValue;
+import net.spy.memcached.DefaultConnectionFactory;
+import net.spy.memcached.MemcachedClient;
+import net.spy.memcached.MemcachedClientIF;
+import net.spy.memcached.OperationTimeoutException;
+
+/**
+ * <p>
+ * Storage backend using an external <i>memcached</i> that, unlike
+ * {@link MemcachedHttpCacheStorage}, stores the metadata of a cache entry
+ * and its response body under separate keys.
+ * </p>
+ * <ul>
+ * <li>The metadata (status line, headers, variant map) is stored under
+ * the hashed storage key together with the storage key itself, to detect
+ * hash collisions, and a reference to the body.</li>
+ * <li>The body is stored content-addressed under keys derived from its
+ * SHA-256 digest and split into chunks of a configurable size, so that
+ * bodies larger than the <i>memcached</i> item size limit can be cached.</li>
+ * </ul>
+ * <p>
+ * Identical bodies cached for different keys are stored only once, and
+ * an update that leaves the body unchanged, such as refreshing headers
+ * after a {@code 304 Not Modified} revalidation, only rewrites the small
+ * metadata item.
+ * </p>
+ * <p>
+ * Since bodies may be shared, removing an entry only removes its metadata.
+ * Bodies no longer referenced are left for <i>memcached</i> to evict.
+ * An entry whose body has been evicted is treated as a cache miss.
+ * </p>
+ *
+ * @since 5.0
+ */
+public class SplitMemcachedHttpCacheStorage implements HttpCacheStorage {
+
+    public static final int DEFAULT_CHUNK_SIZE = 512 * 1024;
+
+    static final int FORMAT_VERSION = 1;
+    static final String BODY_KEY_PREFIX = "hc-body:";
+
+    private static final Log log = LogFactory.getLog(SplitMemcachedHttpCacheStorage.class);
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final MemcachedClientIF client;
+    private final KeyHashingScheme keyHashingScheme;
+    private final HttpCacheEntrySerializer serializer;
+    private final int maxUpdateRetries;
+    private final int chunkSize;
+    private final long operationTimeoutMs;
+
+    /**
+     * @param client how to talk to <i>memcached</i>
+     * @param config apply HTTP cache-related options
+     * @param keyHashingScheme how to map higher-level logical "storage keys"
+     *   onto "cache keys" suitable for use with memcached
+     * @param chunkSize maximum size of the items a body is split into; should
+     *   leave some headroom below the item size limit of <i>memcached</i>
+     */
+    public SplitMemcachedHttpCacheStorage(
+            final MemcachedClientIF client,
+            final CacheConfig config,
+            final KeyHashingScheme keyHashingScheme,
+            final int chunkSize) {
+        this.client = Args.notNull(client, "Memcached client");
+        this.maxUpdateRetries = Args.notNull(config, "Cache config").getMaxUpdateRetries();
+        this.keyHashingScheme = Args.notNull(keyHashingScheme, "Key hashing scheme");
+        this.chunkSize = Args.positive(chunkSize, "Chunk size");
+        this.serializer = new CompactHttpCacheEntrySerializer();
+        this.operationTimeoutMs = client instanceof MemcachedClient
+                ? ((MemcachedClient) client).getOperationTimeout()
+                : DefaultConnectionFactory.DEFAULT_OPERATION_TIMEOUT;
+    }
+
+    public SplitMemcachedHttpCacheStorage(final MemcachedClientIF client) {
+        this(client, CacheConfig.DEFAULT, new SHA256KeyHashingScheme(), DEFAULT_CHUNK_SIZE);
+    }
+
+    @Override
+    public void putEntry(final String url, final HttpCacheEntry entry) throws IOException {
+        final String key = getCacheKey(url);
+        if (key == null) {
+            return;
+        }
+        final Body body = Body.of(entry.getResource(), this.chunkSize);
+        storeBody(body);
+        try {
+            client.set(key, 0, encodeMetadata(url, entry, body));
+        } catch (final OperationTimeoutException ex) {
+            throw new MemcachedOperationTimeoutException(ex);
+        }
+    }
+
+    @Override
+    public HttpCacheEntry getEntry(final String url) throws IOException {
+        final String key = getCacheKey(url);
+        if (key == null) {
+            return null;
+        }
+        try {
+            return loadEntry(url, decodeMetadata(client.get(key)));
+        } catch (final OperationTimeoutException ex) {
+            throw new MemcachedOperationTimeoutException(ex);
+        }
+    }
+
+    @Override
+    public void removeEntry(final String url) throws IOException {
+        final String key = getCacheKey(url);
+        if (key == null) {
+            return;
+        }
+        try {
+            client.delete(key);
+        } catch (final OperationTimeoutException ex) {
+            throw new MemcachedOperationTimeoutException(ex);
+        }
+    }
+
+    @Override
+    public void updateEntry(final String url, final HttpCacheUpdateCallback callback)
+            throws HttpCacheUpdateException, IOException {
+        final String key = getCacheKey(url);
+        if (key == null) {
+            throw new HttpCacheUpdateException("couldn't generate cache key");
+        }
+        int numRetries = 0;
+        do {
+            try {
+                final CASValue<Object> v = client.gets(key);
+                final Metadata metadata = v != null ? decodeMetadata(v.getValue()) : null;
+                final HttpCacheEntry existingEntry = loadEntry(url, metadata);
+                final HttpCacheEntry updatedEntry = callback.update(existingEntry);
+
+                if (updatedEntry == null) {
+                    if (existingEntry != null) {
+                        client.delete(key);
+                    }
+                    return;
+                }
+                if (existingEntry == null) {
+                    putEntry(url, updatedEntry);
+                    return;
+                }
+                final Body body = Body.of(updatedEntry.getResource(), this.chunkSize);
+                if (body != null && !body.isSameAs(metadata)) {
+                    storeBody(body);
+                }
+                final CASResponse casResult = client.cas(key, v.getCas(), encodeMetadata(url, updatedEntry, body));
+                if (casResult != CASResponse.OK) {
+                    numRetries++;
+                } else {
+                    return;
+                }
+            } catch (final OperationTimeoutException ex) {
+                throw new MemcachedOperationTimeoutException(ex);
+            }
+        } while (numRetries <= maxUpdateRetries);
+
+        throw new HttpCacheUpdateException("Failed to processChallenge");
+    }
+
+    private String getCacheKey(final String url) {
+        try {
+            return keyHashingScheme.hash(url);
+        } catch (final MemcachedKeyHashingException mkhe) {
+            return null;
+        }
+    }
+
+    static String getBodyKey(final String digest, final int chunkSize, final int chunk) {
+        return BODY_KEY_PREFIX + digest + ":" + chunkSize + ":" + chunk;
+    }
+
+    private void storeBody(final Body body) throws IOException {
+        if (body == null) {
+            return;
+        }
+        final List<Future<Boolean>> futures = new ArrayList<>(body.chunks.size());
+        try {
+            for (int i = 0; i < body.chunks.size(); i++) {
+                // Content-addressed: an existing item already holds the same bytes
+                futures.add(client.add(getBodyKey(body.digest, body.chunkSize, i), 0, body.chunks.get(i)));
+            }
+        } catch (final OperationTimeoutException ex) {
+            throw new MemcachedOperationTimeoutException(ex);
+        }
+        for (final Future<Boolean> future : futures) {
+            await(future);
+        }
+    }
+
+    private <T> T await(final Future<T> future) throws IOException {
+        try {
+            return future.get(this.operationTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof OperationTimeoutException || cause instanceof TimeoutException) {
+                throw new MemcachedOperationTimeoutException(cause);
+            }
+            throw new IOException(cause);
+        } catch (final TimeoutException | RuntimeException ex) {
+            // spymemcached reports operation timeouts as plain runtime exceptions
+            throw new MemcachedOperationTimeoutException(ex);
+        }
+    }
+
+    private HttpCacheEntry loadEntry(final String url, final Metadata metadata) {
+        if (metadata == null || !url.equals(metadata.storageKey)) {
+            return null;
+        }
+        final HttpCacheEntry entry = metadata.entry;
+        if (metadata.bodyLength < 0) {
+            return entry;
+        }
+        final int chunkCount = Body.chunkCount(metadata.bodyLength, metadata.chunkSize);
+        final List<String> bodyKeys = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            bodyKeys.add(getBodyKey(metadata.digest, metadata.chunkSize, i));
+        }
+        final Map<String, Object> chunks = chunkCount > 0 ? client.getBulk(bodyKeys) : null;
+        final byte[] content = new byte[(int) metadata.bodyLength];
+        int off = 0;
+        for (final String bodyKey : bodyKeys) {
+            final Object chunk = chunks.get(bodyKey);
+            if (!(chunk instanceof byte[]) || ((byte[]) chunk).length > content.length - off) {
+                log.debug("Body of cache entry " + url + " is not available");
+                return null;
+            }
+            final byte[] bytes = (byte[]) chunk;
+            System.arraycopy(bytes, 0, content, off, bytes.length);
+            off += bytes.length;
+        }
+        if (off != content.length) {
+            log.debug("Body of cache entry " + url + " is incomplete");
+            return null;
+        }
+        return new HttpCacheEntry(entry.getRequestDate(), entry.getResponseDate(), entry.getStatusLine(),
+                entry.getAllHeaders(), new HeapResource(content), entry.getVariantMap(), entry.getRequestMethod());
+    }
+
+    private byte[] encodeMetadata(final String url, final HttpCacheEntry entry, final Body body) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bos);
+        out.writeByte(FORMAT_VERSION);
+        final byte[] storageKey = url.getBytes(UTF8);
+        out.writeInt(storageKey.length);
+        out.write(storageKey);
+        if (body != null) {
+            out.writeLong(body.length);
+            out.writeUTF(body.digest);
+            out.writeInt(body.chunkSize);
+        } else {
+            out.writeLong(-1);
+        }
+        final HttpCacheEntry withoutBody = new HttpCacheEntry(entry.getRequestDate(), entry.getResponseDate(),
+                entry.getStatusLine(), entry.getAllHeaders(), null, entry.getVariantMap(), entry.getRequestMethod());
+        serializer.writeTo(withoutBody, out);
+        out.flush();
+        return bos.toByteArray();
+    }
+
+    private Metadata decodeMetadata(final Object value) {
+        if (!(value instanceof byte[])) {
+            if (value != null) {
+                log.warn("got a non-bytearray back from memcached: " + value);
+            }
+            return null;
+        }
+        try {
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream((byte[]) value));
+            if (in.readByte() != FORMAT_VERSION) {
+                return null;
+            }
+            final Metadata metadata = new Metadata();
+            final byte[] storageKey = new byte[in.readInt()];
+            in.readFully(storageKey);
+            metadata.storageKey = new String(storageKey, UTF8);
+            metadata.bodyLength = in.readLong();
+            if (metadata.bodyLength >= 0) {
+                metadata.digest = in.readUTF();
+                metadata.chunkSize = in.readInt();
+                if (metadata.bodyLength > Integer.MAX_VALUE || metadata.chunkSize <= 0) {
+                    return null;
+                }
+            }
+            metadata.entry = serializer.readFrom(in);
+            return metadata;
+        } catch (final IOException | RuntimeException ex) {
+            log.debug("Unable to decode cache entry metadata", ex);
+            return null;
+        }
+    }
+
+    static final class Metadata {
+
+        String storageKey;
+        long bodyLength;
+        String digest;
+        int chunkSize;
+        HttpCacheEntry entry;
+
+    }
+
+    static final class Body {
+
+        final long length;
+        final String digest;
+        final int chunkSize;
+        final List<byte[]> chunks;
+
+        Body(final long length, final String digest, final int chunkSize, final List<byte[]> chunks) {
+            this.length = length;
+            this.digest = digest;
+            this.chunkSize = chunkSize;
+            this.chunks = chunks;
+        }
+
+        static int chunkCount(final long length, final int chunkSize) {
+            return (int) ((length + chunkSize - 1) / chunkSize);
+        }
+
+        static Body of(final Resource resource, final int chunkSize) throws IOException {
+            if (resource == null) {
+                return null;
+            }
+            final MessageDigest md;
+            try {
+                md = MessageDigest.getInstance("SHA-256");
+            } catch (final NoSuchAlgorithmException ex) {
+                throw new MemcachedKeyHashingException(ex);
+            }
+            final List<byte[]> chunks = new ArrayList<>();
+            long length = 0;
+            try (InputStream instream = resource.getInputStream()) {
+                byte[] chunk = new byte[chunkSize];
+                int off = 0;
+                int n;
+                while ((n = instream.read(chunk, off, chunk.length - off)) != -1) {
+                    off += n;
+                    if (off == chunk.length) {
+                        md.update(chunk);
+                        chunks.add(chunk);
+                        length += off;
+                        chunk = new byte[chunkSize];
+                        off = 0;
+                    }
+                }
+                if (off > 0) {
+                    final byte[] last = new byte[off];
+                    System.arraycopy(chunk, 0, last, 0, off);
+                    md.update(last);
+                    chunks.add(last);
+                    length += off;
+                }
+            }
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Response body too large: " + length);
+            }
+            return new Body(length, Hex.encodeHexString(md.digest()), chunkSize, chunks);
+        }
+
+        boolean isSameAs(final Metadata metadata) {
+            return metadata != null && metadata.bodyLength == this.length
+                    && this.digest.equals(metadata.digest) && metadata.chunkSize == this.chunkSize;
+        }
+
+    }
+
+}
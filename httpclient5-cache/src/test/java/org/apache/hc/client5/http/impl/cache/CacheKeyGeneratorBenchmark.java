@@ -0,0 +1,113 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.methods.HttpGet;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures cache key generation by {@link CacheKeyGenerator}, comparing the
+ * fast canonicalization of simple {@code http} URIs with the generic one.
+ * <p>
+ * Run {@link #main(String[])} from the test classpath to execute the benchmark.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheKeyGeneratorBenchmark {
+
+    @Param({"/index.html", "http://www.example.com/search?q=http+client&page=2"})
+    public String requestUri;
+
+    private CacheKeyGenerator keyGenerator;
+    private HttpHost host;
+    private HttpRequest request;
+    private String absoluteUri;
+    private HttpCacheEntry variantEntry;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.keyGenerator = new CacheKeyGenerator();
+        this.host = new HttpHost("www.example.com");
+        this.request = new HttpGet(this.requestUri);
+        this.request.setHeader("Accept-Encoding", "gzip, deflate");
+        this.request.setHeader("User-Agent", "Apache-HttpClient/5.0 (Java/1.7)");
+        this.absoluteUri = this.requestUri.startsWith("/")
+                ? this.host.toString() + this.requestUri : this.requestUri;
+        this.variantEntry = HttpTestUtils.makeCacheEntry(new Header[] {
+                new BasicHeader("Vary", "Accept-Encoding, User-Agent") });
+    }
+
+    @Benchmark
+    public String getURI() {
+        return this.keyGenerator.getURI(this.host, this.request);
+    }
+
+    @Benchmark
+    public String canonicalizeGenericUri() {
+        return this.keyGenerator.canonicalizeGenericUri(this.absoluteUri);
+    }
+
+    @Benchmark
+    public String getVariantURI() {
+        return this.keyGenerator.getVariantURI(this.host, this.request, this.variantEntry);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(CacheKeyGeneratorBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+}
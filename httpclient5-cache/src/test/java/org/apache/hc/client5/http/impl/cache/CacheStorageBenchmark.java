@@ -0,0 +1,132 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares throughput of {@link BasicHttpCacheStorage} and
+ * {@link ConcurrentHttpCacheStorage} under read-heavy mixes of operations.
+ * <p>
+ * Run {@link #main(String[])} from the test classpath to execute the benchmark
+ * with 1 to 64 threads. Keys are drawn from a skewed distribution over twice
+ * as many keys as the storage can hold, so that a share of the writes cause
+ * evictions.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheStorageBenchmark {
+
+    @Param({"BASIC", "CONCURRENT"})
+    public String storageType;
+
+    @Param({"100", "95", "80"})
+    public int readPercentage;
+
+    @Param({"10000"})
+    public int maxEntries;
+
+    private HttpCacheStorage storage;
+    private String[] keys;
+    private HttpCacheEntry entry;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        final CacheConfig config = CacheConfig.custom()
+                .setMaxCacheEntries(this.maxEntries)
+                .build();
+        if (this.storageType.equals("BASIC")) {
+            this.storage = new BasicHttpCacheStorage(config);
+        } else {
+            this.storage = new ConcurrentHttpCacheStorage(config);
+        }
+        this.keys = new String[2 * this.maxEntries];
+        for (int i = 0; i < this.keys.length; i++) {
+            this.keys[i] = "http://example.com:80/resource/" + i;
+        }
+        this.entry = HttpTestUtils.makeCacheEntry();
+        for (int i = 0; i < this.maxEntries; i++) {
+            this.storage.putEntry(this.keys[i], this.entry);
+        }
+    }
+
+    private String nextKey(final ThreadLocalRandom random) {
+        // Square of a uniform variable favors low indexes
+        final double r = random.nextDouble();
+        return this.keys[(int) (r * r * this.keys.length)];
+    }
+
+    @Benchmark
+    public HttpCacheEntry readWrite() throws IOException {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final String key = nextKey(random);
+        if (random.nextInt(100) < this.readPercentage) {
+            return this.storage.getEntry(key);
+        }
+        this.storage.putEntry(key, this.entry);
+        return this.entry;
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        final int[] threadCounts = { 1, 4, 16, 64 };
+        for (final int threads: threadCounts) {
+            final Options options = new OptionsBuilder()
+                    .include(CacheStorageBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+}
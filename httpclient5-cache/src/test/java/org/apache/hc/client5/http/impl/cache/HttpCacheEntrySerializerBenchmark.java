@@ -0,0 +1,157 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.cache.HeaderConstants;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheEntrySerializer;
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.HttpVersion;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.http.message.BasicStatusLine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares serialized size and throughput of {@link DefaultHttpCacheEntrySerializer}
+ * and {@link CompactHttpCacheEntrySerializer} on entries resembling typical
+ * cacheable responses.
+ * <p>
+ * Run {@link #main(String[])} from the test classpath to print the serialized
+ * sizes and execute the benchmark.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpCacheEntrySerializerBenchmark {
+
+    @Param({"DEFAULT", "COMPACT"})
+    public String serializerType;
+
+    @Param({"0", "4096", "65536"})
+    public int bodySize;
+
+    private HttpCacheEntrySerializer serializer;
+    private HttpCacheEntry entry;
+    private byte[] serialized;
+    private ByteArrayOutputStream buffer;
+
+    static HttpCacheEntrySerializer createSerializer(final String type) {
+        return type.equals("DEFAULT")
+                ? new DefaultHttpCacheEntrySerializer()
+                : new CompactHttpCacheEntrySerializer();
+    }
+
+    static HttpCacheEntry createEntry(final int bodySize) {
+        final Date now = new Date();
+        final Header[] headers = new Header[] {
+                new BasicHeader("Date", DateUtils.formatDate(now)),
+                new BasicHeader("Server", "Apache/2.4.7 (Ubuntu)"),
+                new BasicHeader("Content-Type", "text/html; charset=UTF-8"),
+                new BasicHeader("Content-Length", Integer.toString(bodySize)),
+                new BasicHeader("Cache-Control", "public, max-age=3600"),
+                new BasicHeader("Expires", DateUtils.formatDate(new Date(now.getTime() + 3600000L))),
+                new BasicHeader("ETag", "\"3e86-410-3596fbbc\""),
+                new BasicHeader("Last-Modified", DateUtils.formatDate(new Date(now.getTime() - 86400000L))),
+                new BasicHeader("Vary", "Accept-Encoding"),
+                new BasicHeader("Accept-Ranges", "bytes"),
+                new BasicHeader("Via", "1.1 localhost (Apache-HttpClient/5.0 (cache))"),
+                new BasicHeader("X-Request-Id", "f81d4fae-7dec-11d0-a765-00a0c91e6bf6")
+        };
+        final Map<String, String> variantMap = new HashMap<>();
+        variantMap.put("{Accept-Encoding=gzip}", "{Accept-Encoding=gzip}http://example.com:80/index.html");
+        return new HttpCacheEntry(new Date(now.getTime() - 100), now,
+                new BasicStatusLine(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK"),
+                headers, new HeapResource(HttpTestUtils.getRandomBytes(bodySize)), variantMap,
+                HeaderConstants.GET_METHOD);
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.serializer = createSerializer(this.serializerType);
+        this.entry = createEntry(this.bodySize);
+        this.buffer = new ByteArrayOutputStream(this.bodySize + 4096);
+        this.serializer.writeTo(this.entry, this.buffer);
+        this.serialized = this.buffer.toByteArray();
+    }
+
+    @Benchmark
+    public int write() throws IOException {
+        this.buffer.reset();
+        this.serializer.writeTo(this.entry, this.buffer);
+        return this.buffer.size();
+    }
+
+    @Benchmark
+    public HttpCacheEntry read() throws IOException {
+        return this.serializer.readFrom(new ByteArrayInputStream(this.serialized));
+    }
+
+    public static void main(final String[] args) throws IOException, RunnerException {
+        for (final int bodySize: new int[] { 0, 4096, 65536 }) {
+            final HttpCacheEntry entry = createEntry(bodySize);
+            for (final String type: new String[] { "DEFAULT", "COMPACT" }) {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                createSerializer(type).writeTo(entry, out);
+                System.out.println(type + " serializer, " + bodySize + " byte body: " + out.size() + " bytes");
+            }
+        }
+        final Options options = new OptionsBuilder()
+                .include(HttpCacheEntrySerializerBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+}
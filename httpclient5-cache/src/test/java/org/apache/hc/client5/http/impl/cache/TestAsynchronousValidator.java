@@ -209,4 +209,30 @@ public class TestAsynchronousValidator {
 
         verify(mockSchedulingStrategy).close();
     }
+
+    @Test
+    public void testCountsScheduledAndDroppedRevalidations() {
+        impl = new AsynchronousValidator(mockSchedulingStrategy);
+
+        when(mockCacheEntry.hasVariants()).thenReturn(false);
+
+        impl.revalidateCacheEntry(mockClient, route, request, context, mockExecAware, mockCacheEntry);
+        impl.revalidateCacheEntry(mockClient, route, request, context, mockExecAware, mockCacheEntry);
+
+        final ArgumentCaptor<AsynchronousValidationRequest> cap = ArgumentCaptor.forClass(AsynchronousValidationRequest.class);
+        verify(mockSchedulingStrategy).schedule(cap.capture());
+        Assert.assertEquals(2, cap.getValue().getHits());
+        Assert.assertEquals(1, impl.getScheduledCount());
+
+        impl.jobFailed(cap.getValue().getIdentifier());
+        impl.markComplete(cap.getValue().getIdentifier());
+        Assert.assertEquals(1, impl.getFailedCount());
+
+        doThrow(new RejectedExecutionException()).when(mockSchedulingStrategy).schedule(isA(AsynchronousValidationRequest.class));
+        impl.revalidateCacheEntry(mockClient, route, request, context, mockExecAware, mockCacheEntry);
+        Assert.assertEquals(1, impl.getScheduledCount());
+        Assert.assertEquals(1, impl.getDroppedCount());
+        Assert.assertEquals(0, impl.getScheduledIdentifiers().size());
+    }
+
 }
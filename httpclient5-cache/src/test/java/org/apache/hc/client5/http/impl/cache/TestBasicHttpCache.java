@@ -40,10 +40,12 @@ import java.io.InputStream;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.hc.client5.http.cache.HeaderConstants;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.client5.http.methods.CloseableHttpResponse;
 import org.apache.hc.client5.http.methods.HttpDelete;
 import org.apache.hc.client5.http.methods.HttpGet;
 import org.apache.hc.client5.http.methods.HttpHead;
@@ -51,6 +53,7 @@ import org.apache.hc.client5.http.methods.HttpOptions;
 import org.apache.hc.client5.http.methods.HttpPost;
 import org.apache.hc.client5.http.methods.HttpTrace;
 import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.http.ConnectionClosedException;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.HttpHost;
@@ -452,6 +455,36 @@ public class TestBasicHttpCache {
         assertNotNull(result);
     }
 
+    @Test
+    public void testGetCacheEntryFlushesHeadEntryOnGet() throws Exception {
+        final HttpHost host = new HttpHost("foo.example.com");
+        final HttpRequest request = new HttpGet("http://foo.example.com/bar");
+        final String key = (new CacheKeyGenerator()).getURI(host, request);
+        final String variantKey = "{Accept-Encoding=gzip}" + key;
+        final Date now = new Date();
+        final HttpCacheEntry headEntry = new HttpCacheEntry(now, now, HttpTestUtils.makeStatusLine(),
+                new Header[] { new BasicHeader("Hc-Request-Method", "HEAD") }, null,
+                HttpTestUtils.makeDefaultVariantMap("{Accept-Encoding=gzip}", variantKey));
+        backing.map.put(key, headEntry);
+        backing.map.put(variantKey, HttpTestUtils.makeCacheEntry());
+
+        assertNull(impl.getCacheEntry(host, request));
+        assertTrue(backing.map.isEmpty());
+    }
+
+    @Test
+    public void testGetCacheEntryKeepsHeadEntryOnHead() throws Exception {
+        final HttpHost host = new HttpHost("foo.example.com");
+        final HttpRequest request = new HttpHead("http://foo.example.com/bar");
+        final String key = (new CacheKeyGenerator()).getURI(host, request);
+        final HttpCacheEntry headEntry = HttpTestUtils.makeCacheEntry(
+                new Header[] { new BasicHeader("Hc-Request-Method", "HEAD") });
+        backing.map.put(key, headEntry);
+
+        assertSame(headEntry, impl.getCacheEntry(host, request));
+        assertSame(headEntry, backing.map.get(key));
+    }
+
     @Test
     public void testGetVariantCacheEntriesReturnsEmptySetOnNoVariants() throws Exception {
         final HttpHost host = new HttpHost("foo.example.com");
@@ -592,4 +625,134 @@ public class TestBasicHttpCache {
         IOUtils.copyAndClose(entity.getContent(), new ByteArrayOutputStream());
     }
 
+    private HttpResponse makeStreamedResponse(final byte[] body) {
+        final HttpResponse originResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        final BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(new ByteArrayInputStream(body));
+        originResponse.setEntity(entity);
+        originResponse.setHeader("Cache-Control","public, max-age=3600");
+        originResponse.setHeader("Date", DateUtils.formatDate(new Date()));
+        originResponse.setHeader("ETag", "\"etag\"");
+        return originResponse;
+    }
+
+    @Test
+    public void testStreamingCacheFillStoresEntryOnceBodyHasBeenRead() throws Exception {
+        impl = new BasicHttpCache(new HeapResourceFactory(), backing,
+                CacheConfig.custom().setStreamingCacheFillEnabled(true).build());
+        final HttpHost host = new HttpHost("foo.example.com");
+        final HttpRequest request = new HttpGet("http://foo.example.com/bar");
+        final byte[] body = HttpTestUtils.getRandomBytes(CacheConfig.DEFAULT_MAX_OBJECT_SIZE_BYTES - 1);
+
+        final HttpResponse result = impl.cacheAndReturnResponse(
+                host, request, makeStreamedResponse(body), new Date(), new Date());
+        assertEquals(0, backing.map.size());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOUtils.copyAndClose(result.getEntity().getContent(), out);
+        Assert.assertArrayEquals(body, out.toByteArray());
+        final HttpCacheEntry entry = impl.getCacheEntry(host, request);
+        assertNotNull(entry);
+        final ByteArrayOutputStream cached = new ByteArrayOutputStream();
+        IOUtils.copyAndClose(entry.getResource().getInputStream(), cached);
+        Assert.assertArrayEquals(body, cached.toByteArray());
+    }
+
+    @Test
+    public void testStreamingCacheFillDiscardsTooLargeBody() throws Exception {
+        impl = new BasicHttpCache(new HeapResourceFactory(), backing,
+                CacheConfig.custom().setStreamingCacheFillEnabled(true).build());
+        final HttpHost host = new HttpHost("foo.example.com");
+        final HttpRequest request = new HttpGet("http://foo.example.com/bar");
+        final byte[] body = HttpTestUtils.getRandomBytes(CacheConfig.DEFAULT_MAX_OBJECT_SIZE_BYTES + 1);
+
+        final HttpResponse result = impl.cacheAndReturnResponse(
+                host, request, makeStreamedResponse(body), new Date(), new Date());
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOUtils.copyAndClose(result.getEntity().getContent(), out);
+        Assert.assertArrayEquals(body, out.toByteArray());
+        assertEquals(0, backing.map.size());
+    }
+
+    @Test
+    public void testStreamingCacheFillDiscardsPartiallyReadBody() throws Exception {
+        impl = new BasicHttpCache(new HeapResourceFactory(), backing,
+                CacheConfig.custom().setStreamingCacheFillEnabled(true).build());
+        final HttpHost host = new HttpHost("foo.example.com");
+        final HttpRequest request = new HttpGet("http://foo.example.com/bar");
+
+        final HttpResponse result = impl.cacheAndReturnResponse(
+                host, request, makeStreamedResponse(HttpTestUtils.getRandomBytes(128)), new Date(), new Date());
+        final InputStream instream = result.getEntity().getContent();
+        instream.read(new byte[64]);
+        instream.close();
+        assertEquals(0, backing.map.size());
+    }
+
+    @Test
+    public void testStreamingCacheFillDiscardsIncompleteBody() throws Exception {
+        impl = new BasicHttpCache(new HeapResourceFactory(), backing,
+                CacheConfig.custom().setStreamingCacheFillEnabled(true).build());
+        final HttpHost host = new HttpHost("foo.example.com");
+        final HttpRequest request = new HttpGet("http://foo.example.com/bar");
+        final HttpResponse originResponse = makeStreamedResponse(HttpTestUtils.getRandomBytes(128));
+        originResponse.setHeader("Content-Length", "256");
+
+        final HttpResponse result = impl.cacheAndReturnResponse(
+                host, request, originResponse, new Date(), new Date());
+        try {
+            IOUtils.copyAndClose(result.getEntity().getContent(), new ByteArrayOutputStream());
+            Assert.fail("ConnectionClosedException expected");
+        } catch (final ConnectionClosedException expected) {
+        }
+        assertEquals(0, backing.map.size());
+    }
+
+    @Test
+    public void testStreamingCacheFillCompletesOnceBodyHasBeenStored() throws Exception {
+        impl = new BasicHttpCache(new HeapResourceFactory(), backing,
+                CacheConfig.custom().setStreamingCacheFillEnabled(true).build());
+        final HttpHost host = new HttpHost("foo.example.com");
+        final HttpRequest request = new HttpGet("http://foo.example.com/bar");
+
+        final HttpResponse result = impl.cacheAndReturnResponse(
+                host, request, makeStreamedResponse(HttpTestUtils.getRandomBytes(128)), new Date(), new Date());
+        final AtomicBoolean completed = new AtomicBoolean();
+        ((CacheFillingEntity) result.getEntity()).whenComplete(new Runnable() {
+
+            @Override
+            public void run() {
+                assertEquals(1, backing.map.size());
+                completed.set(true);
+            }
+
+        });
+        assertFalse(completed.get());
+        IOUtils.copyAndClose(result.getEntity().getContent(), new ByteArrayOutputStream());
+        assertTrue(completed.get());
+    }
+
+    @Test
+    public void testStreamingCacheFillCompletesWhenResponseIsClosedUnread() throws Exception {
+        impl = new BasicHttpCache(new HeapResourceFactory(), backing,
+                CacheConfig.custom().setStreamingCacheFillEnabled(true).build());
+        final HttpHost host = new HttpHost("foo.example.com");
+        final HttpRequest request = new HttpGet("http://foo.example.com/bar");
+
+        final HttpResponse result = impl.cacheAndReturnResponse(
+                host, request, makeStreamedResponse(HttpTestUtils.getRandomBytes(128)), new Date(), new Date());
+        final AtomicBoolean completed = new AtomicBoolean();
+        ((CacheFillingEntity) result.getEntity()).whenComplete(new Runnable() {
+
+            @Override
+            public void run() {
+                completed.set(true);
+            }
+
+        });
+        ((CloseableHttpResponse) result).close();
+        assertTrue(completed.get());
+        assertEquals(0, backing.map.size());
+    }
+
 }
@@ -29,16 +29,22 @@ package org.apache.hc.client5.http.impl.cache;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 
+import org.apache.hc.client5.http.cache.AsyncHttpCacheStorage;
+import org.apache.hc.client5.http.cache.BulkHttpCacheStorage;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.cache.HttpCacheStorage;
 import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.concurrent.BasicFuture;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.HttpRequest;
@@ -191,8 +197,7 @@ public class TestCacheInvalidator {
         request = new BasicHttpRequest("GET","/",HTTP_1_1);
         impl.flushInvalidatedCacheEntries(host, request);
 
-        verify(mockStorage).getEntry("http://foo.example.com:80/");
-        verifyNoMoreInteractions(mockStorage);
+        verifyZeroInteractions(mockStorage);
     }
 
     @Test
@@ -200,48 +205,7 @@ public class TestCacheInvalidator {
         request = new BasicHttpRequest("HEAD","/",HTTP_1_1);
         impl.flushInvalidatedCacheEntries(host, request);
 
-        verify(mockStorage).getEntry("http://foo.example.com:80/");
-        verifyNoMoreInteractions(mockStorage);
-    }
-
-    @Test
-    public void testInvalidatesHEADCacheEntryIfSubsequentGETRequestsAreMadeToTheSameURI() throws Exception {
-        impl = new CacheInvalidator(cacheKeyGenerator, mockStorage);
-        final String theURI = "http://foo.example.com:80/";
-        request = new BasicHttpRequest("GET", theURI,HTTP_1_1);
-
-        cacheEntryisForMethod("HEAD");
-        cacheEntryHasVariantMap(new HashMap<String, String>());
-        cacheReturnsEntryForUri(theURI);
-
-        impl.flushInvalidatedCacheEntries(host, request);
-
-        verify(mockEntry).getRequestMethod();
-        verify(mockEntry).getVariantMap();
-        verify(mockStorage).getEntry(theURI);
-        verify(mockStorage).removeEntry(theURI);
-    }
-
-    @Test
-    public void testInvalidatesVariantHEADCacheEntriesIfSubsequentGETRequestsAreMadeToTheSameURI() throws Exception {
-        impl = new CacheInvalidator(cacheKeyGenerator, mockStorage);
-        final String theURI = "http://foo.example.com:80/";
-        request = new BasicHttpRequest("GET", theURI,HTTP_1_1);
-        final String theVariantKey = "{Accept-Encoding=gzip%2Cdeflate&User-Agent=Apache-HttpClient}";
-        final String theVariantURI = "{Accept-Encoding=gzip%2Cdeflate&User-Agent=Apache-HttpClient}http://foo.example.com:80/";
-        final Map<String, String> variants = HttpTestUtils.makeDefaultVariantMap(theVariantKey, theVariantURI);
-
-        cacheEntryisForMethod("HEAD");
-        cacheEntryHasVariantMap(variants);
-        cacheReturnsEntryForUri(theURI);
-
-        impl.flushInvalidatedCacheEntries(host, request);
-
-        verify(mockEntry).getRequestMethod();
-        verify(mockEntry).getVariantMap();
-        verify(mockStorage).getEntry(theURI);
-        verify(mockStorage).removeEntry(theURI);
-        verify(mockStorage).removeEntry(theVariantURI);
+        verifyZeroInteractions(mockStorage);
     }
 
     @Test
@@ -253,8 +217,7 @@ public class TestCacheInvalidator {
 
         impl.flushInvalidatedCacheEntries(host, request);
 
-        verify(mockStorage).getEntry(theURI);
-        verifyNoMoreInteractions(mockStorage);
+        verifyZeroInteractions(mockStorage);
     }
 
     @Test
@@ -267,8 +230,7 @@ public class TestCacheInvalidator {
 
         impl.flushInvalidatedCacheEntries(host, request);
 
-        verify(mockStorage).getEntry(theURI);
-        verifyNoMoreInteractions(mockStorage);
+        verifyZeroInteractions(mockStorage);
     }
 
     @Test
@@ -282,9 +244,7 @@ public class TestCacheInvalidator {
 
         impl.flushInvalidatedCacheEntries(host, request);
 
-        verify(mockEntry).getRequestMethod();
-        verify(mockStorage).getEntry(theURI);
-        verifyNoMoreInteractions(mockStorage);
+        verifyZeroInteractions(mockStorage);
     }
 
     @Test
@@ -294,8 +254,7 @@ public class TestCacheInvalidator {
 
         impl.flushInvalidatedCacheEntries(host, request);
 
-        verify(mockStorage).getEntry("http://foo.example.com:80/");
-        verifyNoMoreInteractions(mockStorage);
+        verifyZeroInteractions(mockStorage);
     }
 
     @Test
@@ -305,8 +264,7 @@ public class TestCacheInvalidator {
 
         impl.flushInvalidatedCacheEntries(host, request);
 
-        verify(mockStorage).getEntry("http://foo.example.com:80/");
-        verifyNoMoreInteractions(mockStorage);
+        verifyZeroInteractions(mockStorage);
     }
 
     @Test
@@ -327,6 +285,54 @@ public class TestCacheInvalidator {
         verify(mockStorage).removeEntry(theUri);
     }
 
+    @Test
+    public void testInvalidationsAreBatchedOnBulkStorage() throws Exception {
+        final BulkHttpCacheStorage bulkStorage = mock(BulkHttpCacheStorage.class);
+        impl = new CacheInvalidator(cacheKeyGenerator, bulkStorage);
+        final HttpRequest putRequest = new BasicHttpRequest("PUT","/",HTTP_1_1);
+        putRequest.setHeader("Content-Location", "http://foo.example.com/content");
+        putRequest.setHeader("Location", "http://foo.example.com/location");
+        final String theUri = "http://foo.example.com:80/";
+        final String variantUri = "theVariantURI";
+        when(bulkStorage.getEntry(theUri)).thenReturn(mockEntry);
+        cacheEntryHasVariantMap(HttpTestUtils.makeDefaultVariantMap(variantUri, variantUri));
+
+        impl.flushInvalidatedCacheEntries(host, putRequest);
+
+        verify(bulkStorage).getEntry(theUri);
+        verify(bulkStorage).removeEntries(new HashSet<>(Arrays.asList(variantUri, theUri,
+                "http://foo.example.com:80/content", "http://foo.example.com:80/location")));
+        verifyNoMoreInteractions(bulkStorage);
+    }
+
+    @Test
+    public void testInvalidationsAreFannedOutOnAsyncStorage() throws Exception {
+        final AsyncHttpCacheStorage asyncStorage = mock(AsyncHttpCacheStorage.class);
+        impl = new CacheInvalidator(cacheKeyGenerator, asyncStorage);
+        final HttpRequest putRequest = new BasicHttpRequest("PUT","/",HTTP_1_1);
+        putRequest.setHeader("Content-Location", "http://foo.example.com/content");
+        final String theUri = "http://foo.example.com:80/";
+        final String variantUri = "theVariantURI";
+        final String contentUri = "http://foo.example.com:80/content";
+        when(asyncStorage.getEntry(theUri)).thenReturn(mockEntry);
+        cacheEntryHasVariantMap(HttpTestUtils.makeDefaultVariantMap(variantUri, variantUri));
+        final BasicFuture<Boolean> failed = new BasicFuture<>(null);
+        failed.failed(new IOException("delete failed"));
+        final BasicFuture<Boolean> removed = new BasicFuture<>(null);
+        removed.completed(Boolean.TRUE);
+        when(asyncStorage.removeEntryAsync(variantUri)).thenReturn(failed);
+        when(asyncStorage.removeEntryAsync(theUri)).thenReturn(removed);
+        when(asyncStorage.removeEntryAsync(contentUri)).thenReturn(removed);
+
+        impl.flushInvalidatedCacheEntries(host, putRequest);
+
+        verify(asyncStorage).getEntry(theUri);
+        verify(asyncStorage).removeEntryAsync(variantUri);
+        verify(asyncStorage).removeEntryAsync(theUri);
+        verify(asyncStorage).removeEntryAsync(contentUri);
+        verifyNoMoreInteractions(asyncStorage);
+    }
+
     @Test
     public void testCacheFlushException() throws Exception {
         request = new BasicHttpRequest("POST","/",HTTP_1_1);
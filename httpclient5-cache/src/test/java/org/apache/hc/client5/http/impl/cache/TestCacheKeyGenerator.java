@@ -30,6 +30,10 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.Random;
+
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.methods.HttpGet;
 import org.apache.hc.core5.http.Header;
@@ -421,4 +425,104 @@ public class TestCacheKeyGenerator {
         final HttpRequest req2 = new BasicHttpRequest("GET", "/%7Esmith%2Fhome%20folder.html", HttpVersion.HTTP_1_1);
         Assert.assertEquals(extractor.getURI(host, req1), extractor.getURI(host, req2));
     }
+
+    private static final String[] CANONICALIZATION_SAMPLES = {
+        "http://foo.example.com/",
+        "http://foo.example.com",
+        "HTTP://Foo.Example.COM/Bar",
+        "https://foo.example.com/bar?baz=1&quux=2",
+        "https://foo.example.com:443/",
+        "http://foo.example.com:8080/bar/",
+        "http://foo.example.com:080/",
+        "http://foo.example.com:/",
+        "http://foo.example.com:99999/",
+        "http://foo.example.com?query",
+        "http://foo.example.com/?",
+        "http://foo.example.com/bar#fragment",
+        "http://foo.example.com/bar?baz#fragment",
+        "http://foo.example.com/bar?q=%20%2F&r=%zz",
+        "http://foo.example.com/bar?q=a b",
+        "http://foo.example.com/~smith/home.html",
+        "http://foo.example.com/%7Esmith/home.html",
+        "http://foo.example.com/a,b;c=d:e@f&g+h$i",
+        "http://foo.example.com//bar",
+        "http://foo.example.com/./bar/../baz",
+        "http://foo.example.com/bar/.",
+        "http://foo.example.com/bar/..",
+        "http://foo.example.com/.bar/..baz/...",
+        "http://foo.example.com/b\u00e4r",
+        "http://user:pw@foo.example.com/",
+        "http://foo_bar.example.com/",
+        "http://-foo.example.com/",
+        "http://foo-.example.com/",
+        "http://foo..example.com/",
+        "http://foo.example.com./",
+        "http://3com.com/",
+        "http://foo.123/",
+        "http://127.0.0.1:8080/",
+        "http://256.0.0.1/",
+        "http://127.0.0.01/",
+        "http://1.2.3/",
+        "http://[::1]:8080/",
+        "ftp://foo.example.com/",
+        "/relative/path",
+        "*",
+        "",
+        "http://",
+    };
+
+    @Test
+    public void testFastCanonicalizationIsEquivalentToGeneric() {
+        for (final String uri : CANONICALIZATION_SAMPLES) {
+            Assert.assertEquals(uri, extractor.canonicalizeGenericUri(uri), extractor.canonicalizeUri(uri));
+        }
+        Assert.assertNotNull(extractor.canonicalizeHttpUri("http://foo.example.com/bar?baz=1"));
+        Assert.assertNotNull(extractor.canonicalizeHttpUri("https://127.0.0.1:8443/"));
+    }
+
+    @Test
+    public void testFastCanonicalizationIsEquivalentToGenericForRandomUris() {
+        final String[] prefixes = { "http://", "HTTPS://", "http://foo", "https://Foo.example.com", "http://1.2.3.4" };
+        final String alphabet = "aZ09-._~:/?#[]@!$&'()*+,;=% \"<>{}|\u00e4";
+        final Random random = new Random(42);
+        final StringBuilder buf = new StringBuilder();
+        for (int n = 0; n < 20000; n++) {
+            buf.setLength(0);
+            buf.append(prefixes[random.nextInt(prefixes.length)]);
+            final int len = random.nextInt(16);
+            for (int i = 0; i < len; i++) {
+                buf.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            final String uri = buf.toString();
+            final String canonical = extractor.canonicalizeHttpUri(uri);
+            if (canonical != null) {
+                Assert.assertEquals(uri, extractor.canonicalizeGenericUri(uri), canonical);
+            }
+        }
+    }
+
+    @Test
+    public void testAppendEncodedIsEquivalentToURLEncoder() throws Exception {
+        final String[] samples = { "", "Accept-Encoding", "gzip, deflate", "a b+c%d*e_f.g~h", "\u00e4 \u20ac!\ud83d\ude00x" };
+        for (final String sample : samples) {
+            final StringBuilder buf = new StringBuilder();
+            CacheKeyGenerator.appendEncoded(buf, sample);
+            Assert.assertEquals(URLEncoder.encode(sample, "UTF-8"), buf.toString());
+        }
+    }
+
+    @Test
+    public void testVariantHeaderNamesAreParsedOncePerVaryValue() {
+        final HttpCacheEntry entry1 = HttpTestUtils.makeCacheEntry(new Header[] {
+                new BasicHeader("Vary", "User-Agent, Accept-Encoding") });
+        final HttpCacheEntry entry2 = HttpTestUtils.makeCacheEntry(new Header[] {
+                new BasicHeader("Vary", "User-Agent, Accept-Encoding") });
+        final HttpCacheEntry entry3 = HttpTestUtils.makeCacheEntry(new Header[] {
+                new BasicHeader("Vary", "User-Agent"), new BasicHeader("Vary", "Accept-Encoding") });
+        Assert.assertEquals(Arrays.asList("Accept-Encoding", "User-Agent"),
+                extractor.getVariantHeaderNames(entry1));
+        Assert.assertSame(extractor.getVariantHeaderNames(entry1), extractor.getVariantHeaderNames(entry2));
+        Assert.assertEquals(extractor.getVariantHeaderNames(entry1), extractor.getVariantHeaderNames(entry3));
+    }
+
 }
@@ -0,0 +1,95 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCacheMap {
+
+    @Test
+    public void testEvictsByEntryCount() {
+        final CacheMap map = new CacheMap(2);
+        map.put("a", HttpTestUtils.makeCacheEntry());
+        map.put("b", HttpTestUtils.makeCacheEntry());
+        map.get("a");
+        map.put("c", HttpTestUtils.makeCacheEntry());
+        Assert.assertEquals(2, map.size());
+        Assert.assertTrue(map.containsKey("a"));
+        Assert.assertFalse(map.containsKey("b"));
+        Assert.assertEquals(1, map.getEvictionCount());
+    }
+
+    @Test
+    public void testTracksWeightedSize() {
+        final CacheMap map = new CacheMap(100);
+        final HttpCacheEntry small = HttpTestUtils.makeCacheEntry(new byte[100]);
+        final HttpCacheEntry large = HttpTestUtils.makeCacheEntry(new byte[1000]);
+        final long smallWeight = CacheEntryWeigher.weigh("a", small);
+        final long largeWeight = CacheEntryWeigher.weigh("a", large);
+        Assert.assertTrue(largeWeight - smallWeight >= 900);
+        map.put("a", small);
+        Assert.assertEquals(smallWeight, map.getWeightedSize());
+        map.put("a", large);
+        Assert.assertEquals(largeWeight, map.getWeightedSize());
+        map.put("b", small);
+        Assert.assertEquals(largeWeight + CacheEntryWeigher.weigh("b", small), map.getWeightedSize());
+        map.remove("a");
+        Assert.assertEquals(CacheEntryWeigher.weigh("b", small), map.getWeightedSize());
+        map.clear();
+        Assert.assertEquals(0, map.getWeightedSize());
+        Assert.assertEquals(0, map.getEvictionCount());
+    }
+
+    @Test
+    public void testEvictsByWeight() {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry(new byte[1000]);
+        final long weight = CacheEntryWeigher.weigh("key0", entry);
+        final CacheMap map = new CacheMap(1000, 3 * weight + weight / 2);
+        for (int i = 0; i < 10; i++) {
+            map.put("key" + i, entry);
+            Assert.assertTrue(map.getWeightedSize() <= 3 * weight + weight / 2);
+        }
+        Assert.assertEquals(3, map.size());
+        Assert.assertTrue(map.containsKey("key9"));
+        Assert.assertFalse(map.containsKey("key6"));
+        Assert.assertEquals(7, map.getEvictionCount());
+        Assert.assertEquals(3 * weight, map.getWeightedSize());
+    }
+
+    @Test
+    public void testOversizedEntryIsNotRetained() {
+        final CacheMap map = new CacheMap(1000, 500);
+        map.put("a", HttpTestUtils.makeCacheEntry(new byte[10]));
+        map.put("b", HttpTestUtils.makeCacheEntry(new byte[1000]));
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertEquals(0, map.getWeightedSize());
+        Assert.assertEquals(2, map.getEvictionCount());
+    }
+
+}
@@ -38,14 +38,26 @@ import static org.easymock.classextension.EasyMock.replay;
 import static org.easymock.classextension.EasyMock.verify;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.cache.CacheResponseStatus;
+import org.apache.hc.client5.http.cache.HttpCacheContext;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.impl.sync.ClientExecChain;
 import org.apache.hc.client5.http.methods.CloseableHttpResponse;
@@ -54,6 +66,7 @@ import org.apache.hc.client5.http.methods.HttpGet;
 import org.apache.hc.client5.http.methods.HttpRequestWrapper;
 import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HeaderElements;
 import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpHost;
@@ -62,6 +75,7 @@ import org.apache.hc.core5.http.HttpResponse;
 import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.HttpVersion;
 import org.apache.hc.core5.http.entity.InputStreamEntity;
+import org.apache.hc.core5.http.message.BasicHeader;
 import org.apache.hc.core5.http.message.BasicHttpRequest;
 import org.apache.hc.core5.http.message.BasicHttpResponse;
 import org.apache.hc.core5.http.message.BasicStatusLine;
@@ -406,6 +420,321 @@ public class TestCachingExec extends TestCachingExecChain {
         verifyMocks();
     }
 
+    @Test
+    public void testConcurrentCacheMissesAreCoalesced() throws Exception {
+        final AtomicInteger backendCalls = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final ClientExecChain backend = new ClientExecChain() {
+
+            @Override
+            public CloseableHttpResponse execute(
+                    final HttpRoute route,
+                    final HttpRequestWrapper request,
+                    final HttpClientContext clientContext,
+                    final HttpExecutionAware execAware) throws IOException {
+                backendCalls.incrementAndGet();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (final InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+                return Proxies.enhanceResponse(HttpTestUtils.make200Response(new Date(), "max-age=3600"));
+            }
+
+        };
+        final CachingExec coalescing = new CachingExec(backend, new BasicHttpCache(),
+                CacheConfig.custom().setRequestCoalescingEnabled(true).build());
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<Integer>() {
+
+                    @Override
+                    public Integer call() throws Exception {
+                        final HttpClientContext clientContext = HttpClientContext.create();
+                        clientContext.setTargetHost(host);
+                        final CloseableHttpResponse response = coalescing.execute(route,
+                                HttpRequestWrapper.wrap(HttpTestUtils.makeDefaultRequest(), host), clientContext);
+                        try {
+                            return response.getStatusLine().getStatusCode();
+                        } finally {
+                            response.close();
+                        }
+                    }
+
+                }));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (final Future<Integer> future: futures) {
+                Assert.assertEquals(HttpStatus.SC_OK, future.get(10, TimeUnit.SECONDS).intValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(1, backendCalls.get());
+    }
+
+    @Test
+    public void testCoalescedWaitersServedFromCacheAreCacheHits() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final ClientExecChain backend = new ClientExecChain() {
+
+            @Override
+            public CloseableHttpResponse execute(
+                    final HttpRoute route,
+                    final HttpRequestWrapper request,
+                    final HttpClientContext clientContext,
+                    final HttpExecutionAware execAware) throws IOException {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (final InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+                return Proxies.enhanceResponse(HttpTestUtils.make200Response(new Date(), "max-age=3600"));
+            }
+
+        };
+        final CachingExec coalescing = new CachingExec(backend, new BasicHttpCache(),
+                CacheConfig.custom().setRequestCoalescingEnabled(true).build());
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final List<CacheResponseStatus> statuses = new ArrayList<>();
+        try {
+            final List<Future<CacheResponseStatus>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<CacheResponseStatus>() {
+
+                    @Override
+                    public CacheResponseStatus call() throws Exception {
+                        final HttpClientContext clientContext = HttpClientContext.create();
+                        clientContext.setTargetHost(host);
+                        final CloseableHttpResponse response = coalescing.execute(route,
+                                HttpRequestWrapper.wrap(HttpTestUtils.makeDefaultRequest(), host), clientContext);
+                        response.close();
+                        return (CacheResponseStatus) clientContext.getAttribute(
+                                HttpCacheContext.CACHE_RESPONSE_STATUS);
+                    }
+
+                }));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (final Future<CacheResponseStatus> future: futures) {
+                statuses.add(future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(1, Collections.frequency(statuses, CacheResponseStatus.CACHE_MISS));
+        Assert.assertEquals(7, Collections.frequency(statuses, CacheResponseStatus.CACHE_HIT));
+        Assert.assertEquals(1, coalescing.getCacheMisses());
+        Assert.assertEquals(7, coalescing.getCacheHits());
+    }
+
+    @Test
+    public void testCoalescedWaitersWaitForStreamingCacheFill() throws Exception {
+        final AtomicInteger backendCalls = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final ClientExecChain backend = new ClientExecChain() {
+
+            @Override
+            public CloseableHttpResponse execute(
+                    final HttpRoute route,
+                    final HttpRequestWrapper request,
+                    final HttpClientContext clientContext,
+                    final HttpExecutionAware execAware) throws IOException {
+                backendCalls.incrementAndGet();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (final InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+                return Proxies.enhanceResponse(HttpTestUtils.make200Response(new Date(), "max-age=3600"));
+            }
+
+        };
+        final CacheConfig config = CacheConfig.custom()
+                .setRequestCoalescingEnabled(true)
+                .setStreamingCacheFillEnabled(true)
+                .build();
+        final CachingExec coalescing = new CachingExec(backend, new BasicHttpCache(config), config);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<Integer>() {
+
+                    @Override
+                    public Integer call() throws Exception {
+                        final HttpClientContext clientContext = HttpClientContext.create();
+                        clientContext.setTargetHost(host);
+                        final CloseableHttpResponse response = coalescing.execute(route,
+                                HttpRequestWrapper.wrap(HttpTestUtils.makeDefaultRequest(), host), clientContext);
+                        try {
+                            Thread.sleep(100);
+                            IOUtils.copyAndClose(response.getEntity().getContent(), new ByteArrayOutputStream());
+                            return response.getStatusLine().getStatusCode();
+                        } finally {
+                            response.close();
+                        }
+                    }
+
+                }));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (final Future<Integer> future: futures) {
+                Assert.assertEquals(HttpStatus.SC_OK, future.get(10, TimeUnit.SECONDS).intValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(1, backendCalls.get());
+    }
+
+    @Test
+    public void testCoalescedWaitersGiveUpIfStreamingCacheFillIsNeverRead() throws Exception {
+        final AtomicInteger backendCalls = new AtomicInteger();
+        final ClientExecChain backend = new ClientExecChain() {
+
+            @Override
+            public CloseableHttpResponse execute(
+                    final HttpRoute route,
+                    final HttpRequestWrapper request,
+                    final HttpClientContext clientContext,
+                    final HttpExecutionAware execAware) throws IOException {
+                backendCalls.incrementAndGet();
+                return Proxies.enhanceResponse(HttpTestUtils.make200Response(new Date(), "max-age=3600"));
+            }
+
+        };
+        final CacheConfig config = CacheConfig.custom()
+                .setRequestCoalescingEnabled(true)
+                .setRequestCoalescingTimeout(100)
+                .setStreamingCacheFillEnabled(true)
+                .build();
+        final CachingExec coalescing = new CachingExec(backend, new BasicHttpCache(config), config);
+        final HttpClientContext leaderContext = HttpClientContext.create();
+        leaderContext.setTargetHost(host);
+        // The body of the leading response is never read
+        final CloseableHttpResponse leader = coalescing.execute(route,
+                HttpRequestWrapper.wrap(HttpTestUtils.makeDefaultRequest(), host), leaderContext);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Integer> future = executor.submit(new Callable<Integer>() {
+
+                @Override
+                public Integer call() throws Exception {
+                    final HttpClientContext clientContext = HttpClientContext.create();
+                    clientContext.setTargetHost(host);
+                    final CloseableHttpResponse response = coalescing.execute(route,
+                            HttpRequestWrapper.wrap(HttpTestUtils.makeDefaultRequest(), host), clientContext);
+                    try {
+                        return response.getStatusLine().getStatusCode();
+                    } finally {
+                        response.close();
+                    }
+                }
+
+            });
+            Assert.assertEquals(HttpStatus.SC_OK, future.get(5, TimeUnit.SECONDS).intValue());
+        } finally {
+            executor.shutdownNow();
+            leader.close();
+        }
+        Assert.assertEquals(2, backendCalls.get());
+    }
+
+    @Test
+    public void testReportsAsynchronousRevalidationCounts() throws Exception {
+        final AsynchronousValidator validator = createNiceMock(AsynchronousValidator.class);
+        expect(validator.getScheduledCount()).andReturn(3L);
+        expect(validator.getDroppedCount()).andReturn(2L);
+        expect(validator.getFailedCount()).andReturn(1L);
+        replay(validator);
+        final CachingExec exec = new CachingExec(mockBackend, mockCache, config, validator);
+        Assert.assertEquals(3, exec.getScheduledRevalidations());
+        Assert.assertEquals(2, exec.getDroppedRevalidations());
+        Assert.assertEquals(1, exec.getFailedRevalidations());
+    }
+
+    @Test
+    public void testReportsNoRevalidationsWithoutAsynchronousValidator() throws Exception {
+        final CachingExec exec = new CachingExec(mockBackend, mockCache, config);
+        Assert.assertEquals(0, exec.getScheduledRevalidations());
+        Assert.assertEquals(0, exec.getDroppedRevalidations());
+        Assert.assertEquals(0, exec.getFailedRevalidations());
+    }
+
+    @Test
+    public void testRecordsStatisticsPerHost() throws Exception {
+        final ClientExecChain backend = new ClientExecChain() {
+
+            @Override
+            public CloseableHttpResponse execute(
+                    final HttpRoute route,
+                    final HttpRequestWrapper request,
+                    final HttpClientContext clientContext,
+                    final HttpExecutionAware execAware) throws IOException {
+                return Proxies.enhanceResponse(HttpTestUtils.make200Response(new Date(), "max-age=3600"));
+            }
+
+        };
+        final CountingCacheStatisticsRecorder recorder = new CountingCacheStatisticsRecorder();
+        final CacheConfig config = CacheConfig.DEFAULT;
+        final HttpCache cache = new BasicHttpCache(new HeapResourceFactory(),
+                new InstrumentedHttpCacheStorage(new BasicHttpCacheStorage(config), recorder), config);
+        final CachingExec instrumented = new CachingExec(backend, cache, config, null, recorder);
+        for (int i = 0; i < 3; i++) {
+            final HttpClientContext clientContext = HttpClientContext.create();
+            clientContext.setTargetHost(host);
+            final CloseableHttpResponse response = instrumented.execute(route,
+                    HttpRequestWrapper.wrap(HttpTestUtils.makeDefaultRequest(), host), clientContext);
+            IOUtils.consume(response.getEntity());
+            response.close();
+        }
+
+        Assert.assertEquals(Collections.singleton(host), recorder.getHosts());
+        final HostCacheStatistics statistics = recorder.getStatistics(host);
+        Assert.assertEquals(1, statistics.getResponseCount(CacheResponseStatus.CACHE_MISS));
+        Assert.assertEquals(2, statistics.getResponseCount(CacheResponseStatus.CACHE_HIT));
+        Assert.assertEquals(128, statistics.getBytesFromBackend());
+        Assert.assertEquals(256, statistics.getBytesFromCache());
+        Assert.assertEquals(2, recorder.getTotals().getResponseCount(CacheResponseStatus.CACHE_HIT));
+        Assert.assertTrue(recorder.getStorageReadTime().getCount() >= 3);
+        Assert.assertTrue(recorder.getStorageWriteTime().getCount() >= 1);
+    }
+
+    @Test
+    public void testRecordsRevalidationOutcome() throws Exception {
+        final CountingCacheStatisticsRecorder recorder = new CountingCacheStatisticsRecorder();
+        final ClientExecChain backend = new ClientExecChain() {
+
+            @Override
+            public CloseableHttpResponse execute(
+                    final HttpRoute route,
+                    final HttpRequestWrapper request,
+                    final HttpClientContext clientContext,
+                    final HttpExecutionAware execAware) throws IOException {
+                return Proxies.enhanceResponse(new BasicHttpResponse(
+                        HttpVersion.HTTP_1_1, HttpStatus.SC_NOT_MODIFIED, "Not Modified"));
+            }
+
+        };
+        final CachingExec instrumented = new CachingExec(backend, new BasicHttpCache(),
+                CacheConfig.DEFAULT, null, recorder);
+        final HttpCacheEntry staleEntry = HttpTestUtils.makeCacheEntry(new Header[] {
+                new BasicHeader("Date", DateUtils.formatDate(new Date(System.currentTimeMillis() - 60000L))),
+                new BasicHeader("Cache-Control", "max-age=0"),
+                new BasicHeader("ETag", "\"etag\"") });
+        context.setTargetHost(host);
+        instrumented.revalidateCacheEntry(route, request, context, null, staleEntry).close();
+
+        Assert.assertEquals(1, recorder.getStatistics(host).getNotModifiedCount());
+        Assert.assertEquals(0, recorder.getTotals().getModifiedCount());
+    }
+
     private IExpectationSetters<CloseableHttpResponse> implExpectsAnyRequestAndReturn(
             final CloseableHttpResponse response) throws Exception {
         final CloseableHttpResponse resp = impl.callBackend(
@@ -0,0 +1,234 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hc.client5.http.cache.HeaderConstants;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheEntrySerializationException;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.HttpVersion;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.http.message.BasicStatusLine;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCompactHttpCacheEntrySerializer {
+
+    private CompactHttpCacheEntrySerializer impl;
+
+    @Before
+    public void setUp() {
+        impl = new CompactHttpCacheEntrySerializer();
+    }
+
+    private static HttpCacheEntry makeRealisticEntry() {
+        final Date now = new Date();
+        final Header[] headers = new Header[] {
+                new BasicHeader("Date", DateUtils.formatDate(now)),
+                new BasicHeader("Server", "Apache/2.4.7 (Ubuntu)"),
+                new BasicHeader("Content-Type", "text/html; charset=UTF-8"),
+                new BasicHeader("Content-Length", "4096"),
+                new BasicHeader("Cache-Control", "public, max-age=3600"),
+                new BasicHeader("ETag", "\"3e86-410-3596fbbc\""),
+                new BasicHeader("Last-Modified", DateUtils.formatDate(new Date(now.getTime() - 86400000L))),
+                new BasicHeader("Vary", "Accept-Encoding"),
+                new BasicHeader("X-Request-Id", "f81d4fae-7dec-11d0-a765-00a0c91e6bf6"),
+                new BasicHeader("X-Empty", null),
+                new BasicHeader("X-Unicode", "grüße 世界")
+        };
+        final Map<String, String> variantMap = new HashMap<>();
+        variantMap.put("{Accept-Encoding=gzip}", "{Accept-Encoding=gzip}http://example.com:80/index.html");
+        return new HttpCacheEntry(new Date(now.getTime() - 500), now,
+                new BasicStatusLine(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK"),
+                headers, new HeapResource(HttpTestUtils.getRandomBytes(4096)), variantMap,
+                HeaderConstants.GET_METHOD);
+    }
+
+    private byte[] write(final HttpCacheEntry entry) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        impl.writeTo(entry, out);
+        return out.toByteArray();
+    }
+
+    private static byte[] toByteArray(final Resource resource) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOUtils.copyAndClose(resource.getInputStream(), out);
+        return out.toByteArray();
+    }
+
+    private static void assertEntriesEqual(final HttpCacheEntry expected, final HttpCacheEntry actual)
+            throws IOException {
+        Assert.assertEquals(expected.getRequestDate(), actual.getRequestDate());
+        Assert.assertEquals(expected.getResponseDate(), actual.getResponseDate());
+        Assert.assertEquals(expected.getProtocolVersion(), actual.getProtocolVersion());
+        Assert.assertEquals(expected.getStatusCode(), actual.getStatusCode());
+        Assert.assertEquals(expected.getReasonPhrase(), actual.getReasonPhrase());
+        Assert.assertEquals(expected.getRequestMethod(), actual.getRequestMethod());
+        final Header[] expectedHeaders = expected.getAllHeaders();
+        final Header[] actualHeaders = actual.getAllHeaders();
+        Assert.assertEquals(expectedHeaders.length, actualHeaders.length);
+        for (int i = 0; i < expectedHeaders.length; i++) {
+            Assert.assertEquals(expectedHeaders[i].getName(), actualHeaders[i].getName());
+            Assert.assertEquals(expectedHeaders[i].getValue(), actualHeaders[i].getValue());
+        }
+        Assert.assertEquals(expected.getVariantMap(), actual.getVariantMap());
+        if (expected.getResource() == null) {
+            Assert.assertNull(actual.getResource());
+        } else {
+            Assert.assertArrayEquals(toByteArray(expected.getResource()), toByteArray(actual.getResource()));
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final HttpCacheEntry entry = makeRealisticEntry();
+        final HttpCacheEntry copy = impl.readFrom(new ByteArrayInputStream(write(entry)));
+        assertEntriesEqual(entry, copy);
+    }
+
+    @Test
+    public void testRoundTripWithoutBody() throws Exception {
+        final HttpCacheEntry entry = new HttpCacheEntry(new Date(), new Date(),
+                new BasicStatusLine(HttpVersion.HTTP_1_0, HttpStatus.SC_NOT_MODIFIED, null),
+                new Header[0], null, HeaderConstants.HEAD_METHOD);
+        final HttpCacheEntry copy = impl.readFrom(new ByteArrayInputStream(write(entry)));
+        assertEntriesEqual(entry, copy);
+    }
+
+    @Test
+    public void testReadsEntriesBackToBack() throws Exception {
+        final HttpCacheEntry entry1 = makeRealisticEntry();
+        final HttpCacheEntry entry2 = HttpTestUtils.makeCacheEntry();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        impl.writeTo(entry1, out);
+        impl.writeTo(entry2, out);
+        final ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        assertEntriesEqual(entry1, impl.readFrom(in));
+        assertEntriesEqual(entry2, impl.readFrom(in));
+        Assert.assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testSmallerThanDefaultSerialization() throws Exception {
+        final HttpCacheEntry entry = makeRealisticEntry();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new DefaultHttpCacheEntrySerializer().writeTo(entry, out);
+        final int defaultSize = out.size();
+        final int compactSize = write(entry).length;
+        final int headerBlock = compactSize - 4096;
+        final int defaultHeaderBlock = defaultSize - 4096;
+        Assert.assertTrue(compactSize + " vs " + defaultSize, 3 * headerBlock < defaultHeaderBlock);
+    }
+
+    @Test(expected = HttpCacheEntrySerializationException.class)
+    public void testRejectsUnknownVersion() throws Exception {
+        final byte[] b = write(makeRealisticEntry());
+        // The marker takes two bytes and the version one
+        b[2] = (byte) (CompactHttpCacheEntrySerializer.VERSION + 1);
+        impl.readFrom(new ByteArrayInputStream(b));
+    }
+
+    @Test(expected = HttpCacheEntrySerializationException.class)
+    public void testRejectsForeignFormat() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new DefaultHttpCacheEntrySerializer().writeTo(makeRealisticEntry(), out);
+        impl.readFrom(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsTruncatedEntry() throws Exception {
+        final byte[] b = write(makeRealisticEntry());
+        impl.readFrom(new ByteArrayInputStream(b, 0, b.length - 10));
+    }
+
+    /**
+     * Writes the fixed fields of an entry up to, but excluding, the header count.
+     */
+    private static ByteArrayOutputStream writeEntryPrefix() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(CompactHttpCacheEntrySerializer.MARKER1);
+        out.write(CompactHttpCacheEntrySerializer.MARKER2);
+        out.write(CompactHttpCacheEntrySerializer.VERSION);
+        out.write(0); // request date
+        out.write(0); // response date
+        out.write(0); // protocol
+        out.write(1); // major
+        out.write(1); // minor
+        writeVarInt(out, HttpStatus.SC_OK);
+        out.write(0); // reason phrase
+        out.write(0); // request method
+        return out;
+    }
+
+    private static void writeVarInt(final ByteArrayOutputStream out, final int value) {
+        int v = value;
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    @Test(expected = HttpCacheEntrySerializationException.class)
+    public void testRejectsOversizedHeaderCount() throws Exception {
+        final ByteArrayOutputStream out = writeEntryPrefix();
+        writeVarInt(out, Integer.MAX_VALUE);
+        impl.readFrom(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test(expected = HttpCacheEntrySerializationException.class)
+    public void testRejectsOversizedStringLength() throws Exception {
+        final ByteArrayOutputStream out = writeEntryPrefix();
+        out.write(1); // one header
+        out.write(0); // uncommon name
+        writeVarInt(out, Integer.MAX_VALUE);
+        impl.readFrom(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test(expected = EOFException.class)
+    public void testRejectsTruncatedBodyWithOversizedLength() throws Exception {
+        final ByteArrayOutputStream out = writeEntryPrefix();
+        out.write(0); // no headers
+        out.write(0); // no variants
+        writeVarInt(out, CompactHttpCacheEntrySerializer.MAX_BODY_LENGTH + 1);
+        out.write(new byte[128]);
+        impl.readFrom(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+}
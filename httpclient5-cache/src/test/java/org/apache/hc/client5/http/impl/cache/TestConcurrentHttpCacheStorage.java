@@ -0,0 +1,246 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Callable;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestConcurrentHttpCacheStorage {
+
+    private static CacheConfig config(final int maxEntries) {
+        return CacheConfig.custom().setMaxCacheEntries(maxEntries).build();
+    }
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        final ConcurrentHttpCacheStorage storage = new ConcurrentHttpCacheStorage(config(100));
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        Assert.assertNull(storage.getEntry("foo"));
+        storage.putEntry("foo", entry);
+        Assert.assertSame(entry, storage.getEntry("foo"));
+        final HttpCacheEntry entry2 = HttpTestUtils.makeCacheEntry();
+        storage.putEntry("foo", entry2);
+        Assert.assertSame(entry2, storage.getEntry("foo"));
+        Assert.assertEquals(1, storage.size());
+        storage.removeEntry("foo");
+        Assert.assertNull(storage.getEntry("foo"));
+        Assert.assertEquals(0, storage.size());
+    }
+
+    @Test
+    public void testUpdateEntry() throws Exception {
+        final ConcurrentHttpCacheStorage storage = new ConcurrentHttpCacheStorage(config(100));
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry updated = HttpTestUtils.makeCacheEntry();
+        storage.putEntry("foo", entry);
+        storage.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+            @Override
+            public HttpCacheEntry update(final HttpCacheEntry existing) throws IOException {
+                Assert.assertSame(entry, existing);
+                return updated;
+            }
+
+        });
+        Assert.assertSame(updated, storage.getEntry("foo"));
+        storage.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+            @Override
+            public HttpCacheEntry update(final HttpCacheEntry existing) throws IOException {
+                return null;
+            }
+
+        });
+        Assert.assertNull(storage.getEntry("foo"));
+    }
+
+    @Test
+    public void testHonorsMaxCacheEntries() throws Exception {
+        final ConcurrentHttpCacheStorage storage = new ConcurrentHttpCacheStorage(config(1000), 8);
+        Assert.assertEquals(8, storage.getSegmentCount());
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        for (int i = 0; i < 10000; i++) {
+            storage.putEntry("key" + i, entry);
+            Assert.assertTrue(storage.size() <= 1000);
+        }
+        Assert.assertTrue(storage.size() > 900);
+    }
+
+    @Test
+    public void testHonorsMaxCacheBytes() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry(new byte[1000]);
+        final long maxBytes = 50 * CacheEntryWeigher.weigh("key0000", entry);
+        final ConcurrentHttpCacheStorage storage = new ConcurrentHttpCacheStorage(
+                CacheConfig.custom().setMaxCacheEntries(1000).setMaxCacheBytes(maxBytes).build(), 1);
+        for (int i = 0; i < 1000; i++) {
+            final String key = String.format("key%04d", i);
+            storage.getEntry(key);
+            storage.putEntry(key, entry);
+            Assert.assertTrue(storage.getWeightedSize() <= maxBytes);
+        }
+        Assert.assertTrue(storage.size() <= 50);
+        Assert.assertTrue(storage.getEvictionCount() > 0);
+        final ConcurrentHttpCacheStorage tiny = new ConcurrentHttpCacheStorage(
+                CacheConfig.custom().setMaxCacheBytes(100).build());
+        tiny.putEntry("foo", entry);
+        Assert.assertNull(tiny.getEntry("foo"));
+        Assert.assertEquals(0, tiny.getWeightedSize());
+    }
+
+    @Test
+    public void testMaxCacheBytesAppliesToStorageAsAWhole() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry(new byte[1000]);
+        final long maxBytes = 4 * CacheEntryWeigher.weigh("key0000", entry);
+        final ConcurrentHttpCacheStorage storage = new ConcurrentHttpCacheStorage(
+                CacheConfig.custom().setMaxCacheEntries(1000).setMaxCacheBytes(maxBytes).build(), 8);
+        Assert.assertEquals(8, storage.getSegmentCount());
+        // Heavier than an eighth of the maximum size
+        storage.putEntry("key0000", entry);
+        Assert.assertSame(entry, storage.getEntry("key0000"));
+        for (int i = 1; i < 1000; i++) {
+            final String key = String.format("key%04d", i);
+            storage.getEntry(key);
+            storage.putEntry(key, entry);
+            Assert.assertTrue(storage.getWeightedSize() <= maxBytes);
+        }
+        Assert.assertTrue(storage.size() <= 4);
+        Assert.assertTrue(storage.size() > 0);
+    }
+
+    @Test
+    public void testSmallCacheUsesSingleSegment() throws Exception {
+        final ConcurrentHttpCacheStorage storage = new ConcurrentHttpCacheStorage(config(3), 16);
+        Assert.assertEquals(1, storage.getSegmentCount());
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        storage.putEntry("a", entry);
+        storage.putEntry("b", entry);
+        storage.putEntry("c", entry);
+        storage.putEntry("d", entry);
+        Assert.assertEquals(3, storage.size());
+    }
+
+    @Test
+    public void testFrequentlyUsedEntriesSurviveScan() throws Exception {
+        final ConcurrentHttpCacheStorage storage = new ConcurrentHttpCacheStorage(config(100), 1);
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        for (int i = 0; i < 100; i++) {
+            storage.putEntry("hot" + i, entry);
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 100; i++) {
+                Assert.assertNotNull(storage.getEntry("hot" + i));
+            }
+        }
+        // One-off requests must not flush out entries that keep being requested
+        for (int i = 0; i < 1000; i++) {
+            storage.getEntry("cold" + i);
+            storage.putEntry("cold" + i, entry);
+            for (int j = 0; j < 5; j++) {
+                storage.getEntry("hot" + ((5 * i + j) % 100));
+            }
+        }
+        int hits = 0;
+        for (int i = 0; i < 100; i++) {
+            if (storage.getEntry("hot" + i) != null) {
+                hits++;
+            }
+        }
+        Assert.assertTrue("Hits: " + hits, hits >= 90);
+    }
+
+    @Test
+    public void testFrequencySketch() {
+        final FrequencySketch sketch = new FrequencySketch(100);
+        Assert.assertEquals(0, sketch.frequency("foo"));
+        for (int i = 0; i < 5; i++) {
+            sketch.increment("foo");
+        }
+        Assert.assertEquals(5, sketch.frequency("foo"));
+        for (int i = 0; i < 20; i++) {
+            sketch.increment("foo");
+        }
+        Assert.assertEquals(15, sketch.frequency("foo"));
+        // Counters get halved after 10 x capacity increments
+        for (int i = 0; i < 1000; i++) {
+            sketch.increment("bar" + i);
+        }
+        Assert.assertTrue(sketch.frequency("foo") < 15);
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final ConcurrentHttpCacheStorage storage = new ConcurrentHttpCacheStorage(config(500), 4);
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws Exception {
+                        final ThreadLocalRandom random = ThreadLocalRandom.current();
+                        for (int i = 0; i < 20000; i++) {
+                            final String key = "key" + random.nextInt(1000);
+                            final int op = random.nextInt(10);
+                            if (op < 7) {
+                                final HttpCacheEntry existing = storage.getEntry(key);
+                                Assert.assertTrue(existing == null || existing == entry);
+                            } else if (op < 9) {
+                                storage.putEntry(key, entry);
+                            } else {
+                                storage.removeEntry(key);
+                            }
+                        }
+                        return null;
+                    }
+
+                }));
+            }
+            for (final Future<Void> future: futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertTrue(storage.size() <= 500);
+    }
+
+}
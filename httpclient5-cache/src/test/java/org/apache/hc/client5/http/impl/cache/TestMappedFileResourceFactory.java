@@ -0,0 +1,113 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.hc.client5.http.cache.InputLimit;
+import org.apache.hc.client5.http.cache.Resource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestMappedFileResourceFactory {
+
+    private File cacheDir;
+    private MappedFileResourceFactory factory;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDir = File.createTempFile("cachedir", "");
+        if (cacheDir.exists()) {
+            cacheDir.delete();
+        }
+        cacheDir.mkdir();
+        factory = new MappedFileResourceFactory(cacheDir);
+    }
+
+    @After
+    public void cleanUp() {
+        final File[] files = cacheDir.listFiles();
+        for (final File cacheFile : files) {
+            cacheFile.delete();
+        }
+        cacheDir.delete();
+    }
+
+    private static byte[] toByteArray(final Resource resource) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOUtils.copyAndClose(resource.getInputStream(), out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testGenerateAndRead() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(200000);
+        final Resource resource = factory.generate("http://example.com/", new ByteArrayInputStream(body), null);
+        Assert.assertTrue(resource instanceof MappedFileResource);
+        Assert.assertEquals(body.length, resource.length());
+        Assert.assertArrayEquals(body, toByteArray(resource));
+        Assert.assertArrayEquals(body, toByteArray(resource));
+    }
+
+    @Test
+    public void testGenerateHonorsLimit() throws Exception {
+        final InputLimit limit = new InputLimit(100);
+        final Resource resource = factory.generate("id",
+                new ByteArrayInputStream(HttpTestUtils.getRandomBytes(200000)), limit);
+        Assert.assertTrue(limit.isReached());
+        Assert.assertEquals(101, resource.length());
+        final InputLimit limit2 = new InputLimit(200000);
+        factory.generate("id", new ByteArrayInputStream(HttpTestUtils.getRandomBytes(200000)), limit2);
+        Assert.assertFalse(limit2.isReached());
+    }
+
+    @Test
+    public void testCopy() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(100000);
+        final Resource resource = factory.generate("id", new ByteArrayInputStream(body), null);
+        final Resource copy1 = factory.copy("id", resource);
+        final Resource copy2 = factory.copy("id", new HeapResource(body));
+        resource.dispose();
+        Assert.assertArrayEquals(body, toByteArray(copy1));
+        Assert.assertArrayEquals(body, toByteArray(copy2));
+    }
+
+    @Test
+    public void testDisposeDeletesFile() throws Exception {
+        final Resource resource = factory.generate("id",
+                new ByteArrayInputStream(HttpTestUtils.getRandomBytes(1000)), null);
+        Assert.assertEquals(1, cacheDir.listFiles().length);
+        resource.dispose();
+        Assert.assertEquals(0, cacheDir.listFiles().length);
+    }
+
+}
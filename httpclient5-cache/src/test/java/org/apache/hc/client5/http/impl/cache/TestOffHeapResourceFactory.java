@@ -0,0 +1,148 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.InputLimit;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.core5.http.Header;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestOffHeapResourceFactory {
+
+    private OffHeapResourceFactory factory;
+
+    @Before
+    public void setUp() {
+        factory = new OffHeapResourceFactory(1024, 16);
+    }
+
+    private static byte[] toByteArray(final Resource resource) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOUtils.copyAndClose(resource.getInputStream(), out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testGenerateSpanningSlabs() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(5000);
+        final Resource resource = factory.generate("id", new ByteArrayInputStream(body), null);
+        Assert.assertTrue(resource instanceof OffHeapResource);
+        Assert.assertEquals(5000, resource.length());
+        Assert.assertArrayEquals(body, toByteArray(resource));
+        Assert.assertEquals(5, ((OffHeapResource) resource).getByteBuffers().length);
+        resource.dispose();
+        Assert.assertEquals(5, factory.getPooledSlabCount());
+    }
+
+    @Test
+    public void testGenerateEmptyBody() throws Exception {
+        final Resource resource = factory.generate("id", new ByteArrayInputStream(new byte[0]), null);
+        Assert.assertEquals(0, resource.length());
+        Assert.assertEquals(-1, resource.getInputStream().read());
+    }
+
+    @Test
+    public void testGenerateHonorsLimit() throws Exception {
+        final InputLimit limit = new InputLimit(100);
+        factory.generate("id", new ByteArrayInputStream(HttpTestUtils.getRandomBytes(5000)), limit);
+        Assert.assertTrue(limit.isReached());
+        final InputLimit limit2 = new InputLimit(5000);
+        factory.generate("id", new ByteArrayInputStream(HttpTestUtils.getRandomBytes(5000)), limit2);
+        Assert.assertFalse(limit2.isReached());
+    }
+
+    @Test
+    public void testSlabsReleasedOnlyAfterLastReference() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(2048);
+        final Resource resource = factory.generate("id", new ByteArrayInputStream(body), null);
+        final Resource copy = factory.copy("id2", resource);
+        final int pooled = factory.getPooledSlabCount();
+        final InputStream instream = resource.getInputStream();
+        resource.dispose();
+        resource.dispose();
+        try {
+            resource.getInputStream();
+            Assert.fail("IOException expected");
+        } catch (final IOException expected) {
+        }
+        Assert.assertArrayEquals(body, toByteArray(copy));
+        copy.dispose();
+        Assert.assertEquals(pooled, factory.getPooledSlabCount());
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOUtils.copyAndClose(instream, out);
+        Assert.assertArrayEquals(body, out.toByteArray());
+        Assert.assertEquals(pooled + 2, factory.getPooledSlabCount());
+    }
+
+    @Test
+    public void testSlabsAreReused() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            final byte[] body = HttpTestUtils.getRandomBytes(3000);
+            final Resource resource = factory.generate("id", new ByteArrayInputStream(body), null);
+            Assert.assertArrayEquals(body, toByteArray(resource));
+            resource.dispose();
+        }
+        Assert.assertEquals(3, factory.getPooledSlabCount());
+    }
+
+    @Test
+    public void testSerializedAsHeapResource() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(3000);
+        final Resource resource = factory.generate("id", new ByteArrayInputStream(body), null);
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry(new Date(), new Date(),
+                HttpTestUtils.getStockHeaders(new Date()), body);
+        final HttpCacheEntry offHeapEntry = new HttpCacheEntry(entry.getRequestDate(), entry.getResponseDate(),
+                entry.getStatusLine(), entry.getAllHeaders(), resource);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final DefaultHttpCacheEntrySerializer serializer = new DefaultHttpCacheEntrySerializer();
+        serializer.writeTo(offHeapEntry, out);
+        final HttpCacheEntry copy = serializer.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertTrue(copy.getResource() instanceof HeapResource);
+        Assert.assertArrayEquals(body, toByteArray(copy.getResource()));
+    }
+
+    @Test
+    public void testReleasedByManagedStorage() throws Exception {
+        final ManagedHttpCacheStorage storage = new ManagedHttpCacheStorage(CacheConfig.DEFAULT);
+        final Resource resource = factory.generate("id",
+                new ByteArrayInputStream(HttpTestUtils.getRandomBytes(3000)), null);
+        storage.putEntry("foo", new HttpCacheEntry(new Date(), new Date(),
+                HttpTestUtils.make200Response().getStatusLine(), new Header[0], resource));
+        storage.shutdown();
+        Assert.assertEquals(3, factory.getPooledSlabCount());
+    }
+
+}
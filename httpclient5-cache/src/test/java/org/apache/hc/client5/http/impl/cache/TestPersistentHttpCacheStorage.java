@@ -0,0 +1,311 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Date;
+
+import org.apache.hc.client5.http.cache.HeaderConstants;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestPersistentHttpCacheStorage {
+
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDir = File.createTempFile("cachedir", "");
+        if (cacheDir.exists()) {
+            cacheDir.delete();
+        }
+        cacheDir.mkdir();
+    }
+
+    @After
+    public void cleanUp() {
+        final File[] files = cacheDir.listFiles();
+        for (final File cacheFile : files) {
+            cacheFile.delete();
+        }
+        cacheDir.delete();
+    }
+
+    private static byte[] toByteArray(final Resource resource) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOUtils.copyAndClose(resource.getInputStream(), out);
+        return out.toByteArray();
+    }
+
+    private static void assertSameEntry(final HttpCacheEntry expected, final HttpCacheEntry actual)
+            throws IOException {
+        Assert.assertNotNull(actual);
+        Assert.assertEquals(expected.getRequestDate(), actual.getRequestDate());
+        Assert.assertEquals(expected.getResponseDate(), actual.getResponseDate());
+        Assert.assertEquals(expected.getStatusCode(), actual.getStatusCode());
+        Assert.assertEquals(expected.getAllHeaders().length, actual.getAllHeaders().length);
+        Assert.assertEquals(expected.getVariantMap(), actual.getVariantMap());
+        if (expected.getResource() == null) {
+            Assert.assertNull(actual.getResource());
+        } else {
+            Assert.assertArrayEquals(toByteArray(expected.getResource()), toByteArray(actual.getResource()));
+        }
+    }
+
+    private PersistentHttpCacheStorage open() throws IOException {
+        return new PersistentHttpCacheStorage(cacheDir, CacheConfig.DEFAULT);
+    }
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        try (PersistentHttpCacheStorage storage = open()) {
+            final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+            final HttpCacheEntry noBody = new HttpCacheEntry(new Date(), new Date(),
+                    HttpTestUtils.make200Response().getStatusLine(), new Header[0], null,
+                    HeaderConstants.HEAD_METHOD);
+            Assert.assertNull(storage.getEntry("foo"));
+            storage.putEntry("foo", entry);
+            storage.putEntry("bar", noBody);
+            assertSameEntry(entry, storage.getEntry("foo"));
+            assertSameEntry(noBody, storage.getEntry("bar"));
+            storage.removeEntry("foo");
+            Assert.assertNull(storage.getEntry("foo"));
+            Assert.assertEquals(1, storage.size());
+        }
+    }
+
+    @Test
+    public void testUpdateEntry() throws Exception {
+        try (PersistentHttpCacheStorage storage = open()) {
+            final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+            final HttpCacheEntry updated = HttpTestUtils.makeCacheEntry();
+            storage.putEntry("foo", entry);
+            storage.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+                @Override
+                public HttpCacheEntry update(final HttpCacheEntry existing) throws IOException {
+                    assertSameEntry(entry, existing);
+                    return updated;
+                }
+
+            });
+            assertSameEntry(updated, storage.getEntry("foo"));
+            storage.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+                @Override
+                public HttpCacheEntry update(final HttpCacheEntry existing) throws IOException {
+                    return null;
+                }
+
+            });
+            Assert.assertNull(storage.getEntry("foo"));
+        }
+    }
+
+    @Test
+    public void testSurvivesRestart() throws Exception {
+        final HttpCacheEntry entry1 = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry entry2 = HttpTestUtils.makeCacheEntry();
+        try (PersistentHttpCacheStorage storage = open()) {
+            storage.putEntry("foo", entry1);
+            storage.putEntry("bar", entry1);
+            storage.putEntry("bar", entry2);
+            storage.putEntry("baz", entry1);
+            storage.removeEntry("baz");
+        }
+        Assert.assertTrue(new File(cacheDir, PersistentHttpCacheStorage.SNAPSHOT_FILE).exists());
+        try (PersistentHttpCacheStorage storage = open()) {
+            Assert.assertEquals(2, storage.size());
+            assertSameEntry(entry1, storage.getEntry("foo"));
+            assertSameEntry(entry2, storage.getEntry("bar"));
+            Assert.assertNull(storage.getEntry("baz"));
+        }
+    }
+
+    @Test
+    public void testRecoversJournalAfterCrash() throws Exception {
+        final HttpCacheEntry entry1 = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry entry2 = HttpTestUtils.makeCacheEntry();
+        try (PersistentHttpCacheStorage storage = open()) {
+            storage.putEntry("foo", entry1);
+        }
+        // Not closed: the snapshot only covers the first entry
+        final PersistentHttpCacheStorage crashed = open();
+        crashed.putEntry("bar", entry2);
+        crashed.removeEntry("foo");
+        // Simulate a record torn by the crash
+        try (FileOutputStream out = new FileOutputStream(
+                new File(cacheDir, PersistentHttpCacheStorage.JOURNAL_FILE), true)) {
+            out.write(new byte[] { 1, 0, 0, 1, 0, 42, 42 });
+        }
+        try (PersistentHttpCacheStorage storage = open()) {
+            Assert.assertEquals(1, storage.size());
+            Assert.assertNull(storage.getEntry("foo"));
+            assertSameEntry(entry2, storage.getEntry("bar"));
+            storage.putEntry("baz", entry1);
+            assertSameEntry(entry1, storage.getEntry("baz"));
+        }
+        try (PersistentHttpCacheStorage storage = open()) {
+            Assert.assertEquals(2, storage.size());
+        }
+    }
+
+    @Test
+    public void testIgnoresCorruptSnapshot() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        try (PersistentHttpCacheStorage storage = open()) {
+            storage.putEntry("foo", entry);
+        }
+        try (FileOutputStream out = new FileOutputStream(
+                new File(cacheDir, PersistentHttpCacheStorage.SNAPSHOT_FILE), true)) {
+            out.write(42);
+        }
+        try (PersistentHttpCacheStorage storage = open()) {
+            assertSameEntry(entry, storage.getEntry("foo"));
+        }
+    }
+
+    @Test
+    public void testEvictsOldestSegmentsBySize() throws Exception {
+        final long maxBytes = 64 * 1024;
+        final CacheConfig config = CacheConfig.custom().setMaxCacheBytes(maxBytes).build();
+        try (PersistentHttpCacheStorage storage = new PersistentHttpCacheStorage(cacheDir, config)) {
+            for (int i = 0; i < 100; i++) {
+                storage.putEntry("key" + i, HttpTestUtils.makeCacheEntry(HttpTestUtils.getRandomBytes(4096)));
+                Assert.assertTrue(storage.getDiskSize() <= maxBytes);
+            }
+            Assert.assertTrue(storage.getEvictionCount() > 0);
+            Assert.assertNull(storage.getEntry("key0"));
+            Assert.assertNotNull(storage.getEntry("key99"));
+            Assert.assertEquals(100 - storage.getEvictionCount(), storage.size());
+        }
+        try (PersistentHttpCacheStorage storage = new PersistentHttpCacheStorage(cacheDir, config)) {
+            Assert.assertNull(storage.getEntry("key0"));
+            Assert.assertNotNull(storage.getEntry("key99"));
+        }
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyWrittenEntriesByCount() throws Exception {
+        final CacheConfig config = CacheConfig.custom().setMaxCacheEntries(10).build();
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        try (PersistentHttpCacheStorage storage = new PersistentHttpCacheStorage(cacheDir, config)) {
+            for (int i = 0; i < 20; i++) {
+                storage.putEntry("key" + i, entry);
+                storage.putEntry("key0", entry);
+                Assert.assertTrue(storage.size() <= 10);
+            }
+            Assert.assertEquals(10, storage.getEvictionCount());
+            Assert.assertNotNull(storage.getEntry("key0"));
+            Assert.assertNull(storage.getEntry("key1"));
+            Assert.assertNotNull(storage.getEntry("key19"));
+        }
+        try (PersistentHttpCacheStorage storage = new PersistentHttpCacheStorage(cacheDir, config)) {
+            Assert.assertEquals(10, storage.size());
+            Assert.assertNull(storage.getEntry("key1"));
+        }
+    }
+
+    private long segmentBytes() {
+        long total = 0;
+        for (final File file: cacheDir.listFiles()) {
+            if (file.getName().startsWith(PersistentHttpCacheStorage.SEGMENT_PREFIX)) {
+                total += file.length();
+            }
+        }
+        return total;
+    }
+
+    @Test
+    public void testUpdateWithUnchangedBodyDoesNotRewriteBody() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(4096);
+        try (PersistentHttpCacheStorage storage = open()) {
+            storage.putEntry("foo", HttpTestUtils.makeCacheEntry(body));
+            final long before = segmentBytes();
+            for (int i = 0; i < 10; i++) {
+                final String etag = "\"" + i + "\"";
+                storage.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+                    @Override
+                    public HttpCacheEntry update(final HttpCacheEntry existing) throws IOException {
+                        return HttpTestUtils.makeCacheEntry(new Header[] {
+                                new BasicHeader("ETag", etag) }, toByteArray(existing.getResource()));
+                    }
+
+                });
+            }
+            Assert.assertEquals(before, segmentBytes());
+            final HttpCacheEntry result = storage.getEntry("foo");
+            Assert.assertEquals("\"9\"", result.getFirstHeader("ETag").getValue());
+            Assert.assertArrayEquals(body, toByteArray(result.getResource()));
+
+            storage.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+                @Override
+                public HttpCacheEntry update(final HttpCacheEntry existing) {
+                    return HttpTestUtils.makeCacheEntry(HttpTestUtils.getRandomBytes(4096));
+                }
+
+            });
+            Assert.assertEquals(before + 4096, segmentBytes());
+        }
+    }
+
+    @Test
+    public void testCompactJournal() throws Exception {
+        final File journal = new File(cacheDir, PersistentHttpCacheStorage.JOURNAL_FILE);
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        try (PersistentHttpCacheStorage storage = open()) {
+            for (int i = 0; i < 50; i++) {
+                for (int j = 0; j < 10; j++) {
+                    storage.putEntry("key" + j, entry);
+                }
+            }
+            final long length = journal.length();
+            storage.compactJournal();
+            Assert.assertTrue(journal.length() * 40 < length);
+            assertSameEntry(entry, storage.getEntry("key5"));
+            storage.putEntry("key10", entry);
+        }
+        try (PersistentHttpCacheStorage storage = open()) {
+            Assert.assertEquals(11, storage.size());
+            assertSameEntry(entry, storage.getEntry("key0"));
+            assertSameEntry(entry, storage.getEntry("key10"));
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.hc.core5.http.HttpHost;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class TestPrioritizedSchedulingStrategy {
+
+    private ExecutorService mockExecutor;
+    private HttpHost host1;
+    private HttpHost host2;
+
+    @Before
+    public void setUp() {
+        mockExecutor = mock(ExecutorService.class);
+        host1 = new HttpHost("foo.example.com");
+        host2 = new HttpHost("bar.example.com");
+    }
+
+    private static AsynchronousValidationRequest mockRequest(final HttpHost host, final int hits) {
+        final AsynchronousValidationRequest request = mock(AsynchronousValidationRequest.class);
+        when(request.getTargetHost()).thenReturn(host);
+        when(request.getHits()).thenReturn(hits);
+        return request;
+    }
+
+    private List<Runnable> captureExecuted(final int expected) {
+        final ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(mockExecutor, times(expected)).execute(captor.capture());
+        return captor.getAllValues();
+    }
+
+    @Test
+    public void testLimitsConcurrentRevalidationsPerHost() {
+        final PrioritizedSchedulingStrategy impl = new PrioritizedSchedulingStrategy(mockExecutor, 4, 1, 10);
+        final AsynchronousValidationRequest request1 = mockRequest(host1, 1);
+        final AsynchronousValidationRequest request2 = mockRequest(host1, 1);
+        final AsynchronousValidationRequest request3 = mockRequest(host2, 1);
+        impl.schedule(request1);
+        impl.schedule(request2);
+        impl.schedule(request3);
+
+        Assert.assertEquals(2, impl.getActiveCount());
+        Assert.assertEquals(1, impl.getPendingCount());
+
+        captureExecuted(2).get(0).run();
+        verify(request1).run();
+        Assert.assertEquals(0, impl.getPendingCount());
+        captureExecuted(3).get(2).run();
+        verify(request2).run();
+    }
+
+    @Test
+    public void testRunsMostRequestedRevalidationsFirst() {
+        final PrioritizedSchedulingStrategy impl = new PrioritizedSchedulingStrategy(mockExecutor, 1, 1, 10);
+        final AsynchronousValidationRequest request1 = mockRequest(host1, 1);
+        final AsynchronousValidationRequest request2 = mockRequest(host1, 1);
+        final AsynchronousValidationRequest request3 = mockRequest(host2, 5);
+        impl.schedule(request1);
+        impl.schedule(request2);
+        impl.schedule(request3);
+
+        captureExecuted(1).get(0).run();
+        verify(request1).run();
+        captureExecuted(2).get(1).run();
+        verify(request3).run();
+        captureExecuted(3).get(2).run();
+        verify(request2).run();
+        Assert.assertEquals(0, impl.getActiveCount());
+    }
+
+    @Test(expected=RejectedExecutionException.class)
+    public void testRejectsRequestsBeyondQueueSize() {
+        final PrioritizedSchedulingStrategy impl = new PrioritizedSchedulingStrategy(mockExecutor, 1, 1, 1);
+        impl.schedule(mockRequest(host1, 1));
+        impl.schedule(mockRequest(host1, 1));
+        Assert.assertEquals(1, impl.getPendingCount());
+        impl.schedule(mockRequest(host2, 1));
+    }
+
+    @Test(expected=RejectedExecutionException.class)
+    public void testRejectsRequestsAfterClose() {
+        final PrioritizedSchedulingStrategy impl = new PrioritizedSchedulingStrategy(mockExecutor, 1, 1, 1);
+        impl.close();
+        verify(mockExecutor).shutdown();
+        impl.schedule(mockRequest(host1, 1));
+    }
+
+}
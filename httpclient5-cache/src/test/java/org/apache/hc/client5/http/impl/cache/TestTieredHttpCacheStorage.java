@@ -0,0 +1,184 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestTieredHttpCacheStorage {
+
+    private SimpleHttpCacheStorage remote;
+
+    @Before
+    public void setUp() {
+        remote = new SimpleHttpCacheStorage();
+    }
+
+    @Test
+    public void testRepeatedLookupsAreServedLocally() throws Exception {
+        final TieredHttpCacheStorage storage = new TieredHttpCacheStorage(remote, 10, 0, 1, TimeUnit.HOURS);
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        remote.map.put("foo", entry);
+
+        Assert.assertSame(entry, storage.getEntry("foo"));
+        remote.map.clear();
+        Assert.assertSame(entry, storage.getEntry("foo"));
+        Assert.assertSame(entry, storage.getEntry("foo"));
+        Assert.assertNull(storage.getEntry("bar"));
+
+        Assert.assertEquals(1, storage.getRemoteHitCount());
+        Assert.assertEquals(2, storage.getLocalHitCount());
+        Assert.assertEquals(1, storage.getMissCount());
+    }
+
+    @Test
+    public void testPutIsWrittenThrough() throws Exception {
+        final TieredHttpCacheStorage storage = new TieredHttpCacheStorage(remote, 10, 0, 1, TimeUnit.HOURS);
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        storage.putEntry("foo", entry);
+
+        Assert.assertSame(entry, remote.map.get("foo"));
+        Assert.assertSame(entry, storage.getEntry("foo"));
+        Assert.assertEquals(1, storage.getLocalHitCount());
+        Assert.assertEquals(0, storage.getRemoteHitCount());
+    }
+
+    @Test
+    public void testRemoveAndUpdateInvalidateLocalCopy() throws Exception {
+        final TieredHttpCacheStorage storage = new TieredHttpCacheStorage(remote, 10, 0, 1, TimeUnit.HOURS);
+        final HttpCacheEntry entry1 = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry entry2 = HttpTestUtils.makeCacheEntry();
+        storage.putEntry("foo", entry1);
+        storage.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+            @Override
+            public HttpCacheEntry update(final HttpCacheEntry existing) throws IOException {
+                Assert.assertSame(entry1, existing);
+                return entry2;
+            }
+
+        });
+        Assert.assertEquals(0, storage.getLocalSize());
+        Assert.assertSame(entry2, storage.getEntry("foo"));
+        Assert.assertEquals(1, storage.getRemoteHitCount());
+
+        storage.removeEntry("foo");
+        Assert.assertNull(remote.map.get("foo"));
+        Assert.assertNull(storage.getEntry("foo"));
+        Assert.assertEquals(1, storage.getMissCount());
+    }
+
+    @Test
+    public void testExpiredLocalCopyIsReloaded() throws Exception {
+        final TieredHttpCacheStorage storage = new TieredHttpCacheStorage(remote, 10, 0, 0, TimeUnit.MILLISECONDS);
+        final HttpCacheEntry entry1 = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry entry2 = HttpTestUtils.makeCacheEntry();
+        storage.putEntry("foo", entry1);
+        remote.map.put("foo", entry2);
+
+        Assert.assertSame(entry2, storage.getEntry("foo"));
+        Assert.assertEquals(0, storage.getLocalHitCount());
+        Assert.assertEquals(1, storage.getRemoteHitCount());
+    }
+
+    @Test
+    public void testLocalTierIsBounded() throws Exception {
+        final TieredHttpCacheStorage storage = new TieredHttpCacheStorage(remote, 2, 0, 1, TimeUnit.HOURS);
+        storage.putEntry("a", HttpTestUtils.makeCacheEntry());
+        storage.putEntry("b", HttpTestUtils.makeCacheEntry());
+        storage.putEntry("c", HttpTestUtils.makeCacheEntry());
+
+        Assert.assertEquals(2, storage.getLocalSize());
+        Assert.assertEquals(3, remote.map.size());
+        Assert.assertNotNull(storage.getEntry("a"));
+        Assert.assertNotNull(storage.getEntry("b"));
+        Assert.assertNotNull(storage.getEntry("c"));
+    }
+
+    @Test
+    public void testSlowReadDoesNotReinstateRemovedEntry() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        final TieredHttpCacheStorage[] holder = new TieredHttpCacheStorage[1];
+        final SimpleHttpCacheStorage slowRemote = new SimpleHttpCacheStorage() {
+
+            @Override
+            public HttpCacheEntry getEntry(final String key) throws IOException {
+                final HttpCacheEntry result = super.getEntry(key);
+                // Entry removed by another thread while the read is in progress
+                holder[0].removeEntry(key);
+                return result;
+            }
+
+        };
+        slowRemote.map.put("foo", entry);
+        holder[0] = new TieredHttpCacheStorage(slowRemote, 10, 0, 1, TimeUnit.HOURS);
+
+        Assert.assertSame(entry, holder[0].getEntry("foo"));
+        Assert.assertEquals(0, holder[0].getLocalSize());
+    }
+
+    @Test
+    public void testClearLocal() throws Exception {
+        final TieredHttpCacheStorage storage = new TieredHttpCacheStorage(remote, 10, 0, 1, TimeUnit.HOURS);
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        storage.putEntry("foo", entry);
+        storage.clearLocal();
+
+        Assert.assertEquals(0, storage.getLocalSize());
+        Assert.assertSame(entry, storage.getEntry("foo"));
+        Assert.assertEquals(1, storage.getRemoteHitCount());
+        Assert.assertEquals(1, storage.getLocalSize());
+    }
+
+    @Test
+    public void testBulkLookupCombinesLocalAndRemoteEntries() throws Exception {
+        final TieredHttpCacheStorage storage = new TieredHttpCacheStorage(remote, 10, 0, 1, TimeUnit.HOURS);
+        final HttpCacheEntry entry1 = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry entry2 = HttpTestUtils.makeCacheEntry();
+        storage.putEntry("foo", entry1);
+        remote.map.put("bar", entry2);
+
+        final Map<String, HttpCacheEntry> entries = storage.getEntries(Arrays.asList("foo", "bar", "baz"));
+
+        Assert.assertEquals(2, entries.size());
+        Assert.assertSame(entry1, entries.get("foo"));
+        Assert.assertSame(entry2, entries.get("bar"));
+        Assert.assertEquals(1, storage.getLocalHitCount());
+        Assert.assertEquals(1, storage.getRemoteHitCount());
+        Assert.assertEquals(1, storage.getMissCount());
+        Assert.assertEquals(2, storage.getLocalSize());
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache.ehcache;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateException;
+import org.apache.hc.client5.http.impl.cache.CacheConfig;
+import org.apache.hc.client5.http.impl.cache.HttpTestUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
+
+/**
+ * Measures throughput of {@link EhcacheHttpCacheStorage} when many threads
+ * read, store and update entries of the same in-memory Ehcache.
+ * <p>
+ * Run {@link #main(String[])} from the test classpath to execute the benchmark
+ * with 1 to 64 threads. Keys are drawn from a skewed distribution, so that
+ * concurrent updates regularly race for the same entry.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EhcacheStorageBenchmark {
+
+    @Param({"100", "90", "70"})
+    public int readPercentage;
+
+    @Param({"1000"})
+    public int keyCount;
+
+    private CacheManager cacheManager;
+    private EhcacheHttpCacheStorage storage;
+    private String[] keys;
+    private HttpCacheEntry entry;
+    private HttpCacheUpdateCallback callback;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        final Configuration configuration = new Configuration().name("EhcacheStorageBenchmark");
+        configuration.addDefaultCache(new CacheConfiguration("default", 2 * this.keyCount));
+        this.cacheManager = CacheManager.newInstance(configuration);
+        this.cacheManager.addCache("benchmark");
+        this.storage = new EhcacheHttpCacheStorage(this.cacheManager.getCache("benchmark"),
+                CacheConfig.custom().setMaxUpdateRetries(1000).build());
+        this.keys = new String[this.keyCount];
+        for (int i = 0; i < this.keys.length; i++) {
+            this.keys[i] = "http://example.com:80/resource/" + i;
+        }
+        this.entry = HttpTestUtils.makeCacheEntry(new byte[128]);
+        this.callback = new HttpCacheUpdateCallback() {
+
+            @Override
+            public HttpCacheEntry update(final HttpCacheEntry existing) {
+                return entry;
+            }
+
+        };
+        for (final String key: this.keys) {
+            this.storage.putEntry(key, this.entry);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.cacheManager.shutdown();
+    }
+
+    private String nextKey(final ThreadLocalRandom random) {
+        // Square of a uniform variable favors low indexes
+        final double r = random.nextDouble();
+        return this.keys[(int) (r * r * this.keys.length)];
+    }
+
+    @Benchmark
+    public HttpCacheEntry readWrite() throws IOException, HttpCacheUpdateException {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final String key = nextKey(random);
+        final int op = random.nextInt(100);
+        if (op < this.readPercentage) {
+            return this.storage.getEntry(key);
+        }
+        if (op % 2 == 0) {
+            this.storage.putEntry(key, this.entry);
+        } else {
+            this.storage.updateEntry(key, this.callback);
+        }
+        return this.entry;
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        final int[] threadCounts = { 1, 4, 16, 64 };
+        for (final int threads: threadCounts) {
+            final Options options = new OptionsBuilder()
+                    .include(EhcacheStorageBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+}
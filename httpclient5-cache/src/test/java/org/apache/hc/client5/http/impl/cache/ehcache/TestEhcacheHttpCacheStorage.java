@@ -26,16 +26,29 @@
  */
 package org.apache.hc.client5.http.impl.cache.ehcache;
 
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.cache.HttpCacheEntrySerializer;
@@ -43,11 +56,16 @@ import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
 import org.apache.hc.client5.http.cache.HttpCacheUpdateException;
 import org.apache.hc.client5.http.impl.cache.CacheConfig;
 import org.apache.hc.client5.http.impl.cache.HttpTestUtils;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.message.BasicHeader;
 import org.junit.Test;
 
 import junit.framework.TestCase;
+import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
 
 @SuppressWarnings("boxing") // test code
 public class TestEhcacheHttpCacheStorage extends TestCase {
@@ -110,6 +128,34 @@ public class TestEhcacheHttpCacheStorage extends TestCase {
         assertSame(cachedValue, resultingEntry);
     }
 
+    @Test
+    public void testCacheGetAll() throws IOException {
+        final HttpCacheEntry cachedValue = HttpTestUtils.makeCacheEntry();
+        final List<String> keys = Arrays.asList("foo", "bar");
+        final Map<Object, Element> elements = new HashMap<>();
+        elements.put("foo", new Element("foo", new byte[]{}));
+        elements.put("bar", null);
+
+        when(mockCache.getAll(keys)).thenReturn(elements);
+        when(mockSerializer.readFrom(isA(InputStream.class)))
+                .thenReturn(cachedValue);
+
+        final Map<String, HttpCacheEntry> resultingEntries = impl.getEntries(keys);
+
+        verify(mockCache).getAll(keys);
+        verify(mockSerializer).readFrom(isA(InputStream.class));
+
+        assertEquals(Collections.singletonMap("foo", cachedValue), resultingEntries);
+    }
+
+    @Test
+    public void testCacheRemoveAll() {
+        final List<String> keys = Arrays.asList("foo", "bar");
+
+        impl.removeEntries(keys);
+        verify(mockCache).removeAll(keys);
+    }
+
     @Test
     public void testCacheRemove() {
         final String key = "foo";
@@ -145,7 +191,127 @@ public class TestEhcacheHttpCacheStorage extends TestCase {
 
         verify(mockCache).get(key);
         verify(mockSerializer).writeTo(same(updatedValue), isA(OutputStream.class));
-        verify(mockCache).put(element);
+        verify(mockCache).putIfAbsent(element);
+    }
+
+    @Test
+    public void testCacheUpdateToNullRemovesEntry() throws IOException, HttpCacheUpdateException {
+        final String key = "foo";
+        final HttpCacheEntry existingValue = HttpTestUtils.makeCacheEntry();
+        final Element existingElement = new Element(key, new byte[]{});
+
+        final HttpCacheUpdateCallback callback = new HttpCacheUpdateCallback(){
+            @Override
+            public HttpCacheEntry update(final HttpCacheEntry old){
+                assertSame(existingValue, old);
+                return null;
+            }
+        };
+
+        when(mockCache.get(key)).thenReturn(existingElement);
+        when(mockSerializer.readFrom(isA(InputStream.class))).thenReturn(existingValue);
+        when(mockCache.removeElement(same(existingElement))).thenReturn(true);
+
+        impl.updateEntry(key, callback);
+
+        verify(mockCache).get(key);
+        verify(mockCache).removeElement(same(existingElement));
+        verify(mockSerializer, never()).writeTo(any(HttpCacheEntry.class), isA(OutputStream.class));
+        verifyNoMoreInteractions(mockCache);
+    }
+
+    @Test
+    public void testCacheUpdateOfMissingEntryToNullDoesNothing() throws IOException, HttpCacheUpdateException {
+        final String key = "foo";
+        final HttpCacheUpdateCallback callback = new HttpCacheUpdateCallback(){
+            @Override
+            public HttpCacheEntry update(final HttpCacheEntry old){
+                assertNull(old);
+                return null;
+            }
+        };
+
+        when(mockCache.get(key)).thenReturn(null);
+
+        impl.updateEntry(key, callback);
+
+        verify(mockCache).get(key);
+        verifyNoMoreInteractions(mockCache);
+    }
+
+    @Test
+    public void testCacheUpdateRetriesIfEntryAddedConcurrently() throws IOException, HttpCacheUpdateException {
+        final String key = "foo";
+        final HttpCacheEntry existingValue = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry updatedValue = HttpTestUtils.makeCacheEntry();
+
+        final Element existingElement = new Element(key, new byte[]{});
+
+        final HttpCacheUpdateCallback callback = new HttpCacheUpdateCallback(){
+            @Override
+            public HttpCacheEntry update(final HttpCacheEntry old){
+                return updatedValue;
+            }
+        };
+
+        // entry added by another thread between get and putIfAbsent
+        when(mockCache.get(key)).thenReturn(null).thenReturn(existingElement);
+        when(mockCache.putIfAbsent(isA(Element.class))).thenReturn(existingElement);
+        when(mockSerializer.readFrom(isA(InputStream.class))).thenReturn(existingValue);
+        when(mockCache.replace(same(existingElement), isA(Element.class))).thenReturn(true);
+
+        impl.updateEntry(key, callback);
+
+        verify(mockCache, times(2)).get(key);
+        verify(mockCache).putIfAbsent(isA(Element.class));
+        verify(mockCache).replace(same(existingElement), isA(Element.class));
+    }
+
+    @Test
+    public void testConcurrentUpdatesAreNotLost() throws Exception {
+        final Configuration configuration = new Configuration().name("TestEhcacheHttpCacheStorage");
+        configuration.addDefaultCache(new CacheConfiguration("default", 100));
+        final CacheManager cacheManager = CacheManager.newInstance(configuration);
+        try {
+            cacheManager.addCache("concurrent-updates");
+            final EhcacheHttpCacheStorage storage = new EhcacheHttpCacheStorage(
+                    cacheManager.getCache("concurrent-updates"),
+                    CacheConfig.custom().setMaxUpdateRetries(10000).build());
+            final HttpCacheUpdateCallback increment = new HttpCacheUpdateCallback() {
+                @Override
+                public HttpCacheEntry update(final HttpCacheEntry old) {
+                    final int count = old != null ? Integer.parseInt(old.getFirstHeader("X-Count").getValue()) : 0;
+                    return HttpTestUtils.makeCacheEntry(new Header[] {
+                            new BasicHeader("X-Count", Integer.toString(count + 1)) }, new byte[] { 1 });
+                }
+            };
+            final int threads = 4;
+            final int updates = 50;
+            final ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                final List<Future<Void>> futures = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    futures.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            for (int j = 0; j < updates; j++) {
+                                storage.updateEntry("foo", increment);
+                            }
+                            return null;
+                        }
+                    }));
+                }
+                for (final Future<Void> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+            assertEquals(Integer.toString(threads * updates),
+                    storage.getEntry("foo").getFirstHeader("X-Count").getValue());
+        } finally {
+            cacheManager.shutdown();
+        }
     }
 
     @Test
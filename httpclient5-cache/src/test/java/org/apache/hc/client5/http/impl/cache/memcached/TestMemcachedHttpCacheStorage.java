@@ -34,12 +34,19 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.Future;
 
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
 import org.apache.hc.client5.http.cache.HttpCacheUpdateException;
 import org.apache.hc.client5.http.impl.cache.CacheConfig;
 import org.apache.hc.client5.http.impl.cache.HttpTestUtils;
+import org.apache.hc.core5.concurrent.BasicFuture;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -605,4 +612,107 @@ public class TestMemcachedHttpCacheStorage extends TestCase {
 
         verify(mockKeyHashingScheme).hash(url);
     }
+
+    @Test
+    public void testBulkGetUsesSingleMultiGet() throws IOException {
+        final byte[] serialized = HttpTestUtils.getRandomBytes(128);
+        final HttpCacheEntry cacheEntry = HttpTestUtils.makeCacheEntry();
+        final Map<String, Object> values = new HashMap<>();
+        values.put("key1", serialized);
+        values.put("key2", new Object());
+
+        when(mockKeyHashingScheme.hash("foo")).thenReturn("key1");
+        when(mockKeyHashingScheme.hash("bar")).thenReturn("key2");
+        when(mockKeyHashingScheme.hash("baz")).thenReturn("key3");
+        when(mockMemcachedClient.getBulk(new HashSet<>(Arrays.asList("key1", "key2", "key3"))))
+            .thenReturn(values);
+        when(mockMemcachedCacheEntryFactory.getUnsetCacheEntry())
+            .thenReturn(mockMemcachedCacheEntry);
+        when(mockMemcachedCacheEntry.getStorageKey()).thenReturn("foo");
+        when(mockMemcachedCacheEntry.getHttpCacheEntry()).thenReturn(cacheEntry);
+
+        final Map<String, HttpCacheEntry> result = impl.getEntries(Arrays.asList("foo", "bar", "baz"));
+
+        verify(mockMemcachedClient).getBulk(new HashSet<>(Arrays.asList("key1", "key2", "key3")));
+        verify(mockMemcachedCacheEntry).set(serialized);
+        assertEquals(Collections.singletonMap("foo", cacheEntry), result);
+    }
+
+    @Test
+    public void testBulkGetIgnoresHashCollisions() throws IOException {
+        final byte[] serialized = HttpTestUtils.getRandomBytes(128);
+        when(mockKeyHashingScheme.hash("foo")).thenReturn("key");
+        when(mockMemcachedClient.getBulk(Collections.singleton("key")))
+            .thenReturn(Collections.<String, Object>singletonMap("key", serialized));
+        when(mockMemcachedCacheEntryFactory.getUnsetCacheEntry())
+            .thenReturn(mockMemcachedCacheEntry);
+        when(mockMemcachedCacheEntry.getStorageKey()).thenReturn("not-foo");
+
+        assertTrue(impl.getEntries(Collections.singleton("foo")).isEmpty());
+    }
+
+    @Test
+    public void testBulkRemoveDoesNotWaitForDeletes() throws Exception {
+        when(mockKeyHashingScheme.hash("foo")).thenReturn("key1");
+        when(mockKeyHashingScheme.hash("bar")).thenReturn("key2");
+        when(mockMemcachedClient.delete("key1")).thenReturn(new BasicFuture<Boolean>(null));
+        when(mockMemcachedClient.delete("key2")).thenReturn(new BasicFuture<Boolean>(null));
+
+        impl.removeEntries(Arrays.asList("foo", "bar"));
+
+        verify(mockMemcachedClient).delete("key1");
+        verify(mockMemcachedClient).delete("key2");
+    }
+
+    @Test
+    public void testBulkRemoveThrowsIOExceptionIfMemcachedTimesOut() throws Exception {
+        when(mockKeyHashingScheme.hash("foo")).thenReturn("key");
+        when(mockMemcachedClient.delete("key")).thenThrow(new OperationTimeoutException("timed out"));
+
+        try {
+            impl.removeEntries(Collections.singleton("foo"));
+            fail("should have thrown exception");
+        } catch (final MemcachedOperationTimeoutException expected) {
+        }
+    }
+
+    @Test
+    public void testAsyncGetReconstitutesEntryOnCompletion() throws Exception {
+        final byte[] serialized = HttpTestUtils.getRandomBytes(128);
+        final HttpCacheEntry cacheEntry = HttpTestUtils.makeCacheEntry();
+        final BasicFuture<Object> future = new BasicFuture<>(null);
+
+        when(mockKeyHashingScheme.hash("foo")).thenReturn("key");
+        when(mockMemcachedClient.asyncGet("key")).thenReturn(future);
+        when(mockMemcachedCacheEntryFactory.getUnsetCacheEntry())
+            .thenReturn(mockMemcachedCacheEntry);
+        when(mockMemcachedCacheEntry.getStorageKey()).thenReturn("foo");
+        when(mockMemcachedCacheEntry.getHttpCacheEntry()).thenReturn(cacheEntry);
+
+        final Future<HttpCacheEntry> result = impl.getEntryAsync("foo");
+        assertFalse(result.isDone());
+        future.completed(serialized);
+        assertTrue(result.isDone());
+        assertSame(cacheEntry, result.get());
+        verify(mockMemcachedCacheEntry).set(serialized);
+    }
+
+    @Test
+    public void testAsyncGetOfUnhashableKeyIsCacheMiss() throws Exception {
+        when(mockKeyHashingScheme.hash("foo"))
+            .thenThrow(new MemcachedKeyHashingException(new Exception()));
+
+        assertNull(impl.getEntryAsync("foo").get());
+        verifyNoMoreInteractions(mockMemcachedClient);
+    }
+
+    @Test
+    public void testAsyncRemoveReturnsDeleteFuture() throws Exception {
+        final BasicFuture<Boolean> future = new BasicFuture<>(null);
+        when(mockKeyHashingScheme.hash("foo")).thenReturn("key");
+        when(mockMemcachedClient.delete("key")).thenReturn(future);
+
+        assertSame(future, impl.removeEntryAsync("foo"));
+    }
+
 }
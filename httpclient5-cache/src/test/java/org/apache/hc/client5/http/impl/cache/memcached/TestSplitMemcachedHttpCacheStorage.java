@@ -0,0 +1,352 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache.memcached;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
+import org.apache.hc.client5.http.impl.cache.CacheConfig;
+import org.apache.hc.client5.http.impl.cache.HttpTestUtils;
+import org.apache.hc.core5.concurrent.BasicFuture;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import net.spy.memcached.CASResponse;
+import net.spy.memcached.CASValue;
+import net.spy.memcached.MemcachedClientIF;
+
+public class TestSplitMemcachedHttpCacheStorage {
+
+    private static final int CHUNK_SIZE = 16;
+
+    private Map<String, Object> items;
+    private Map<String, Long> versions;
+    private AtomicInteger bodyWrites;
+    private SplitMemcachedHttpCacheStorage impl;
+
+    @Before
+    public void setUp() throws Exception {
+        items = new HashMap<>();
+        versions = new HashMap<>();
+        bodyWrites = new AtomicInteger();
+        final MemcachedClientIF client = mock(MemcachedClientIF.class);
+        when(client.set(anyString(), anyInt(), any())).thenAnswer(new Answer<Future<Boolean>>() {
+
+            @Override
+            public Future<Boolean> answer(final InvocationOnMock invocation) {
+                final Object[] args = invocation.getArguments();
+                store((String) args[0], args[2]);
+                return completed(Boolean.TRUE);
+            }
+
+        });
+        when(client.add(anyString(), anyInt(), any())).thenAnswer(new Answer<Future<Boolean>>() {
+
+            @Override
+            public Future<Boolean> answer(final InvocationOnMock invocation) {
+                final Object[] args = invocation.getArguments();
+                bodyWrites.incrementAndGet();
+                if (items.containsKey(args[0])) {
+                    return completed(Boolean.FALSE);
+                }
+                store((String) args[0], args[2]);
+                return completed(Boolean.TRUE);
+            }
+
+        });
+        when(client.get(anyString())).thenAnswer(new Answer<Object>() {
+
+            @Override
+            public Object answer(final InvocationOnMock invocation) {
+                return items.get(invocation.getArguments()[0]);
+            }
+
+        });
+        when(client.getBulk(anyCollectionOf(String.class))).thenAnswer(new Answer<Map<String, Object>>() {
+
+            @Override
+            public Map<String, Object> answer(final InvocationOnMock invocation) {
+                final Map<String, Object> result = new HashMap<>();
+                for (final Object key : (Collection<?>) invocation.getArguments()[0]) {
+                    if (items.containsKey(key)) {
+                        result.put((String) key, items.get(key));
+                    }
+                }
+                return result;
+            }
+
+        });
+        when(client.gets(anyString())).thenAnswer(new Answer<CASValue<Object>>() {
+
+            @Override
+            public CASValue<Object> answer(final InvocationOnMock invocation) {
+                final Object key = invocation.getArguments()[0];
+                return items.containsKey(key) ? new CASValue<>(versions.get(key), items.get(key)) : null;
+            }
+
+        });
+        when(client.cas(anyString(), anyLong(), any())).thenAnswer(new Answer<CASResponse>() {
+
+            @Override
+            public CASResponse answer(final InvocationOnMock invocation) {
+                final Object[] args = invocation.getArguments();
+                if (!args[1].equals(versions.get(args[0]))) {
+                    return CASResponse.EXISTS;
+                }
+                store((String) args[0], args[2]);
+                return CASResponse.OK;
+            }
+
+        });
+        when(client.delete(anyString())).thenAnswer(new Answer<Future<Boolean>>() {
+
+            @Override
+            public Future<Boolean> answer(final InvocationOnMock invocation) {
+                return completed(Boolean.valueOf(items.remove(invocation.getArguments()[0]) != null));
+            }
+
+        });
+        impl = new SplitMemcachedHttpCacheStorage(client, CacheConfig.DEFAULT, new SHA256KeyHashingScheme(), CHUNK_SIZE);
+    }
+
+    private void store(final String key, final Object value) {
+        final Long version = versions.get(key);
+        versions.put(key, version != null ? version + 1 : 1L);
+        items.put(key, value);
+    }
+
+    private static Future<Boolean> completed(final Boolean result) {
+        final BasicFuture<Boolean> future = new BasicFuture<>(null);
+        future.completed(result);
+        return future;
+    }
+
+    private static byte[] getBody(final HttpCacheEntry entry) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (InputStream instream = entry.getResource().getInputStream()) {
+            final byte[] buf = new byte[64];
+            int n;
+            while ((n = instream.read(buf)) != -1) {
+                bos.write(buf, 0, n);
+            }
+        }
+        return bos.toByteArray();
+    }
+
+    private int countBodyItems() {
+        int count = 0;
+        for (final String key : items.keySet()) {
+            if (key.startsWith(SplitMemcachedHttpCacheStorage.BODY_KEY_PREFIX)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testLargeBodyIsStoredInChunks() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(CHUNK_SIZE * 2 + 5);
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry(new Header[] {
+                new BasicHeader("ETag", "\"etag\"") }, body);
+
+        impl.putEntry("foo", entry);
+
+        Assert.assertEquals(3, countBodyItems());
+        Assert.assertEquals(4, items.size());
+        final HttpCacheEntry result = impl.getEntry("foo");
+        Assert.assertNotNull(result);
+        Assert.assertArrayEquals(body, getBody(result));
+        Assert.assertEquals("\"etag\"", result.getFirstHeader("ETag").getValue());
+        Assert.assertEquals(entry.getStatusCode(), result.getStatusCode());
+    }
+
+    @Test
+    public void testEntryWithoutBody() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeHeadCacheEntry(
+                new Header[] { new BasicHeader("ETag", "\"etag\"") });
+
+        impl.putEntry("foo", entry);
+
+        Assert.assertEquals(0, countBodyItems());
+        final HttpCacheEntry result = impl.getEntry("foo");
+        Assert.assertNotNull(result);
+        Assert.assertNull(result.getResource());
+    }
+
+    @Test
+    public void testIdenticalBodiesAreStoredOnce() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(CHUNK_SIZE + 1);
+        impl.putEntry("foo", HttpTestUtils.makeCacheEntry(body));
+        impl.putEntry("bar", HttpTestUtils.makeCacheEntry(body));
+
+        Assert.assertEquals(2, countBodyItems());
+        Assert.assertArrayEquals(body, getBody(impl.getEntry("foo")));
+        Assert.assertArrayEquals(body, getBody(impl.getEntry("bar")));
+
+        impl.removeEntry("foo");
+        Assert.assertNull(impl.getEntry("foo"));
+        Assert.assertArrayEquals(body, getBody(impl.getEntry("bar")));
+    }
+
+    @Test
+    public void testHeaderUpdateDoesNotRewriteBody() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(CHUNK_SIZE * 3);
+        impl.putEntry("foo", HttpTestUtils.makeCacheEntry(body));
+        final int bodyWritesBefore = bodyWrites.get();
+
+        impl.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+            @Override
+            public HttpCacheEntry update(final HttpCacheEntry existing) throws IOException {
+                Assert.assertArrayEquals(body, getBody(existing));
+                return HttpTestUtils.makeCacheEntry(new Header[] {
+                        new BasicHeader("ETag", "\"updated\"") }, getBody(existing));
+            }
+
+        });
+
+        Assert.assertEquals(bodyWritesBefore, bodyWrites.get());
+        final HttpCacheEntry result = impl.getEntry("foo");
+        Assert.assertEquals("\"updated\"", result.getFirstHeader("ETag").getValue());
+        Assert.assertArrayEquals(body, getBody(result));
+    }
+
+    @Test
+    public void testUpdateWithNewBodyWritesBody() throws Exception {
+        impl.putEntry("foo", HttpTestUtils.makeCacheEntry(HttpTestUtils.getRandomBytes(10)));
+        final byte[] newBody = HttpTestUtils.getRandomBytes(20);
+
+        impl.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+            @Override
+            public HttpCacheEntry update(final HttpCacheEntry existing) {
+                return HttpTestUtils.makeCacheEntry(existing.getAllHeaders(), newBody);
+            }
+
+        });
+
+        Assert.assertArrayEquals(newBody, getBody(impl.getEntry("foo")));
+    }
+
+    @Test
+    public void testUpdateToNullRemovesEntry() throws Exception {
+        final HttpCacheUpdateCallback removal = new HttpCacheUpdateCallback() {
+
+            @Override
+            public HttpCacheEntry update(final HttpCacheEntry existing) {
+                return null;
+            }
+
+        };
+        impl.updateEntry("foo", removal);
+        Assert.assertTrue(items.isEmpty());
+
+        impl.putEntry("foo", HttpTestUtils.makeCacheEntry(HttpTestUtils.getRandomBytes(10)));
+        impl.updateEntry("foo", removal);
+        Assert.assertNull(impl.getEntry("foo"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBodyWriteTimeout() throws Exception {
+        final MemcachedClientIF client = mock(MemcachedClientIF.class);
+        final Future<Boolean> future = mock(Future.class);
+        when(future.get(anyLong(), any(TimeUnit.class)))
+                .thenThrow(new RuntimeException("Timed out waiting for operation"));
+        when(client.add(anyString(), anyInt(), any())).thenReturn(future);
+        final SplitMemcachedHttpCacheStorage storage = new SplitMemcachedHttpCacheStorage(
+                client, CacheConfig.DEFAULT, new SHA256KeyHashingScheme(), CHUNK_SIZE);
+
+        try {
+            storage.putEntry("foo", HttpTestUtils.makeCacheEntry(HttpTestUtils.getRandomBytes(10)));
+            Assert.fail("MemcachedOperationTimeoutException expected");
+        } catch (final MemcachedOperationTimeoutException expected) {
+        }
+    }
+
+    @Test
+    public void testEvictedBodyIsCacheMiss() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(CHUNK_SIZE * 2);
+        impl.putEntry("foo", HttpTestUtils.makeCacheEntry(body));
+        for (final String key : items.keySet()) {
+            if (key.startsWith(SplitMemcachedHttpCacheStorage.BODY_KEY_PREFIX) && key.endsWith(":1")) {
+                items.remove(key);
+                break;
+            }
+        }
+
+        Assert.assertNull(impl.getEntry("foo"));
+    }
+
+    @Test
+    public void testHashCollisionIsCacheMiss() throws Exception {
+        final MemcachedClientIF client = mock(MemcachedClientIF.class);
+        final KeyHashingScheme collidingScheme = mock(KeyHashingScheme.class);
+        when(collidingScheme.hash(anyString())).thenReturn("key");
+        final SplitMemcachedHttpCacheStorage colliding = new SplitMemcachedHttpCacheStorage(
+                client, CacheConfig.DEFAULT, collidingScheme, CHUNK_SIZE);
+        when(client.add(anyString(), anyInt(), any())).thenReturn(completed(Boolean.TRUE));
+        when(client.set(anyString(), anyInt(), any())).thenAnswer(new Answer<Future<Boolean>>() {
+
+            @Override
+            public Future<Boolean> answer(final InvocationOnMock invocation) {
+                final Object[] args = invocation.getArguments();
+                items.put((String) args[0], args[2]);
+                return completed(Boolean.TRUE);
+            }
+
+        });
+        colliding.putEntry("foo", HttpTestUtils.makeHeadCacheEntry(new Header[0]));
+        when(client.get("key")).thenReturn(items.get("key"));
+
+        Assert.assertNotNull(colliding.getEntry("foo"));
+        Assert.assertNull(colliding.getEntry("bar"));
+    }
+
+}
@@ -59,6 +59,7 @@ public class RequestConfig implements Cloneable {
     private final int connectionRequestTimeout;
     private final int connectTimeout;
     private final int socketTimeout;
+    private final int requestTimeout;
     private final boolean contentCompressionEnabled;
 
     /**
@@ -66,7 +67,7 @@ public class RequestConfig implements Cloneable {
     */
     protected RequestConfig() {
         this(false, null, null, false, null, false, false, false, 0, false, null, null,
-                DEFAULT_CONNECTION_REQUEST_TIMEOUT, DEFAULT_CONNECT_TIMEOUT, DEFAULT_SOCKET_TIMEOUT, false);
+                DEFAULT_CONNECTION_REQUEST_TIMEOUT, DEFAULT_CONNECT_TIMEOUT, DEFAULT_SOCKET_TIMEOUT, 0, false);
     }
 
     RequestConfig(
@@ -85,6 +86,7 @@ public class RequestConfig implements Cloneable {
             final int connectionRequestTimeout,
             final int connectTimeout,
             final int socketTimeout,
+            final int requestTimeout,
             final boolean contentCompressionEnabled) {
         super();
         this.expectContinueEnabled = expectContinueEnabled;
@@ -100,6 +102,7 @@ public class RequestConfig implements Cloneable {
         this.connectionRequestTimeout = connectionRequestTimeout;
         this.connectTimeout = connectTimeout;
         this.socketTimeout = socketTimeout;
+        this.requestTimeout = requestTimeout;
         this.contentCompressionEnabled = contentCompressionEnabled;
     }
 
@@ -277,6 +280,27 @@ public class RequestConfig implements Cloneable {
         return socketTimeout;
     }
 
+    /**
+     * Determines the overall timeout in milliseconds for execution of
+     * a request including connection lease, connect, retries and redirects.
+     * The connection request, connect and socket timeouts applied at each
+     * stage of execution are capped by the remaining portion of this timeout.
+     * <p>
+     * A timeout value of zero or less is interpreted as undefined (no
+     * overall timeout).
+     * </p>
+     * <p>
+     * Default: undefined.
+     * </p>
+     *
+     * @see org.apache.hc.client5.http.protocol.HttpClientContext#REQUEST_DEADLINE
+     *
+     * @since 5.0
+     */
+    public int getRequestTimeout() {
+        return requestTimeout;
+    }
+
     /**
      * Determines whether the target server is requested to compress content.
      * <p>
@@ -311,6 +335,7 @@ public class RequestConfig implements Cloneable {
         builder.append(", connectionRequestTimeout=").append(connectionRequestTimeout);
         builder.append(", connectTimeout=").append(connectTimeout);
         builder.append(", socketTimeout=").append(socketTimeout);
+        builder.append(", requestTimeout=").append(requestTimeout);
         builder.append(", contentCompressionEnabled=").append(contentCompressionEnabled);
         builder.append("]");
         return builder.toString();
@@ -335,6 +360,7 @@ public class RequestConfig implements Cloneable {
             .setConnectionRequestTimeout(config.getConnectionRequestTimeout())
             .setConnectTimeout(config.getConnectTimeout())
             .setSocketTimeout(config.getSocketTimeout())
+            .setRequestTimeout(config.getRequestTimeout())
             .setContentCompressionEnabled(config.isContentCompressionEnabled());
     }
 
@@ -355,6 +381,7 @@ public class RequestConfig implements Cloneable {
         private int connectionRequestTimeout;
         private int connectTimeout;
         private int socketTimeout;
+        private int requestTimeout;
         private boolean contentCompressionEnabled;
 
         Builder() {
@@ -440,6 +467,14 @@ public class RequestConfig implements Cloneable {
             return this;
         }
 
+        /**
+         * @since 5.0
+         */
+        public Builder setRequestTimeout(final int requestTimeout) {
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
         public Builder setContentCompressionEnabled(final boolean contentCompressionEnabled) {
             this.contentCompressionEnabled = contentCompressionEnabled;
             return this;
@@ -467,6 +502,7 @@ public class RequestConfig implements Cloneable {
                     connectionRequestTimeout,
                     connectTimeout,
                     socketTimeout,
+                    requestTimeout,
                     contentCompressionEnabled);
         }
 
@@ -0,0 +1,342 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.SystemDefaultDnsResolver;
+import org.apache.hc.core5.annotation.ThreadSafe;
+import org.apache.hc.core5.util.Args;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * {@link DnsResolver} decorator that caches results of host name resolution.
+ * <p>
+ * Successful lookups are cached for the positive time-to-live, failed ones
+ * for the negative time-to-live. Entries looked up past the refresh threshold
+ * (a fraction of their time-to-live) are refreshed asynchronously, so that hosts
+ * in active use never get resolved on the request execution path once they
+ * have been looked up. Concurrent lookups of the same host name not yet in
+ * the cache are collapsed into one. Once the cache holds more than the maximum
+ * number of entries, expired entries are purged and, if that is not enough,
+ * arbitrary entries are evicted.
+ * </p>
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class CachingDnsResolver implements DnsResolver, Closeable {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final Logger log = LogManager.getLogger(getClass());
+
+    private final DnsResolver resolver;
+    private final long positiveTtlMs;
+    private final long negativeTtlMs;
+    private final float refreshThreshold;
+    private final int maxEntries;
+    private final ExecutorService executorService;
+    private final ConcurrentMap<String, Entry> cache;
+    private final ConcurrentMap<String, FutureTask<Entry>> lookups;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    /**
+     * @param resolver the resolver to delegate lookups to.
+     * @param positiveTtl time to cache successful lookups for.
+     * @param negativeTtl time to cache failed lookups for.
+     * @param tunit time unit of the time-to-live values.
+     * @param refreshThreshold fraction of the time-to-live after which an entry
+     *   gets refreshed in the background upon access. Values outside of
+     *   the {@code (0, 1)} interval disable background refresh.
+     * @param maxEntries maximum number of host names to cache.
+     * @param executorService executor used to refresh entries in the background.
+     *   If {@code null} a single daemon thread is used.
+     */
+    public CachingDnsResolver(
+            final DnsResolver resolver,
+            final long positiveTtl,
+            final long negativeTtl,
+            final TimeUnit tunit,
+            final float refreshThreshold,
+            final int maxEntries,
+            final ExecutorService executorService) {
+        Args.notNull(tunit, "Time unit");
+        Args.positive(maxEntries, "Max entries");
+        this.resolver = resolver != null ? resolver : SystemDefaultDnsResolver.INSTANCE;
+        this.positiveTtlMs = tunit.toMillis(positiveTtl);
+        this.negativeTtlMs = tunit.toMillis(negativeTtl);
+        this.refreshThreshold = refreshThreshold;
+        this.maxEntries = maxEntries;
+        this.executorService = executorService != null ? executorService :
+            Executors.newSingleThreadExecutor(new DefaultThreadFactory());
+        this.cache = new ConcurrentHashMap<>();
+        this.lookups = new ConcurrentHashMap<>();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    public CachingDnsResolver(
+            final DnsResolver resolver,
+            final long positiveTtl,
+            final long negativeTtl,
+            final TimeUnit tunit,
+            final float refreshThreshold,
+            final ExecutorService executorService) {
+        this(resolver, positiveTtl, negativeTtl, tunit, refreshThreshold, DEFAULT_MAX_ENTRIES, executorService);
+    }
+
+    public CachingDnsResolver(
+            final DnsResolver resolver,
+            final long positiveTtl,
+            final long negativeTtl,
+            final TimeUnit tunit) {
+        this(resolver, positiveTtl, negativeTtl, tunit, 0.75f, null);
+    }
+
+    /**
+     * Creates resolver caching successful lookups for 60 seconds and failed
+     * ones for 10 seconds.
+     */
+    public CachingDnsResolver(final DnsResolver resolver) {
+        this(resolver, 60, 10, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public InetAddress[] resolve(final String host) throws UnknownHostException {
+        final long now = System.currentTimeMillis();
+        Entry entry = this.cache.get(host);
+        if (entry != null && now < entry.expiry) {
+            this.hits.incrementAndGet();
+            if (now >= entry.refreshAfter && entry.refreshing.compareAndSet(false, true)) {
+                scheduleRefresh(host, entry);
+            }
+        } else {
+            this.misses.incrementAndGet();
+            entry = lookup(host);
+        }
+        if (entry.addresses == null) {
+            throw new UnknownHostException(entry.failure.getMessage());
+        }
+        return entry.addresses.clone();
+    }
+
+    @Override
+    public String resolveCanonicalHostname(final String host) throws UnknownHostException {
+        return this.resolver.resolveCanonicalHostname(host);
+    }
+
+    private Entry lookup(final String host) {
+        FutureTask<Entry> task = this.lookups.get(host);
+        if (task == null) {
+            final FutureTask<Entry> newTask = new FutureTask<>(new Callable<Entry>() {
+
+                @Override
+                public Entry call() {
+                    final Entry entry = load(host);
+                    store(host, entry);
+                    return entry;
+                }
+
+            });
+            task = this.lookups.putIfAbsent(host, newTask);
+            if (task == null) {
+                task = newTask;
+                try {
+                    task.run();
+                } finally {
+                    this.lookups.remove(host, task);
+                }
+            }
+        }
+        boolean interrupted = false;
+        try {
+            for (;;) {
+                try {
+                    return task.get();
+                } catch (final InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private Entry load(final String host) {
+        final long start = System.currentTimeMillis();
+        try {
+            final InetAddress[] addresses = this.resolver.resolve(host);
+            if (this.log.isDebugEnabled()) {
+                this.log.debug("Resolved " + host + " in " + (System.currentTimeMillis() - start) + " ms");
+            }
+            return new Entry(addresses, null, start, this.positiveTtlMs, this.refreshThreshold);
+        } catch (final UnknownHostException ex) {
+            if (this.log.isDebugEnabled()) {
+                this.log.debug("Failed to resolve " + host + ": " + ex.getMessage());
+            }
+            return new Entry(null, ex, start, this.negativeTtlMs, this.refreshThreshold);
+        }
+    }
+
+    private void store(final String host, final Entry entry) {
+        this.cache.put(host, entry);
+        if (this.cache.size() > this.maxEntries) {
+            final long now = System.currentTimeMillis();
+            final Iterator<Entry> it = this.cache.values().iterator();
+            while (it.hasNext()) {
+                if (now >= it.next().expiry) {
+                    it.remove();
+                }
+            }
+            final Iterator<String> keys = this.cache.keySet().iterator();
+            while (this.cache.size() > this.maxEntries && keys.hasNext()) {
+                if (!keys.next().equals(host)) {
+                    keys.remove();
+                }
+            }
+        }
+    }
+
+    private void scheduleRefresh(final String host, final Entry current) {
+        try {
+            this.executorService.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    boolean refreshed = false;
+                    try {
+                        final Entry entry = load(host);
+                        // Failed refresh leaves the current entry in place until it expires
+                        if (entry.addresses != null) {
+                            cache.replace(host, current, entry);
+                            refreshed = true;
+                        }
+                    } finally {
+                        if (!refreshed) {
+                            current.refreshing.set(false);
+                        }
+                    }
+                }
+
+            });
+        } catch (final RejectedExecutionException ex) {
+            current.refreshing.set(false);
+            this.log.debug("DNS refresh rejected", ex);
+        }
+    }
+
+    /**
+     * Removes all cached entries.
+     */
+    public void clear() {
+        this.cache.clear();
+    }
+
+    /**
+     * @return number of lookups served from the cache.
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return number of lookups delegated to the underlying resolver.
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.executorService.shutdownNow();
+    }
+
+    static class Entry {
+
+        final InetAddress[] addresses;
+        final UnknownHostException failure;
+        final long expiry;
+        final long refreshAfter;
+        final AtomicBoolean refreshing;
+
+        Entry(
+                final InetAddress[] addresses,
+                final UnknownHostException failure,
+                final long created,
+                final long ttl,
+                final float refreshThreshold) {
+            this.addresses = addresses;
+            this.failure = failure;
+            this.expiry = created + ttl;
+            this.refreshAfter = addresses != null && refreshThreshold > 0 && refreshThreshold < 1 ?
+                    created + (long) (ttl * refreshThreshold) : Long.MAX_VALUE;
+            this.refreshing = new AtomicBoolean(false);
+        }
+
+    }
+
+    static class DefaultThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread t = new Thread(r, "DNS refresh");
+            t.setDaemon(true);
+            return t;
+        }
+
+    }
+
+}
@@ -42,13 +42,16 @@ import org.apache.logging.log4j.Logger;
  * @since 4.3
  */
 @ThreadSafe
-class CPool extends AbstractConnPool<HttpRoute, ManagedHttpClientConnection, CPoolEntry> {
+class CPool extends AbstractConnPool<HttpRoute, ManagedHttpClientConnection, CPoolEntry>
+        implements ManagedConnPool {
 
     private static final AtomicLong COUNTER = new AtomicLong();
 
     private final Logger log = LogManager.getLogger(CPool.class);
     private final long timeToLive;
     private final TimeUnit tunit;
+    private final AtomicLong created;
+    private final AtomicLong reused;
 
     public CPool(
             final ConnFactory<HttpRoute, ManagedHttpClientConnection> connFactory,
@@ -57,26 +60,39 @@ class CPool extends AbstractConnPool<HttpRoute, ManagedHttpClientConnection, CPo
         super(connFactory, defaultMaxPerRoute, maxTotal);
         this.timeToLive = timeToLive;
         this.tunit = tunit;
+        this.created = new AtomicLong();
+        this.reused = new AtomicLong();
     }
 
     @Override
     protected CPoolEntry createEntry(final HttpRoute route, final ManagedHttpClientConnection conn) {
         final String id = Long.toString(COUNTER.getAndIncrement());
+        this.created.incrementAndGet();
         return new CPoolEntry(this.log, id, route, conn, this.timeToLive, this.tunit);
     }
 
+    @Override
+    protected void onReuse(final CPoolEntry entry) {
+        this.reused.incrementAndGet();
+    }
+
+    @Override
+    public PoolReuseStats getReuseStats() {
+        return new PoolReuseStats(this.created.get(), this.reused.get());
+    }
+
     @Override
     protected boolean validate(final CPoolEntry entry) {
         return !entry.getConnection().isStale();
     }
 
     @Override
-    protected void enumAvailable(final PoolEntryCallback<HttpRoute, ManagedHttpClientConnection> callback) {
+    public void enumAvailable(final PoolEntryCallback<HttpRoute, ManagedHttpClientConnection> callback) {
         super.enumAvailable(callback);
     }
 
     @Override
-    protected void enumLeased(final PoolEntryCallback<HttpRoute, ManagedHttpClientConnection> callback) {
+    public void enumLeased(final PoolEntryCallback<HttpRoute, ManagedHttpClientConnection> callback) {
         super.enumLeased(callback);
     }
 
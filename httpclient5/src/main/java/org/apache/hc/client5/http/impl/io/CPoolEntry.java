@@ -29,6 +29,7 @@ package org.apache.hc.client5.http.impl.io;
 import java.io.IOException;
 import java.util.Date;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.io.ManagedHttpClientConnection;
@@ -44,7 +45,11 @@ import org.apache.logging.log4j.Logger;
 class CPoolEntry extends PoolEntry<HttpRoute, ManagedHttpClientConnection> {
 
     private final Logger log;
+    private final ReentrantLock validationLock;
     private volatile boolean routeComplete;
+    private volatile boolean leased;
+    private volatile long lastValidated;
+    private int leaseCount;
 
     public CPoolEntry(
             final Logger log,
@@ -54,6 +59,7 @@ class CPoolEntry extends PoolEntry<HttpRoute, ManagedHttpClientConnection> {
             final long timeToLive, final TimeUnit tunit) {
         super(id, route, conn, timeToLive, tunit);
         this.log = log;
+        this.validationLock = new ReentrantLock();
     }
 
     public void markRouteComplete() {
@@ -64,6 +70,63 @@ class CPoolEntry extends PoolEntry<HttpRoute, ManagedHttpClientConnection> {
         return this.routeComplete;
     }
 
+    /**
+     * Marks the entry as leased to a consumer. Waits for a background validity
+     * check of the connection to complete, should one be in progress.
+     */
+    void markLeased() {
+        this.leased = true;
+        this.leaseCount++;
+        this.validationLock.lock();
+        this.validationLock.unlock();
+    }
+
+    void markReleased() {
+        this.leased = false;
+    }
+
+    /**
+     * Returns the number of times the connection has been leased again
+     * after its first use.
+     */
+    int getReuseCount() {
+        return this.leaseCount > 0 ? this.leaseCount - 1 : 0;
+    }
+
+    long getLastValidated() {
+        return this.lastValidated;
+    }
+
+    /**
+     * Checks whether the connection has become stale while kept idle in the pool
+     * and closes it if so. The check is skipped if the entry is being leased or
+     * if another thread is already checking the same connection.
+     *
+     * @return {@code false} if the connection has been found stale and closed,
+     *   {@code true} otherwise.
+     */
+    boolean validateIdle() {
+        if (!this.validationLock.tryLock()) {
+            return true;
+        }
+        try {
+            if (this.leased || isClosed()) {
+                return true;
+            }
+            this.lastValidated = System.currentTimeMillis();
+            if (getConnection().isStale()) {
+                if (this.log.isDebugEnabled()) {
+                    this.log.debug("Connection " + this + " is stale");
+                }
+                close();
+                return false;
+            }
+            return true;
+        } finally {
+            this.validationLock.unlock();
+        }
+    }
+
     public void closeConnection() throws IOException {
         final HttpClientConnection conn = getConnection();
         conn.close();
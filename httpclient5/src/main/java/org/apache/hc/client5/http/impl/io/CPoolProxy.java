@@ -29,6 +29,7 @@ package org.apache.hc.client5.http.impl.io;
 import java.io.IOException;
 import java.net.Socket;
 import java.net.SocketAddress;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import javax.net.ssl.SSLSession;
 
@@ -47,6 +48,9 @@ import org.apache.hc.core5.http.protocol.HttpContext;
 @NotThreadSafe
 class CPoolProxy implements ManagedHttpClientConnection, HttpContext {
 
+    private static final AtomicReferenceFieldUpdater<CPoolProxy, CPoolEntry> POOL_ENTRY_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(CPoolProxy.class, CPoolEntry.class, "poolEntry");
+
     private volatile CPoolEntry poolEntry;
 
     CPoolProxy(final CPoolEntry entry) {
@@ -59,9 +63,7 @@ class CPoolProxy implements ManagedHttpClientConnection, HttpContext {
     }
 
     CPoolEntry detach() {
-        final CPoolEntry local = this.poolEntry;
-        this.poolEntry = null;
-        return local;
+        return POOL_ENTRY_UPDATER.getAndSet(this, null);
     }
 
     ManagedHttpClientConnection getConnection() {
@@ -27,12 +27,27 @@
 package org.apache.hc.client5.http.impl.io;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.ConnectException;
+import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.NoRouteToHostException;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hc.client5.http.ConnectTimeoutException;
 import org.apache.hc.client5.http.DnsResolver;
@@ -46,10 +61,12 @@ import org.apache.hc.client5.http.io.ManagedHttpClientConnection;
 import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.client5.http.socket.ConnectionSocketFactory;
 import org.apache.hc.client5.http.socket.LayeredConnectionSocketFactory;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
 import org.apache.hc.core5.annotation.Immutable;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.config.Lookup;
 import org.apache.hc.core5.http.config.SocketConfig;
+import org.apache.hc.core5.http.protocol.BasicHttpContext;
 import org.apache.hc.core5.http.protocol.HttpContext;
 import org.apache.hc.core5.util.Args;
 import org.apache.logging.log4j.LogManager;
@@ -59,6 +76,18 @@ import org.apache.logging.log4j.Logger;
  * Default implementation of {@link HttpClientConnectionOperator} used as default in Http client,
  * when no instance provided by user to {@link BasicHttpClientConnectionManager} or {@link
  * PoolingHttpClientConnectionManager} constructor.
+ * <p>
+ * By default addresses resolved for the target host are tried sequentially.
+ * If a positive connection attempt delay is given, connection attempts
+ * to multiple addresses are raced instead in the fashion of
+ * <a href="https://tools.ietf.org/html/rfc8305">RFC 8305</a> (Happy Eyeballs):
+ * addresses of different families are interleaved and a new attempt is started
+ * each time the delay elapses or the previous attempt fails. The first
+ * connection established wins; the remaining attempts get closed. Attempts
+ * run on an executor shared by all operators, whose daemon threads are
+ * created on demand and terminate once idle for a minute, so it never needs
+ * to be shut down.
+ * </p>
  *
  * @since 4.4
  */
@@ -67,16 +96,35 @@ public class DefaultHttpClientConnectionOperator implements HttpClientConnection
 
     static final String SOCKET_FACTORY_REGISTRY = "http.socket-factory-registry";
 
+    private static final ExecutorService CONNECT_EXECUTOR =
+            Executors.newCachedThreadPool(new DefaultThreadFactory());
+
     private final Logger log = LogManager.getLogger(getClass());
 
     private final Lookup<ConnectionSocketFactory> socketFactoryRegistry;
     private final SchemePortResolver schemePortResolver;
     private final DnsResolver dnsResolver;
+    private final int connectionAttemptDelay;
 
     public DefaultHttpClientConnectionOperator(
             final Lookup<ConnectionSocketFactory> socketFactoryRegistry,
             final SchemePortResolver schemePortResolver,
             final DnsResolver dnsResolver) {
+        this(socketFactoryRegistry, schemePortResolver, dnsResolver, 0);
+    }
+
+    /**
+     * @param connectionAttemptDelay delay in milliseconds between starting
+     *   connection attempts to consecutive addresses of the target host.
+     *   A non-positive value means addresses are tried sequentially.
+     *
+     * @since 5.0
+     */
+    public DefaultHttpClientConnectionOperator(
+            final Lookup<ConnectionSocketFactory> socketFactoryRegistry,
+            final SchemePortResolver schemePortResolver,
+            final DnsResolver dnsResolver,
+            final int connectionAttemptDelay) {
         super();
         Args.notNull(socketFactoryRegistry, "Socket factory registry");
         this.socketFactoryRegistry = socketFactoryRegistry;
@@ -84,6 +132,7 @@ public class DefaultHttpClientConnectionOperator implements HttpClientConnection
             DefaultSchemePortResolver.INSTANCE;
         this.dnsResolver = dnsResolver != null ? dnsResolver :
             SystemDefaultDnsResolver.INSTANCE;
+        this.connectionAttemptDelay = connectionAttemptDelay;
     }
 
     @SuppressWarnings("unchecked")
@@ -113,26 +162,16 @@ public class DefaultHttpClientConnectionOperator implements HttpClientConnection
         final InetAddress[] addresses = host.getAddress() != null ?
                 new InetAddress[] { host.getAddress() } : this.dnsResolver.resolve(host.getHostName());
         final int port = this.schemePortResolver.resolve(host);
+        if (this.connectionAttemptDelay > 0 && addresses.length > 1) {
+            connectConcurrently(conn, sf, host, interleave(addresses), port,
+                    localAddress, connectTimeout, socketConfig, context);
+            return;
+        }
         for (int i = 0; i < addresses.length; i++) {
             final InetAddress address = addresses[i];
             final boolean last = i == addresses.length - 1;
 
-            Socket sock = sf.createSocket(context);
-            sock.setSoTimeout(socketConfig.getSoTimeout());
-            sock.setReuseAddress(socketConfig.isSoReuseAddress());
-            sock.setTcpNoDelay(socketConfig.isTcpNoDelay());
-            sock.setKeepAlive(socketConfig.isSoKeepAlive());
-            if (socketConfig.getRcvBufSize() > 0) {
-                sock.setReceiveBufferSize(socketConfig.getRcvBufSize());
-            }
-            if (socketConfig.getSndBufSize() > 0) {
-                sock.setSendBufferSize(socketConfig.getSndBufSize());
-            }
-
-            final int linger = socketConfig.getSoLinger();
-            if (linger >= 0) {
-                sock.setSoLinger(true, linger);
-            }
+            Socket sock = createSocket(sf, socketConfig, context);
             conn.bind(sock);
 
             final InetSocketAddress remoteAddress = new InetSocketAddress(address, port);
@@ -172,6 +211,211 @@ public class DefaultHttpClientConnectionOperator implements HttpClientConnection
         }
     }
 
+    private Socket createSocket(
+            final ConnectionSocketFactory sf,
+            final SocketConfig socketConfig,
+            final HttpContext context) throws IOException {
+        final Socket sock = sf.createSocket(context);
+        sock.setSoTimeout(socketConfig.getSoTimeout());
+        sock.setReuseAddress(socketConfig.isSoReuseAddress());
+        sock.setTcpNoDelay(socketConfig.isTcpNoDelay());
+        sock.setKeepAlive(socketConfig.isSoKeepAlive());
+        if (socketConfig.getRcvBufSize() > 0) {
+            sock.setReceiveBufferSize(socketConfig.getRcvBufSize());
+        }
+        if (socketConfig.getSndBufSize() > 0) {
+            sock.setSendBufferSize(socketConfig.getSndBufSize());
+        }
+
+        final int linger = socketConfig.getSoLinger();
+        if (linger >= 0) {
+            sock.setSoLinger(true, linger);
+        }
+        return sock;
+    }
+
+    private void connectConcurrently(
+            final ManagedHttpClientConnection conn,
+            final ConnectionSocketFactory sf,
+            final HttpHost host,
+            final InetAddress[] addresses,
+            final int port,
+            final InetSocketAddress localAddress,
+            final int connectTimeout,
+            final SocketConfig socketConfig,
+            final HttpContext context) throws IOException {
+        final CompletionService<Socket> completionService = new ExecutorCompletionService<>(CONNECT_EXECUTOR);
+        final Map<Future<Socket>, ConnectAttempt> attempts = new HashMap<>(addresses.length);
+        Socket winner = null;
+        ConnectAttempt winningAttempt = null;
+        IOException lastFailure = null;
+        try {
+            int next = 0;
+            int pending = 0;
+            while (next < addresses.length || pending > 0) {
+                if (pending == 0) {
+                    submitAttempt(completionService, attempts, sf, host, addresses[next++], port,
+                            localAddress, connectTimeout, socketConfig, context);
+                    pending++;
+                }
+                final Future<Socket> future;
+                if (next < addresses.length) {
+                    future = completionService.poll(this.connectionAttemptDelay, TimeUnit.MILLISECONDS);
+                    if (future == null) {
+                        if (this.log.isDebugEnabled()) {
+                            this.log.debug("Connect to " + addresses[next - 1] + " is taking too long. " +
+                                    "Racing connection attempt using another IP address");
+                        }
+                        submitAttempt(completionService, attempts, sf, host, addresses[next++], port,
+                                localAddress, connectTimeout, socketConfig, context);
+                        pending++;
+                        continue;
+                    }
+                } else {
+                    future = completionService.take();
+                }
+                pending--;
+                try {
+                    winner = future.get();
+                    winningAttempt = attempts.get(future);
+                    break;
+                } catch (final ExecutionException ex) {
+                    final Throwable cause = ex.getCause();
+                    if (cause instanceof IOException) {
+                        lastFailure = (IOException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else {
+                        throw new IOException(cause);
+                    }
+                    if (this.log.isDebugEnabled()) {
+                        this.log.debug("Connection attempt failed: " + cause.getMessage());
+                    }
+                    // Do not wait out the attempt delay for the next address
+                    if (pending > 0 && next < addresses.length) {
+                        submitAttempt(completionService, attempts, sf, host, addresses[next++], port,
+                                localAddress, connectTimeout, socketConfig, context);
+                        pending++;
+                    }
+                }
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Connect interrupted");
+        } finally {
+            // Closing the plain socket aborts a pending connection attempt
+            // as well as closes a connection established by a losing attempt
+            for (final ConnectAttempt attempt: attempts.values()) {
+                if (attempt != winningAttempt) {
+                    closeQuietly(attempt.socket);
+                }
+            }
+        }
+        if (winner != null) {
+            // Attributes set by the socket factory are only passed on for
+            // the connection actually used
+            final Object handshakeTime = winningAttempt.context.getAttribute(
+                    SSLConnectionSocketFactory.TLS_HANDSHAKE_TIME);
+            if (handshakeTime != null) {
+                context.setAttribute(SSLConnectionSocketFactory.TLS_HANDSHAKE_TIME, handshakeTime);
+            }
+            conn.bind(winner);
+            if (this.log.isDebugEnabled()) {
+                this.log.debug("Connection established " + conn);
+            }
+            return;
+        }
+        if (lastFailure instanceof SocketTimeoutException) {
+            throw new ConnectTimeoutException(lastFailure, host, addresses);
+        } else if (lastFailure instanceof ConnectException) {
+            if ("Connection timed out".equals(lastFailure.getMessage())) {
+                throw new ConnectTimeoutException(lastFailure, host, addresses);
+            } else {
+                throw new HttpHostConnectException(lastFailure, host, addresses);
+            }
+        } else if (lastFailure != null) {
+            throw lastFailure;
+        }
+    }
+
+    private void submitAttempt(
+            final CompletionService<Socket> completionService,
+            final Map<Future<Socket>, ConnectAttempt> attempts,
+            final ConnectionSocketFactory sf,
+            final HttpHost host,
+            final InetAddress address,
+            final int port,
+            final InetSocketAddress localAddress,
+            final int connectTimeout,
+            final SocketConfig socketConfig,
+            final HttpContext context) throws IOException {
+        final Socket sock = createSocket(sf, socketConfig, context);
+        // Each attempt writes to a context of its own
+        final HttpContext attemptContext = new BasicHttpContext(context);
+        final InetSocketAddress remoteAddress = new InetSocketAddress(address, port);
+        if (this.log.isDebugEnabled()) {
+            this.log.debug("Connecting to " + remoteAddress);
+        }
+        final Future<Socket> future = completionService.submit(new Callable<Socket>() {
+
+            @Override
+            public Socket call() throws Exception {
+                return sf.connectSocket(connectTimeout, sock, host, remoteAddress, localAddress, attemptContext);
+            }
+
+        });
+        attempts.put(future, new ConnectAttempt(sock, attemptContext));
+    }
+
+    static final class ConnectAttempt {
+
+        final Socket socket;
+        final HttpContext context;
+
+        ConnectAttempt(final Socket socket, final HttpContext context) {
+            this.socket = socket;
+            this.context = context;
+        }
+
+    }
+
+    private static void closeQuietly(final Socket sock) {
+        try {
+            sock.close();
+        } catch (final IOException ignore) {
+        }
+    }
+
+    /**
+     * Re-orders addresses so that address families alternate, starting with
+     * the family of the first address.
+     */
+    static InetAddress[] interleave(final InetAddress[] addresses) {
+        final List<InetAddress> primary = new ArrayList<>(addresses.length);
+        final List<InetAddress> secondary = new ArrayList<>(addresses.length);
+        final boolean ipv6First = addresses[0] instanceof Inet6Address;
+        for (final InetAddress address: addresses) {
+            if (address instanceof Inet6Address == ipv6First) {
+                primary.add(address);
+            } else {
+                secondary.add(address);
+            }
+        }
+        final InetAddress[] result = new InetAddress[addresses.length];
+        int i = 0;
+        int p = 0;
+        int s = 0;
+        while (i < result.length) {
+            if (p < primary.size()) {
+                result[i++] = primary.get(p++);
+            }
+            if (s < secondary.size()) {
+                result[i++] = secondary.get(s++);
+            }
+        }
+        return result;
+    }
+
     @Override
     public void upgrade(
             final ManagedHttpClientConnection conn,
@@ -195,4 +439,15 @@ public class DefaultHttpClientConnectionOperator implements HttpClientConnection
         conn.bind(sock);
     }
 
+    static class DefaultThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread t = new Thread(r, "Connection attempt");
+            t.setDaemon(true);
+            return t;
+        }
+
+    }
+
 }
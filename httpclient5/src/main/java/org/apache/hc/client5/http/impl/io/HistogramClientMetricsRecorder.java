@@ -0,0 +1,115 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.io;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.io.ClientMetricsRecorder;
+import org.apache.hc.core5.annotation.ThreadSafe;
+
+/**
+ * {@link ClientMetricsRecorder} that records metrics per route into
+ * {@link LatencyHistogram}s.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class HistogramClientMetricsRecorder implements ClientMetricsRecorder {
+
+    private final ConcurrentMap<HttpRoute, RouteMetrics> routeToMetrics;
+
+    public HistogramClientMetricsRecorder() {
+        super();
+        this.routeToMetrics = new ConcurrentHashMap<>();
+    }
+
+    private RouteMetrics getOrCreate(final HttpRoute route) {
+        RouteMetrics metrics = this.routeToMetrics.get(route);
+        if (metrics == null) {
+            final RouteMetrics newMetrics = new RouteMetrics();
+            metrics = this.routeToMetrics.putIfAbsent(route, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns metrics of the given route or {@code null} if nothing
+     * has been recorded for the route.
+     */
+    public RouteMetrics getMetrics(final HttpRoute route) {
+        return this.routeToMetrics.get(route);
+    }
+
+    public Set<HttpRoute> getRoutes() {
+        return this.routeToMetrics.keySet();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void connectionLeased(final HttpRoute route, final long waitTime, final boolean reused) {
+        getOrCreate(route).leased(waitTime, reused);
+    }
+
+    @Override
+    public void connectionEstablished(final HttpRoute route, final long connectTime) {
+        getOrCreate(route).getConnectTime().record(connectTime);
+    }
+
+    @Override
+    public void tlsHandshakeCompleted(final HttpRoute route, final long handshakeTime) {
+        getOrCreate(route).getTlsHandshakeTime().record(handshakeTime);
+    }
+
+    @Override
+    public void connectionClosed(final HttpRoute route, final long lifetime, final int reuseCount) {
+        final RouteMetrics metrics = getOrCreate(route);
+        metrics.getConnectionLifetime().record(lifetime);
+        metrics.getConnectionReuseCount().record(reuseCount);
+    }
+
+    @Override
+    public void responseReceived(final HttpRoute route, final long responseHeadTime) {
+        getOrCreate(route).getResponseHeadTime().record(responseHeadTime);
+    }
+
+    @Override
+    public void exchangeCompleted(final HttpRoute route, final long exchangeTime) {
+        getOrCreate(route).getExchangeTime().record(exchangeTime);
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.io;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.core5.util.Args;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * This class maintains a background thread that periodically opens new persistent
+ * connections to routes that have fewer connections kept idle in the connection pool
+ * than the configured minimum. A non-positive connect timeout is replaced with a default
+ * of {@value #DEFAULT_CONNECT_TIMEOUT_MS} milliseconds, as pre-warming must not wait for
+ * the connection pool indefinitely.
+ *
+ * @see PoolingHttpClientConnectionManager#setMinIdlePerRoute(int)
+ * @see PoolingHttpClientConnectionManager#replenishIdleConnections(long, TimeUnit)
+ *
+ * @since 5.0
+ */
+public final class IdleConnectionReplenisher {
+
+    static final long DEFAULT_CONNECT_TIMEOUT_MS = 30000;
+
+    private final Logger log = LogManager.getLogger(getClass());
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final ThreadFactory threadFactory;
+    private final Thread thread;
+    private final long sleepTimeMs;
+    private final long connectTimeoutMs;
+
+    private volatile Exception exception;
+
+    public IdleConnectionReplenisher(
+            final PoolingHttpClientConnectionManager connectionManager,
+            final ThreadFactory threadFactory,
+            final long sleepTime, final TimeUnit sleepTimeUnit,
+            final long connectTimeout, final TimeUnit connectTimeoutUnit) {
+        this.connectionManager = Args.notNull(connectionManager, "Connection manager");
+        this.threadFactory = threadFactory != null ? threadFactory : new DefaultThreadFactory();
+        this.sleepTimeMs = sleepTimeUnit != null ? sleepTimeUnit.toMillis(sleepTime) : sleepTime;
+        final long timeoutMs = connectTimeoutUnit != null ? connectTimeoutUnit.toMillis(connectTimeout) : connectTimeout;
+        this.connectTimeoutMs = timeoutMs > 0 ? timeoutMs : DEFAULT_CONNECT_TIMEOUT_MS;
+        this.thread = this.threadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        Thread.sleep(sleepTimeMs);
+                        try {
+                            connectionManager.replenishIdleConnections(connectTimeoutMs, TimeUnit.MILLISECONDS);
+                        } catch (final RuntimeException ex) {
+                            log.error("Failed to replenish idle connections", ex);
+                        }
+                    }
+                } catch (final Exception ex) {
+                    exception = ex;
+                }
+
+            }
+        });
+    }
+
+    public IdleConnectionReplenisher(
+            final PoolingHttpClientConnectionManager connectionManager,
+            final long sleepTime, final TimeUnit sleepTimeUnit,
+            final long connectTimeout, final TimeUnit connectTimeoutUnit) {
+        this(connectionManager, null, sleepTime, sleepTimeUnit, connectTimeout, connectTimeoutUnit);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public void shutdown() {
+        thread.interrupt();
+    }
+
+    public boolean isRunning() {
+        return thread.isAlive();
+    }
+
+    public void awaitTermination(final long time, final TimeUnit tunit) throws InterruptedException {
+        thread.join((tunit != null ? tunit : TimeUnit.MILLISECONDS).toMillis(time));
+    }
+
+    static class DefaultThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread t = new Thread(r, "Connection replenisher");
+            t.setDaemon(true);
+            return t;
+        }
+
+    }
+
+}
@@ -0,0 +1,867 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.io;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.io.ManagedHttpClientConnection;
+import org.apache.hc.core5.annotation.ThreadSafe;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.pool.PoolEntry;
+import org.apache.hc.core5.pool.PoolEntryCallback;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.pool.io.ConnFactory;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.Asserts;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Connection pool that maintains a separate sub-pool with its own lock
+ * for each route. Threads leasing and releasing connections for different
+ * routes do not contend for the same lock. The total number of connections
+ * is bounded by means of a shared atomic counter. Once the total limit
+ * has been reached a thread attempts to make room by closing an idle
+ * connection of any route before it starts waiting.
+ * <p>
+ * Idle connections of a route are re-used in the order defined by
+ * {@link PoolReusePolicy}.
+ * </p>
+ * <p>
+ * Threads waiting for a connection of the same route are woken up in
+ * the order of their lease deadlines, so that the request with the least
+ * time left gets the next released connection. Waiters without a deadline
+ * are served after those with one, in the order of their arrival.
+ * </p>
+ *
+ * @see PoolConcurrencyPolicy#LAX
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+class LaxCPool implements ManagedConnPool {
+
+    private static final AtomicLong COUNTER = new AtomicLong();
+    private static final AtomicLong WAITER_COUNTER = new AtomicLong();
+
+    private static final Comparator<LeaseFuture> DEADLINE_ORDER = new Comparator<LeaseFuture>() {
+
+        @Override
+        public int compare(final LeaseFuture f1, final LeaseFuture f2) {
+            if (f1.deadline != f2.deadline) {
+                return f1.deadline < f2.deadline ? -1 : 1;
+            }
+            return f1.seqNo < f2.seqNo ? -1 : (f1.seqNo == f2.seqNo ? 0 : 1);
+        }
+
+    };
+
+    private final Logger log = LogManager.getLogger(LaxCPool.class);
+    private final ConnFactory<HttpRoute, ManagedHttpClientConnection> connFactory;
+    private final long timeToLive;
+    private final TimeUnit tunit;
+    private final PoolReusePolicy reusePolicy;
+    private final ConcurrentMap<HttpRoute, RoutePool> routeToPool;
+    private final ConcurrentMap<HttpRoute, Integer> maxPerRoute;
+    private final AtomicInteger totalAllocated;
+    private final AtomicInteger totalStarving;
+    private final AtomicLong created;
+    private final AtomicLong reused;
+
+    private volatile boolean isShutDown;
+    private volatile int defaultMaxPerRoute;
+    private volatile int maxTotal;
+    private volatile int validateAfterInactivity;
+
+    public LaxCPool(
+            final ConnFactory<HttpRoute, ManagedHttpClientConnection> connFactory,
+            final int defaultMaxPerRoute, final int maxTotal,
+            final long timeToLive, final TimeUnit tunit) {
+        this(connFactory, defaultMaxPerRoute, maxTotal, timeToLive, tunit, PoolReusePolicy.LIFO);
+    }
+
+    public LaxCPool(
+            final ConnFactory<HttpRoute, ManagedHttpClientConnection> connFactory,
+            final int defaultMaxPerRoute, final int maxTotal,
+            final long timeToLive, final TimeUnit tunit,
+            final PoolReusePolicy reusePolicy) {
+        super();
+        this.connFactory = Args.notNull(connFactory, "Connection factory");
+        this.defaultMaxPerRoute = Args.positive(defaultMaxPerRoute, "Max per route value");
+        this.maxTotal = Args.positive(maxTotal, "Max total value");
+        this.timeToLive = timeToLive;
+        this.tunit = tunit;
+        this.reusePolicy = reusePolicy != null ? reusePolicy : PoolReusePolicy.LIFO;
+        this.routeToPool = new ConcurrentHashMap<>();
+        this.maxPerRoute = new ConcurrentHashMap<>();
+        this.totalAllocated = new AtomicInteger(0);
+        this.totalStarving = new AtomicInteger(0);
+        this.created = new AtomicLong();
+        this.reused = new AtomicLong();
+    }
+
+    protected CPoolEntry createEntry(final HttpRoute route, final ManagedHttpClientConnection conn) {
+        final String id = Long.toString(COUNTER.getAndIncrement());
+        return new CPoolEntry(this.log, id, route, conn, this.timeToLive, this.tunit);
+    }
+
+    protected boolean validate(final CPoolEntry entry) {
+        return !entry.getConnection().isStale();
+    }
+
+    public boolean isShutdown() {
+        return this.isShutDown;
+    }
+
+    @Override
+    public void shutdown() throws IOException {
+        if (this.isShutDown) {
+            return;
+        }
+        this.isShutDown = true;
+        for (final RoutePool pool: this.routeToPool.values()) {
+            pool.lock.lock();
+            try {
+                for (final CPoolEntry entry: pool.available) {
+                    entry.close();
+                }
+                for (final CPoolEntry entry: pool.leased) {
+                    entry.close();
+                }
+                for (final LeaseFuture future: new LinkedList<>(pool.pending)) {
+                    future.cancel(true);
+                }
+                pool.available.clear();
+                pool.leased.clear();
+                pool.removed = true;
+            } finally {
+                pool.lock.unlock();
+            }
+        }
+        this.routeToPool.clear();
+    }
+
+    private RoutePool getPool(final HttpRoute route) {
+        RoutePool pool = this.routeToPool.get(route);
+        if (pool == null) {
+            final RoutePool newPool = new RoutePool(route, this.reusePolicy);
+            pool = this.routeToPool.putIfAbsent(route, newPool);
+            if (pool == null) {
+                pool = newPool;
+            }
+        }
+        return pool;
+    }
+
+    @Override
+    public Future<CPoolEntry> lease(
+            final HttpRoute route, final Object state, final FutureCallback<CPoolEntry> callback) {
+        Args.notNull(route, "Route");
+        Asserts.check(!this.isShutDown, "Connection pool shut down");
+        return new LeaseFuture(route, state, callback);
+    }
+
+    public Future<CPoolEntry> lease(final HttpRoute route, final Object state) {
+        return lease(route, state, null);
+    }
+
+    private CPoolEntry getPoolEntryBlocking(
+            final HttpRoute route, final Object state,
+            final long timeout, final TimeUnit tunit,
+            final LeaseFuture future) throws IOException, InterruptedException, TimeoutException {
+
+        Date deadline = null;
+        if (timeout > 0) {
+            deadline = new Date (System.currentTimeMillis() + tunit.toMillis(timeout));
+        }
+        future.deadline = deadline != null ? deadline.getTime() : Long.MAX_VALUE;
+        for (;;) {
+            final RoutePool pool = getPool(route);
+            boolean retry = false;
+            boolean wakeUpOther = false;
+            pool.lock.lock();
+            try {
+                if (pool.removed && !this.isShutDown) {
+                    // The sub-pool has just been purged, retry with a new one
+                    continue;
+                }
+                if (future.isCancelled()) {
+                    throw new InterruptedException("Operation interrupted");
+                }
+                Asserts.check(!this.isShutDown, "Connection pool shut down");
+
+                CPoolEntry entry;
+                for (;;) {
+                    entry = pool.getFree(state);
+                    if (entry == null) {
+                        break;
+                    }
+                    if (entry.isExpired(System.currentTimeMillis())) {
+                        entry.close();
+                    } else if (this.validateAfterInactivity > 0) {
+                        if (entry.getUpdated() + this.validateAfterInactivity <= System.currentTimeMillis()) {
+                            if (!validate(entry)) {
+                                entry.close();
+                            }
+                        }
+                    }
+                    if (entry.isClosed()) {
+                        pool.available.remove(entry);
+                        discard(entry);
+                    } else {
+                        break;
+                    }
+                }
+                if (entry != null) {
+                    pool.available.remove(entry);
+                    pool.leased.add(entry);
+                    this.reused.incrementAndGet();
+                    future.complete(entry);
+                    return entry;
+                }
+
+                // New connection is needed
+                final int maxPerRoute = getMax(route);
+                // Shrink the pool prior to allocating a new connection
+                final int excess = Math.max(0, pool.getAllocatedCount() + 1 - maxPerRoute);
+                for (int i = 0; i < excess; i++) {
+                    final CPoolEntry lastUsed = pool.pollLeastRecentlyUsed();
+                    if (lastUsed == null) {
+                        break;
+                    }
+                    discard(lastUsed);
+                }
+
+                if (pool.getAllocatedCount() < maxPerRoute) {
+                    // Register interest in the total capacity before attempting to
+                    // claim it so that concurrent releases on other routes wake us up
+                    pool.starving.add(future);
+                    this.totalStarving.incrementAndGet();
+                    if (reserve() || (evictIdle(pool) && reserve())) {
+                        final ManagedHttpClientConnection conn;
+                        try {
+                            conn = this.connFactory.create(route);
+                        } catch (final IOException | RuntimeException ex) {
+                            this.totalAllocated.decrementAndGet();
+                            throw ex;
+                        }
+                        entry = createEntry(route, conn);
+                        pool.leased.add(entry);
+                        this.created.incrementAndGet();
+                        future.complete(entry);
+                        return entry;
+                    }
+                }
+
+                pool.pending.add(future);
+                final boolean success = future.await(pool, deadline);
+                if (!success && (deadline != null && deadline.getTime() <= System.currentTimeMillis())) {
+                    break;
+                }
+                retry = true;
+            } finally {
+                pool.pending.remove(future);
+                if (pool.starving.remove(future)) {
+                    this.totalStarving.decrementAndGet();
+                }
+                // A waiter that got woken up but gives up without taking an entry
+                // (timeout, cancellation, failure) passes the wakeup on
+                if (future.signalled) {
+                    future.signalled = false;
+                    if (!retry && !wakeUpNext(pool)) {
+                        wakeUpOther = true;
+                    }
+                }
+                pool.lock.unlock();
+                if (wakeUpOther && this.totalStarving.get() > 0) {
+                    wakeUpStarving(pool, 1);
+                }
+            }
+        }
+        throw new TimeoutException("Timeout waiting for connection");
+    }
+
+    private boolean reserve() {
+        for (;;) {
+            final int current = this.totalAllocated.get();
+            if (current >= this.maxTotal) {
+                return false;
+            }
+            if (this.totalAllocated.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Closes the least recently used idle connection, preferably of the given
+     * sub-pool, in order to free up total capacity. Sub-pools of other routes
+     * are only probed if their lock can be acquired without waiting.
+     * <p>
+     * Must be called while holding the lock of {@code current}.
+     */
+    private boolean evictIdle(final RoutePool current) {
+        final CPoolEntry entry = current.pollLeastRecentlyUsed();
+        if (entry != null) {
+            discard(entry);
+            return true;
+        }
+        for (final RoutePool pool: this.routeToPool.values()) {
+            if (pool == current) {
+                continue;
+            }
+            if (pool.lock.tryLock()) {
+                try {
+                    final CPoolEntry lastUsed = pool.pollLeastRecentlyUsed();
+                    if (lastUsed != null) {
+                        discard(lastUsed);
+                        return true;
+                    }
+                } finally {
+                    pool.lock.unlock();
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Must be called while holding the lock of the sub-pool the entry belonged to.
+     */
+    private void discard(final CPoolEntry entry) {
+        if (!entry.isClosed()) {
+            entry.close();
+        }
+        this.totalAllocated.decrementAndGet();
+    }
+
+    /**
+     * Wakes up the next thread waiting for a connection of the given sub-pool
+     * or for total capacity to open one. Must be called while holding
+     * the lock of the sub-pool.
+     */
+    private boolean wakeUpNext(final RoutePool pool) {
+        LeaseFuture future = pool.pending.poll();
+        if (future == null) {
+            future = pool.starving.poll();
+            if (future == null) {
+                return false;
+            }
+            this.totalStarving.decrementAndGet();
+        }
+        future.wakeup();
+        return true;
+    }
+
+    /**
+     * Wakes up to {@code max} threads waiting for total capacity on routes
+     * other than {@code exclude}. Must not be called while holding any
+     * sub-pool lock.
+     */
+    private void wakeUpStarving(final RoutePool exclude, final int max) {
+        int n = 0;
+        for (final RoutePool pool: this.routeToPool.values()) {
+            if (n >= max || this.totalStarving.get() == 0) {
+                return;
+            }
+            if (pool == exclude) {
+                continue;
+            }
+            pool.lock.lock();
+            try {
+                final LeaseFuture future = pool.starving.poll();
+                if (future != null) {
+                    this.totalStarving.decrementAndGet();
+                    future.wakeup();
+                    n++;
+                }
+            } finally {
+                pool.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void release(final CPoolEntry entry, final boolean reusable) {
+        final RoutePool pool = this.routeToPool.get(entry.getRoute());
+        if (pool == null) {
+            return;
+        }
+        boolean capacityFreed = false;
+        pool.lock.lock();
+        try {
+            if (!pool.leased.remove(entry)) {
+                return;
+            }
+            if (reusable && !this.isShutDown) {
+                pool.free(entry);
+            } else {
+                discard(entry);
+            }
+            final LeaseFuture future = pool.pending.poll();
+            if (future != null) {
+                future.wakeup();
+            } else {
+                capacityFreed = true;
+            }
+        } finally {
+            pool.lock.unlock();
+        }
+        if (capacityFreed && this.totalStarving.get() > 0) {
+            wakeUpStarving(pool, 1);
+        }
+    }
+
+    private int getMax(final HttpRoute route) {
+        final Integer v = this.maxPerRoute.get(route);
+        if (v != null) {
+            return v.intValue();
+        } else {
+            return this.defaultMaxPerRoute;
+        }
+    }
+
+    @Override
+    public void setMaxTotal(final int max) {
+        Args.positive(max, "Max value");
+        this.maxTotal = max;
+    }
+
+    @Override
+    public int getMaxTotal() {
+        return this.maxTotal;
+    }
+
+    @Override
+    public void setDefaultMaxPerRoute(final int max) {
+        Args.positive(max, "Max per route value");
+        this.defaultMaxPerRoute = max;
+    }
+
+    @Override
+    public int getDefaultMaxPerRoute() {
+        return this.defaultMaxPerRoute;
+    }
+
+    @Override
+    public void setMaxPerRoute(final HttpRoute route, final int max) {
+        Args.notNull(route, "Route");
+        Args.positive(max, "Max per route value");
+        this.maxPerRoute.put(route, Integer.valueOf(max));
+    }
+
+    @Override
+    public int getMaxPerRoute(final HttpRoute route) {
+        Args.notNull(route, "Route");
+        return getMax(route);
+    }
+
+    @Override
+    public PoolStats getTotalStats() {
+        int leased = 0;
+        int pending = 0;
+        int available = 0;
+        for (final RoutePool pool: this.routeToPool.values()) {
+            pool.lock.lock();
+            try {
+                leased += pool.leased.size();
+                pending += pool.pending.size();
+                available += pool.available.size();
+            } finally {
+                pool.lock.unlock();
+            }
+        }
+        return new PoolStats(leased, pending, available, this.maxTotal);
+    }
+
+    @Override
+    public PoolStats getStats(final HttpRoute route) {
+        Args.notNull(route, "Route");
+        final RoutePool pool = this.routeToPool.get(route);
+        if (pool == null) {
+            return new PoolStats(0, 0, 0, getMax(route));
+        }
+        pool.lock.lock();
+        try {
+            return new PoolStats(
+                    pool.leased.size(),
+                    pool.pending.size(),
+                    pool.available.size(),
+                    getMax(route));
+        } finally {
+            pool.lock.unlock();
+        }
+    }
+
+    @Override
+    public Set<HttpRoute> getRoutes() {
+        return new HashSet<>(this.routeToPool.keySet());
+    }
+
+    @Override
+    public void enumAvailable(final PoolEntryCallback<HttpRoute, ManagedHttpClientConnection> callback) {
+        int freed = 0;
+        for (final RoutePool pool: this.routeToPool.values()) {
+            pool.lock.lock();
+            try {
+                final Iterator<CPoolEntry> it = pool.available.iterator();
+                while (it.hasNext()) {
+                    final CPoolEntry entry = it.next();
+                    callback.process(entry);
+                    if (entry.isClosed()) {
+                        it.remove();
+                        discard(entry);
+                        freed++;
+                    }
+                }
+                if (pool.getAllocatedCount() == 0 && pool.pending.isEmpty()) {
+                    pool.removed = true;
+                    this.routeToPool.remove(pool.route, pool);
+                }
+            } finally {
+                pool.lock.unlock();
+            }
+        }
+        if (freed > 0 && this.totalStarving.get() > 0) {
+            wakeUpStarving(null, freed);
+        }
+    }
+
+    @Override
+    public void enumLeased(final PoolEntryCallback<HttpRoute, ManagedHttpClientConnection> callback) {
+        for (final RoutePool pool: this.routeToPool.values()) {
+            pool.lock.lock();
+            try {
+                for (final CPoolEntry entry: pool.leased) {
+                    callback.process(entry);
+                }
+            } finally {
+                pool.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void closeIdle(final long idletime, final TimeUnit tunit) {
+        Args.notNull(tunit, "Time unit");
+        long time = tunit.toMillis(idletime);
+        if (time < 0) {
+            time = 0;
+        }
+        final long deadline = System.currentTimeMillis() - time;
+        enumAvailable(new PoolEntryCallback<HttpRoute, ManagedHttpClientConnection>() {
+
+            @Override
+            public void process(final PoolEntry<HttpRoute, ManagedHttpClientConnection> entry) {
+                if (entry.getUpdated() <= deadline) {
+                    entry.close();
+                }
+            }
+
+        });
+    }
+
+    @Override
+    public void closeExpired() {
+        final long now = System.currentTimeMillis();
+        enumAvailable(new PoolEntryCallback<HttpRoute, ManagedHttpClientConnection>() {
+
+            @Override
+            public void process(final PoolEntry<HttpRoute, ManagedHttpClientConnection> entry) {
+                if (entry.isExpired(now)) {
+                    entry.close();
+                }
+            }
+
+        });
+    }
+
+    @Override
+    public int getValidateAfterInactivity() {
+        return this.validateAfterInactivity;
+    }
+
+    @Override
+    public void setValidateAfterInactivity(final int ms) {
+        this.validateAfterInactivity = ms;
+    }
+
+    @Override
+    public PoolReuseStats getReuseStats() {
+        return new PoolReuseStats(this.created.get(), this.reused.get());
+    }
+
+    @Override
+    public String toString() {
+        final PoolStats totals = getTotalStats();
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[leased: ");
+        buffer.append(totals.getLeased());
+        buffer.append("][available: ");
+        buffer.append(totals.getAvailable());
+        buffer.append("][pending: ");
+        buffer.append(totals.getPending());
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    static class RoutePool {
+
+        final HttpRoute route;
+        final PoolReusePolicy reusePolicy;
+        final ReentrantLock lock;
+        final LinkedList<CPoolEntry> available;
+        final Set<CPoolEntry> leased;
+        final PriorityQueue<LeaseFuture> pending;
+        final PriorityQueue<LeaseFuture> starving;
+
+        boolean removed;
+
+        RoutePool(final HttpRoute route, final PoolReusePolicy reusePolicy) {
+            super();
+            this.route = route;
+            this.reusePolicy = reusePolicy;
+            this.lock = new ReentrantLock();
+            this.available = new LinkedList<>();
+            this.leased = new HashSet<>();
+            this.pending = new PriorityQueue<>(11, DEADLINE_ORDER);
+            this.starving = new PriorityQueue<>(11, DEADLINE_ORDER);
+        }
+
+        int getAllocatedCount() {
+            return this.available.size() + this.leased.size();
+        }
+
+        /**
+         * Returns an entry to the available list. Available entries are always
+         * looked up from the head of the list, so the insertion point determines
+         * the order of re-use.
+         */
+        void free(final CPoolEntry entry) {
+            if (this.reusePolicy == PoolReusePolicy.FIFO) {
+                this.available.addLast(entry);
+            } else {
+                this.available.addFirst(entry);
+            }
+        }
+
+        /**
+         * Removes the entry that has been idle for the longest time.
+         */
+        CPoolEntry pollLeastRecentlyUsed() {
+            if (this.reusePolicy == PoolReusePolicy.FIFO) {
+                return this.available.pollFirst();
+            } else {
+                return this.available.pollLast();
+            }
+        }
+
+        CPoolEntry getFree(final Object state) {
+            if (!this.available.isEmpty()) {
+                if (state != null) {
+                    for (final CPoolEntry entry: this.available) {
+                        if (state.equals(entry.getState())) {
+                            return entry;
+                        }
+                    }
+                }
+                for (final CPoolEntry entry: this.available) {
+                    if (entry.getState() == null) {
+                        return entry;
+                    }
+                }
+            }
+            return null;
+        }
+
+    }
+
+    class LeaseFuture implements Future<CPoolEntry> {
+
+        private final HttpRoute route;
+        private final Object state;
+        private final FutureCallback<CPoolEntry> callback;
+        private final long seqNo;
+
+        // Must be set before the future gets enqueued in a sub-pool
+        long deadline;
+
+        private volatile boolean cancelled;
+        private volatile boolean completed;
+        private volatile CPoolEntry result;
+        private Condition condition;
+        // Guarded by the lock of the sub-pool
+        boolean signalled;
+
+        LeaseFuture(final HttpRoute route, final Object state, final FutureCallback<CPoolEntry> callback) {
+            super();
+            this.route = route;
+            this.state = state;
+            this.callback = callback;
+            this.seqNo = WAITER_COUNTER.getAndIncrement();
+            this.deadline = Long.MAX_VALUE;
+        }
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            for (;;) {
+                final RoutePool pool = getPool(this.route);
+                pool.lock.lock();
+                try {
+                    if (pool.removed && !isShutDown) {
+                        continue;
+                    }
+                    if (this.completed) {
+                        return false;
+                    }
+                    this.completed = true;
+                    this.cancelled = true;
+                    pool.pending.remove(this);
+                    if (pool.starving.remove(this)) {
+                        totalStarving.decrementAndGet();
+                    }
+                    if (this.callback != null) {
+                        this.callback.cancelled();
+                    }
+                    if (this.condition != null) {
+                        this.condition.signalAll();
+                    }
+                    return true;
+                } finally {
+                    pool.lock.unlock();
+                }
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return this.completed;
+        }
+
+        @Override
+        public CPoolEntry get() throws InterruptedException, ExecutionException {
+            try {
+                return get(0, TimeUnit.MILLISECONDS);
+            } catch (final TimeoutException ex) {
+                throw new ExecutionException(ex);
+            }
+        }
+
+        @Override
+        public CPoolEntry get(
+                final long timeout,
+                final TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            Args.notNull(unit, "Time unit");
+            if (this.completed) {
+                return this.result;
+            }
+            final CPoolEntry entry;
+            try {
+                entry = getPoolEntryBlocking(this.route, this.state, timeout, unit, this);
+            } catch (final IOException ex) {
+                this.completed = true;
+                this.result = null;
+                if (this.callback != null) {
+                    this.callback.failed(ex);
+                }
+                throw new ExecutionException(ex);
+            }
+            if (this.callback != null) {
+                this.callback.completed(entry);
+            }
+            return entry;
+        }
+
+        /**
+         * Must be called while holding the lock of the sub-pool.
+         */
+        void complete(final CPoolEntry entry) {
+            this.result = entry;
+            this.completed = true;
+        }
+
+        /**
+         * Must be called while holding the lock of the sub-pool.
+         */
+        boolean await(final RoutePool pool, final Date deadline) throws InterruptedException {
+            if (this.cancelled) {
+                throw new InterruptedException("Operation interrupted");
+            }
+            this.condition = pool.lock.newCondition();
+            try {
+                final boolean success;
+                if (deadline != null) {
+                    success = this.condition.awaitUntil(deadline);
+                } else {
+                    this.condition.await();
+                    success = true;
+                }
+                if (this.cancelled) {
+                    throw new InterruptedException("Operation interrupted");
+                }
+                return success;
+            } finally {
+                this.condition = null;
+            }
+        }
+
+        /**
+         * Must be called while holding the lock of the sub-pool.
+         */
+        void wakeup() {
+            this.signalled = true;
+            if (this.condition != null) {
+                this.condition.signalAll();
+            }
+        }
+
+    }
+
+}
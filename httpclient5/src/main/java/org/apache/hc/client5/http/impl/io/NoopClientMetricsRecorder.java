@@ -0,0 +1,73 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.io;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.io.ClientMetricsRecorder;
+import org.apache.hc.core5.annotation.Immutable;
+
+/**
+ * {@link ClientMetricsRecorder} that records nothing.
+ *
+ * @since 5.0
+ */
+@Immutable
+public class NoopClientMetricsRecorder implements ClientMetricsRecorder {
+
+    public static final NoopClientMetricsRecorder INSTANCE = new NoopClientMetricsRecorder();
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public void connectionLeased(final HttpRoute route, final long waitTime, final boolean reused) {
+    }
+
+    @Override
+    public void connectionEstablished(final HttpRoute route, final long connectTime) {
+    }
+
+    @Override
+    public void tlsHandshakeCompleted(final HttpRoute route, final long handshakeTime) {
+    }
+
+    @Override
+    public void connectionClosed(final HttpRoute route, final long lifetime, final int reuseCount) {
+    }
+
+    @Override
+    public void responseReceived(final HttpRoute route, final long responseHeadTime) {
+    }
+
+    @Override
+    public void exchangeCompleted(final HttpRoute route, final long exchangeTime) {
+    }
+
+}
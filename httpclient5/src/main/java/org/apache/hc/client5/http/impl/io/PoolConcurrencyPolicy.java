@@ -0,0 +1,54 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.io;
+
+/**
+ * Enumeration of concurrency policies supported by
+ * {@link PoolingHttpClientConnectionManager}.
+ *
+ * @since 5.0
+ */
+public enum PoolConcurrencyPolicy {
+
+    /**
+     * All routes share a single pool lock. Limits on the total number of
+     * connections and on the number of connections per route are enforced
+     * strictly. This is the default policy.
+     */
+    STRICT,
+
+    /**
+     * Each route is served by its own sub-pool with its own lock so that
+     * threads leasing connections for different routes do not contend
+     * with one another. The total limit is enforced through a shared
+     * atomic counter; threads waiting for the total limit to free up
+     * are served on a best effort basis rather than in strict arrival
+     * order across routes.
+     */
+    LAX
+
+}
@@ -0,0 +1,52 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.io;
+
+/**
+ * Enumeration of policies for choosing among idle persistent connections
+ * when a connection is leased from {@link PoolingHttpClientConnectionManager}.
+ *
+ * @since 5.0
+ */
+public enum PoolReusePolicy {
+
+    /**
+     * Last in, first out: the most recently released connection is re-used
+     * first. Traffic is concentrated on as few connections as possible while
+     * the remaining ones are left idle long enough to be evicted. This is
+     * the default policy.
+     */
+    LIFO,
+
+    /**
+     * First in, first out: the least recently released connection is re-used
+     * first, spreading load evenly across all pooled connections. This policy
+     * is only supported by {@link PoolConcurrencyPolicy#LAX} pools.
+     */
+    FIFO
+
+}
@@ -0,0 +1,81 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.io;
+
+import java.io.Serializable;
+
+import org.apache.hc.core5.annotation.Immutable;
+
+/**
+ * Connection reuse statistics of {@link PoolingHttpClientConnectionManager}.
+ * <p>
+ * The total number of connections leased from the pool is the sum of
+ * {@link #getCreated()} and {@link #getReused()}.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Immutable
+public class PoolReuseStats implements Serializable {
+
+    private static final long serialVersionUID = -5475453108446063520L;
+
+    private final long created;
+    private final long reused;
+
+    public PoolReuseStats(final long created, final long reused) {
+        super();
+        this.created = created;
+        this.reused = reused;
+    }
+
+    /**
+     * Returns the number of leases that required a new connection to be created.
+     */
+    public long getCreated() {
+        return this.created;
+    }
+
+    /**
+     * Returns the number of leases served by an idle persistent connection.
+     */
+    public long getReused() {
+        return this.reused;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[created: ");
+        buffer.append(this.created);
+        buffer.append("; reused: ");
+        buffer.append(this.reused);
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+}
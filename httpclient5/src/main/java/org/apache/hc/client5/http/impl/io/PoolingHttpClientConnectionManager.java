@@ -29,11 +29,21 @@ package org.apache.hc.client5.http.impl.io;
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -43,6 +53,7 @@ import org.apache.hc.client5.http.DnsResolver;
 import org.apache.hc.client5.http.HttpConnectionFactory;
 import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.SchemePortResolver;
+import org.apache.hc.client5.http.io.ClientMetricsRecorder;
 import org.apache.hc.client5.http.io.ConnectionRequest;
 import org.apache.hc.client5.http.io.HttpClientConnectionManager;
 import org.apache.hc.client5.http.io.HttpClientConnectionOperator;
@@ -58,8 +69,10 @@ import org.apache.hc.core5.http.config.Registry;
 import org.apache.hc.core5.http.config.RegistryBuilder;
 import org.apache.hc.core5.http.config.SocketConfig;
 import org.apache.hc.core5.http.io.HttpClientConnection;
+import org.apache.hc.core5.http.protocol.BasicHttpContext;
 import org.apache.hc.core5.http.protocol.HttpContext;
 import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.pool.PoolEntry;
 import org.apache.hc.core5.pool.PoolEntryCallback;
 import org.apache.hc.core5.pool.PoolStats;
 import org.apache.hc.core5.pool.io.ConnFactory;
@@ -97,6 +110,20 @@ import org.apache.logging.log4j.Logger;
  * The default timeout is set to 5000ms - see
  * {@link #PoolingHttpClientConnectionManager(HttpClientConnectionOperator, HttpConnectionFactory, long, TimeUnit)}
  * </p>
+ * <p>
+ * Applications sensitive to the latency of the stale connection check may disable
+ * the check at lease time by setting a non-positive
+ * {@link #setValidateAfterInactivity(int) validate after inactivity} period and
+ * either have idle connections validated off the request path by means of
+ * {@link IdleConnectionValidator} or rely on requests failed on a stale connection
+ * being retried.
+ * </p>
+ * <p>
+ * By default all routes are served from a single pool guarded by one lock.
+ * Applications that lease connections for many distinct routes from a large
+ * number of threads may opt for {@link PoolConcurrencyPolicy#LAX}, which
+ * maintains a separately locked sub-pool per route.
+ * </p>
  *
  * @since 4.3
  */
@@ -109,10 +136,17 @@ public class PoolingHttpClientConnectionManager
     public static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 25;
     public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 5;
 
+    private static final int PREWARM_THREADS = 8;
+
     private final ConfigData configData;
-    private final CPool pool;
+    private final ManagedConnPool pool;
     private final HttpClientConnectionOperator connectionOperator;
     private final AtomicBoolean isShutDown;
+    private final Set<HttpRoute> warmRoutes;
+    private final ThreadPoolExecutor prewarmExecutor;
+
+    private volatile int minIdlePerRoute;
+    private volatile ClientMetricsRecorder metricsRecorder;
 
     private static Registry<ConnectionSocketFactory> getDefaultRegistry() {
         return RegistryBuilder.<ConnectionSocketFactory>create()
@@ -171,6 +205,26 @@ public class PoolingHttpClientConnectionManager
         );
     }
 
+    /**
+     * @since 5.0
+     */
+    public PoolingHttpClientConnectionManager(
+            final Registry<ConnectionSocketFactory> socketFactoryRegistry,
+            final HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> connFactory,
+            final SchemePortResolver schemePortResolver,
+            final DnsResolver dnsResolver,
+            final PoolConcurrencyPolicy poolConcurrencyPolicy,
+            final PoolReusePolicy poolReusePolicy,
+            final long timeToLive, final TimeUnit tunit) {
+        this(
+            new DefaultHttpClientConnectionOperator(socketFactoryRegistry, schemePortResolver, dnsResolver),
+            connFactory,
+            poolConcurrencyPolicy,
+            poolReusePolicy,
+            timeToLive, tunit
+        );
+    }
+
     /**
      * @since 4.4
      */
@@ -178,22 +232,56 @@ public class PoolingHttpClientConnectionManager
         final HttpClientConnectionOperator httpClientConnectionOperator,
         final HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> connFactory,
         final long timeToLive, final TimeUnit tunit) {
+        this(httpClientConnectionOperator, connFactory, null, null, timeToLive, tunit);
+    }
+
+    /**
+     * Creates a new connection manager using the given pool policies.
+     * <p>
+     * {@link PoolReusePolicy#FIFO} is only supported by the {@link PoolConcurrencyPolicy#LAX}
+     * pool. The default policies are {@link PoolConcurrencyPolicy#STRICT} and
+     * {@link PoolReusePolicy#LIFO}.
+     * </p>
+     *
+     * @since 5.0
+     */
+    public PoolingHttpClientConnectionManager(
+        final HttpClientConnectionOperator httpClientConnectionOperator,
+        final HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> connFactory,
+        final PoolConcurrencyPolicy poolConcurrencyPolicy,
+        final PoolReusePolicy poolReusePolicy,
+        final long timeToLive, final TimeUnit tunit) {
         super();
         this.configData = new ConfigData();
-        this.pool = new CPool(new InternalConnectionFactory(
-                this.configData, connFactory),
-                DEFAULT_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_MAX_TOTAL_CONNECTIONS,
-                timeToLive, tunit);
+        final InternalConnectionFactory internalConnFactory = new InternalConnectionFactory(
+                this.configData, connFactory);
+        final PoolReusePolicy reusePolicy = poolReusePolicy != null ? poolReusePolicy : PoolReusePolicy.LIFO;
+        switch (poolConcurrencyPolicy != null ? poolConcurrencyPolicy : PoolConcurrencyPolicy.STRICT) {
+            case LAX:
+                this.pool = new LaxCPool(internalConnFactory,
+                        DEFAULT_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_MAX_TOTAL_CONNECTIONS,
+                        timeToLive, tunit, reusePolicy);
+                break;
+            default:
+                Args.check(reusePolicy == PoolReusePolicy.LIFO,
+                        "Strict connection pool supports LIFO connection re-use only");
+                this.pool = new CPool(internalConnFactory,
+                        DEFAULT_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_MAX_TOTAL_CONNECTIONS,
+                        timeToLive, tunit);
+        }
         this.pool.setValidateAfterInactivity(2000);
         this.connectionOperator = Args.notNull(httpClientConnectionOperator, "HttpClientConnectionOperator");
         this.isShutDown = new AtomicBoolean(false);
+        this.warmRoutes = Collections.newSetFromMap(new ConcurrentHashMap<HttpRoute, Boolean>());
+        this.prewarmExecutor = createPrewarmExecutor();
+        this.metricsRecorder = NoopClientMetricsRecorder.INSTANCE;
     }
 
     /**
      * Visible for test.
      */
     PoolingHttpClientConnectionManager(
-            final CPool pool,
+            final ManagedConnPool pool,
             final Lookup<ConnectionSocketFactory> socketFactoryRegistry,
             final SchemePortResolver schemePortResolver,
             final DnsResolver dnsResolver) {
@@ -203,6 +291,19 @@ public class PoolingHttpClientConnectionManager
         this.connectionOperator = new DefaultHttpClientConnectionOperator(
                 socketFactoryRegistry, schemePortResolver, dnsResolver);
         this.isShutDown = new AtomicBoolean(false);
+        this.warmRoutes = Collections.newSetFromMap(new ConcurrentHashMap<HttpRoute, Boolean>());
+        this.prewarmExecutor = createPrewarmExecutor();
+        this.metricsRecorder = NoopClientMetricsRecorder.INSTANCE;
+    }
+
+    private static ThreadPoolExecutor createPrewarmExecutor() {
+        // Threads are only started once connections get pre-warmed and
+        // terminate when idle
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                PREWARM_THREADS, PREWARM_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new PrewarmThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     @Override
@@ -259,6 +360,12 @@ public class PoolingHttpClientConnectionManager
         if (this.log.isDebugEnabled()) {
             this.log.debug("Connection request: " + format(route, state) + formatStats(route));
         }
+        if (this.minIdlePerRoute > 0 && !route.isTunnelled() && !this.warmRoutes.contains(route)) {
+            this.warmRoutes.add(route);
+        }
+        final ClientMetricsRecorder recorder = this.metricsRecorder;
+        final boolean timed = recorder.isEnabled();
+        final long requested = timed ? System.nanoTime() : 0;
         final Future<CPoolEntry> future = this.pool.lease(route, state, null);
         return new ConnectionRequest() {
 
@@ -271,7 +378,11 @@ public class PoolingHttpClientConnectionManager
             public HttpClientConnection get(
                     final long timeout,
                     final TimeUnit tunit) throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
-                return leaseConnection(future, timeout, tunit);
+                final HttpClientConnection conn = leaseConnection(future, timeout, tunit);
+                if (timed) {
+                    recorder.connectionLeased(route, System.nanoTime() - requested, conn.isOpen());
+                }
+                return conn;
             }
 
         };
@@ -289,6 +400,7 @@ public class PoolingHttpClientConnectionManager
                 throw new InterruptedException();
             }
             Asserts.check(entry.getConnection() != null, "Pool entry with no connection");
+            entry.markLeased();
             if (this.log.isDebugEnabled()) {
                 this.log.debug("Connection leased: " + format(entry) + formatStats(entry.getRoute()));
             }
@@ -304,33 +416,40 @@ public class PoolingHttpClientConnectionManager
             final Object state,
             final long keepalive, final TimeUnit tunit) {
         Args.notNull(managedConn, "Managed connection");
-        synchronized (managedConn) {
-            final CPoolEntry entry = CPoolProxy.detach(managedConn);
-            if (entry == null) {
-                return;
-            }
-            final ManagedHttpClientConnection conn = entry.getConnection();
-            try {
-                if (conn.isOpen()) {
-                    final TimeUnit effectiveUnit = tunit != null ? tunit : TimeUnit.MILLISECONDS;
-                    entry.setState(state);
-                    entry.updateExpiry(keepalive, effectiveUnit);
-                    if (this.log.isDebugEnabled()) {
-                        final String s;
-                        if (keepalive > 0) {
-                            s = "for " + (double) effectiveUnit.toMillis(keepalive) / 1000 + " seconds";
-                        } else {
-                            s = "indefinitely";
-                        }
-                        this.log.debug("Connection " + format(entry) + " can be kept alive " + s);
-                    }
-                }
-            } finally {
-                this.pool.release(entry, conn.isOpen() && entry.isRouteComplete());
+        final CPoolEntry entry = CPoolProxy.detach(managedConn);
+        if (entry == null) {
+            return;
+        }
+        entry.markReleased();
+        final ManagedHttpClientConnection conn = entry.getConnection();
+        try {
+            if (conn.isOpen()) {
+                final TimeUnit effectiveUnit = tunit != null ? tunit : TimeUnit.MILLISECONDS;
+                entry.setState(state);
+                entry.updateExpiry(keepalive, effectiveUnit);
                 if (this.log.isDebugEnabled()) {
-                    this.log.debug("Connection released: " + format(entry) + formatStats(entry.getRoute()));
+                    final String s;
+                    if (keepalive > 0) {
+                        s = "for " + (double) effectiveUnit.toMillis(keepalive) / 1000 + " seconds";
+                    } else {
+                        s = "indefinitely";
+                    }
+                    this.log.debug("Connection " + format(entry) + " can be kept alive " + s);
                 }
             }
+        } finally {
+            final boolean reusable = conn.isOpen() && entry.isRouteComplete();
+            this.pool.release(entry, reusable);
+            final ClientMetricsRecorder recorder = this.metricsRecorder;
+            if (!reusable && recorder.isEnabled()) {
+                recorder.connectionClosed(
+                        entry.getRoute(),
+                        TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - entry.getCreated()),
+                        entry.getReuseCount());
+            }
+            if (this.log.isDebugEnabled()) {
+                this.log.debug("Connection released: " + format(entry) + formatStats(entry.getRoute()));
+            }
         }
     }
 
@@ -342,11 +461,8 @@ public class PoolingHttpClientConnectionManager
             final HttpContext context) throws IOException {
         Args.notNull(managedConn, "Managed Connection");
         Args.notNull(route, "HTTP route");
-        final ManagedHttpClientConnection conn;
-        synchronized (managedConn) {
-            final CPoolEntry entry = CPoolProxy.getPoolEntry(managedConn);
-            conn = entry.getConnection();
-        }
+        final CPoolEntry entry = CPoolProxy.getPoolEntry(managedConn);
+        final ManagedHttpClientConnection conn = entry.getConnection();
         final HttpHost host;
         if (route.getProxyHost() != null) {
             host = route.getProxyHost();
@@ -361,8 +477,22 @@ public class PoolingHttpClientConnectionManager
         if (socketConfig == null) {
             socketConfig = SocketConfig.DEFAULT;
         }
+        final ClientMetricsRecorder recorder = this.metricsRecorder;
+        if (!recorder.isEnabled()) {
+            this.connectionOperator.connect(
+                    conn, host, localAddress, connectTimeout, socketConfig, context);
+            return;
+        }
+        clearHandshakeTime(context);
+        final long start = System.nanoTime();
         this.connectionOperator.connect(
                 conn, host, localAddress, connectTimeout, socketConfig, context);
+        final long elapsed = System.nanoTime() - start;
+        final long handshakeTime = clearHandshakeTime(context);
+        recorder.connectionEstablished(route, elapsed - handshakeTime);
+        if (handshakeTime > 0) {
+            recorder.tlsHandshakeCompleted(route, handshakeTime);
+        }
     }
 
     @Override
@@ -372,12 +502,27 @@ public class PoolingHttpClientConnectionManager
             final HttpContext context) throws IOException {
         Args.notNull(managedConn, "Managed Connection");
         Args.notNull(route, "HTTP route");
-        final ManagedHttpClientConnection conn;
-        synchronized (managedConn) {
-            final CPoolEntry entry = CPoolProxy.getPoolEntry(managedConn);
-            conn = entry.getConnection();
+        final CPoolEntry entry = CPoolProxy.getPoolEntry(managedConn);
+        final ManagedHttpClientConnection conn = entry.getConnection();
+        final ClientMetricsRecorder recorder = this.metricsRecorder;
+        if (!recorder.isEnabled()) {
+            this.connectionOperator.upgrade(conn, route.getTargetHost(), context);
+            return;
         }
+        clearHandshakeTime(context);
         this.connectionOperator.upgrade(conn, route.getTargetHost(), context);
+        final long handshakeTime = clearHandshakeTime(context);
+        if (handshakeTime > 0) {
+            recorder.tlsHandshakeCompleted(route, handshakeTime);
+        }
+    }
+
+    private static long clearHandshakeTime(final HttpContext context) {
+        if (context == null) {
+            return 0;
+        }
+        final Object handshakeTime = context.removeAttribute(SSLConnectionSocketFactory.TLS_HANDSHAKE_TIME);
+        return handshakeTime instanceof Long ? ((Long) handshakeTime).longValue() : 0;
     }
 
     @Override
@@ -387,16 +532,20 @@ public class PoolingHttpClientConnectionManager
             final HttpContext context) throws IOException {
         Args.notNull(managedConn, "Managed Connection");
         Args.notNull(route, "HTTP route");
-        synchronized (managedConn) {
-            final CPoolEntry entry = CPoolProxy.getPoolEntry(managedConn);
-            entry.markRouteComplete();
-        }
+        final CPoolEntry entry = CPoolProxy.getPoolEntry(managedConn);
+        entry.markRouteComplete();
     }
 
     @Override
     public void shutdown() {
         if (this.isShutDown.compareAndSet(false, true)) {
             this.log.debug("Connection manager is shutting down");
+            for (final Runnable task: this.prewarmExecutor.shutdownNow()) {
+                // Do not leave pre-warming threads waiting for tasks that never run
+                if (task instanceof Future) {
+                    ((Future<?>) task).cancel(false);
+                }
+            }
             try {
                 this.pool.shutdown();
             } catch (final IOException ex) {
@@ -420,6 +569,223 @@ public class PoolingHttpClientConnectionManager
         this.pool.closeExpired();
     }
 
+    /**
+     * Checks persistent connections that have been kept idle in the pool for at
+     * least the given period of time and closes those found to be stale
+     * (half-closed by the opposite endpoint). Connections are checked outside
+     * of the pool lock and never while leased, so that the check does not
+     * interfere with request execution. A connection is not checked again until
+     * it has stayed idle for the given period of time since the last check.
+     *
+     * @param idleTime minimum period of inactivity
+     * @param tunit time unit of the period
+     * @return number of stale connections found and closed
+     *
+     * @see IdleConnectionValidator
+     *
+     * @since 5.0
+     */
+    public int validateIdleConnections(final long idleTime, final TimeUnit tunit) {
+        Args.notNull(tunit, "Time unit");
+        final long cutoff = System.currentTimeMillis() - Math.max(tunit.toMillis(idleTime), 0);
+        final List<CPoolEntry> candidates = new ArrayList<>();
+        this.pool.enumAvailable(new PoolEntryCallback<HttpRoute, ManagedHttpClientConnection>() {
+
+            @Override
+            public void process(final PoolEntry<HttpRoute, ManagedHttpClientConnection> entry) {
+                final CPoolEntry poolEntry = (CPoolEntry) entry;
+                if (Math.max(poolEntry.getUpdated(), poolEntry.getLastValidated()) <= cutoff) {
+                    candidates.add(poolEntry);
+                }
+            }
+
+        });
+        int stale = 0;
+        for (final CPoolEntry entry: candidates) {
+            if (!entry.validateIdle()) {
+                stale++;
+            }
+        }
+        if (stale > 0) {
+            if (this.log.isDebugEnabled()) {
+                this.log.debug("Closed " + stale + " stale connection(s)");
+            }
+            // Purge closed entries from the pool
+            this.pool.closeExpired();
+        }
+        return stale;
+    }
+
+    /**
+     * Opens up to the given number of persistent connections to the given route
+     * in advance and places them in the pool, so that requests do not have to
+     * pay for connection setup (including TLS handshake) once they get executed.
+     * Connections are opened in parallel and released to the pool as soon as
+     * they are connected. Connections already available in the pool are left
+     * as they are. The number is limited to the connections that can be
+     * allocated for the route in addition to those already allocated.
+     * <p>
+     * Routes tunnelled through a proxy are not supported.
+     * </p>
+     *
+     * @param route the route to open connections to.
+     * @param count the number of connections to open.
+     * @param timeout the timeout of connection lease and of connect operation.
+     *   Must be positive.
+     * @param tunit time unit of the timeout.
+     * @return number of connections opened.
+     *
+     * @since 5.0
+     */
+    public int prewarm(final HttpRoute route, final int count, final long timeout, final TimeUnit tunit) {
+        Args.notNull(route, "HTTP route");
+        Args.positive(count, "Connection count");
+        Args.positive(timeout, "Timeout");
+        Args.notNull(tunit, "Time unit");
+        Args.check(!route.isTunnelled(), "Tunnelled routes cannot be pre-warmed");
+        final int timeoutMs = (int) Math.max(1, Math.min(tunit.toMillis(timeout), Integer.MAX_VALUE));
+        final PoolStats stats = this.pool.getStats(route);
+        final PoolStats totals = this.pool.getTotalStats();
+        final int n = Math.min(count, Math.min(
+                stats.getMax() - stats.getLeased() - stats.getAvailable(),
+                totals.getMax() - totals.getLeased() - totals.getAvailable()));
+        this.warmRoutes.add(route);
+        if (n <= 0) {
+            return 0;
+        }
+
+        // The pool hands out available connections before allocating new ones.
+        // Available connections leased on the way are only held until enough new
+        // connections have been allocated and then go back to the pool as they were,
+        // without touching their state, expiry or idle time.
+        final List<CPoolEntry> idleEntries = new ArrayList<>();
+        final List<HttpClientConnection> managedConns = new ArrayList<>(n);
+        final long deadline = System.currentTimeMillis() + timeoutMs;
+        boolean interrupted = false;
+        try {
+            while (managedConns.size() < n && idleEntries.size() <= stats.getAvailable()) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                final CPoolEntry entry = this.pool.lease(route, null, null).get(remaining, TimeUnit.MILLISECONDS);
+                if (entry.getConnection().isOpen()) {
+                    idleEntries.add(entry);
+                } else {
+                    entry.markLeased();
+                    managedConns.add(CPoolProxy.newProxy(entry));
+                }
+            }
+        } catch (final InterruptedException ex) {
+            interrupted = true;
+        } catch (final ExecutionException | TimeoutException ex) {
+            if (this.log.isDebugEnabled()) {
+                this.log.debug("Failed to lease connection to " + route + " for pre-warming: " + ex);
+            }
+        } finally {
+            for (final CPoolEntry entry: idleEntries) {
+                this.pool.release(entry, true);
+            }
+        }
+
+        final List<Future<Boolean>> futures = new ArrayList<>(managedConns.size());
+        for (final HttpClientConnection managedConn: managedConns) {
+            if (interrupted) {
+                releaseConnection(managedConn, null, 0, TimeUnit.MILLISECONDS);
+                continue;
+            }
+            try {
+                futures.add(this.prewarmExecutor.submit(new Callable<Boolean>() {
+
+                    @Override
+                    public Boolean call() throws Exception {
+                        try {
+                            final HttpContext context = new BasicHttpContext();
+                            connect(managedConn, route, timeoutMs, context);
+                            routeComplete(managedConn, route, context);
+                            return Boolean.TRUE;
+                        } finally {
+                            releaseConnection(managedConn, null, 0, TimeUnit.MILLISECONDS);
+                        }
+                    }
+
+                }));
+            } catch (final RejectedExecutionException ex) {
+                releaseConnection(managedConn, null, 0, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        int opened = 0;
+        for (final Future<Boolean> future: futures) {
+            for (;;) {
+                try {
+                    future.get();
+                    opened++;
+                    break;
+                } catch (final InterruptedException ex) {
+                    interrupted = true;
+                } catch (final ExecutionException ex) {
+                    if (this.log.isDebugEnabled()) {
+                        this.log.debug("Failed to pre-warm connection to " + route + ": " + ex.getCause());
+                    }
+                    break;
+                } catch (final CancellationException ex) {
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.log.isDebugEnabled()) {
+            this.log.debug("Pre-warmed " + opened + " connection(s): " + formatStats(route));
+        }
+        return opened;
+    }
+
+    /**
+     * Opens connections to routes that have fewer than
+     * {@link #getMinIdlePerRoute() min idle per route} connections available
+     * in the pool, within the limits of the pool. Routes that have been
+     * requested or {@link #prewarm(HttpRoute, int, long, TimeUnit) pre-warmed}
+     * are considered until all of their connections get closed, for instance
+     * by {@link #closeIdleConnections(long, TimeUnit) idle connection eviction}.
+     *
+     * @param timeout the timeout of connection lease and of connect operation.
+     *   Must be positive.
+     * @param tunit time unit of the timeout.
+     * @return number of connections opened.
+     *
+     * @see IdleConnectionReplenisher
+     *
+     * @since 5.0
+     */
+    public int replenishIdleConnections(final long timeout, final TimeUnit tunit) {
+        final int minIdle = this.minIdlePerRoute;
+        if (minIdle <= 0) {
+            return 0;
+        }
+        int opened = 0;
+        for (final Iterator<HttpRoute> it = this.warmRoutes.iterator(); it.hasNext();) {
+            final HttpRoute route = it.next();
+            final PoolStats stats = this.pool.getStats(route);
+            if (stats.getLeased() + stats.getAvailable() + stats.getPending() == 0) {
+                // The route has not been used since its last connection got closed
+                it.remove();
+                continue;
+            }
+            if (stats.getPending() > 0) {
+                // Do not compete with requests waiting for a connection
+                continue;
+            }
+            if (stats.getAvailable() < minIdle) {
+                opened += prewarm(route, minIdle - stats.getAvailable(), timeout, tunit);
+            }
+        }
+        return opened;
+    }
+
+
     protected void enumAvailable(final PoolEntryCallback<HttpRoute, ManagedHttpClientConnection> callback) {
         this.pool.enumAvailable(callback);
     }
@@ -468,6 +834,16 @@ public class PoolingHttpClientConnectionManager
         return this.pool.getStats(route);
     }
 
+    /**
+     * Returns the number of leases served by newly created and by re-used
+     * persistent connections since this connection manager was created.
+     *
+     * @since 5.0
+     */
+    public PoolReuseStats getReuseStats() {
+        return this.pool.getReuseStats();
+    }
+
     /**
      * @since 4.4
      */
@@ -507,6 +883,46 @@ public class PoolingHttpClientConnectionManager
         this.configData.setConnectionConfig(host, connectionConfig);
     }
 
+    /**
+     * @see #setMinIdlePerRoute(int)
+     *
+     * @since 5.0
+     */
+    public int getMinIdlePerRoute() {
+        return this.minIdlePerRoute;
+    }
+
+    /**
+     * Sets the number of persistent connections that should be kept available
+     * in the pool for each route in use.
+     *
+     * @see #replenishIdleConnections(long, TimeUnit)
+     *
+     * @since 5.0
+     */
+    public void setMinIdlePerRoute(final int minIdlePerRoute) {
+        this.minIdlePerRoute = minIdlePerRoute;
+    }
+
+    /**
+     * @see #setMetricsRecorder(ClientMetricsRecorder)
+     *
+     * @since 5.0
+     */
+    public ClientMetricsRecorder getMetricsRecorder() {
+        return this.metricsRecorder;
+    }
+
+    /**
+     * Sets the recorder of connection lease, connect, TLS handshake and
+     * connection lifetime metrics. By default no metrics are recorded.
+     *
+     * @since 5.0
+     */
+    public void setMetricsRecorder(final ClientMetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder != null ? metricsRecorder : NoopClientMetricsRecorder.INSTANCE;
+    }
+
     /**
      * @see #setValidateAfterInactivity(int)
      *
@@ -531,6 +947,17 @@ public class PoolingHttpClientConnectionManager
         pool.setValidateAfterInactivity(ms);
     }
 
+    static class PrewarmThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread t = new Thread(r, "Connection pre-warm");
+            t.setDaemon(true);
+            return t;
+        }
+
+    }
+
     static class ConfigData {
 
         private final Map<HttpHost, SocketConfig> socketConfigMap;
@@ -0,0 +1,126 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.io;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hc.core5.annotation.ThreadSafe;
+
+/**
+ * Metrics of connection management and request execution for a single route.
+ * Durations are recorded in nanoseconds.
+ *
+ * @see HistogramClientMetricsRecorder
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public final class RouteMetrics {
+
+    private final AtomicLong leaseCount;
+    private final AtomicLong reusedLeaseCount;
+    private final LatencyHistogram leaseWaitTime;
+    private final LatencyHistogram connectTime;
+    private final LatencyHistogram tlsHandshakeTime;
+    private final LatencyHistogram connectionLifetime;
+    private final LatencyHistogram connectionReuseCount;
+    private final LatencyHistogram responseHeadTime;
+    private final LatencyHistogram exchangeTime;
+
+    RouteMetrics() {
+        super();
+        this.leaseCount = new AtomicLong();
+        this.reusedLeaseCount = new AtomicLong();
+        this.leaseWaitTime = new LatencyHistogram();
+        this.connectTime = new LatencyHistogram();
+        this.tlsHandshakeTime = new LatencyHistogram();
+        this.connectionLifetime = new LatencyHistogram();
+        this.connectionReuseCount = new LatencyHistogram();
+        this.responseHeadTime = new LatencyHistogram();
+        this.exchangeTime = new LatencyHistogram();
+    }
+
+    void leased(final long waitTime, final boolean reused) {
+        this.leaseCount.incrementAndGet();
+        if (reused) {
+            this.reusedLeaseCount.incrementAndGet();
+        }
+        this.leaseWaitTime.record(waitTime);
+    }
+
+    public long getLeaseCount() {
+        return this.leaseCount.get();
+    }
+
+    public long getReusedLeaseCount() {
+        return this.reusedLeaseCount.get();
+    }
+
+    public LatencyHistogram getLeaseWaitTime() {
+        return this.leaseWaitTime;
+    }
+
+    public LatencyHistogram getConnectTime() {
+        return this.connectTime;
+    }
+
+    public LatencyHistogram getTlsHandshakeTime() {
+        return this.tlsHandshakeTime;
+    }
+
+    public LatencyHistogram getConnectionLifetime() {
+        return this.connectionLifetime;
+    }
+
+    public LatencyHistogram getConnectionReuseCount() {
+        return this.connectionReuseCount;
+    }
+
+    public LatencyHistogram getResponseHeadTime() {
+        return this.responseHeadTime;
+    }
+
+    public LatencyHistogram getExchangeTime() {
+        return this.exchangeTime;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder();
+        buf.append("[leased: ").append(getLeaseCount());
+        buf.append("; reused: ").append(getReusedLeaseCount());
+        buf.append("; lease wait: ").append(this.leaseWaitTime);
+        buf.append("; connect: ").append(this.connectTime);
+        buf.append("; TLS handshake: ").append(this.tlsHandshakeTime);
+        buf.append("; response head: ").append(this.responseHeadTime);
+        buf.append("; exchange: ").append(this.exchangeTime);
+        buf.append("]");
+        return buf.toString();
+    }
+
+}
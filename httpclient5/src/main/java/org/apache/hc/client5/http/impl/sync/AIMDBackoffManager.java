@@ -52,6 +52,10 @@ import org.apache.hc.core5.util.Args;
  * capacity among clients (fairness) to happen faster, at the
  * expense of having more server capacity unused in the short term.</p>
  *
+ * <p>Please consider using {@link AdaptiveBackoffManager}, which adjusts
+ * the limit continuously based on observed round trip times rather than
+ * solely on back-off signals.</p>
+ *
  * @since 4.2
  */
 public class AIMDBackoffManager implements BackoffManager {
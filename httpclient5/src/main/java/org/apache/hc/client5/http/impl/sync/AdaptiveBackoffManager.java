@@ -0,0 +1,272 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.sync;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.sync.LatencyAwareBackoffManager;
+import org.apache.hc.core5.annotation.ThreadSafe;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * <p>The {@code AdaptiveBackoffManager} continuously adjusts the number of
+ * connections allowed per route based on the round trip times of message
+ * exchanges observed over the route. Round trip times are aggregated over
+ * short windows of time. At the end of each window the limit is scaled by
+ * the ratio of the lowest round trip time observed to the average one, so
+ * that the limit shrinks as soon as requests start queuing up at the
+ * opposite endpoint, and grows by the square root of the current limit
+ * to probe for spare capacity.</p>
+ *
+ * <p>Signals to back off, such as {@code 503} responses, reduce the limit
+ * by a constant factor, at most once per window.</p>
+ *
+ * <p>Round trip times are reported by {@link BackoffStrategyExec}. State is
+ * kept separately for each route and updated without locking.</p>
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class AdaptiveBackoffManager implements LatencyAwareBackoffManager {
+
+    private final ConnPoolControl<HttpRoute> connPerRoute;
+    private final Clock clock;
+    private final ConcurrentMap<HttpRoute, RouteLimit> routeToLimit;
+
+    private volatile int minLimit = 1;
+    private volatile int maxLimit = 100;
+    private volatile long windowMillis = 100L;
+    private volatile long minRttResetMillis = 60 * 1000L;
+    private volatile double smoothing = 0.2;
+    private volatile double backoffFactor = 0.75;
+
+    /**
+     * Creates an {@code AdaptiveBackoffManager} to manage
+     * per-route connection pool sizes represented by the
+     * given {@link ConnPoolControl}.
+     * @param connPerRoute per-route maximums to be managed
+     */
+    public AdaptiveBackoffManager(final ConnPoolControl<HttpRoute> connPerRoute) {
+        this(connPerRoute, new SystemClock());
+    }
+
+    AdaptiveBackoffManager(final ConnPoolControl<HttpRoute> connPerRoute, final Clock clock) {
+        super();
+        this.connPerRoute = Args.notNull(connPerRoute, "Connection pool control");
+        this.clock = clock;
+        this.routeToLimit = new ConcurrentHashMap<>();
+    }
+
+    private RouteLimit getRouteLimit(final HttpRoute route) {
+        RouteLimit limit = this.routeToLimit.get(route);
+        if (limit == null) {
+            final double initial = clamp(this.connPerRoute.getMaxPerRoute(route));
+            final long now = this.clock.getCurrentTime();
+            final RouteLimit newLimit = new RouteLimit(initial, now + this.windowMillis, now + this.minRttResetMillis);
+            limit = this.routeToLimit.putIfAbsent(route, newLimit);
+            if (limit == null) {
+                limit = newLimit;
+            }
+        }
+        return limit;
+    }
+
+    private double clamp(final double limit) {
+        return Math.min(this.maxLimit, Math.max(this.minLimit, limit));
+    }
+
+    private void apply(final HttpRoute route, final double limit) {
+        final int max = (int) limit;
+        if (this.connPerRoute.getMaxPerRoute(route) != max) {
+            this.connPerRoute.setMaxPerRoute(route, max);
+        }
+    }
+
+    @Override
+    public void backOff(final HttpRoute route) {
+        final RouteLimit routeLimit = getRouteLimit(route);
+        final long now = this.clock.getCurrentTime();
+        final long lastBackoff = routeLimit.lastBackoff.get();
+        if (now - lastBackoff < this.windowMillis || !routeLimit.lastBackoff.compareAndSet(lastBackoff, now)) {
+            return;
+        }
+        for (;;) {
+            final long bits = routeLimit.limit.get();
+            final double current = Double.longBitsToDouble(bits);
+            final double updated = clamp(current * this.backoffFactor);
+            if (routeLimit.limit.compareAndSet(bits, Double.doubleToLongBits(updated))) {
+                apply(route, updated);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Does nothing as no round trip time is known.
+     */
+    @Override
+    public void probe(final HttpRoute route) {
+    }
+
+    @Override
+    public void probe(final HttpRoute route, final long rtt, final TimeUnit unit) {
+        Args.notNull(unit, "Time unit");
+        final RouteLimit routeLimit = getRouteLimit(route);
+        routeLimit.sample(Math.max(1, unit.toNanos(rtt)));
+        final long now = this.clock.getCurrentTime();
+        final long windowEnd = routeLimit.windowEnd.get();
+        if (now >= windowEnd && routeLimit.windowEnd.compareAndSet(windowEnd, now + this.windowMillis)) {
+            update(route, routeLimit, now);
+        }
+    }
+
+    /**
+     * Recomputes the limit at the end of a window. Only one thread at a time
+     * can get here for a given route.
+     */
+    private void update(final HttpRoute route, final RouteLimit routeLimit, final long now) {
+        final long count = routeLimit.count.getAndSet(0);
+        final long sum = routeLimit.sum.getAndSet(0);
+        if (count == 0 || sum <= 0) {
+            return;
+        }
+        final double avgRtt = (double) sum / count;
+        final long minRtt = routeLimit.minRtt.get();
+        if (now >= routeLimit.minRttResetAt) {
+            // Let the baseline follow changes in the network path or in server performance
+            routeLimit.minRtt.set(Long.MAX_VALUE);
+            routeLimit.minRttResetAt = now + this.minRttResetMillis;
+        }
+        final double gradient = Math.max(0.5, Math.min(1.0, minRtt / avgRtt));
+        for (;;) {
+            final long bits = routeLimit.limit.get();
+            final double current = Double.longBitsToDouble(bits);
+            final double target = current * gradient + Math.sqrt(current);
+            final double updated = clamp(current * (1 - this.smoothing) + target * this.smoothing);
+            if (routeLimit.limit.compareAndSet(bits, Double.doubleToLongBits(updated))) {
+                apply(route, updated);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the current, fractional limit for the given route
+     * or {@code 0} if the route is not managed yet.
+     */
+    public double getLimit(final HttpRoute route) {
+        final RouteLimit routeLimit = this.routeToLimit.get(route);
+        return routeLimit != null ? Double.longBitsToDouble(routeLimit.limit.get()) : 0;
+    }
+
+    /**
+     * Sets the bounds of the per-route limit. Defaults to 1 and 100.
+     */
+    public void setLimits(final int min, final int max) {
+        Args.positive(min, "Min limit");
+        Args.check(max >= min, "Max limit may not be less than min limit");
+        this.minLimit = min;
+        this.maxLimit = max;
+    }
+
+    /**
+     * Sets the length in milliseconds of the windows over which round trip
+     * times are aggregated. Defaults to 100 ms.
+     */
+    public void setWindowMillis(final long windowMillis) {
+        Args.positive(windowMillis, "Window");
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Sets the interval in milliseconds at which the lowest observed round trip
+     * time gets reset. Defaults to 60 seconds.
+     */
+    public void setMinRttResetMillis(final long minRttResetMillis) {
+        Args.positive(minRttResetMillis, "Min RTT reset interval");
+        this.minRttResetMillis = minRttResetMillis;
+    }
+
+    /**
+     * Sets the weight given to the newly computed limit at the end of each
+     * window. Defaults to 0.2.
+     * @param smoothing must be between 0.0 exclusive and 1.0 inclusive.
+     */
+    public void setSmoothing(final double smoothing) {
+        Args.check(smoothing > 0.0 && smoothing <= 1.0, "Smoothing must be 0.0 < f <= 1.0");
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * Sets the factor the limit is multiplied with on back off.
+     * Defaults to 0.75.
+     * @param d must be between 0.0 and 1.0, exclusive.
+     */
+    public void setBackoffFactor(final double d) {
+        Args.check(d > 0.0 && d < 1.0, "Backoff factor must be 0.0 < f < 1.0");
+        this.backoffFactor = d;
+    }
+
+    static final class RouteLimit {
+
+        final AtomicLong limit;
+        final AtomicLong minRtt;
+        final AtomicLong sum;
+        final AtomicLong count;
+        final AtomicLong windowEnd;
+        final AtomicLong lastBackoff;
+
+        volatile long minRttResetAt;
+
+        RouteLimit(final double limit, final long windowEnd, final long minRttResetAt) {
+            this.limit = new AtomicLong(Double.doubleToLongBits(limit));
+            this.minRtt = new AtomicLong(Long.MAX_VALUE);
+            this.sum = new AtomicLong();
+            this.count = new AtomicLong();
+            this.windowEnd = new AtomicLong(windowEnd);
+            this.lastBackoff = new AtomicLong(Long.MIN_VALUE / 2);
+            this.minRttResetAt = minRttResetAt;
+        }
+
+        void sample(final long rtt) {
+            long current = this.minRtt.get();
+            while (rtt < current && !this.minRtt.compareAndSet(current, rtt)) {
+                current = this.minRtt.get();
+            }
+            this.sum.addAndGet(rtt);
+            this.count.incrementAndGet();
+        }
+
+    }
+
+}
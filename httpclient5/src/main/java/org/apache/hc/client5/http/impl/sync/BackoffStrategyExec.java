@@ -29,6 +29,7 @@ package org.apache.hc.client5.http.impl.sync;
 
 import java.io.IOException;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.methods.CloseableHttpResponse;
@@ -37,11 +38,17 @@ import org.apache.hc.client5.http.methods.HttpRequestWrapper;
 import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.client5.http.sync.BackoffManager;
 import org.apache.hc.client5.http.sync.ConnectionBackoffStrategy;
+import org.apache.hc.client5.http.sync.LatencyAwareBackoffManager;
 import org.apache.hc.core5.annotation.Immutable;
 import org.apache.hc.core5.http.HttpException;
 import org.apache.hc.core5.util.Args;
 
 /**
+ * Request executor that notifies {@link BackoffManager} of the outcome of
+ * request executions. Round trip times of successful executions, excluding
+ * time spent waiting for and establishing a connection, are reported to
+ * {@link LatencyAwareBackoffManager}s.
+ *
  * @since 4.3
  */
 @Immutable
@@ -73,10 +80,21 @@ public class BackoffStrategyExec implements ClientExecChain {
         Args.notNull(route, "HTTP route");
         Args.notNull(request, "HTTP request");
         Args.notNull(context, "HTTP context");
+        final boolean latencyAware = this.backoffManager instanceof LatencyAwareBackoffManager;
+        final long start;
+        if (latencyAware) {
+            start = System.nanoTime();
+            context.setAttribute(MainClientExec.CONNECTION_ESTABLISHED_AT, Long.valueOf(start));
+        } else {
+            start = 0;
+        }
         CloseableHttpResponse out = null;
         try {
             out = this.requestExecutor.execute(route, request, context, execAware);
         } catch (final Exception ex) {
+            if (latencyAware) {
+                context.removeAttribute(MainClientExec.CONNECTION_ESTABLISHED_AT);
+            }
             if (out != null) {
                 out.close();
             }
@@ -94,8 +112,17 @@ public class BackoffStrategyExec implements ClientExecChain {
             }
             throw new UndeclaredThrowableException(ex);
         }
+        final Object establishedAt = latencyAware ?
+                context.removeAttribute(MainClientExec.CONNECTION_ESTABLISHED_AT) : null;
         if (this.connectionBackoffStrategy.shouldBackoff(out)) {
             this.backoffManager.backOff(route);
+        } else if (latencyAware) {
+            long from = start;
+            if (establishedAt instanceof Long && ((Long) establishedAt).longValue() - start > 0) {
+                from = ((Long) establishedAt).longValue();
+            }
+            ((LatencyAwareBackoffManager) this.backoffManager).probe(
+                    route, System.nanoTime() - from, TimeUnit.NANOSECONDS);
         } else {
             this.backoffManager.probe(route);
         }
@@ -32,6 +32,9 @@ import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.NoopClientMetricsRecorder;
+import org.apache.hc.client5.http.io.ClientMetricsRecorder;
 import org.apache.hc.client5.http.io.ConnectionReleaseTrigger;
 import org.apache.hc.client5.http.io.HttpClientConnectionManager;
 import org.apache.hc.core5.annotation.ThreadSafe;
@@ -51,23 +54,41 @@ class ConnectionHolder implements ConnectionReleaseTrigger, Cancellable, Closeab
 
     private final HttpClientConnectionManager manager;
     private final HttpClientConnection managedConn;
+    private final HttpRoute route;
+    private final ClientMetricsRecorder metricsRecorder;
+    private final long created;
     private final AtomicBoolean released;
     private volatile boolean reusable;
     private volatile Object state;
     private volatile long validDuration;
     private volatile TimeUnit tunit;
 
+    /**
+     * @since 5.0
+     */
     public ConnectionHolder(
             final Logger log,
             final HttpClientConnectionManager manager,
-            final HttpClientConnection managedConn) {
+            final HttpClientConnection managedConn,
+            final HttpRoute route,
+            final ClientMetricsRecorder metricsRecorder) {
         super();
         this.log = log;
         this.manager = manager;
         this.managedConn = managedConn;
+        this.route = route;
+        this.metricsRecorder = metricsRecorder != null ? metricsRecorder : NoopClientMetricsRecorder.INSTANCE;
+        this.created = this.metricsRecorder.isEnabled() ? System.nanoTime() : 0;
         this.released = new AtomicBoolean(false);
     }
 
+    public ConnectionHolder(
+            final Logger log,
+            final HttpClientConnectionManager manager,
+            final HttpClientConnection managedConn) {
+        this(log, manager, managedConn, null, null);
+    }
+
     public boolean isReusable() {
         return this.reusable;
     }
@@ -85,30 +106,33 @@ class ConnectionHolder implements ConnectionReleaseTrigger, Cancellable, Closeab
     }
 
     public void setValidFor(final long duration, final TimeUnit tunit) {
-        synchronized (this.managedConn) {
-            this.validDuration = duration;
-            this.tunit = tunit;
+        this.validDuration = duration;
+        this.tunit = tunit;
+    }
+
+    private void recordExchange() {
+        if (this.route != null && this.metricsRecorder.isEnabled()) {
+            this.metricsRecorder.exchangeCompleted(this.route, System.nanoTime() - this.created);
         }
     }
 
     private void releaseConnection(final boolean reusable) {
         if (this.released.compareAndSet(false, true)) {
-            synchronized (this.managedConn) {
-                if (reusable) {
-                    this.manager.releaseConnection(this.managedConn,
-                            this.state, this.validDuration, this.tunit);
-                } else {
-                    try {
-                        this.managedConn.close();
-                        log.debug("Connection discarded");
-                    } catch (final IOException ex) {
-                        if (this.log.isDebugEnabled()) {
-                            this.log.debug(ex.getMessage(), ex);
-                        }
-                    } finally {
-                        this.manager.releaseConnection(
-                                this.managedConn, null, 0, TimeUnit.MILLISECONDS);
+            recordExchange();
+            if (reusable) {
+                this.manager.releaseConnection(this.managedConn,
+                        this.state, this.validDuration, this.tunit);
+            } else {
+                try {
+                    this.managedConn.close();
+                    log.debug("Connection discarded");
+                } catch (final IOException ex) {
+                    if (this.log.isDebugEnabled()) {
+                        this.log.debug(ex.getMessage(), ex);
                     }
+                } finally {
+                    this.manager.releaseConnection(
+                            this.managedConn, null, 0, TimeUnit.MILLISECONDS);
                 }
             }
         }
@@ -122,18 +146,17 @@ class ConnectionHolder implements ConnectionReleaseTrigger, Cancellable, Closeab
     @Override
     public void abortConnection() {
         if (this.released.compareAndSet(false, true)) {
-            synchronized (this.managedConn) {
-                try {
-                    this.managedConn.shutdown();
-                    log.debug("Connection discarded");
-                } catch (final IOException ex) {
-                    if (this.log.isDebugEnabled()) {
-                        this.log.debug(ex.getMessage(), ex);
-                    }
-                } finally {
-                    this.manager.releaseConnection(
-                            this.managedConn, null, 0, TimeUnit.MILLISECONDS);
+            recordExchange();
+            try {
+                this.managedConn.shutdown();
+                log.debug("Connection discarded");
+            } catch (final IOException ex) {
+                if (this.log.isDebugEnabled()) {
+                    this.log.debug(ex.getMessage(), ex);
                 }
+            } finally {
+                this.manager.releaseConnection(
+                        this.managedConn, null, 0, TimeUnit.MILLISECONDS);
             }
         }
     }
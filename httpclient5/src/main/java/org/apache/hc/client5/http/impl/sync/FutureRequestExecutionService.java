@@ -28,8 +28,14 @@ package org.apache.hc.client5.http.impl.sync;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.hc.client5.http.methods.HttpUriRequest;
 import org.apache.hc.client5.http.sync.HttpClient;
@@ -41,6 +47,13 @@ import org.apache.hc.core5.http.protocol.HttpContext;
 /**
  * HttpAsyncClientWithFuture wraps calls to execute with a {@link HttpRequestFutureTask}
  * and schedules them using the provided executor service. Scheduled calls may be cancelled.
+ * <p>
+ * The number of requests in flight can be capped, in which case scheduling of
+ * a request blocks until a previously scheduled one completes. This makes it
+ * possible to run requests on a thread-per-request executor without exhausting
+ * threads and to rely on the connection request timeout of the connection pool
+ * to bound the time a request may wait for a connection.
+ * </p>
  */
 @ThreadSafe
 public class FutureRequestExecutionService implements Closeable {
@@ -49,6 +62,7 @@ public class FutureRequestExecutionService implements Closeable {
     private final ExecutorService executorService;
     private final FutureRequestExecutionMetrics metrics = new FutureRequestExecutionMetrics();
     private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final Semaphore permits;
 
     /**
      * Create a new FutureRequestExecutionService.
@@ -66,8 +80,51 @@ public class FutureRequestExecutionService implements Closeable {
     public FutureRequestExecutionService(
             final HttpClient httpclient,
             final ExecutorService executorService) {
+        this(httpclient, executorService, 0);
+    }
+
+    /**
+     * Create a new FutureRequestExecutionService with a cap on the number of
+     * requests in flight.
+     *
+     * @param httpclient
+     *            HttpClient instance used to execute requests.
+     * @param executorService
+     *            executor service used to run requests.
+     * @param maxConcurrentRequests
+     *            maximum number of requests scheduled or in execution at any
+     *            point of time. Scheduling of a request blocks once the limit has
+     *            been reached. A non-positive value means no limit.
+     *
+     * @since 5.0
+     */
+    public FutureRequestExecutionService(
+            final HttpClient httpclient,
+            final ExecutorService executorService,
+            final int maxConcurrentRequests) {
         this.httpclient = httpclient;
         this.executorService = executorService;
+        this.permits = maxConcurrentRequests > 0 ? new Semaphore(maxConcurrentRequests) : null;
+    }
+
+    /**
+     * Create a new FutureRequestExecutionService that executes each request
+     * on a thread of its own, allowing at most the given number of requests in flight.
+     * Idle threads are disposed of after a period of inactivity.
+     *
+     * @param httpclient
+     *            HttpClient instance used to execute requests.
+     * @param maxConcurrentRequests
+     *            maximum number of requests scheduled or in execution at any
+     *            point of time. Scheduling of a request blocks once the limit has
+     *            been reached.
+     *
+     * @since 5.0
+     */
+    public FutureRequestExecutionService(
+            final HttpClient httpclient,
+            final int maxConcurrentRequests) {
+        this(httpclient, Executors.newCachedThreadPool(new DefaultThreadFactory()), maxConcurrentRequests);
     }
 
     /**
@@ -112,12 +169,44 @@ public class FutureRequestExecutionService implements Closeable {
         if(closed.get()) {
             throw new IllegalStateException("Close has been called on this httpclient instance.");
         }
+        if (permits != null) {
+            try {
+                permits.acquire();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for a free execution slot");
+            }
+            if (closed.get()) {
+                permits.release();
+                throw new IllegalStateException("Close has been called on this httpclient instance.");
+            }
+        }
         metrics.getScheduledConnections().incrementAndGet();
         final HttpRequestTaskCallable<T> callable = new HttpRequestTaskCallable<>(
                 httpclient, request, context, responseHandler, callback, metrics);
         final HttpRequestFutureTask<T> httpRequestFutureTask = new HttpRequestFutureTask<>(
                 request, callable);
-        executorService.execute(httpRequestFutureTask);
+        if (permits != null) {
+            try {
+                executorService.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            httpRequestFutureTask.run();
+                        } finally {
+                            permits.release();
+                        }
+                    }
+
+                });
+            } catch (final RejectedExecutionException ex) {
+                permits.release();
+                throw ex;
+            }
+        } else {
+            executorService.execute(httpRequestFutureTask);
+        }
 
         return httpRequestFutureTask;
     }
@@ -133,9 +222,27 @@ public class FutureRequestExecutionService implements Closeable {
     @Override
     public void close() throws IOException {
         closed.set(true);
-        executorService.shutdownNow();
+        final List<Runnable> dropped = executorService.shutdownNow();
+        if (permits != null) {
+            // Release slots held by requests that will never run
+            permits.release(dropped.size());
+        }
         if (httpclient instanceof Closeable) {
             ((Closeable) httpclient).close();
         }
     }
+
+    static class DefaultThreadFactory implements ThreadFactory {
+
+        private final AtomicLong count = new AtomicLong();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread t = new Thread(r, "httpclient-request-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+
+    }
+
 }
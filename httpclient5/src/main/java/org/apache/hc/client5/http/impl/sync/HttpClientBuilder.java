@@ -62,6 +62,11 @@ import org.apache.hc.client5.http.impl.auth.KerberosSchemeFactory;
 import org.apache.hc.client5.http.impl.auth.NTLMSchemeFactory;
 import org.apache.hc.client5.http.impl.auth.SPNegoSchemeFactory;
 import org.apache.hc.client5.http.impl.auth.SystemDefaultCredentialsProvider;
+import org.apache.hc.client5.http.impl.io.DefaultHttpClientConnectionOperator;
+import org.apache.hc.client5.http.impl.io.IdleConnectionReplenisher;
+import org.apache.hc.client5.http.impl.io.IdleConnectionValidator;
+import org.apache.hc.client5.http.impl.io.PoolConcurrencyPolicy;
+import org.apache.hc.client5.http.impl.io.PoolReusePolicy;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
 import org.apache.hc.client5.http.impl.protocol.DefaultAuthenticationStrategy;
 import org.apache.hc.client5.http.impl.protocol.DefaultRedirectStrategy;
@@ -69,6 +74,7 @@ import org.apache.hc.client5.http.impl.protocol.DefaultUserTokenHandler;
 import org.apache.hc.client5.http.impl.routing.DefaultProxyRoutePlanner;
 import org.apache.hc.client5.http.impl.routing.DefaultRoutePlanner;
 import org.apache.hc.client5.http.impl.routing.SystemDefaultRoutePlanner;
+import org.apache.hc.client5.http.io.ClientMetricsRecorder;
 import org.apache.hc.client5.http.io.HttpClientConnectionManager;
 import org.apache.hc.client5.http.protocol.AuthenticationStrategy;
 import org.apache.hc.client5.http.protocol.RedirectStrategy;
@@ -199,6 +205,9 @@ public class HttpClientBuilder {
     private boolean evictIdleConnections;
     private long maxIdleTime;
     private TimeUnit maxIdleTimeUnit;
+    private boolean validateIdleConnections;
+    private long validationPeriod;
+    private TimeUnit validationPeriodUnit;
 
     private boolean systemProperties;
     private boolean redirectHandlingDisabled;
@@ -210,10 +219,15 @@ public class HttpClientBuilder {
 
     private int maxConnTotal = 0;
     private int maxConnPerRoute = 0;
+    private int minIdleConnPerRoute = 0;
 
     private long connTimeToLive = -1;
     private TimeUnit connTimeToLiveTimeUnit = TimeUnit.MILLISECONDS;
     private int validateAfterInactivity = 2000;
+    private int connectionAttemptDelay;
+    private PoolConcurrencyPolicy poolConcurrencyPolicy;
+    private PoolReusePolicy poolReusePolicy;
+    private ClientMetricsRecorder metricsRecorder;
 
     private List<Closeable> closeables;
 
@@ -314,6 +328,45 @@ public class HttpClientBuilder {
         return this;
     }
 
+    /**
+     * Assigns minimum number of persistent connections kept available in
+     * the pool per route in use. Connections are opened in advance by
+     * a background thread.
+     * <p>
+     * One MUST explicitly close HttpClient with {@link CloseableHttpClient#close()} in order
+     * to stop and release the background thread.
+     * <p>
+     * Please note this value can be overridden by the {@link #setConnectionManager(
+     *HttpClientConnectionManager)} method.
+     * </p>
+     *
+     * @see PoolingHttpClientConnectionManager#setMinIdlePerRoute(int)
+     *
+     * @since 5.0
+     */
+    public final HttpClientBuilder setMinIdleConnPerRoute(final int minIdleConnPerRoute) {
+        this.minIdleConnPerRoute = minIdleConnPerRoute;
+        return this;
+    }
+
+    /**
+     * Assigns {@link ClientMetricsRecorder} instance recording connection
+     * management and request execution metrics.
+     * <p>
+     * Please note the connection management metrics will not be recorded for
+     * a connection manager set with the {@link #setConnectionManager(
+     *HttpClientConnectionManager)} method unless configured separately.
+     * </p>
+     *
+     * @see org.apache.hc.client5.http.impl.io.HistogramClientMetricsRecorder
+     *
+     * @since 5.0
+     */
+    public final HttpClientBuilder setMetricsRecorder(final ClientMetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder;
+        return this;
+    }
+
     /**
      * Assigns default {@link SocketConfig}.
      * <p>
@@ -370,6 +423,37 @@ public class HttpClientBuilder {
         return this;
     }
 
+    /**
+     * Assigns {@link PoolConcurrencyPolicy} of the connection pool.
+     * <p>
+     * Please note this value can be overridden by the {@link #setConnectionManager(
+     *HttpClientConnectionManager)} method.
+     * </p>
+     *
+     * @since 5.0
+     */
+    public final HttpClientBuilder setPoolConcurrencyPolicy(final PoolConcurrencyPolicy poolConcurrencyPolicy) {
+        this.poolConcurrencyPolicy = poolConcurrencyPolicy;
+        return this;
+    }
+
+    /**
+     * Assigns {@link PoolReusePolicy} of the connection pool.
+     * <p>
+     * {@link PoolReusePolicy#FIFO} requires {@link PoolConcurrencyPolicy#LAX}.
+     * </p>
+     * <p>
+     * Please note this value can be overridden by the {@link #setConnectionManager(
+     *HttpClientConnectionManager)} method.
+     * </p>
+     *
+     * @since 5.0
+     */
+    public final HttpClientBuilder setPoolReusePolicy(final PoolReusePolicy poolReusePolicy) {
+        this.poolReusePolicy = poolReusePolicy;
+        return this;
+    }
+
     /**
      * Assigns {@link HttpClientConnectionManager} instance.
      */
@@ -705,6 +789,24 @@ public class HttpClientBuilder {
         return this;
     }
 
+    /**
+     * Sets delay in milliseconds between connection attempts to consecutive
+     * addresses of a multi-homed host. If positive, connection attempts are
+     * raced (Happy Eyeballs) instead of being made one after another.
+     * <p>
+     * Please note this value can be overridden by the {@link #setConnectionManager(HttpClientConnectionManager)}
+     * method.
+     * </p>
+     *
+     * @see DefaultHttpClientConnectionOperator
+     *
+     * @since 5.0
+     */
+    public final HttpClientBuilder setConnectionAttemptDelay(final int connectionAttemptDelay) {
+        this.connectionAttemptDelay = connectionAttemptDelay;
+        return this;
+    }
+
     /**
      * Assigns {@link DnsResolver} instance.
      * <p>
@@ -825,6 +927,38 @@ public class HttpClientBuilder {
         return this;
     }
 
+    /**
+     * Makes this instance of HttpClient check persistent connections kept idle
+     * in the connection pool for staleness using a background thread instead of
+     * checking them when they get leased. Connections are checked after the period
+     * of inactivity set by {@link #setValidateAfterInactivity(int)}.
+     * <p>
+     * One MUST explicitly close HttpClient with {@link CloseableHttpClient#close()} in order
+     * to stop and release the background thread.
+     * <p>
+     * Please note this method has no effect if the instance of HttpClient is configured to
+     * use a shared connection manager or a connection manager other than
+     * {@link PoolingHttpClientConnectionManager}.
+     * <p>
+     * Please note this method may not be used when the instance of HttpClient is created
+     * inside an EJB container.
+     *
+     * @see #setConnectionManagerShared(boolean)
+     * @see PoolingHttpClientConnectionManager#validateIdleConnections(long, TimeUnit)
+     *
+     * @param validationPeriod period of time between consecutive checks.
+     * @param validationPeriodUnit time unit for the above parameter.
+     *
+     * @since 5.0
+     */
+    public final HttpClientBuilder validateIdleConnections(
+            final long validationPeriod, final TimeUnit validationPeriodUnit) {
+        this.validateIdleConnections = true;
+        this.validationPeriod = validationPeriod;
+        this.validationPeriodUnit = validationPeriodUnit;
+        return this;
+    }
+
     /**
      * Produces an instance of {@link ClientExecChain} to be used as a main exec.
      * <p>
@@ -854,7 +988,8 @@ public class HttpClientBuilder {
                 proxyHttpProcessor,
                 targetAuthStrategy,
                 proxyAuthStrategy,
-                userTokenHandler);
+                userTokenHandler,
+                metricsRecorder);
     }
 
     /**
@@ -932,16 +1067,20 @@ public class HttpClientBuilder {
             }
             @SuppressWarnings("resource")
             final PoolingHttpClientConnectionManager poolingmgr = new PoolingHttpClientConnectionManager(
-                    RegistryBuilder.<ConnectionSocketFactory>create()
-                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
-                        .register("https", sslSocketFactoryCopy)
-                        .build(),
-                    null,
+                    new DefaultHttpClientConnectionOperator(
+                            RegistryBuilder.<ConnectionSocketFactory>create()
+                                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                                .register("https", sslSocketFactoryCopy)
+                                .build(),
+                            null,
+                            dnsResolver,
+                            connectionAttemptDelay),
                     null,
-                    dnsResolver,
+                    poolConcurrencyPolicy,
+                    poolReusePolicy,
                     connTimeToLive,
                     connTimeToLiveTimeUnit != null ? connTimeToLiveTimeUnit : TimeUnit.MILLISECONDS);
-            poolingmgr.setValidateAfterInactivity(this.validateAfterInactivity);
+            poolingmgr.setValidateAfterInactivity(validateIdleConnections ? -1 : this.validateAfterInactivity);
             if (defaultSocketConfig != null) {
                 poolingmgr.setDefaultSocketConfig(defaultSocketConfig);
             }
@@ -963,6 +1102,12 @@ public class HttpClientBuilder {
             if (maxConnPerRoute > 0) {
                 poolingmgr.setDefaultMaxPerRoute(maxConnPerRoute);
             }
+            if (minIdleConnPerRoute > 0) {
+                poolingmgr.setMinIdlePerRoute(minIdleConnPerRoute);
+            }
+            if (metricsRecorder != null) {
+                poolingmgr.setMetricsRecorder(metricsRecorder);
+            }
             connManagerCopy = poolingmgr;
         }
         ConnectionReuseStrategy reuseStrategyCopy = this.reuseStrategy;
@@ -1186,6 +1331,39 @@ public class HttpClientBuilder {
                 });
                 connectionEvictor.start();
             }
+            if (validateIdleConnections && cm instanceof PoolingHttpClientConnectionManager) {
+                final IdleConnectionValidator connectionValidator = new IdleConnectionValidator(
+                        (PoolingHttpClientConnectionManager) cm,
+                        validationPeriod > 0 ? validationPeriod : 1,
+                        validationPeriodUnit != null ? validationPeriodUnit : TimeUnit.SECONDS,
+                        Math.max(validateAfterInactivity, 0), TimeUnit.MILLISECONDS);
+                closeablesCopy.add(new Closeable() {
+
+                    @Override
+                    public void close() throws IOException {
+                        connectionValidator.shutdown();
+                    }
+
+                });
+                connectionValidator.start();
+            }
+            if (cm instanceof PoolingHttpClientConnectionManager
+                    && ((PoolingHttpClientConnectionManager) cm).getMinIdlePerRoute() > 0) {
+                final int connectTimeout = defaultRequestConfig != null ? defaultRequestConfig.getConnectTimeout() : -1;
+                final IdleConnectionReplenisher connectionReplenisher = new IdleConnectionReplenisher(
+                        (PoolingHttpClientConnectionManager) cm,
+                        1, TimeUnit.SECONDS,
+                        connectTimeout > 0 ? connectTimeout : 0, TimeUnit.MILLISECONDS);
+                closeablesCopy.add(new Closeable() {
+
+                    @Override
+                    public void close() throws IOException {
+                        connectionReplenisher.shutdown();
+                    }
+
+                });
+                connectionReplenisher.start();
+            }
             closeablesCopy.add(new Closeable() {
 
                 @Override
@@ -148,8 +148,21 @@ class InternalHttpClient extends CloseableHttpClient implements Configurable {
                 localcontext.setRequestConfig(config);
             }
             setupContext(localcontext);
-            final HttpRoute route = determineRoute(target, wrapper, localcontext);
-            return this.execChain.execute(route, wrapper, localcontext, execAware);
+            final int requestTimeout = localcontext.getRequestConfig().getRequestTimeout();
+            final long callerDeadline = localcontext.getRequestDeadline();
+            if (requestTimeout > 0) {
+                final long deadline = System.currentTimeMillis() + requestTimeout;
+                localcontext.setRequestDeadline(
+                        callerDeadline > 0 ? Math.min(callerDeadline, deadline) : deadline);
+            }
+            try {
+                final HttpRoute route = determineRoute(target, wrapper, localcontext);
+                return this.execChain.execute(route, wrapper, localcontext, execAware);
+            } finally {
+                if (requestTimeout > 0) {
+                    localcontext.setRequestDeadline(callerDeadline);
+                }
+            }
         } catch (final HttpException httpException) {
             throw new ClientProtocolException(httpException);
         }
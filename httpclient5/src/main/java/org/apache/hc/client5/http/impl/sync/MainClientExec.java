@@ -40,7 +40,9 @@ import org.apache.hc.client5.http.auth.ChallengeType;
 import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.impl.auth.HttpAuthenticator;
 import org.apache.hc.client5.http.impl.io.ConnectionShutdownException;
+import org.apache.hc.client5.http.impl.io.NoopClientMetricsRecorder;
 import org.apache.hc.client5.http.impl.routing.BasicRouteDirector;
+import org.apache.hc.client5.http.io.ClientMetricsRecorder;
 import org.apache.hc.client5.http.io.ConnectionRequest;
 import org.apache.hc.client5.http.io.HttpClientConnectionManager;
 import org.apache.hc.client5.http.methods.CloseableHttpResponse;
@@ -85,6 +87,26 @@ import org.apache.logging.log4j.Logger;
 @Immutable
 public class MainClientExec implements ClientExecChain {
 
+    /**
+     * Context attribute set to {@link Boolean#TRUE} if the request has been
+     * executed over a persistent connection re-used from the pool.
+     */
+    static final String CONNECTION_REUSED = "http.client.connection-reused";
+
+    /**
+     * Context attribute requesting a re-used persistent connection to be checked
+     * for staleness before the next request execution.
+     */
+    static final String VALIDATE_CONNECTION = "http.client.validate-connection";
+
+    /**
+     * Context attribute holding the value of {@link System#nanoTime()} at the
+     * time the connection leased for the request has been established and is
+     * ready to send it, as {@link Long}. It only gets updated if present in the
+     * context, so that the clock is read only when the value is to be used.
+     */
+    static final String CONNECTION_ESTABLISHED_AT = "http.client.connection-established-at";
+
     private final Logger log = LogManager.getLogger(getClass());
 
     private final HttpRequestExecutor requestExecutor;
@@ -97,9 +119,10 @@ public class MainClientExec implements ClientExecChain {
     private final HttpAuthenticator authenticator;
     private final UserTokenHandler userTokenHandler;
     private final HttpRouteDirector routeDirector;
+    private final ClientMetricsRecorder metricsRecorder;
 
     /**
-     * @since 4.4
+     * @since 5.0
      */
     public MainClientExec(
             final HttpRequestExecutor requestExecutor,
@@ -109,7 +132,8 @@ public class MainClientExec implements ClientExecChain {
             final HttpProcessor proxyHttpProcessor,
             final AuthenticationStrategy targetAuthStrategy,
             final AuthenticationStrategy proxyAuthStrategy,
-            final UserTokenHandler userTokenHandler) {
+            final UserTokenHandler userTokenHandler,
+            final ClientMetricsRecorder metricsRecorder) {
         Args.notNull(requestExecutor, "HTTP request executor");
         Args.notNull(connManager, "Client connection manager");
         Args.notNull(reuseStrategy, "Connection reuse strategy");
@@ -128,6 +152,23 @@ public class MainClientExec implements ClientExecChain {
         this.targetAuthStrategy = targetAuthStrategy;
         this.proxyAuthStrategy  = proxyAuthStrategy;
         this.userTokenHandler   = userTokenHandler;
+        this.metricsRecorder    = metricsRecorder != null ? metricsRecorder : NoopClientMetricsRecorder.INSTANCE;
+    }
+
+    /**
+     * @since 4.4
+     */
+    public MainClientExec(
+            final HttpRequestExecutor requestExecutor,
+            final HttpClientConnectionManager connManager,
+            final ConnectionReuseStrategy reuseStrategy,
+            final ConnectionKeepAliveStrategy keepAliveStrategy,
+            final HttpProcessor proxyHttpProcessor,
+            final AuthenticationStrategy targetAuthStrategy,
+            final AuthenticationStrategy proxyAuthStrategy,
+            final UserTokenHandler userTokenHandler) {
+        this(requestExecutor, connManager, reuseStrategy, keepAliveStrategy, proxyHttpProcessor,
+                targetAuthStrategy, proxyAuthStrategy, userTokenHandler, null);
     }
 
     public MainClientExec(
@@ -157,6 +198,9 @@ public class MainClientExec implements ClientExecChain {
 
         Object userToken = context.getUserToken();
 
+        final RequestConfig config = context.getRequestConfig();
+        final int leaseTimeout = remainingTimeout(config.getConnectionRequestTimeout(), context);
+
         final ConnectionRequest connRequest = connManager.requestConnection(route, userToken);
         if (execAware != null) {
             if (execAware.isAborted()) {
@@ -167,12 +211,9 @@ public class MainClientExec implements ClientExecChain {
             }
         }
 
-        final RequestConfig config = context.getRequestConfig();
-
         final HttpClientConnection managedConn;
         try {
-            final int timeout = config.getConnectionRequestTimeout();
-            managedConn = connRequest.get(timeout > 0 ? timeout : 0, TimeUnit.MILLISECONDS);
+            managedConn = connRequest.get(leaseTimeout > 0 ? leaseTimeout : 0, TimeUnit.MILLISECONDS);
         } catch(final InterruptedException interrupted) {
             Thread.currentThread().interrupt();
             throw new RequestAbortedException("Request aborted", interrupted);
@@ -184,9 +225,16 @@ public class MainClientExec implements ClientExecChain {
             throw new RequestAbortedException("Request execution failed", cause);
         }
 
+        final boolean reused = managedConn.isOpen();
+        if (reused && context.removeAttribute(VALIDATE_CONNECTION) != null && managedConn.isStale()) {
+            this.log.debug("Stale connection detected");
+            managedConn.close();
+        }
+        context.setAttribute(CONNECTION_REUSED, reused && managedConn.isOpen() ? Boolean.TRUE : Boolean.FALSE);
         context.setAttribute(HttpCoreContext.HTTP_CONNECTION, managedConn);
 
-        final ConnectionHolder connHolder = new ConnectionHolder(this.log, this.connManager, managedConn);
+        final ConnectionHolder connHolder = new ConnectionHolder(
+                this.log, this.connManager, managedConn, route, this.metricsRecorder);
         try {
             if (execAware != null) {
                 execAware.setCancellable(connHolder);
@@ -220,7 +268,10 @@ public class MainClientExec implements ClientExecChain {
                         break;
                     }
                 }
-                final int timeout = config.getSocketTimeout();
+                if (execCount == 1 && context.getAttribute(CONNECTION_ESTABLISHED_AT) != null) {
+                    context.setAttribute(CONNECTION_ESTABLISHED_AT, Long.valueOf(System.nanoTime()));
+                }
+                final int timeout = remainingTimeout(config.getSocketTimeout(), context);
                 if (timeout >= 0) {
                     managedConn.setSocketTimeout(timeout);
                 }
@@ -248,7 +299,13 @@ public class MainClientExec implements ClientExecChain {
                             route.getProxyHost(), ChallengeType.PROXY, request, proxyAuthExchange, context);
                 }
 
-                response = requestExecutor.execute(request, managedConn, context);
+                if (this.metricsRecorder.isEnabled()) {
+                    final long start = System.nanoTime();
+                    response = requestExecutor.execute(request, managedConn, context);
+                    this.metricsRecorder.responseReceived(route, System.nanoTime() - start);
+                } else {
+                    response = requestExecutor.execute(request, managedConn, context);
+                }
 
                 // The connection is in or can be brought to a re-usable state.
                 if (reuseStrategy.keepAlive(request, response, context)) {
@@ -336,6 +393,28 @@ public class MainClientExec implements ClientExecChain {
         }
     }
 
+    /**
+     * Caps the given timeout by the time remaining until the request deadline,
+     * if one has been set in the context. Timeouts of zero or less are treated
+     * as infinite.
+     *
+     * @throws InterruptedIOException if the request deadline has already passed.
+     */
+    static int remainingTimeout(final int timeout, final HttpClientContext context) throws InterruptedIOException {
+        final long deadline = context.getRequestDeadline();
+        if (deadline <= 0) {
+            return timeout;
+        }
+        final long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            throw new InterruptedIOException("Request deadline exceeded");
+        }
+        if (timeout > 0 && timeout < remaining) {
+            return timeout;
+        }
+        return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+
     /**
      * Establishes the target route.
      */
@@ -345,7 +424,7 @@ public class MainClientExec implements ClientExecChain {
             final HttpRequest request,
             final HttpClientContext context) throws HttpException, IOException {
         final RequestConfig config = context.getRequestConfig();
-        final int timeout = config.getConnectTimeout();
+        final int timeout = remainingTimeout(config.getConnectTimeout(), context);
         final RouteTracker tracker = new RouteTracker(route);
         int step;
         do {
@@ -422,7 +501,7 @@ public class MainClientExec implements ClientExecChain {
             final HttpClientContext context) throws HttpException, IOException {
 
         final RequestConfig config = context.getRequestConfig();
-        final int timeout = config.getConnectTimeout();
+        final int timeout = remainingTimeout(config.getConnectTimeout(), context);
 
         final HttpHost target = route.getTargetHost();
         final HttpHost proxy = route.getProxyHost();
@@ -108,6 +108,11 @@ public class RetryExec implements ClientExecChain {
                                 "with a non-repeatable request entity", ex);
                     }
                     request.setHeaders(origheaders);
+                    if (Boolean.TRUE.equals(context.getAttribute(MainClientExec.CONNECTION_REUSED))) {
+                        // The connection may have gone stale while kept idle in the pool.
+                        // Make sure the connection used for the retry is checked
+                        context.setAttribute(MainClientExec.VALIDATE_CONNECTION, Boolean.TRUE);
+                    }
                     if (this.log.isInfoEnabled()) {
                         this.log.info("Retrying request to " + route);
                     }
@@ -0,0 +1,92 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.io;
+
+import org.apache.hc.client5.http.HttpRoute;
+
+/**
+ * Records metrics of connection management and request execution per
+ * {@link HttpRoute}.
+ * <p>
+ * Implementations of this interface must be thread-safe and are expected
+ * to return quickly as they get invoked on the request execution path.
+ * All durations are given in nanoseconds.
+ * </p>
+ *
+ * @since 5.0
+ */
+public interface ClientMetricsRecorder {
+
+    /**
+     * Determines whether metrics are recorded at all. Callers may skip taking
+     * measurements if this method returns {@code false}.
+     */
+    boolean isEnabled();
+
+    /**
+     * Records a connection lease.
+     *
+     * @param route the route of the connection.
+     * @param waitTime time spent waiting for the connection to be leased.
+     * @param reused {@code true} if a persistent connection has been re-used,
+     *   {@code false} if a new connection is to be opened.
+     */
+    void connectionLeased(HttpRoute route, long waitTime, boolean reused);
+
+    /**
+     * Records the time taken to establish a connection, excluding TLS handshake.
+     */
+    void connectionEstablished(HttpRoute route, long connectTime);
+
+    /**
+     * Records the time taken by TLS handshake.
+     */
+    void tlsHandshakeCompleted(HttpRoute route, long handshakeTime);
+
+    /**
+     * Records closure of a connection upon its release back to the pool.
+     *
+     * @param route the route of the connection.
+     * @param lifetime time elapsed since the connection has been created.
+     * @param reuseCount number of times the connection has been re-used.
+     */
+    void connectionClosed(HttpRoute route, long lifetime, int reuseCount);
+
+    /**
+     * Records the time elapsed since the request has started being sent
+     * until the response head has been received.
+     */
+    void responseReceived(HttpRoute route, long responseHeadTime);
+
+    /**
+     * Records the time elapsed since a connection has been leased for
+     * a message exchange until it has been released.
+     */
+    void exchangeCompleted(HttpRoute route, long exchangeTime);
+
+}
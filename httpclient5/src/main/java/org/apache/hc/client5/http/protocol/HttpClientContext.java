@@ -133,6 +133,17 @@ public class HttpClientContext extends HttpCoreContext {
      */
     public static final String REQUEST_CONFIG = "http.request-config";
 
+    /**
+     * Attribute name of a {@link Long} object that represents the absolute
+     * time in milliseconds since the epoch by which execution of the actual
+     * request is expected to complete.
+     *
+     * @see RequestConfig#getRequestTimeout()
+     *
+     * @since 5.0
+     */
+    public static final String REQUEST_DEADLINE = "http.request-deadline";
+
     public static HttpClientContext adapt(final HttpContext context) {
         if (context instanceof HttpClientContext) {
             return (HttpClientContext) context;
@@ -280,4 +291,29 @@ public class HttpClientContext extends HttpCoreContext {
         setAttribute(REQUEST_CONFIG, config);
     }
 
+    /**
+     * Returns the request deadline in milliseconds since the epoch
+     * or {@code 0} if no deadline has been set.
+     *
+     * @since 5.0
+     */
+    public long getRequestDeadline() {
+        final Long deadline = getAttribute(REQUEST_DEADLINE, Long.class);
+        return deadline != null ? deadline.longValue() : 0;
+    }
+
+    /**
+     * Sets the request deadline in milliseconds since the epoch. A value
+     * of zero or less clears the deadline.
+     *
+     * @since 5.0
+     */
+    public void setRequestDeadline(final long deadline) {
+        if (deadline > 0) {
+            setAttribute(REQUEST_DEADLINE, Long.valueOf(deadline));
+        } else {
+            removeAttribute(REQUEST_DEADLINE);
+        }
+    }
+
 }
@@ -139,6 +139,14 @@ public class SSLConnectionSocketFactory implements LayeredConnectionSocketFactor
     public static final String TLS   = "TLS";
     public static final String SSL   = "SSL";
 
+    /**
+     * Context attribute holding the duration of the last TLS handshake
+     * (including host name verification) in nanoseconds as {@link Long}.
+     *
+     * @since 5.0
+     */
+    public static final String TLS_HANDSHAKE_TIME = "http.ssl.handshake-time";
+
     private final Logger log = LogManager.getLogger(getClass());
 
     /**
@@ -283,9 +291,7 @@ public class SSLConnectionSocketFactory implements LayeredConnectionSocketFactor
         // Setup SSL layering if necessary
         if (sock instanceof SSLSocket) {
             final SSLSocket sslsock = (SSLSocket) sock;
-            this.log.debug("Starting handshake");
-            sslsock.startHandshake();
-            verifyHostname(sslsock, host.getHostName());
+            handshake(sslsock, host.getHostName(), context);
             return sock;
         } else {
             return createLayeredSocket(sock, host.getHostName(), remoteAddress.getPort(), context);
@@ -328,10 +334,21 @@ public class SSLConnectionSocketFactory implements LayeredConnectionSocketFactor
         }
 
         prepareSocket(sslsock);
+        handshake(sslsock, target, context);
+        return sslsock;
+    }
+
+    private void handshake(
+            final SSLSocket sslsock,
+            final String hostname,
+            final HttpContext context) throws IOException {
         this.log.debug("Starting handshake");
+        final long start = System.nanoTime();
         sslsock.startHandshake();
-        verifyHostname(sslsock, target);
-        return sslsock;
+        verifyHostname(sslsock, hostname);
+        if (context != null) {
+            context.setAttribute(TLS_HANDSHAKE_TIME, Long.valueOf(System.nanoTime() - start));
+        }
     }
 
     private void verifyHostname(final SSLSocket sslsock, final String hostname) throws IOException {
@@ -0,0 +1,206 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.DnsResolver;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Unit tests for {@link CachingDnsResolver}.
+ */
+public class TestCachingDnsResolver {
+
+    private DnsResolver resolver;
+    private InetAddress ip1;
+    private InetAddress ip2;
+    private CachingDnsResolver cachingResolver;
+
+    @Before
+    public void setup() throws Exception {
+        resolver = Mockito.mock(DnsResolver.class);
+        ip1 = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        ip2 = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        if (cachingResolver != null) {
+            cachingResolver.close();
+        }
+    }
+
+    @Test
+    public void testCacheHit() throws Exception {
+        Mockito.when(resolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1, ip2 });
+        cachingResolver = new CachingDnsResolver(resolver, 1, 1, TimeUnit.MINUTES);
+
+        Assert.assertArrayEquals(new InetAddress[] { ip1, ip2 }, cachingResolver.resolve("somehost"));
+        final InetAddress[] addresses = cachingResolver.resolve("somehost");
+        Assert.assertArrayEquals(new InetAddress[] { ip1, ip2 }, addresses);
+        addresses[0] = null;
+        Assert.assertArrayEquals(new InetAddress[] { ip1, ip2 }, cachingResolver.resolve("somehost"));
+
+        Mockito.verify(resolver, Mockito.times(1)).resolve("somehost");
+        Assert.assertEquals(1, cachingResolver.getMissCount());
+        Assert.assertEquals(2, cachingResolver.getHitCount());
+    }
+
+    @Test
+    public void testNegativeCaching() throws Exception {
+        Mockito.when(resolver.resolve("somehost")).thenThrow(new UnknownHostException("somehost"));
+        cachingResolver = new CachingDnsResolver(resolver, 1, 1, TimeUnit.MINUTES);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                cachingResolver.resolve("somehost");
+                Assert.fail("UnknownHostException expected");
+            } catch (final UnknownHostException expected) {
+            }
+        }
+        Mockito.verify(resolver, Mockito.times(1)).resolve("somehost");
+        Assert.assertEquals(1, cachingResolver.getHitCount());
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        Mockito.when(resolver.resolve("somehost")).thenReturn(
+                new InetAddress[] { ip1 }, new InetAddress[] { ip2 });
+        cachingResolver = new CachingDnsResolver(resolver, 50, 50, TimeUnit.MILLISECONDS, 0, null);
+
+        Assert.assertArrayEquals(new InetAddress[] { ip1 }, cachingResolver.resolve("somehost"));
+        Thread.sleep(100);
+        Assert.assertArrayEquals(new InetAddress[] { ip2 }, cachingResolver.resolve("somehost"));
+        Assert.assertEquals(2, cachingResolver.getMissCount());
+    }
+
+    @Test
+    public void testBackgroundRefresh() throws Exception {
+        Mockito.when(resolver.resolve("somehost")).thenReturn(
+                new InetAddress[] { ip1 }, new InetAddress[] { ip2 });
+        cachingResolver = new CachingDnsResolver(resolver, 10, 10, TimeUnit.SECONDS, 0.0001f, null);
+
+        Assert.assertArrayEquals(new InetAddress[] { ip1 }, cachingResolver.resolve("somehost"));
+        Thread.sleep(10);
+        Assert.assertArrayEquals(new InetAddress[] { ip1 }, cachingResolver.resolve("somehost"));
+        Mockito.verify(resolver, Mockito.timeout(1000).times(2)).resolve("somehost");
+        Thread.sleep(50);
+        Assert.assertArrayEquals(new InetAddress[] { ip2 }, cachingResolver.resolve("somehost"));
+        Assert.assertEquals(1, cachingResolver.getMissCount());
+    }
+
+    @Test
+    public void testFailedBackgroundRefreshIsRetried() throws Exception {
+        Mockito.when(resolver.resolve("somehost"))
+                .thenReturn(new InetAddress[] { ip1 })
+                .thenThrow(new IllegalStateException("Oppsie"))
+                .thenReturn(new InetAddress[] { ip2 });
+        cachingResolver = new CachingDnsResolver(resolver, 10, 10, TimeUnit.SECONDS, 0.0001f, null);
+
+        Assert.assertArrayEquals(new InetAddress[] { ip1 }, cachingResolver.resolve("somehost"));
+        Thread.sleep(10);
+        Assert.assertArrayEquals(new InetAddress[] { ip1 }, cachingResolver.resolve("somehost"));
+        Mockito.verify(resolver, Mockito.timeout(1000).times(2)).resolve("somehost");
+        Thread.sleep(50);
+        Assert.assertArrayEquals(new InetAddress[] { ip1 }, cachingResolver.resolve("somehost"));
+        Mockito.verify(resolver, Mockito.timeout(1000).times(3)).resolve("somehost");
+        Thread.sleep(50);
+        Assert.assertArrayEquals(new InetAddress[] { ip2 }, cachingResolver.resolve("somehost"));
+    }
+
+    @Test
+    public void testCacheSizeIsBounded() throws Exception {
+        Mockito.when(resolver.resolve(Mockito.anyString())).thenReturn(new InetAddress[] { ip1 });
+        cachingResolver = new CachingDnsResolver(resolver, 1, 1, TimeUnit.MINUTES, 0, 2, null);
+
+        cachingResolver.resolve("host1");
+        cachingResolver.resolve("host2");
+        cachingResolver.resolve("host3");
+        Assert.assertEquals(3, cachingResolver.getMissCount());
+        cachingResolver.resolve("host3");
+        Assert.assertEquals(3, cachingResolver.getMissCount());
+        cachingResolver.resolve("host1");
+        cachingResolver.resolve("host2");
+        Assert.assertTrue(cachingResolver.getMissCount() >= 4);
+    }
+
+    @Test
+    public void testConcurrentLookupsCollapsed() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        Mockito.when(resolver.resolve("somehost")).thenAnswer(new Answer<InetAddress[]>() {
+
+            @Override
+            public InetAddress[] answer(final InvocationOnMock invocation) throws Throwable {
+                latch.await();
+                return new InetAddress[] { ip1 };
+            }
+
+        });
+        cachingResolver = new CachingDnsResolver(resolver, 1, 1, TimeUnit.MINUTES);
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(5);
+        try {
+            final List<Future<InetAddress[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                futures.add(executorService.submit(new Callable<InetAddress[]>() {
+
+                    @Override
+                    public InetAddress[] call() throws Exception {
+                        return cachingResolver.resolve("somehost");
+                    }
+
+                }));
+            }
+            Thread.sleep(100);
+            latch.countDown();
+            for (final Future<InetAddress[]> future: futures) {
+                Assert.assertArrayEquals(new InetAddress[] { ip1 }, future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        Mockito.verify(resolver, Mockito.times(1)).resolve("somehost");
+    }
+
+}
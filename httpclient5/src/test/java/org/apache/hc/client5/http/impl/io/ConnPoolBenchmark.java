@@ -0,0 +1,169 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.io;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.io.ManagedHttpClientConnection;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.pool.io.ConnFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares lease / release throughput of {@link CPool} and {@link LaxCPool}.
+ * <p>
+ * Run {@link #main(String[])} from the test classpath to execute the benchmark
+ * with 1 to 256 threads. Connections are stubbed out, so the benchmark
+ * measures the cost of pool bookkeeping and lock contention only.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConnPoolBenchmark {
+
+    @Param({"STRICT", "LAX"})
+    public PoolConcurrencyPolicy policy;
+
+    @Param({"1", "60"})
+    public int routeCount;
+
+    @Param({"20"})
+    public int maxPerRoute;
+
+    private ManagedConnPool pool;
+    private HttpRoute[] routes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final ConnFactory<HttpRoute, ManagedHttpClientConnection> connFactory =
+                new ConnFactory<HttpRoute, ManagedHttpClientConnection>() {
+
+            @Override
+            public ManagedHttpClientConnection create(final HttpRoute route) throws IOException {
+                return newStubConnection();
+            }
+
+        };
+        final int maxTotal = this.routeCount * this.maxPerRoute;
+        switch (this.policy) {
+            case LAX:
+                this.pool = new LaxCPool(connFactory, this.maxPerRoute, maxTotal, -1, TimeUnit.MILLISECONDS);
+                break;
+            default:
+                this.pool = new CPool(connFactory, this.maxPerRoute, maxTotal, -1, TimeUnit.MILLISECONDS);
+        }
+        this.routes = new HttpRoute[this.routeCount];
+        for (int i = 0; i < this.routes.length; i++) {
+            this.routes[i] = new HttpRoute(new HttpHost("host" + i, 80));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() throws IOException {
+        this.pool.shutdown();
+    }
+
+    @Benchmark
+    public CPoolEntry leaseRelease() throws Exception {
+        final HttpRoute route = this.routes[ThreadLocalRandom.current().nextInt(this.routes.length)];
+        final CPoolEntry entry = this.pool.lease(route, null, null).get(0, TimeUnit.MILLISECONDS);
+        this.pool.release(entry, true);
+        return entry;
+    }
+
+    static ManagedHttpClientConnection newStubConnection() {
+        return (ManagedHttpClientConnection) Proxy.newProxyInstance(
+                ConnPoolBenchmark.class.getClassLoader(),
+                new Class<?>[] { ManagedHttpClientConnection.class },
+                new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        final String name = method.getName();
+                        if (name.equals("isOpen")) {
+                            return Boolean.TRUE;
+                        }
+                        if (name.equals("equals")) {
+                            return Boolean.valueOf(proxy == args[0]);
+                        }
+                        if (name.equals("hashCode")) {
+                            return Integer.valueOf(System.identityHashCode(proxy));
+                        }
+                        if (name.equals("toString")) {
+                            return "stub";
+                        }
+                        final Class<?> returnType = method.getReturnType();
+                        if (returnType == Boolean.TYPE) {
+                            return Boolean.FALSE;
+                        }
+                        if (returnType == Integer.TYPE) {
+                            return Integer.valueOf(0);
+                        }
+                        return null;
+                    }
+
+                });
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        final int[] threadCounts = { 1, 4, 16, 64, 256 };
+        for (final int threads: threadCounts) {
+            final Options options = new OptionsBuilder()
+                    .include(ConnPoolBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+}
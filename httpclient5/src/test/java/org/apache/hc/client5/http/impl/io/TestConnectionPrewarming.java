@@ -0,0 +1,282 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.io;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.hc.client5.http.HttpConnectionFactory;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.io.HttpClientConnectionOperator;
+import org.apache.hc.client5.http.io.ManagedHttpClientConnection;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.config.ConnectionConfig;
+import org.apache.hc.core5.http.config.SocketConfig;
+import org.apache.hc.core5.http.io.HttpClientConnection;
+import org.apache.hc.core5.http.protocol.BasicHttpContext;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.pool.PoolStats;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests for connection pre-warming of {@link PoolingHttpClientConnectionManager}.
+ */
+@SuppressWarnings({"boxing","resource"}) // test code
+public class TestConnectionPrewarming {
+
+    private HttpClientConnectionOperator connectionOperator;
+    private HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> connFactory;
+    private PoolingHttpClientConnectionManager mgr;
+    private HttpRoute route;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setup() throws Exception {
+        connectionOperator = Mockito.mock(HttpClientConnectionOperator.class);
+        connFactory = Mockito.mock(HttpConnectionFactory.class);
+        Mockito.when(connFactory.create(Mockito.<HttpRoute>any(), Mockito.<ConnectionConfig>any())).thenAnswer(
+                new Answer<ManagedHttpClientConnection>() {
+
+            @Override
+            public ManagedHttpClientConnection answer(final InvocationOnMock invocation) throws Throwable {
+                return mockConnection();
+            }
+
+        });
+        mgr = new PoolingHttpClientConnectionManager(connectionOperator, connFactory, null, null,
+                -1, TimeUnit.MILLISECONDS);
+        route = new HttpRoute(new HttpHost("somehost", 80));
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        mgr.shutdown();
+    }
+
+    private static ManagedHttpClientConnection mockConnection() throws IOException {
+        final ManagedHttpClientConnection conn = Mockito.mock(ManagedHttpClientConnection.class);
+        final AtomicBoolean open = new AtomicBoolean(false);
+        Mockito.when(conn.isOpen()).thenAnswer(new Answer<Boolean>() {
+
+            @Override
+            public Boolean answer(final InvocationOnMock invocation) throws Throwable {
+                return open.get();
+            }
+
+        });
+        Mockito.doAnswer(new Answer<Object>() {
+
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                open.set(true);
+                return null;
+            }
+
+        }).when(conn).bind(Mockito.<Socket>any());
+        Mockito.doAnswer(new Answer<Object>() {
+
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                open.set(false);
+                return null;
+            }
+
+        }).when(conn).close();
+        return conn;
+    }
+
+    private void connectionsOpen() throws IOException {
+        Mockito.doAnswer(new Answer<Object>() {
+
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                final ManagedHttpClientConnection conn = (ManagedHttpClientConnection) invocation.getArguments()[0];
+                conn.bind(null);
+                return null;
+            }
+
+        }).when(connectionOperator).connect(
+                Mockito.<ManagedHttpClientConnection>any(),
+                Mockito.<HttpHost>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.anyInt(),
+                Mockito.<SocketConfig>any(),
+                Mockito.<HttpContext>any());
+    }
+
+    @Test
+    public void testPrewarm() throws Exception {
+        connectionsOpen();
+
+        Assert.assertEquals(3, mgr.prewarm(route, 3, 1, TimeUnit.SECONDS));
+        final PoolStats stats = mgr.getStats(route);
+        Assert.assertEquals(3, stats.getAvailable());
+        Assert.assertEquals(0, stats.getLeased());
+
+        // Connections available in the pool are left alone
+        Assert.assertEquals(1, mgr.prewarm(route, 1, 1, TimeUnit.SECONDS));
+        Assert.assertEquals(4, mgr.getStats(route).getAvailable());
+        Mockito.verify(connectionOperator, Mockito.times(4)).connect(
+                Mockito.<ManagedHttpClientConnection>any(),
+                Mockito.eq(route.getTargetHost()),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.eq(1000),
+                Mockito.<SocketConfig>any(),
+                Mockito.<HttpContext>any());
+    }
+
+    @Test
+    public void testPrewarmLeavesAvailableConnectionsUntouched() throws Exception {
+        connectionsOpen();
+        final HttpClientConnection conn = mgr.requestConnection(route, null).get(1, TimeUnit.SECONDS);
+        final HttpContext context = new BasicHttpContext();
+        mgr.connect(conn, route, 1000, context);
+        mgr.routeComplete(conn, route, context);
+        final CPoolEntry entry = CPoolProxy.getPoolEntry(conn);
+        mgr.releaseConnection(conn, "some state", 1, TimeUnit.MINUTES);
+        final long updated = entry.getUpdated();
+        final long expiry = entry.getExpiry();
+        Thread.sleep(10);
+
+        Assert.assertEquals(2, mgr.prewarm(route, 2, 1, TimeUnit.SECONDS));
+        Assert.assertEquals(3, mgr.getStats(route).getAvailable());
+        Assert.assertEquals(0, mgr.getStats(route).getLeased());
+        Assert.assertEquals("some state", entry.getState());
+        Assert.assertEquals(updated, entry.getUpdated());
+        Assert.assertEquals(expiry, entry.getExpiry());
+        Assert.assertEquals(0, entry.getReuseCount());
+    }
+
+    @Test
+    public void testPrewarmWithinPoolLimits() throws Exception {
+        connectionsOpen();
+        mgr.setMaxPerRoute(route, 2);
+
+        Assert.assertEquals(2, mgr.prewarm(route, 3, 100, TimeUnit.MILLISECONDS));
+        final PoolStats stats = mgr.getStats(route);
+        Assert.assertEquals(2, stats.getAvailable());
+        Assert.assertEquals(0, stats.getLeased());
+    }
+
+    @Test
+    public void testPrewarmDoesNotWaitForLeasedConnections() throws Exception {
+        connectionsOpen();
+        mgr.setMaxPerRoute(route, 2);
+        final HttpClientConnection leased = mgr.requestConnection(route, null).get(1, TimeUnit.SECONDS);
+
+        Assert.assertEquals(1, mgr.prewarm(route, 3, 1, TimeUnit.MINUTES));
+        final PoolStats stats = mgr.getStats(route);
+        Assert.assertEquals(1, stats.getAvailable());
+        Assert.assertEquals(1, stats.getLeased());
+        mgr.releaseConnection(leased, null, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testPrewarmWithoutTimeout() throws Exception {
+        mgr.prewarm(route, 1, 0, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testPrewarmConnectFailure() throws Exception {
+        Mockito.doThrow(new IOException("Connection refused")).when(connectionOperator).connect(
+                Mockito.<ManagedHttpClientConnection>any(),
+                Mockito.<HttpHost>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.anyInt(),
+                Mockito.<SocketConfig>any(),
+                Mockito.<HttpContext>any());
+
+        Assert.assertEquals(0, mgr.prewarm(route, 2, 1, TimeUnit.SECONDS));
+        final PoolStats stats = mgr.getStats(route);
+        Assert.assertEquals(0, stats.getAvailable());
+        Assert.assertEquals(0, stats.getLeased());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testPrewarmTunnelledRoute() throws Exception {
+        mgr.prewarm(new HttpRoute(new HttpHost("somehost", 443, "https"), null,
+                new HttpHost("someproxy", 8080), true), 1, 1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testReplenishIdleConnections() throws Exception {
+        connectionsOpen();
+        Assert.assertEquals(0, mgr.replenishIdleConnections(1, TimeUnit.SECONDS));
+
+        mgr.prewarm(route, 1, 1, TimeUnit.SECONDS);
+        mgr.setMinIdlePerRoute(3);
+        Assert.assertEquals(2, mgr.replenishIdleConnections(1, TimeUnit.SECONDS));
+        Assert.assertEquals(3, mgr.getStats(route).getAvailable());
+        Assert.assertEquals(0, mgr.replenishIdleConnections(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testReplenishIdleConnectionsForgetsClosedRoutes() throws Exception {
+        connectionsOpen();
+        mgr.prewarm(route, 1, 1, TimeUnit.SECONDS);
+        mgr.setMinIdlePerRoute(2);
+        mgr.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+
+        Assert.assertEquals(0, mgr.replenishIdleConnections(1, TimeUnit.SECONDS));
+        Assert.assertEquals(0, mgr.getStats(route).getAvailable());
+
+        // The route gets replenished again once in use
+        mgr.prewarm(route, 1, 1, TimeUnit.SECONDS);
+        Assert.assertEquals(1, mgr.replenishIdleConnections(1, TimeUnit.SECONDS));
+        Assert.assertEquals(2, mgr.getStats(route).getAvailable());
+    }
+
+    @Test
+    public void testReplenisherSurvivesFailures() throws Exception {
+        final PoolingHttpClientConnectionManager cm = Mockito.mock(PoolingHttpClientConnectionManager.class);
+        Mockito.when(cm.replenishIdleConnections(Mockito.anyLong(), Mockito.<TimeUnit>any()))
+                .thenThrow(new IllegalStateException("Oops"));
+        final IdleConnectionReplenisher replenisher = new IdleConnectionReplenisher(cm,
+                10, TimeUnit.MILLISECONDS, 0, TimeUnit.MILLISECONDS);
+        replenisher.start();
+        try {
+            Thread.sleep(100);
+            Assert.assertTrue(replenisher.isRunning());
+            Mockito.verify(cm, Mockito.atLeast(2)).replenishIdleConnections(
+                    IdleConnectionReplenisher.DEFAULT_CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } finally {
+            replenisher.shutdown();
+            replenisher.awaitTermination(1, TimeUnit.SECONDS);
+        }
+    }
+
+}
@@ -27,11 +27,18 @@
 
 package org.apache.hc.client5.http.impl.io;
 
+import java.io.IOException;
 import java.net.ConnectException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hc.client5.http.ConnectTimeoutException;
 import org.apache.hc.client5.http.DnsResolver;
@@ -41,13 +48,16 @@ import org.apache.hc.client5.http.UnsupportedSchemeException;
 import org.apache.hc.client5.http.io.ManagedHttpClientConnection;
 import org.apache.hc.client5.http.socket.ConnectionSocketFactory;
 import org.apache.hc.client5.http.socket.LayeredConnectionSocketFactory;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.config.Lookup;
 import org.apache.hc.core5.http.config.SocketConfig;
 import org.apache.hc.core5.http.protocol.BasicHttpContext;
 import org.apache.hc.core5.http.protocol.HttpContext;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 @SuppressWarnings({"boxing","static-access"}) // test code
@@ -275,4 +285,242 @@ public class TestHttpClientConnectionOperator {
         connectionOperator.upgrade(conn, host, context);
     }
 
+    @Test
+    public void testConnectConcurrentlyUnresponsiveFirstAddress() throws Exception {
+        final ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        try {
+            final HttpContext context = new BasicHttpContext();
+            final HttpHost host = new HttpHost("somehost");
+            final InetAddress ip1 = InetAddress.getByAddress(new byte[] {(byte) 192, 0, 2, 1});
+            final InetAddress ip2 = InetAddress.getByAddress(new byte[] {127, 0, 0, 1});
+            final StandInSocketFactory socketFactory = new StandInSocketFactory(ip1);
+
+            Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1, ip2 });
+            Mockito.when(socketFactoryRegistry.lookup("http")).thenReturn(socketFactory);
+            Mockito.when(schemePortResolver.resolve(host)).thenReturn(server.getLocalPort());
+
+            final DefaultHttpClientConnectionOperator operator = new DefaultHttpClientConnectionOperator(
+                    socketFactoryRegistry, schemePortResolver, dnsResolver, 50);
+            final long start = System.currentTimeMillis();
+            operator.connect(conn, host, null, 10000, SocketConfig.DEFAULT, context);
+            Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+
+            final ArgumentCaptor<Socket> captor = ArgumentCaptor.forClass(Socket.class);
+            Mockito.verify(conn).bind(captor.capture());
+            final Socket sock = captor.getValue();
+            Assert.assertTrue(sock.isConnected());
+            Assert.assertEquals(server.getLocalPort(), sock.getPort());
+            Assert.assertEquals(2, socketFactory.sockets.size());
+            Assert.assertTrue(socketFactory.sockets.get(0).isClosed());
+            sock.close();
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test(expected=HttpHostConnectException.class)
+    public void testConnectConcurrentlyAllAddressesRefused() throws Exception {
+        final HttpContext context = new BasicHttpContext();
+        final HttpHost host = new HttpHost("somehost");
+        final InetAddress ip1 = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        final InetAddress ip2 = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+
+        Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1, ip2 });
+        Mockito.when(socketFactoryRegistry.lookup("http")).thenReturn(plainSocketFactory);
+        Mockito.when(schemePortResolver.resolve(host)).thenReturn(80);
+        Mockito.when(plainSocketFactory.createSocket(Mockito.<HttpContext>any())).thenReturn(socket);
+        Mockito.when(plainSocketFactory.connectSocket(
+                Mockito.anyInt(),
+                Mockito.<Socket>any(),
+                Mockito.<HttpHost>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<InetSocketAddress>any(),
+                Mockito.<HttpContext>any())).thenThrow(new ConnectException("Connection refused"));
+
+        final DefaultHttpClientConnectionOperator operator = new DefaultHttpClientConnectionOperator(
+                socketFactoryRegistry, schemePortResolver, dnsResolver, 1000);
+        try {
+            operator.connect(conn, host, null, 1000, SocketConfig.DEFAULT, context);
+        } finally {
+            Mockito.verify(plainSocketFactory, Mockito.times(2)).connectSocket(
+                    Mockito.anyInt(),
+                    Mockito.<Socket>any(),
+                    Mockito.<HttpHost>any(),
+                    Mockito.<InetSocketAddress>any(),
+                    Mockito.<InetSocketAddress>any(),
+                    Mockito.<HttpContext>any());
+            Mockito.verify(conn, Mockito.never()).bind(Mockito.<Socket>any());
+        }
+    }
+
+    @Test
+    public void testConnectConcurrentlyTriesNextAddressOnFailure() throws Exception {
+        final ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        try {
+            final HttpContext context = new BasicHttpContext();
+            final HttpHost host = new HttpHost("somehost");
+            final InetAddress ip1 = InetAddress.getByAddress(new byte[] {(byte) 192, 0, 2, 1});
+            final InetAddress ip2 = InetAddress.getByAddress(new byte[] {(byte) 192, 0, 2, 2});
+            final InetAddress ip3 = InetAddress.getByAddress(new byte[] {127, 0, 0, 1});
+            final StandInSocketFactory socketFactory = new StandInSocketFactory(ip1, ip2);
+
+            Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1, ip2, ip3 });
+            Mockito.when(socketFactoryRegistry.lookup("http")).thenReturn(socketFactory);
+            Mockito.when(schemePortResolver.resolve(host)).thenReturn(server.getLocalPort());
+
+            final DefaultHttpClientConnectionOperator operator = new DefaultHttpClientConnectionOperator(
+                    socketFactoryRegistry, schemePortResolver, dnsResolver, 1000);
+            final long start = System.currentTimeMillis();
+            operator.connect(conn, host, null, 10000, SocketConfig.DEFAULT, context);
+            // The third address is tried as soon as the second one has been refused
+            // rather than after another attempt delay
+            Assert.assertTrue(System.currentTimeMillis() - start < 1900);
+
+            final ArgumentCaptor<Socket> captor = ArgumentCaptor.forClass(Socket.class);
+            Mockito.verify(conn).bind(captor.capture());
+            final Socket sock = captor.getValue();
+            Assert.assertEquals(server.getLocalPort(), sock.getPort());
+            Assert.assertEquals(3, socketFactory.sockets.size());
+            sock.close();
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testConnectConcurrentlyRecordsHandshakeTimeOfWinnerOnly() throws Exception {
+        final ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        try {
+            final HttpContext context = new BasicHttpContext();
+            final HttpHost host = new HttpHost("somehost");
+            final InetAddress ip1 = InetAddress.getByAddress(new byte[] {127, 0, 0, 1});
+            final InetAddress ip2 = InetAddress.getByAddress(new byte[] {127, 0, 0, 2});
+            final CountDownLatch loserDone = new CountDownLatch(1);
+            final ConnectionSocketFactory socketFactory = new ConnectionSocketFactory() {
+
+                @Override
+                public Socket createSocket(final HttpContext context) throws IOException {
+                    return new Socket();
+                }
+
+                @Override
+                public Socket connectSocket(
+                        final int connectTimeout,
+                        final Socket sock,
+                        final HttpHost host,
+                        final InetSocketAddress remoteAddress,
+                        final InetSocketAddress localAddress,
+                        final HttpContext context) throws IOException {
+                    if (remoteAddress.getAddress().equals(ip1)) {
+                        // Slow handshake completing after the race has been decided
+                        try {
+                            Thread.sleep(300);
+                        } catch (final InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                        context.setAttribute(SSLConnectionSocketFactory.TLS_HANDSHAKE_TIME, 300L);
+                        loserDone.countDown();
+                        throw new SocketException("Socket closed");
+                    }
+                    sock.connect(new InetSocketAddress(ip1, remoteAddress.getPort()), connectTimeout);
+                    context.setAttribute(SSLConnectionSocketFactory.TLS_HANDSHAKE_TIME, 1L);
+                    return sock;
+                }
+
+            };
+
+            Mockito.when(dnsResolver.resolve("somehost")).thenReturn(new InetAddress[] { ip1, ip2 });
+            Mockito.when(socketFactoryRegistry.lookup("http")).thenReturn(socketFactory);
+            Mockito.when(schemePortResolver.resolve(host)).thenReturn(server.getLocalPort());
+
+            final DefaultHttpClientConnectionOperator operator = new DefaultHttpClientConnectionOperator(
+                    socketFactoryRegistry, schemePortResolver, dnsResolver, 50);
+            operator.connect(conn, host, null, 10000, SocketConfig.DEFAULT, context);
+            Assert.assertTrue(loserDone.await(5, TimeUnit.SECONDS));
+
+            Assert.assertEquals(1L, context.getAttribute(SSLConnectionSocketFactory.TLS_HANDSHAKE_TIME));
+            final ArgumentCaptor<Socket> captor = ArgumentCaptor.forClass(Socket.class);
+            Mockito.verify(conn).bind(captor.capture());
+            captor.getValue().close();
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testInterleaveAddressFamilies() throws Exception {
+        final InetAddress ip6a = InetAddress.getByName("2001:db8::1");
+        final InetAddress ip6b = InetAddress.getByName("2001:db8::2");
+        final InetAddress ip6c = InetAddress.getByName("2001:db8::3");
+        final InetAddress ip4a = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        final InetAddress ip4b = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+
+        Assert.assertArrayEquals(
+                new InetAddress[] { ip6a, ip4a, ip6b, ip4b, ip6c },
+                DefaultHttpClientConnectionOperator.interleave(
+                        new InetAddress[] { ip6a, ip6b, ip6c, ip4a, ip4b }));
+        Assert.assertArrayEquals(
+                new InetAddress[] { ip4a, ip6a, ip4b, ip6b },
+                DefaultHttpClientConnectionOperator.interleave(
+                        new InetAddress[] { ip4a, ip4b, ip6a, ip6b }));
+    }
+
+    /**
+     * Connects plain sockets, except for those to the unresponsive address,
+     * which hang until closed or timed out.
+     */
+    static class StandInSocketFactory implements ConnectionSocketFactory {
+
+        final InetAddress unresponsive;
+        final InetAddress refused;
+        final List<Socket> sockets = new CopyOnWriteArrayList<>();
+
+        StandInSocketFactory(final InetAddress unresponsive, final InetAddress refused) {
+            this.unresponsive = unresponsive;
+            this.refused = refused;
+        }
+
+        StandInSocketFactory(final InetAddress unresponsive) {
+            this(unresponsive, null);
+        }
+
+        @Override
+        public Socket createSocket(final HttpContext context) throws IOException {
+            final Socket sock = new Socket();
+            sockets.add(sock);
+            return sock;
+        }
+
+        @Override
+        public Socket connectSocket(
+                final int connectTimeout,
+                final Socket sock,
+                final HttpHost host,
+                final InetSocketAddress remoteAddress,
+                final InetSocketAddress localAddress,
+                final HttpContext context) throws IOException {
+            if (remoteAddress.getAddress().equals(unresponsive)) {
+                final long deadline = System.currentTimeMillis() + connectTimeout;
+                while (!sock.isClosed()) {
+                    if (System.currentTimeMillis() > deadline) {
+                        throw new SocketTimeoutException("connect timed out");
+                    }
+                    try {
+                        Thread.sleep(10);
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                throw new SocketException("Socket closed");
+            }
+            if (remoteAddress.getAddress().equals(refused)) {
+                throw new ConnectException("Connection refused");
+            }
+            sock.connect(remoteAddress, connectTimeout);
+            return sock;
+        }
+
+    }
+
 }
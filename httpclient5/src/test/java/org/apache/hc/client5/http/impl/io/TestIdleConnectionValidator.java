@@ -0,0 +1,59 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.io;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Unit tests for {@link IdleConnectionValidator}.
+ */
+public class TestIdleConnectionValidator {
+
+    @Test
+    public void testValidateIdle() throws Exception {
+        final PoolingHttpClientConnectionManager cm = Mockito.mock(PoolingHttpClientConnectionManager.class);
+        final IdleConnectionValidator connectionValidator = new IdleConnectionValidator(cm,
+                500, TimeUnit.MILLISECONDS, 2, TimeUnit.SECONDS);
+        connectionValidator.start();
+
+        Thread.sleep(1000);
+
+        Mockito.verify(cm, Mockito.atLeast(1)).validateIdleConnections(2000, TimeUnit.MILLISECONDS);
+
+        Assert.assertTrue(connectionValidator.isRunning());
+
+        connectionValidator.shutdown();
+        connectionValidator.awaitTermination(1, TimeUnit.SECONDS);
+        Assert.assertFalse(connectionValidator.isRunning());
+    }
+
+}
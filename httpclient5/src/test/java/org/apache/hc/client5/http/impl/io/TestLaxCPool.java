@@ -0,0 +1,461 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.io;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.io.ManagedHttpClientConnection;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.pool.io.ConnFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+@SuppressWarnings({"boxing"}) // test code
+public class TestLaxCPool {
+
+    @Mock
+    private ConnFactory<HttpRoute, ManagedHttpClientConnection> connFactory;
+    @Mock
+    private ManagedHttpClientConnection conn1;
+    @Mock
+    private ManagedHttpClientConnection conn2;
+    @Mock
+    private ManagedHttpClientConnection conn3;
+
+    private HttpRoute route1;
+    private HttpRoute route2;
+
+    @Before
+    public void setup() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        mockOpen(conn1);
+        mockOpen(conn2);
+        mockOpen(conn3);
+        route1 = new HttpRoute(new HttpHost("somehost", 80));
+        route2 = new HttpRoute(new HttpHost("otherhost", 80));
+    }
+
+    @Test
+    public void testLeaseRelease() throws Exception {
+        Mockito.when(connFactory.create(Mockito.<HttpRoute>any())).thenReturn(conn1, conn2);
+
+        final LaxCPool pool = new LaxCPool(connFactory, 2, 10, -1, TimeUnit.MILLISECONDS);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final CPoolEntry entry2 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        Assert.assertSame(conn1, entry1.getConnection());
+        Assert.assertSame(conn2, entry2.getConnection());
+
+        PoolStats stats = pool.getStats(route1);
+        Assert.assertEquals(2, stats.getLeased());
+        Assert.assertEquals(0, stats.getAvailable());
+        Assert.assertEquals(2, stats.getMax());
+
+        pool.release(entry1, true);
+        pool.release(entry2, false);
+        Mockito.verify(conn2).close();
+
+        stats = pool.getTotalStats();
+        Assert.assertEquals(0, stats.getLeased());
+        Assert.assertEquals(1, stats.getAvailable());
+        Assert.assertEquals(10, stats.getMax());
+
+        final CPoolEntry entry3 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        Assert.assertSame(entry1, entry3);
+        Mockito.verify(connFactory, Mockito.times(2)).create(route1);
+    }
+
+    @Test
+    public void testLeaseMatchingState() throws Exception {
+        Mockito.when(connFactory.create(Mockito.<HttpRoute>any())).thenReturn(conn1, conn2);
+
+        final LaxCPool pool = new LaxCPool(connFactory, 2, 10, -1, TimeUnit.MILLISECONDS);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final CPoolEntry entry2 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        entry1.setState("some state");
+        pool.release(entry1, true);
+        pool.release(entry2, true);
+
+        Assert.assertSame(entry1, pool.lease(route1, "some state").get(1, TimeUnit.SECONDS));
+        Assert.assertSame(entry2, pool.lease(route1, "other state").get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testLifoReuse() throws Exception {
+        Mockito.when(connFactory.create(Mockito.<HttpRoute>any())).thenReturn(conn1, conn2);
+
+        final LaxCPool pool = new LaxCPool(connFactory, 2, 10, -1, TimeUnit.MILLISECONDS,
+                PoolReusePolicy.LIFO);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final CPoolEntry entry2 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        pool.release(entry1, true);
+        pool.release(entry2, true);
+
+        for (int i = 0; i < 3; i++) {
+            final CPoolEntry entry = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+            Assert.assertSame(entry2, entry);
+            pool.release(entry, true);
+        }
+        final PoolReuseStats stats = pool.getReuseStats();
+        Assert.assertEquals(2, stats.getCreated());
+        Assert.assertEquals(3, stats.getReused());
+    }
+
+    @Test
+    public void testFifoReuse() throws Exception {
+        Mockito.when(connFactory.create(Mockito.<HttpRoute>any())).thenReturn(conn1, conn2);
+
+        final LaxCPool pool = new LaxCPool(connFactory, 2, 10, -1, TimeUnit.MILLISECONDS,
+                PoolReusePolicy.FIFO);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final CPoolEntry entry2 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        pool.release(entry1, true);
+        pool.release(entry2, true);
+
+        final CPoolEntry[] expected = { entry1, entry2, entry1 };
+        for (final CPoolEntry expectedEntry: expected) {
+            final CPoolEntry entry = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+            Assert.assertSame(expectedEntry, entry);
+            pool.release(entry, true);
+        }
+        final PoolReuseStats stats = pool.getReuseStats();
+        Assert.assertEquals(2, stats.getCreated());
+        Assert.assertEquals(3, stats.getReused());
+    }
+
+    @Test
+    public void testFifoEvictsLeastRecentlyUsed() throws Exception {
+        Mockito.when(connFactory.create(Mockito.<HttpRoute>any())).thenReturn(conn1, conn2, conn3);
+
+        final LaxCPool pool = new LaxCPool(connFactory, 2, 2, -1, TimeUnit.MILLISECONDS,
+                PoolReusePolicy.FIFO);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final CPoolEntry entry2 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        pool.release(entry1, true);
+        pool.release(entry2, true);
+
+        final CPoolEntry entry3 = pool.lease(route2, null).get(1, TimeUnit.SECONDS);
+        Assert.assertSame(conn3, entry3.getConnection());
+        Mockito.verify(conn1).close();
+        Mockito.verify(conn2, Mockito.never()).close();
+    }
+
+    @Test(expected=TimeoutException.class)
+    public void testLeaseTimeoutMaxPerRoute() throws Exception {
+        Mockito.when(connFactory.create(Mockito.<HttpRoute>any())).thenReturn(conn1, conn2);
+
+        final LaxCPool pool = new LaxCPool(connFactory, 1, 10, -1, TimeUnit.MILLISECONDS);
+        pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        Assert.assertNotNull(pool.lease(route2, null).get(1, TimeUnit.SECONDS));
+        pool.lease(route1, null).get(50, TimeUnit.MILLISECONDS);
+    }
+
+    @Test(expected=TimeoutException.class)
+    public void testLeaseTimeoutMaxTotal() throws Exception {
+        Mockito.when(connFactory.create(Mockito.<HttpRoute>any())).thenReturn(conn1, conn2);
+
+        final LaxCPool pool = new LaxCPool(connFactory, 2, 1, -1, TimeUnit.MILLISECONDS);
+        pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        pool.lease(route2, null).get(50, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testIdleConnectionOfOtherRouteEvicted() throws Exception {
+        Mockito.when(connFactory.create(Mockito.<HttpRoute>any())).thenReturn(conn1, conn2);
+
+        final LaxCPool pool = new LaxCPool(connFactory, 2, 1, -1, TimeUnit.MILLISECONDS);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        pool.release(entry1, true);
+
+        final CPoolEntry entry2 = pool.lease(route2, null).get(1, TimeUnit.SECONDS);
+        Assert.assertSame(conn2, entry2.getConnection());
+        Mockito.verify(conn1).close();
+        Assert.assertEquals(0, pool.getStats(route1).getAvailable());
+        Assert.assertEquals(1, pool.getTotalStats().getLeased());
+    }
+
+    @Test
+    public void testReleaseWakesUpWaiterOfSameRoute() throws Exception {
+        Mockito.when(connFactory.create(Mockito.<HttpRoute>any())).thenReturn(conn1, conn2);
+
+        final LaxCPool pool = new LaxCPool(connFactory, 1, 10, -1, TimeUnit.MILLISECONDS);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final Future<CPoolEntry> future = pool.lease(route1, null);
+        final GetPoolEntryThread t = new GetPoolEntryThread(future);
+        t.start();
+        awaitPending(pool, route1);
+
+        pool.release(entry1, true);
+        t.join(5000);
+        Assert.assertSame(entry1, t.getEntry());
+        Assert.assertTrue(future.isDone());
+    }
+
+    @Test
+    public void testReleaseWakesUpWaiterWithEarliestDeadline() throws Exception {
+        Mockito.when(connFactory.create(Mockito.<HttpRoute>any())).thenReturn(conn1, conn2);
+
+        final LaxCPool pool = new LaxCPool(connFactory, 1, 10, -1, TimeUnit.MILLISECONDS);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final GetPoolEntryThread t1 = new GetPoolEntryThread(pool.lease(route1, null), 10);
+        t1.start();
+        awaitPending(pool, route1, 1);
+        final GetPoolEntryThread t2 = new GetPoolEntryThread(pool.lease(route1, null), 5);
+        t2.start();
+        awaitPending(pool, route1, 2);
+
+        pool.release(entry1, true);
+        t2.join(5000);
+        Assert.assertSame(entry1, t2.getEntry());
+        Assert.assertTrue(t1.isAlive());
+        Assert.assertNull(t1.getEntry());
+
+        pool.release(entry1, true);
+        t1.join(5000);
+        Assert.assertSame(entry1, t1.getEntry());
+    }
+
+    @Test
+    public void testReleaseWakesUpWaiterOfOtherRoute() throws Exception {
+        Mockito.when(connFactory.create(Mockito.<HttpRoute>any())).thenReturn(conn1, conn2);
+
+        final LaxCPool pool = new LaxCPool(connFactory, 2, 1, -1, TimeUnit.MILLISECONDS);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final GetPoolEntryThread t = new GetPoolEntryThread(pool.lease(route2, null));
+        t.start();
+        awaitPending(pool, route2);
+
+        pool.release(entry1, true);
+        t.join(5000);
+        Assert.assertNotNull(t.getEntry());
+        Assert.assertSame(conn2, t.getEntry().getConnection());
+        Mockito.verify(conn1).close();
+    }
+
+    @Test
+    public void testConnectionFactoryFailureFreesCapacity() throws Exception {
+        Mockito.when(connFactory.create(Mockito.<HttpRoute>any()))
+            .thenThrow(new IOException("Oppsie"))
+            .thenReturn(conn1);
+
+        final LaxCPool pool = new LaxCPool(connFactory, 1, 1, -1, TimeUnit.MILLISECONDS);
+        try {
+            pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+            Assert.fail("ExecutionException should have been thrown");
+        } catch (final ExecutionException expected) {
+            Assert.assertTrue(expected.getCause() instanceof IOException);
+        }
+        final CPoolEntry entry = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        Assert.assertSame(conn1, entry.getConnection());
+    }
+
+    @Test
+    public void testCloseExpiredAndIdle() throws Exception {
+        Mockito.when(connFactory.create(Mockito.<HttpRoute>any())).thenReturn(conn1, conn2);
+
+        final LaxCPool pool = new LaxCPool(connFactory, 2, 10, -1, TimeUnit.MILLISECONDS);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final CPoolEntry entry2 = pool.lease(route2, null).get(1, TimeUnit.SECONDS);
+        entry1.updateExpiry(1, TimeUnit.MILLISECONDS);
+        pool.release(entry1, true);
+        pool.release(entry2, true);
+        Thread.sleep(20);
+
+        pool.closeExpired();
+        Mockito.verify(conn1).close();
+        Mockito.verify(conn2, Mockito.never()).close();
+        Assert.assertFalse(pool.getRoutes().contains(route1));
+        Assert.assertTrue(pool.getRoutes().contains(route2));
+
+        pool.closeIdle(0, TimeUnit.MILLISECONDS);
+        Mockito.verify(conn2).close();
+        Assert.assertTrue(pool.getRoutes().isEmpty());
+        Assert.assertEquals(0, pool.getTotalStats().getAvailable());
+    }
+
+    @Test
+    public void testCancelWaiter() throws Exception {
+        Mockito.when(connFactory.create(Mockito.<HttpRoute>any())).thenReturn(conn1);
+
+        final LaxCPool pool = new LaxCPool(connFactory, 1, 1, -1, TimeUnit.MILLISECONDS);
+        pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final Future<CPoolEntry> future = pool.lease(route1, null);
+        final GetPoolEntryThread t = new GetPoolEntryThread(future);
+        t.start();
+        awaitPending(pool, route1);
+
+        Assert.assertTrue(future.cancel(true));
+        t.join(5000);
+        Assert.assertTrue(t.getException() instanceof InterruptedException);
+        Assert.assertTrue(future.isCancelled());
+        Assert.assertEquals(0, pool.getStats(route1).getPending());
+    }
+
+    @Test
+    public void testCancelWaiterDuringReleaseWakesUpNextWaiter() throws Exception {
+        Mockito.when(connFactory.create(Mockito.<HttpRoute>any())).thenReturn(conn1);
+
+        final LaxCPool pool = new LaxCPool(connFactory, 1, 1, -1, TimeUnit.MILLISECONDS);
+        CPoolEntry entry = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        for (int i = 0; i < 20; i++) {
+            final GetPoolEntryThread t1 = new GetPoolEntryThread(pool.lease(route1, null), 10);
+            t1.start();
+            awaitPending(pool, route1, 1);
+            // Earliest deadline, woken up first
+            final Future<CPoolEntry> future2 = pool.lease(route1, null);
+            final GetPoolEntryThread t2 = new GetPoolEntryThread(future2, 5);
+            t2.start();
+            awaitPending(pool, route1, 2);
+
+            final Thread canceller = new Thread() {
+
+                @Override
+                public void run() {
+                    future2.cancel(true);
+                }
+
+            };
+            canceller.start();
+            pool.release(entry, true);
+            canceller.join(5000);
+
+            t2.join(5000);
+            if (t2.getEntry() != null) {
+                // Released before the cancellation took effect
+                pool.release(t2.getEntry(), true);
+            }
+            t1.join(5000);
+            Assert.assertNotNull("Waiter not woken up in round " + i, t1.getEntry());
+            entry = t1.getEntry();
+        }
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        Mockito.when(connFactory.create(Mockito.<HttpRoute>any())).thenReturn(conn1, conn2);
+
+        final LaxCPool pool = new LaxCPool(connFactory, 2, 10, -1, TimeUnit.MILLISECONDS);
+        final CPoolEntry entry1 = pool.lease(route1, null).get(1, TimeUnit.SECONDS);
+        final CPoolEntry entry2 = pool.lease(route2, null).get(1, TimeUnit.SECONDS);
+        pool.release(entry2, true);
+
+        pool.shutdown();
+        Assert.assertTrue(pool.isShutdown());
+        Mockito.verify(conn1).close();
+        Mockito.verify(conn2).close();
+        pool.release(entry1, true);
+        try {
+            pool.lease(route1, null);
+            Assert.fail("IllegalStateException should have been thrown");
+        } catch (final IllegalStateException expected) {
+        }
+    }
+
+    private static void mockOpen(final ManagedHttpClientConnection conn) throws IOException {
+        final AtomicBoolean open = new AtomicBoolean(true);
+        Mockito.when(conn.isOpen()).thenAnswer(new Answer<Boolean>() {
+
+            @Override
+            public Boolean answer(final InvocationOnMock invocation) {
+                return open.get();
+            }
+
+        });
+        Mockito.doAnswer(new Answer<Object>() {
+
+            @Override
+            public Object answer(final InvocationOnMock invocation) {
+                open.set(false);
+                return null;
+            }
+
+        }).when(conn).close();
+    }
+
+    private static void awaitPending(final LaxCPool pool, final HttpRoute route) throws InterruptedException {
+        awaitPending(pool, route, 1);
+    }
+
+    private static void awaitPending(
+            final LaxCPool pool, final HttpRoute route, final int count) throws InterruptedException {
+        for (int i = 0; i < 500 && pool.getStats(route).getPending() < count; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(count, pool.getStats(route).getPending());
+    }
+
+    static class GetPoolEntryThread extends Thread {
+
+        private final Future<CPoolEntry> future;
+        private final long timeout;
+
+        private volatile CPoolEntry entry;
+        private volatile Exception ex;
+
+        GetPoolEntryThread(final Future<CPoolEntry> future, final long timeout) {
+            super();
+            this.future = future;
+            this.timeout = timeout;
+            setDaemon(true);
+        }
+
+        GetPoolEntryThread(final Future<CPoolEntry> future) {
+            this(future, 5);
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.entry = this.future.get(this.timeout, TimeUnit.SECONDS);
+            } catch (final Exception ex) {
+                this.ex = ex;
+            }
+        }
+
+        public CPoolEntry getEntry() {
+            return this.entry;
+        }
+
+        public Exception getException() {
+            return this.ex;
+        }
+
+    }
+
+}
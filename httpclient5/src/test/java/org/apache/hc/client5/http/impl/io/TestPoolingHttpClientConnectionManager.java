@@ -38,6 +38,7 @@ import org.apache.hc.client5.http.ConnectionPoolTimeoutException;
 import org.apache.hc.client5.http.DnsResolver;
 import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.SchemePortResolver;
+import org.apache.hc.client5.http.io.ClientMetricsRecorder;
 import org.apache.hc.client5.http.io.ConnectionRequest;
 import org.apache.hc.client5.http.io.ManagedHttpClientConnection;
 import org.apache.hc.client5.http.protocol.HttpClientContext;
@@ -49,6 +50,7 @@ import org.apache.hc.core5.http.config.Lookup;
 import org.apache.hc.core5.http.config.SocketConfig;
 import org.apache.hc.core5.http.io.HttpClientConnection;
 import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.pool.PoolEntryCallback;
 import org.apache.logging.log4j.LogManager;
 import org.junit.Assert;
 import org.junit.Before;
@@ -56,6 +58,8 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 /**
  * {@link PoolingHttpClientConnectionManager} tests.
@@ -119,6 +123,59 @@ public class TestPoolingHttpClientConnectionManager {
         Mockito.verify(pool).release(entry, true);
     }
 
+    @Test
+    public void testMetricsRecorded() throws Exception {
+        final HttpHost target = new HttpHost("localhost", 80);
+        final HttpRoute route = new HttpRoute(target);
+
+        final CPoolEntry entry = new CPoolEntry(LogManager.getLogger(getClass()), "id", route, conn,
+                -1, TimeUnit.MILLISECONDS);
+        entry.markRouteComplete();
+        final ClientMetricsRecorder recorder = Mockito.mock(ClientMetricsRecorder.class);
+        Mockito.when(recorder.isEnabled()).thenReturn(Boolean.TRUE);
+        mgr.setMetricsRecorder(recorder);
+
+        Mockito.when(conn.isOpen()).thenReturn(true);
+        Mockito.when(future.isCancelled()).thenReturn(false);
+        Mockito.when(future.get(1, TimeUnit.SECONDS)).thenReturn(entry);
+        Mockito.when(pool.lease(route, null, null)).thenReturn(future);
+
+        final HttpClientConnection conn1 = mgr.requestConnection(route, null).get(1, TimeUnit.SECONDS);
+        mgr.releaseConnection(conn1, null, 0, TimeUnit.MILLISECONDS);
+        final HttpClientConnection conn2 = mgr.requestConnection(route, null).get(1, TimeUnit.SECONDS);
+        Mockito.when(conn.isOpen()).thenReturn(false);
+        mgr.releaseConnection(conn2, null, 0, TimeUnit.MILLISECONDS);
+
+        Mockito.verify(recorder, Mockito.times(2)).connectionLeased(
+                Mockito.eq(route), Mockito.anyLong(), Mockito.eq(true));
+        Mockito.verify(recorder).connectionClosed(Mockito.eq(route), Mockito.anyLong(), Mockito.eq(1));
+        Mockito.verify(pool).release(entry, false);
+    }
+
+    @Test
+    public void testMetricsNotRecordedIfRecorderDisabled() throws Exception {
+        final HttpHost target = new HttpHost("localhost", 80);
+        final HttpRoute route = new HttpRoute(target);
+
+        final CPoolEntry entry = new CPoolEntry(LogManager.getLogger(getClass()), "id", route, conn,
+                -1, TimeUnit.MILLISECONDS);
+        entry.markRouteComplete();
+        final ClientMetricsRecorder recorder = Mockito.mock(ClientMetricsRecorder.class);
+        Mockito.when(recorder.isEnabled()).thenReturn(Boolean.FALSE);
+        mgr.setMetricsRecorder(recorder);
+
+        Mockito.when(conn.isOpen()).thenReturn(true);
+        Mockito.when(future.isCancelled()).thenReturn(false);
+        Mockito.when(future.get(1, TimeUnit.SECONDS)).thenReturn(entry);
+        Mockito.when(pool.lease(route, null, null)).thenReturn(future);
+
+        final HttpClientConnection conn1 = mgr.requestConnection(route, null).get(1, TimeUnit.SECONDS);
+        mgr.releaseConnection(conn1, null, 0, TimeUnit.MILLISECONDS);
+
+        Mockito.verify(recorder, Mockito.never()).connectionLeased(
+                Mockito.<HttpRoute>any(), Mockito.anyLong(), Mockito.anyBoolean());
+    }
+
     @Test
     public void testReleaseRouteIncomplete() throws Exception {
         final HttpHost target = new HttpHost("localhost", 80);
@@ -343,4 +400,87 @@ public class TestPoolingHttpClientConnectionManager {
         mgr.routeComplete(conn1, route, context);
     }
 
+    @Test(expected=IllegalArgumentException.class)
+    public void testStrictPoolRejectsFifoReuse() throws Exception {
+        new PoolingHttpClientConnectionManager(
+                new DefaultHttpClientConnectionOperator(socketFactoryRegistry, schemePortResolver, dnsResolver),
+                null,
+                PoolConcurrencyPolicy.STRICT,
+                PoolReusePolicy.FIFO,
+                -1, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testValidateIdleConnections() throws Exception {
+        final HttpRoute route = new HttpRoute(new HttpHost("localhost", 80));
+
+        final ManagedHttpClientConnection conn1 = Mockito.mock(ManagedHttpClientConnection.class);
+        final ManagedHttpClientConnection conn2 = Mockito.mock(ManagedHttpClientConnection.class);
+        final ManagedHttpClientConnection conn3 = Mockito.mock(ManagedHttpClientConnection.class);
+        Mockito.when(conn1.isOpen()).thenReturn(true);
+        Mockito.when(conn1.isStale()).thenReturn(true);
+        Mockito.when(conn2.isOpen()).thenReturn(true);
+        Mockito.when(conn2.isStale()).thenReturn(false);
+        Mockito.when(conn3.isOpen()).thenReturn(true);
+        Mockito.when(conn3.isStale()).thenReturn(true);
+
+        final CPoolEntry entry1 = new CPoolEntry(LogManager.getLogger(getClass()), "id1", route, conn1,
+                -1, TimeUnit.MILLISECONDS);
+        final CPoolEntry entry2 = new CPoolEntry(LogManager.getLogger(getClass()), "id2", route, conn2,
+                -1, TimeUnit.MILLISECONDS);
+        final CPoolEntry entry3 = new CPoolEntry(LogManager.getLogger(getClass()), "id3", route, conn3,
+                -1, TimeUnit.MILLISECONDS);
+        entry3.markLeased();
+
+        Mockito.doAnswer(new Answer<Object>() {
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                final PoolEntryCallback<HttpRoute, ManagedHttpClientConnection> callback =
+                        (PoolEntryCallback<HttpRoute, ManagedHttpClientConnection>) invocation.getArguments()[0];
+                callback.process(entry1);
+                callback.process(entry2);
+                callback.process(entry3);
+                return null;
+            }
+
+        }).when(pool).enumAvailable(Mockito.<PoolEntryCallback<HttpRoute, ManagedHttpClientConnection>>any());
+
+        Assert.assertEquals(1, mgr.validateIdleConnections(0, TimeUnit.MILLISECONDS));
+
+        Mockito.verify(conn1).close();
+        Mockito.verify(conn2).isStale();
+        Mockito.verify(conn2, Mockito.never()).close();
+        Mockito.verify(conn3, Mockito.never()).isStale();
+        Mockito.verify(pool).closeExpired();
+    }
+
+    @Test
+    public void testValidateIdleConnectionsSkipsRecentlyUsed() throws Exception {
+        final HttpRoute route = new HttpRoute(new HttpHost("localhost", 80));
+        Mockito.when(conn.isOpen()).thenReturn(true);
+        final CPoolEntry entry = new CPoolEntry(LogManager.getLogger(getClass()), "id", route, conn,
+                -1, TimeUnit.MILLISECONDS);
+        entry.updateExpiry(-1, TimeUnit.MILLISECONDS);
+
+        Mockito.doAnswer(new Answer<Object>() {
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                final PoolEntryCallback<HttpRoute, ManagedHttpClientConnection> callback =
+                        (PoolEntryCallback<HttpRoute, ManagedHttpClientConnection>) invocation.getArguments()[0];
+                callback.process(entry);
+                return null;
+            }
+
+        }).when(pool).enumAvailable(Mockito.<PoolEntryCallback<HttpRoute, ManagedHttpClientConnection>>any());
+
+        Assert.assertEquals(0, mgr.validateIdleConnections(1, TimeUnit.MINUTES));
+
+        Mockito.verify(conn, Mockito.never()).isStale();
+        Mockito.verify(pool, Mockito.never()).closeExpired();
+    }
+
 }
@@ -0,0 +1,217 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.hc.client5.http.impl.sync;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.methods.CloseableHttpResponse;
+import org.apache.hc.client5.http.methods.HttpGet;
+import org.apache.hc.client5.http.sync.BackoffManager;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.bootstrap.io.HttpServer;
+import org.apache.hc.core5.http.bootstrap.io.ServerBootstrap;
+import org.apache.hc.core5.http.entity.EntityUtils;
+import org.apache.hc.core5.http.io.HttpRequestHandler;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestAdaptiveBackoffManager {
+
+    private AdaptiveBackoffManager impl;
+    private MockConnPoolControl connPerRoute;
+    private HttpRoute route;
+    private MockClock clock;
+
+    @Before
+    public void setUp() {
+        connPerRoute = new MockConnPoolControl();
+        route = new HttpRoute(new HttpHost("localhost", 80));
+        clock = new MockClock();
+        impl = new AdaptiveBackoffManager(connPerRoute, clock);
+        impl.setWindowMillis(100);
+    }
+
+    private void sampleWindow(final long rttMillis) {
+        for (int i = 0; i < 10; i++) {
+            impl.probe(route, rttMillis, TimeUnit.MILLISECONDS);
+        }
+        clock.setCurrentTime(clock.getCurrentTime() + 100);
+        impl.probe(route, rttMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void isABackoffManager() {
+        Assert.assertTrue(impl instanceof BackoffManager);
+    }
+
+    @Test
+    public void growsWhileLatencyIsStable() {
+        connPerRoute.setMaxPerRoute(route, 2);
+        for (int i = 0; i < 50; i++) {
+            sampleWindow(10);
+        }
+        Assert.assertTrue(connPerRoute.getMaxPerRoute(route) > 10);
+    }
+
+    @Test
+    public void shrinksWhenLatencyRises() {
+        connPerRoute.setMaxPerRoute(route, 40);
+        sampleWindow(10);
+        for (int i = 0; i < 20; i++) {
+            sampleWindow(40);
+        }
+        Assert.assertTrue(connPerRoute.getMaxPerRoute(route) < 20);
+    }
+
+    @Test
+    public void doesNotExceedLimits() {
+        impl.setLimits(2, 8);
+        connPerRoute.setMaxPerRoute(route, 4);
+        for (int i = 0; i < 100; i++) {
+            sampleWindow(10);
+        }
+        Assert.assertEquals(8, connPerRoute.getMaxPerRoute(route));
+        for (int i = 0; i < 100; i++) {
+            impl.backOff(route);
+            clock.setCurrentTime(clock.getCurrentTime() + 100);
+        }
+        Assert.assertEquals(2, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    public void backsOffOncePerWindow() {
+        connPerRoute.setMaxPerRoute(route, 8);
+        impl.backOff(route);
+        Assert.assertEquals(6, connPerRoute.getMaxPerRoute(route));
+        impl.backOff(route);
+        Assert.assertEquals(6, connPerRoute.getMaxPerRoute(route));
+        clock.setCurrentTime(clock.getCurrentTime() + 100);
+        impl.backOff(route);
+        Assert.assertEquals(4, connPerRoute.getMaxPerRoute(route));
+    }
+
+    @Test
+    public void probeWithoutLatencyDoesNothing() {
+        connPerRoute.setMaxPerRoute(route, 4);
+        for (int i = 0; i < 10; i++) {
+            impl.probe(route);
+            clock.setCurrentTime(clock.getCurrentTime() + 100);
+        }
+        Assert.assertEquals(4, connPerRoute.getMaxPerRoute(route));
+    }
+
+    /**
+     * Runs a client with more threads than the server can handle concurrently
+     * against a local server whose response time grows linearly with the number
+     * of requests in flight beyond its capacity.
+     */
+    @Test
+    public void convergesToServerCapacity() throws Exception {
+        final int capacity = 4;
+        final long serviceTime = 20;
+        final AtomicInteger inflight = new AtomicInteger();
+        final HttpServer server = ServerBootstrap.bootstrap()
+                .registerHandler("*", new HttpRequestHandler() {
+
+                    @Override
+                    public void handle(
+                            final HttpRequest request,
+                            final HttpResponse response,
+                            final HttpContext context) throws HttpException, IOException {
+                        final int n = inflight.incrementAndGet();
+                        try {
+                            Thread.sleep(serviceTime * Math.max(capacity, n) / capacity);
+                        } catch (final InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        } finally {
+                            inflight.decrementAndGet();
+                        }
+                        response.setStatusCode(200);
+                    }
+
+                }).create();
+        server.start();
+        final PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager();
+        cm.setMaxTotal(100);
+        cm.setDefaultMaxPerRoute(2);
+        final AdaptiveBackoffManager backoffManager = new AdaptiveBackoffManager(cm);
+        backoffManager.setWindowMillis(50);
+        final CloseableHttpClient client = HttpClientBuilder.create()
+                .setConnectionManager(cm)
+                .setBackoffManager(backoffManager)
+                .setConnectionBackoffStrategy(new DefaultBackoffStrategy())
+                .build();
+        final HttpHost target = new HttpHost("localhost", server.getLocalPort());
+        final ExecutorService executor = Executors.newFixedThreadPool(16);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        try {
+            for (int i = 0; i < 16; i++) {
+                executor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        while (running.get()) {
+                            try {
+                                final CloseableHttpResponse response = client.execute(target, new HttpGet("/"));
+                                try {
+                                    EntityUtils.consume(response.getEntity());
+                                } finally {
+                                    response.close();
+                                }
+                            } catch (final IOException ignore) {
+                            }
+                        }
+                    }
+
+                });
+            }
+            Thread.sleep(3000);
+        } finally {
+            running.set(false);
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+            client.close();
+            server.stop();
+        }
+        final int limit = cm.getMaxPerRoute(new HttpRoute(target));
+        Assert.assertTrue("Limit " + limit, limit >= capacity - 1 && limit <= capacity * 3);
+    }
+
+}
@@ -158,6 +158,42 @@ public class TestFutureRequestExecutionService {
         }
     }
 
+    @Test
+    public void shouldLimitRequestsInFlight() throws Exception {
+        final CloseableHttpClient httpClient = HttpClientBuilder.create()
+                .setMaxConnPerRoute(5)
+                .build();
+        final FutureRequestExecutionService service = new FutureRequestExecutionService(httpClient, 2);
+        try {
+            blocked.set(true);
+            final Future<Boolean> task1 = service.execute(
+                    new HttpGet(uri), HttpClientContext.create(), new OkidokiHandler());
+            final Future<Boolean> task2 = service.execute(
+                    new HttpGet(uri), HttpClientContext.create(), new OkidokiHandler());
+            final CountDownLatch scheduled = new CountDownLatch(1);
+            final Thread t = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    service.execute(new HttpGet(uri), HttpClientContext.create(), new OkidokiHandler());
+                    scheduled.countDown();
+                }
+
+            });
+            t.start();
+            Assert.assertFalse(scheduled.await(200, TimeUnit.MILLISECONDS));
+            Assert.assertEquals(2, service.metrics().getActiveConnectionCount()
+                    + service.metrics().getScheduledConnectionCount());
+
+            blocked.set(false);
+            Assert.assertTrue(task1.get(5, TimeUnit.SECONDS));
+            Assert.assertTrue(task2.get(5, TimeUnit.SECONDS));
+            Assert.assertTrue(scheduled.await(5, TimeUnit.SECONDS));
+        } finally {
+            service.close();
+        }
+    }
+
     private final class CountingCallback implements FutureCallback<Boolean> {
 
         private final CountDownLatch latch;
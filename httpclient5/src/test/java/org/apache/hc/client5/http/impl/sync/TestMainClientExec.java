@@ -166,6 +166,74 @@ public class TestMainClientExec {
         Assert.assertTrue(finalResponse instanceof HttpResponseProxy);
     }
 
+    @Test
+    public void testConnectionEstablishedTimeRecordedOnlyIfRequested() throws Exception {
+        final HttpRoute route = new HttpRoute(target);
+        final HttpRequestWrapper request = HttpRequestWrapper.wrap(new HttpGet("http://bar/test"), target);
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        Mockito.when(requestExecutor.execute(
+                Mockito.same(request),
+                Mockito.<HttpClientConnection>any(),
+                Mockito.<HttpClientContext>any())).thenReturn(response);
+
+        final HttpClientContext context = new HttpClientContext();
+        mainClientExec.execute(route, request, context, execAware);
+        Assert.assertNull(context.getAttribute(MainClientExec.CONNECTION_ESTABLISHED_AT));
+
+        final long start = System.nanoTime();
+        context.setAttribute(MainClientExec.CONNECTION_ESTABLISHED_AT, Long.valueOf(start));
+        mainClientExec.execute(route, request, context, execAware);
+        final Long establishedAt = (Long) context.getAttribute(MainClientExec.CONNECTION_ESTABLISHED_AT);
+        Assert.assertNotNull(establishedAt);
+        Assert.assertTrue(establishedAt.longValue() - start > 0);
+    }
+
+    @Test
+    public void testExecRequestTimeoutsCappedByDeadline() throws Exception {
+        final HttpRoute route = new HttpRoute(target);
+        final HttpClientContext context = new HttpClientContext();
+        final RequestConfig config = RequestConfig.custom()
+                .setConnectTimeout(100000)
+                .setSocketTimeout(0)
+                .setConnectionRequestTimeout(100000)
+                .build();
+        context.setRequestConfig(config);
+        context.setRequestDeadline(System.currentTimeMillis() + 10000);
+        final HttpRequestWrapper request = HttpRequestWrapper.wrap(new HttpGet("http://bar/test"), target);
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        Mockito.when(requestExecutor.execute(
+                Mockito.same(request),
+                Mockito.<HttpClientConnection>any(),
+                Mockito.<HttpClientContext>any())).thenReturn(response);
+
+        mainClientExec.execute(route, request, context, execAware);
+
+        final ArgumentCaptor<Long> leaseTimeout = ArgumentCaptor.forClass(Long.class);
+        Mockito.verify(connRequest).get(leaseTimeout.capture(), Mockito.eq(TimeUnit.MILLISECONDS));
+        Assert.assertTrue(leaseTimeout.getValue() > 0 && leaseTimeout.getValue() <= 10000);
+        final ArgumentCaptor<Integer> connectTimeout = ArgumentCaptor.forClass(Integer.class);
+        Mockito.verify(connManager).connect(
+                Mockito.same(managedConn), Mockito.eq(route), connectTimeout.capture(), Mockito.same(context));
+        Assert.assertTrue(connectTimeout.getValue() > 0 && connectTimeout.getValue() <= 10000);
+        final ArgumentCaptor<Integer> socketTimeout = ArgumentCaptor.forClass(Integer.class);
+        Mockito.verify(managedConn).setSocketTimeout(socketTimeout.capture());
+        Assert.assertTrue(socketTimeout.getValue() > 0 && socketTimeout.getValue() <= 10000);
+    }
+
+    @Test(expected=InterruptedIOException.class)
+    public void testExecRequestDeadlineExceeded() throws Exception {
+        final HttpRoute route = new HttpRoute(target);
+        final HttpClientContext context = new HttpClientContext();
+        context.setRequestDeadline(System.currentTimeMillis() - 1);
+        final HttpRequestWrapper request = HttpRequestWrapper.wrap(new HttpGet("http://bar/test"), target);
+        try {
+            mainClientExec.execute(route, request, context, execAware);
+        } finally {
+            Mockito.verify(connManager, Mockito.never()).requestConnection(
+                    Mockito.<HttpRoute>any(), Mockito.any());
+        }
+    }
+
     @Test
     public void testExecRequestPersistentConnection() throws Exception {
         final HttpRoute route = new HttpRoute(target);
@@ -319,6 +387,47 @@ public class TestMainClientExec {
         Mockito.verify(managedConn, Mockito.never()).setSocketTimeout(Mockito.anyInt());
     }
 
+    @Test
+    public void testExecRequestStaleConnectionOnRetry() throws Exception {
+        final HttpRoute route = new HttpRoute(target);
+        final HttpClientContext context = new HttpClientContext();
+        context.setAttribute(MainClientExec.VALIDATE_CONNECTION, Boolean.TRUE);
+        final HttpRequestWrapper request = HttpRequestWrapper.wrap(new HttpGet("http://bar/test"), target);
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+
+        Mockito.when(managedConn.isOpen()).thenReturn(Boolean.TRUE, Boolean.FALSE);
+        Mockito.when(managedConn.isStale()).thenReturn(Boolean.TRUE);
+        Mockito.when(requestExecutor.execute(
+                Mockito.same(request),
+                Mockito.<HttpClientConnection>any(),
+                Mockito.<HttpClientContext>any())).thenReturn(response);
+
+        mainClientExec.execute(route, request, context, execAware);
+        Mockito.verify(managedConn).isStale();
+        Mockito.verify(connManager).connect(
+                Mockito.same(managedConn), Mockito.eq(route), Mockito.anyInt(), Mockito.same(context));
+        Assert.assertNull(context.getAttribute(MainClientExec.VALIDATE_CONNECTION));
+        Assert.assertEquals(Boolean.FALSE, context.getAttribute(MainClientExec.CONNECTION_REUSED));
+    }
+
+    @Test
+    public void testExecRequestReusedConnectionNotValidated() throws Exception {
+        final HttpRoute route = new HttpRoute(target);
+        final HttpClientContext context = new HttpClientContext();
+        final HttpRequestWrapper request = HttpRequestWrapper.wrap(new HttpGet("http://bar/test"), target);
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+
+        Mockito.when(managedConn.isOpen()).thenReturn(Boolean.TRUE);
+        Mockito.when(requestExecutor.execute(
+                Mockito.same(request),
+                Mockito.<HttpClientConnection>any(),
+                Mockito.<HttpClientContext>any())).thenReturn(response);
+
+        mainClientExec.execute(route, request, context, execAware);
+        Mockito.verify(managedConn, Mockito.never()).isStale();
+        Assert.assertEquals(Boolean.TRUE, context.getAttribute(MainClientExec.CONNECTION_REUSED));
+    }
+
     @Test(expected=RequestAbortedException.class)
     public void testExecAbortedPriorToConnectionLease() throws Exception {
         final HttpRoute route = new HttpRoute(target);
@@ -32,6 +32,7 @@ import java.io.IOException;
 
 import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.entity.EntityBuilder;
+import org.apache.hc.client5.http.methods.CloseableHttpResponse;
 import org.apache.hc.client5.http.methods.HttpExecutionAware;
 import org.apache.hc.client5.http.methods.HttpGet;
 import org.apache.hc.client5.http.methods.HttpPost;
@@ -192,4 +193,43 @@ public class TestRetryExec {
         }
     }
 
+    @Test
+    public void testRetryOverReusedConnectionRequestsValidation() throws Exception {
+        final HttpRoute route = new HttpRoute(target);
+        final HttpGet get = new HttpGet("/test");
+        final HttpRequestWrapper request = HttpRequestWrapper.wrap(get, target);
+        final HttpClientContext context = HttpClientContext.create();
+        final CloseableHttpResponse response = Mockito.mock(CloseableHttpResponse.class);
+
+        Mockito.when(requestExecutor.execute(
+                Mockito.eq(route),
+                Mockito.same(request),
+                Mockito.<HttpClientContext>any(),
+                Mockito.<HttpExecutionAware>any())).thenAnswer(new Answer<Object>() {
+
+            @Override
+            public Object answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                final HttpClientContext localContext = (HttpClientContext) invocationOnMock.getArguments()[2];
+                if (localContext.getAttribute(MainClientExec.VALIDATE_CONNECTION) == null) {
+                    localContext.setAttribute(MainClientExec.CONNECTION_REUSED, Boolean.TRUE);
+                    throw new IOException("Ka-boom");
+                }
+                return response;
+            }
+
+        });
+        Mockito.when(retryHandler.retryRequest(
+                Mockito.<HttpRequest>any(),
+                Mockito.<IOException>any(),
+                Mockito.eq(1),
+                Mockito.<HttpContext>any())).thenReturn(Boolean.TRUE);
+
+        Assert.assertSame(response, retryExec.execute(route, request, context, execAware));
+        Mockito.verify(requestExecutor, Mockito.times(2)).execute(
+                Mockito.eq(route),
+                Mockito.same(request),
+                Mockito.same(context),
+                Mockito.same(execAware));
+    }
+
 }